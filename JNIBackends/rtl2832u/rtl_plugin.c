@@ -189,9 +189,11 @@ struct output_state
 	JavaVM   *jvm;
 	jobject  self;
     JNIEnv   *env;
-    jobject  tunerOut;
-    jmethodID  write;
-    jbyteArray jdata;
+    jobject  sampleRing;
+    jmethodID  beginWrite;
+    jmethodID  endWrite;
+    jmethodID  getWriteOffset;
+    char     *ringData;
 
 	int16_t  result[MAXIMUM_BUF_LENGTH];
 	int      result_len;
@@ -913,10 +915,18 @@ static void *demod_thread_fn(void *arg)
 
 static void write_output(struct output_state *s) {
 	int len = 2*s->result_len;
-	void *temp = (*(s->env))->GetPrimitiveArrayCritical(s->env, (jarray) s->jdata, 0);
-	memcpy(temp, &(s->result), len);
-	(*(s->env))->ReleasePrimitiveArrayCritical(s->env, s->jdata, temp, 0);
-	(*(s->env))->CallVoidMethod(s->env, s->tunerOut, s->write, s->jdata, 0, len);
+	char *src = (char *) &(s->result);
+	while (len > 0) {
+		// wait for room in the ring, then copy straight into its direct buffer
+		jint n = (*(s->env))->CallIntMethod(s->env, s->sampleRing, s->beginWrite, len);
+		if (n <= 0)
+			return;
+		jint offset = (*(s->env))->CallIntMethod(s->env, s->sampleRing, s->getWriteOffset);
+		memcpy(s->ringData + offset, src, n);
+		(*(s->env))->CallVoidMethod(s->env, s->sampleRing, s->endWrite, n);
+		src += n;
+		len -= n;
+	}
 }
 
 static void *output_thread_fn(void *arg)
@@ -925,14 +935,19 @@ static void *output_thread_fn(void *arg)
 
 	(*(s->jvm))->AttachCurrentThread(s->jvm, (void **)&(s->env), NULL);
 	jclass clsSelf = (*(s->env))->GetObjectClass(s->env, s->self);
-	jfieldID fTunerOut = (*(s->env))->GetFieldID(s->env, clsSelf, "tunerOut", "Ljava/io/DataOutputStream;");
-	s->tunerOut = (*(s->env))->GetObjectField(s->env, s->self, fTunerOut);
-	jclass cls = (*(s->env))->GetObjectClass(s->env, s->tunerOut);
-	s->write = (*(s->env))->GetMethodID(s->env, cls, "write", "([BII)V");
-	s->jdata = (*(s->env))->NewByteArray(s->env, 2 * MAXIMUM_BUF_LENGTH);
-
-	if (!s->write || !cls || !s->tunerOut || !fTunerOut || !clsSelf) {
-		fprintf(stderr, "Could not get reference to output stream, exiting\n");
+	jfieldID fSampleRing = (*(s->env))->GetFieldID(s->env, clsSelf, "sampleRing", "Leu/jacquet80/rds/input/SampleRing;");
+	s->sampleRing = (*(s->env))->GetObjectField(s->env, s->self, fSampleRing);
+	jclass cls = (*(s->env))->GetObjectClass(s->env, s->sampleRing);
+	s->beginWrite = (*(s->env))->GetMethodID(s->env, cls, "beginWrite", "(I)I");
+	s->endWrite = (*(s->env))->GetMethodID(s->env, cls, "endWrite", "(I)V");
+	s->getWriteOffset = (*(s->env))->GetMethodID(s->env, cls, "getWriteOffset", "()I");
+	jmethodID getBuffer = (*(s->env))->GetMethodID(s->env, cls, "getBuffer", "()Ljava/nio/ByteBuffer;");
+	jobject buffer = (*(s->env))->CallObjectMethod(s->env, s->sampleRing, getBuffer);
+	s->ringData = (*(s->env))->GetDirectBufferAddress(s->env, buffer);
+
+	if (!s->beginWrite || !s->endWrite || !s->getWriteOffset || !s->ringData || !cls
+			|| !s->sampleRing || !fSampleRing || !clsSelf) {
+		fprintf(stderr, "Could not get reference to sample ring, exiting\n");
 		return 0;
 	}
 
@@ -943,7 +958,7 @@ static void *output_thread_fn(void *arg)
 		write_output(s);
 		pthread_rwlock_unlock(&s->rw);
 	}
-	(*(s->env))->DeleteLocalRef(s->env, s->jdata);
+	(*(s->env))->DeleteLocalRef(s->env, buffer);
 	(*(s->env))->DeleteGlobalRef(s->env, s->self);
 	(*(s->jvm))->DetachCurrentThread(s->jvm);
 	return 0;
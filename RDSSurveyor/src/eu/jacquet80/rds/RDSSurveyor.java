@@ -34,6 +34,7 @@ import java.io.PrintStream;
 import java.lang.reflect.Method;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.prefs.Preferences;
 import java.util.regex.Matcher;
@@ -45,19 +46,29 @@ import eu.jacquet80.rds.app.oda.TDC;
 import eu.jacquet80.rds.app.oda.tmc.TMC;
 import eu.jacquet80.rds.core.BitStreamSynchronizer;
 import eu.jacquet80.rds.core.BitStreamSynchronizer.BitInversion;
+import eu.jacquet80.rds.core.BatchDecoder;
 import eu.jacquet80.rds.core.DecoderShell;
+import eu.jacquet80.rds.core.RDS;
 import eu.jacquet80.rds.core.TunedStation;
 import eu.jacquet80.rds.img.Image;
+import eu.jacquet80.rds.input.AsyncGroupLogWriter;
 import eu.jacquet80.rds.input.AudioBitReader;
 import eu.jacquet80.rds.input.AudioFileBitReader;
 import eu.jacquet80.rds.input.BinStringFileBitReader;
 import eu.jacquet80.rds.input.BinaryFileBitReader;
+import eu.jacquet80.rds.input.BinaryGroupWriter;
 import eu.jacquet80.rds.input.BitReader;
+import eu.jacquet80.rds.input.CsvDspProbe;
 import eu.jacquet80.rds.input.FileFormatGuesser;
 import eu.jacquet80.rds.input.GnsGroupReader;
+import eu.jacquet80.rds.input.GroupLogConverter;
+import eu.jacquet80.rds.input.GroupLogWriter;
 import eu.jacquet80.rds.input.GroupReader;
 import eu.jacquet80.rds.input.HexFileGroupReader;
+import eu.jacquet80.rds.input.HexGroupWriter;
+import eu.jacquet80.rds.input.IqFileBitReader;
 import eu.jacquet80.rds.input.LiveAudioBitReader;
+import eu.jacquet80.rds.input.MpxFileGroupReader;
 import eu.jacquet80.rds.input.NativeTunerGroupReader;
 import eu.jacquet80.rds.input.SdrGroupReader;
 import eu.jacquet80.rds.input.SyncBinaryFileBitReader;
@@ -131,11 +142,20 @@ public class RDSSurveyor {
 		Segmenter segmenter = null;
 		File outBinFile = null;
 		File outGroupFile = null;
+		boolean outGroupBinary = false;
+		AsyncGroupLogWriter.Overflow outGroupOverflow = AsyncGroupLogWriter.Overflow.BLOCK;
+		boolean convert = false;
 		PrintStream console = System.out;
 		BitStreamSynchronizer.BitInversion inversion = BitInversion.AUTO;
 		BitStreamSynchronizer bitStreamSynchronizer = null;
+		int maxCorrectedBurst = -1;
 		String inLtPath = null;
 		String dbUrl = "jdbc:hsqldb:mem:.";
+		String batchPattern = null;
+		int batchThreads = 0;
+		AudioBitReader audioBitReader = null;
+		File dspProbeFile = null;
+		int dspProbeInterval = 1;
 		
 		// RDS Surveyor is non-localized for the time being
 		Locale.setDefault(Locale.US);
@@ -176,7 +196,8 @@ public class RDSSurveyor {
 					reader = bitStreamSynchronizer;
 					liveInput = true;
 				} else if("-inaudiopipe".equals(args[i])) {
-					reader = new BitStreamSynchronizer(console, new AudioBitReader(new DataInputStream(System.in), Integer.parseInt(getParam("inaudiopipe", args, ++i))));
+					audioBitReader = new AudioBitReader(new DataInputStream(System.in), Integer.parseInt(getParam("inaudiopipe", args, ++i)));
+					reader = new BitStreamSynchronizer(console, audioBitReader);
 					liveInput = true;
 				} else if("-inbinfile".equals(args[i])) {
 					reader = new BitStreamSynchronizer(console, new BinaryFileBitReader(new File(getParam("inbinfile", args, ++i))));
@@ -222,12 +243,51 @@ public class RDSSurveyor {
 					inversion = BitInversion.INVERT;
 				} else if("-noinvert".equals(args[i])) {
 					inversion = BitInversion.NOINVERT;
+				} else if("-correct".equals(args[i])) {
+					maxCorrectedBurst = Integer.parseInt(getParam("correct", args, ++i));
+					if(maxCorrectedBurst < 0 || maxCorrectedBurst > RDS.MAX_BURST_LENGTH) {
+						System.out.println("-correct needs a burst length between 0 and " + RDS.MAX_BURST_LENGTH);
+						System.exit(1);
+					}
 				} else if("-inaudiofile".equals(args[i])) {
 					reader = new BitStreamSynchronizer(console, new AudioFileBitReader(new File(getParam("inaudiofile", args, ++i))));
+				} else if("-iniqfile".equals(args[i])) {
+					File iqFile = new File(getParam("iniqfile", args, ++i));
+					int iqRate = Integer.parseInt(getParam("iniqfile", args, ++i));
+					audioBitReader = new IqFileBitReader(iqFile, iqRate);
+					reader = new BitStreamSynchronizer(console, audioBitReader);
+				} else if("-inmpxfile".equals(args[i])) {
+					File mpxFile = new File(getParam("inmpxfile", args, ++i));
+					int mpxRate = 0;
+					if(i+1 < args.length && args[i+1].matches("\\d+")) mpxRate = Integer.parseInt(args[++i]);
+					reader = new MpxFileGroupReader(console, mpxFile, mpxRate);
+				} else if("-batch".equals(args[i])) {
+					batchPattern = getParam("batch", args, ++i);
+					showGui = false;
+				} else if("-batchthreads".equals(args[i])) {
+					batchThreads = Integer.parseInt(getParam("batchthreads", args, ++i));
+				} else if("-dspprobe".equals(args[i])) {
+					dspProbeFile = new File(getParam("dspprobe", args, ++i));
+					if(i+1 < args.length && args[i+1].matches("\\d+")) dspProbeInterval = Integer.parseInt(args[++i]);
 				} else if("-outbinfile".equals(args[i])) {
 					outBinFile = new File(getParam("outbinfile", args, ++i));
 				} else if("-outgrouphexfile".equals(args[i])) {
 					outGroupFile = new File(getParam("outgrouphexfile", args, ++i));
+					outGroupBinary = false;
+				} else if("-outgroupbinfile".equals(args[i])) {
+					outGroupFile = new File(getParam("outgroupbinfile", args, ++i));
+					outGroupBinary = true;
+				} else if("-outgroupoverflow".equals(args[i])) {
+					String policy = getParam("outgroupoverflow", args, ++i);
+					try {
+						outGroupOverflow = AsyncGroupLogWriter.Overflow.valueOf(policy.toUpperCase(Locale.US));
+					} catch(IllegalArgumentException e) {
+						System.out.println("-outgroupoverflow needs one of block, drop_oldest, drop_newest");
+						System.exit(1);
+					}
+				} else if("-convert".equals(args[i])) {
+					convert = true;
+					showGui = false;
 				} else if("-nogui".equals(args[i])) {
 					showGui = false;
 				} else if("-noconsole".equals(args[i])) {
@@ -281,15 +341,24 @@ public class RDSSurveyor {
 					System.out.println("  -insyncbinfile <file>    Use the given synchronized binary file as input");
 					System.out.println("  -inbinstrfile <file>     Use the given binary string file as input");
 					System.out.println("  -inaudiofile <file>      Use the given audio file as input");
+					System.out.println("  -iniqfile <file> <rate>  Use the given IQ file (8-bit unsigned, e.g. from rtl_sdr) as input");
+					System.out.println("  -inmpxfile <file> [rate] Use the given MPX file (WAV, or raw at the given rate) as input, decoded on all processors");
 					System.out.println("  -ingrouphexfile <file>   Use the given group-level file as input");
 					System.out.println("  -infile <file>           Use the given file as input (autodetect format)");
+					System.out.println("  -batch <dir|glob>        Decode all the given files in parallel (autodetect format) and print summaries");
+					System.out.println("  -batchthreads <n>        Number of files decoded at the same time in batch mode (default: all processors)");
 					System.out.println("  -inv4l <device>          Reads from Video4Linux device, e.g. /dev/radio");
 					System.out.println("  -intuner <driver>        Reads from a native tuner, specify driver (.so, .dll, .dylib)");
 					System.out.println("  -insdr <driver>          Reads from an SDR, specify driver (.so, .dll, .dylib)");
 					System.out.println("  -ingns <port>            Reads from a GNS TMC tuner, specify port (tty*, COM*)");
 					System.out.println("  -invert / -noinvert      Force bit inversion (default: auto-detect");
+					System.out.println("  -correct <bits>          Correct error bursts up to the given length (0-5, default: 0, i.e. none)");
+					System.out.println("  -dspprobe <file> [n]     Write the internal signals of the demodulator (-inaudiopipe, -iniqfile) to a CSV file, every nth value");
 					System.out.println("  -outbinfile <file>       Write bitstream to binary file (if applicable)");
 					System.out.println("  -outgrouphexfile <file>  Write groups to file (in hexadecimal)");
+					System.out.println("  -outgroupbinfile <file>  Write groups to file (in compact binary format)");
+					System.out.println("  -outgroupoverflow <p>    When writing groups falls behind: block (default), drop_oldest or drop_newest");
+					System.out.println("  -convert                 Write the input to the group file without decoding it, and quit");
 					System.out.println("  -nogui                   Do not show the graphical user interface");
 					System.out.println("  -noconsole               No console analysis");
 					System.out.println("  -rds                     Force standard RDS mode (and save as a preference)");
@@ -303,7 +372,7 @@ public class RDSSurveyor {
 			}
 		}
 
-		if ((reader == null) && (inLtPath == null)) {
+		if ((reader == null) && (inLtPath == null) && (batchPattern == null)) {
 			if(showGui) {
 				console = null;
 				InputSelectionDialog dialog = new InputSelectionDialog();
@@ -318,23 +387,74 @@ public class RDSSurveyor {
 		
 		TMC.setDbUrl(dbUrl);
 		
+		// the decoders are given the RBDS setting, stations do not read the preferences
+		boolean rbds = preferences.getBoolean(PREF_RBDS, false);
+		
 		// Build db if needed
 		if (inLtPath != null) {
 			System.out.println("Processing TMC location tables...");
 			TMC.readLocationTables(new File(inLtPath));
 			System.out.println("Done processing TMC location tables.");
-			if (reader == null)
+			if ((reader == null) && (batchPattern == null))
 				System.exit(0);
 		}
+		
+		// batch mode: decode the files, print the summaries and quit
+		if (batchPattern != null) {
+			List<File> files = BatchDecoder.listFiles(batchPattern);
+			if (files.isEmpty()) {
+				System.out.println("No files match " + batchPattern + ". Aborting.");
+				System.exit(1);
+			}
+			BatchDecoder batch = new BatchDecoder(System.out, batchThreads);
+			batch.setMaxCorrectedBurst(maxCorrectedBurst);
+			batch.forceInversion(inversion);
+			batch.setRbds(rbds);
+			BatchDecoder.BatchSummary summary = batch.decode(files);
+			System.exit(summary.failed == 0 ? 0 : 1);
+		}
 				
-		if (outGroupFile == null)
+		GroupLogWriter groupWriter = null;
+		if (outGroupFile != null)
+			groupWriter = outGroupBinary ? new BinaryGroupWriter(outGroupFile) : new HexGroupWriter(outGroupFile);
+		
+		// conversion: copy the input to the group file and quit
+		if (convert) {
+			if (reader == null || groupWriter == null) {
+				System.out.println("-convert needs an input and a group output file. Aborting.");
+				System.exit(1);
+			}
+			int count = GroupLogConverter.convert(reader, groupWriter);
+			System.out.println("Wrote " + count + " groups to " + outGroupFile);
+			System.exit(0);
+		}
+		
+		if (groupWriter == null) {
 			teeReader = reader;
-		else
-			teeReader = new TeeGroupReader(reader, outGroupFile);
+		} else {
+			final AsyncGroupLogWriter asyncWriter = new AsyncGroupLogWriter(groupWriter,
+					AsyncGroupLogWriter.DEFAULT_CAPACITY, outGroupOverflow,
+					AsyncGroupLogWriter.DEFAULT_FLUSH_EVENTS, AsyncGroupLogWriter.DEFAULT_FLUSH_MILLIS);
+			teeReader = new TeeGroupReader(reader, asyncWriter);
+			// the writer thread is a daemon, hence write the remaining groups on exit
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				@Override
+				public void run() {
+					try {
+						asyncWriter.close();
+					} catch(IOException e) {
+						System.err.println("Could not write the group file: " + e);
+					}
+					if(asyncWriter.getDropped() > 0)
+						System.err.println("Group file: " + asyncWriter.getDropped() + " events dropped");
+				}
+			});
+		}
 		
 		// Create a decoder "shell"
 		final PrintStream fConsole = console == null ? nullConsole : console;
 		DecoderShell.instance.setConsole(console);
+		DecoderShell.instance.setRbds(rbds);
 		
 		// Create the input toolbar before wrapping the reader into a station change detector
 		// and possibly a group logger (tee)
@@ -358,6 +478,43 @@ public class RDSSurveyor {
 		if(bitStreamSynchronizer != null && inversion != BitInversion.AUTO) {
 			bitStreamSynchronizer.forceInversion(inversion);
 		}
+		if(reader instanceof MpxFileGroupReader && inversion != BitInversion.AUTO) {
+			((MpxFileGroupReader) reader).forceInversion(inversion);
+		}
+		
+		// set error correction level if requested
+		if(maxCorrectedBurst >= 0 && reader instanceof BitStreamSynchronizer) {
+			((BitStreamSynchronizer) reader).setMaxCorrectedBurst(maxCorrectedBurst);
+		}
+		if(maxCorrectedBurst >= 0 && reader instanceof MpxFileGroupReader) {
+			((MpxFileGroupReader) reader).setMaxCorrectedBurst(maxCorrectedBurst);
+		}
+		if(maxCorrectedBurst >= 0 && reader instanceof SdrGroupReader) {
+			((SdrGroupReader) reader).setMaxCorrectedBurst(maxCorrectedBurst);
+		}
+		
+		// record the internal signals of the demodulator if requested
+		if(dspProbeFile != null) {
+			if(audioBitReader == null) {
+				System.out.println("-dspprobe needs an MPX or IQ input (-inaudiopipe, -iniqfile). Aborting.");
+				System.exit(1);
+			}
+			final CsvDspProbe probe = new CsvDspProbe(dspProbeFile, dspProbeInterval);
+			audioBitReader.addProbe(probe);
+			// the writer thread of the probe is a daemon, hence write the remaining values on exit
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				@Override
+				public void run() {
+					try {
+						probe.close();
+					} catch(IOException e) {
+						System.err.println("Could not write the DSP probe file: " + e);
+					}
+					if(probe.getDropped() > 0)
+						System.err.println("DSP probe: " + probe.getDropped() + " values dropped");
+				}
+			});
+		}
 		
 
 			
@@ -15,6 +15,7 @@ import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -222,7 +223,7 @@ public class TMC {
 		return r;
 	}
 	
-	private static Map<String, Country> COUNTRIES = new HashMap<String, Country>();
+	private static Map<String, Country> COUNTRIES = Collections.synchronizedMap(new HashMap<String, Country>());
 
 	public static Country getCountry(String cc, int ltn) {
 		Country ret = COUNTRIES.get("ccd=" + cc + ";tabcd=" + ltn);
@@ -301,7 +302,7 @@ public class TMC {
 		COUNTRIES.put("ecc=" + ecc, country);
 	}
 	
-	private static Map<String, LocationDataset> LOCATION_DATASETS = new HashMap<String, LocationDataset>();
+	private static Map<String, LocationDataset> LOCATION_DATASETS = Collections.synchronizedMap(new HashMap<String, LocationDataset>());
 
 	public static LocationDataset getLocationDataset(int cid, int tabcd) {
 		LocationDataset ret = LOCATION_DATASETS.get(cid + ";" + tabcd);
@@ -328,7 +329,7 @@ public class TMC {
 		LOCATION_DATASETS.put(cid + ";" + tabcd, locationDataset);
 	}
 	
-	private static Map<String, TMCName> NAMES = new HashMap<String, TMCName>();
+	private static Map<String, TMCName> NAMES = Collections.synchronizedMap(new HashMap<String, TMCName>());
 
 	public static TMCName getName(int cid, int nid) {
 		TMCName ret = NAMES.get(cid + ";" + nid);
@@ -384,7 +385,7 @@ public class TMC {
 		NAMES.put(cid + ";" + lid + ";" + nid, name);
 	}
 	
-	private static Map<String, TMCLocation> LOCATIONS = new HashMap<String, TMCLocation>();
+	private static Map<String, TMCLocation> LOCATIONS = Collections.synchronizedMap(new HashMap<String, TMCLocation>());
 
 	public static TMCLocation getLocation(int cid, int tabcd, int lcd) {
 		TMCLocation ret = LOCATIONS.get(cid + ";" + tabcd + ";" + lcd);
@@ -414,7 +415,7 @@ public class TMC {
 		LOCATIONS.put(cid + ";" + tabcd + ";" + lcd, location);
 	}
 	
-	private static Map<String, TMCArea> AREAS = new HashMap<String, TMCArea>();
+	private static Map<String, TMCArea> AREAS = Collections.synchronizedMap(new HashMap<String, TMCArea>());
 
 	public static TMCArea getArea(int cid, int tabcd, int lcd) {
 		TMCArea ret = AREAS.get(cid + ";" + tabcd + ";" + lcd);
@@ -455,7 +456,7 @@ public class TMC {
 		AREAS.put(cid + ";" + tabcd + ";" + lcd, area);
 	}
 
-	private static Map<String, Road> ROADS = new HashMap<String, Road>();
+	private static Map<String, Road> ROADS = Collections.synchronizedMap(new HashMap<String, Road>());
 
 	public static Road getRoad(int cid, int tabcd, int lcd) {
 		Road ret = ROADS.get(cid + ";" + tabcd + ";" + lcd);
@@ -484,7 +485,7 @@ public class TMC {
 		ROADS.put(cid + ";" + tabcd + ";" + lcd, road);
 	}
 	
-	private static Map<String, Segment> SEGMENTS = new HashMap<String, Segment>();
+	private static Map<String, Segment> SEGMENTS = Collections.synchronizedMap(new HashMap<String, Segment>());
 
 	public static Segment getSegment(int cid, int tabcd, int lcd) {
 		Segment ret = SEGMENTS.get(cid + ";" + tabcd + ";" + lcd);
@@ -523,7 +524,7 @@ public class TMC {
 		SEGMENTS.put(cid + ";" + tabcd + ";" + lcd, segment);
 	}
 	
-	private static Map<String, Segment> FIRST_SEGMENTS = new HashMap<String, Segment>();
+	private static Map<String, Segment> FIRST_SEGMENTS = Collections.synchronizedMap(new HashMap<String, Segment>());
 
 	/**
 	 * @brief Gets the first segment of the location specified by the arguments.
@@ -580,7 +581,7 @@ public class TMC {
 		FIRST_SEGMENTS.put(cid + ";" + tabcd + ";" + lcd, segment);
 	}
 	
-	private static Map<String, Segment> LAST_SEGMENTS = new HashMap<String, Segment>();
+	private static Map<String, Segment> LAST_SEGMENTS = Collections.synchronizedMap(new HashMap<String, Segment>());
 
 	/**
 	 * @brief Gets the last segment of the location specified by the arguments.
@@ -637,7 +638,7 @@ public class TMC {
 		LAST_SEGMENTS.put(cid + ";" + tabcd + ";" + lcd, segment);
 	}
 	
-	private static Map<String, TMCPoint> POINTS = new HashMap<String, TMCPoint>();
+	private static Map<String, TMCPoint> POINTS = Collections.synchronizedMap(new HashMap<String, TMCPoint>());
 
 	public static TMCPoint getPoint(int cid, int tabcd, int lcd) {
 		TMCPoint ret = POINTS.get(cid + ";" + tabcd + ";" + lcd);
@@ -676,7 +677,7 @@ public class TMC {
 		POINTS.put(cid + ";" + tabcd + ";" + lcd, point);
 	}
 	
-	private static Map<String, TMCPoint> FIRST_POINTS = new HashMap<String, TMCPoint>();
+	private static Map<String, TMCPoint> FIRST_POINTS = Collections.synchronizedMap(new HashMap<String, TMCPoint>());
 
 	/**
 	 * @brief Gets the first point of the location specified by the arguments.
@@ -733,7 +734,7 @@ public class TMC {
 		FIRST_POINTS.put(cid + ";" + tabcd + ";" + lcd, point);
 	}
 	
-	private static Map<String, TMCPoint> LAST_POINTS = new HashMap<String, TMCPoint>();
+	private static Map<String, TMCPoint> LAST_POINTS = Collections.synchronizedMap(new HashMap<String, TMCPoint>());
 
 	/**
 	 * @brief Gets the last point of the location specified by the arguments.
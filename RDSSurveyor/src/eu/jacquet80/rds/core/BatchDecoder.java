@@ -0,0 +1,361 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import eu.jacquet80.rds.app.Application;
+import eu.jacquet80.rds.app.oda.AlertC;
+import eu.jacquet80.rds.core.BitStreamSynchronizer.BitInversion;
+import eu.jacquet80.rds.input.FileFormatGuesser;
+import eu.jacquet80.rds.input.GroupReader;
+import eu.jacquet80.rds.input.MpxFileGroupReader;
+import eu.jacquet80.rds.input.StationChangeDetector;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+import eu.jacquet80.rds.log.DefaultLogMessageVisitor;
+import eu.jacquet80.rds.log.Log;
+import eu.jacquet80.rds.log.LogMessage;
+import eu.jacquet80.rds.log.LogMessageVisitor;
+import eu.jacquet80.rds.log.StationTuned;
+
+/**
+ * @brief Decodes many recordings in parallel, without user interface, and reports what was
+ * received in each of them.
+ *
+ * The format of each file is guessed by {@link FileFormatGuesser}. Files are decoded on a fixed
+ * number of threads, one file per thread, and a summary of each file is printed in the order of
+ * the files, followed by a summary of the whole batch. For each station received in a file, the
+ * summary gives the PI, the PS, the block error rate, the ODAs and the number of TMC messages
+ * held at the end of the file. Stations received for less than about a second are left out.
+ *
+ * Log messages are not kept, so that the memory used does not depend on the length of the files.
+ *
+ * The error correction level and the bit inversion apply to the files decoded from a bit stream
+ * or from MPX. Stations use standard RDS until they broadcast an ECC, unless RBDS is set.
+ */
+public class BatchDecoder {
+	/** Stations received for fewer groups are left out, as they are usually due to reception errors */
+	private static final int MIN_GROUPS = 10;
+
+	private final PrintStream out;
+	private final int threads;
+	private int maxCorrectedBurst = -1;
+	private BitInversion inversion = BitInversion.AUTO;
+	private boolean rbds = false;
+
+	/**
+	 * @param out the stream on which to print the summaries
+	 * @param threads the number of files to decode at the same time, 0 for the number of
+	 * processors
+	 */
+	public BatchDecoder(PrintStream out, int threads) {
+		this.out = out;
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * @brief Sets the maximum burst length to correct in the files decoded from a bit stream.
+	 *
+	 * @param maxBurst the burst length, or -1 to keep the default of each reader
+	 * @see BitStreamSynchronizer#setMaxCorrectedBurst(int)
+	 */
+	public void setMaxCorrectedBurst(int maxBurst) {
+		this.maxCorrectedBurst = maxBurst;
+	}
+
+	/**
+	 * @brief Forces the polarity of the files decoded from a bit stream, instead of detecting it.
+	 *
+	 * @see BitStreamSynchronizer#forceInversion(BitInversion)
+	 */
+	public void forceInversion(BitInversion inversion) {
+		this.inversion = inversion;
+	}
+
+	/**
+	 * @brief Sets whether stations use RBDS until they broadcast an ECC.
+	 *
+	 * @see GroupLevelDecoder#setRbds(boolean)
+	 */
+	public void setRbds(boolean rbds) {
+		this.rbds = rbds;
+	}
+
+	/**
+	 * @brief Lists the files of a directory, or the files whose names match a glob pattern.
+	 *
+	 * The pattern only applies to file names, as in {@code captures/*.rds}. An existing file is
+	 * returned alone. Hidden files and directories are skipped.
+	 *
+	 * @param pattern a directory, a file, or a glob pattern
+	 * @return the files, sorted by name
+	 */
+	public static List<File> listFiles(String pattern) throws IOException {
+		File f = new File(pattern);
+		List<File> res = new ArrayList<File>();
+		if(f.isFile()) {
+			res.add(f);
+			return res;
+		}
+
+		File dir = f.isDirectory() ? f : f.getAbsoluteFile().getParentFile();
+		String glob = f.isDirectory() ? "*" : f.getName();
+		DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath(), glob);
+		try {
+			for(Path p : stream) {
+				File file = p.toFile();
+				if(file.isFile() && !file.isHidden()) res.add(file);
+			}
+		} finally {
+			stream.close();
+		}
+		Collections.sort(res);
+		return res;
+	}
+
+	/**
+	 * @brief Decodes the given files, and prints their summaries as they become available.
+	 *
+	 * @return the summary of the batch
+	 */
+	public BatchSummary decode(List<File> files) {
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<FileSummary>> results = new ArrayList<Future<FileSummary>>(files.size());
+		for(final File file : files) {
+			results.add(executor.submit(new Callable<FileSummary>() {
+				@Override
+				public FileSummary call() {
+					return decodeFile(file);
+				}
+			}));
+		}
+		executor.shutdown();
+
+		BatchSummary batch = new BatchSummary();
+		for(int i=0; i<files.size(); i++) {
+			FileSummary summary;
+			try {
+				summary = results.get(i).get();
+			} catch(InterruptedException e) {
+				summary = new FileSummary(files.get(i));
+				summary.error = "interrupted";
+			} catch(ExecutionException e) {
+				summary = new FileSummary(files.get(i));
+				summary.error = e.getCause().toString();
+			}
+			out.print(summary);
+			out.flush();
+			batch.add(summary);
+		}
+		batch.duration = (System.nanoTime() - start) / 1e9;
+		out.println(batch);
+		return batch;
+	}
+
+	/**
+	 * @brief Decodes a file on the current thread.
+	 */
+	public FileSummary decodeFile(File file) {
+		final FileSummary res = new FileSummary(file);
+		final List<TunedStation> stations = new ArrayList<TunedStation>();
+		final LogMessageVisitor stationCollector = new DefaultLogMessageVisitor() {
+			@Override
+			public void visit(StationTuned stationTuned) {
+				stations.add(stationTuned.getStation());
+			}
+		};
+		Log log = new Log() {
+			@Override
+			public void addMessage(LogMessage message) {
+				// messages are not kept, only stations are of interest
+				message.accept(stationCollector);
+			}
+		};
+		GroupLevelDecoder decoder = new GroupLevelDecoder(log);
+		decoder.setRbds(rbds);
+		PackedGroup group = new PackedGroup();
+
+		try {
+			// other files are decoded at the same time, so MPX files use one thread only
+			GroupReader fileReader = FileFormatGuesser.createReader(file, null, 1);
+			if(fileReader instanceof BitStreamSynchronizer) {
+				BitStreamSynchronizer bss = (BitStreamSynchronizer) fileReader;
+				if(maxCorrectedBurst >= 0) bss.setMaxCorrectedBurst(maxCorrectedBurst);
+				if(inversion != BitInversion.AUTO) bss.forceInversion(inversion);
+			}
+			if(fileReader instanceof MpxFileGroupReader) {
+				MpxFileGroupReader mpx = (MpxFileGroupReader) fileReader;
+				if(maxCorrectedBurst >= 0) mpx.setMaxCorrectedBurst(maxCorrectedBurst);
+				if(inversion != BitInversion.AUTO) mpx.forceInversion(inversion);
+			}
+			GroupReader reader = new StationChangeDetector(fileReader);
+			try {
+				while(true) {
+					GroupReaderEvent evt = reader.getGroup(group);
+					if(group.present) {
+						decoder.processOneGroup(group);
+						res.groups++;
+					} else decoder.processOneGroup(evt);
+				}
+			} catch(GroupReader.EndOfStream e) {
+				// end of file
+			} finally {
+				if(fileReader instanceof Closeable) ((Closeable) fileReader).close();
+			}
+		} catch(IOException e) {
+			res.error = e.toString();
+		}
+
+		for(TunedStation station : stations) {
+			if(station.getPI() != 0 && station.getTotalBlocks() >= 4 * MIN_GROUPS) {
+				res.stations.add(new StationSummary(station));
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @brief What was received from a station in a file.
+	 */
+	public static class StationSummary {
+		public final int pi;
+		public final String ps;
+		public final int totalBlocks, blocksOk;
+		/** ODAs, as "AID (name) in group" */
+		public final List<String> odas = new ArrayList<String>();
+		public final int tmcMessages;
+
+		StationSummary(TunedStation station) {
+			pi = station.getPI();
+			ps = station.getStationName();
+			totalBlocks = station.getTotalBlocks();
+			blocksOk = station.getTotalBlocksOk();
+
+			List<Integer> aids = new ArrayList<Integer>(station.getODAs());
+			Collections.sort(aids);
+			for(int aid : aids) {
+				int g = station.getODAgroup(aid);
+				Application app = station.getODAapplication(aid);
+				odas.add(String.format("%04X (%s) in %d%c", aid, app == null ? "unknown" : app.getName(),
+						g >> 1, (char) ('A' + (g & 1))));
+			}
+
+			int tmc = 0;
+			for(Application app : station.getApplications()) {
+				if(app instanceof AlertC) tmc += ((AlertC) app).getMessages().size();
+			}
+			tmcMessages = tmc;
+		}
+
+		public double getBLER() {
+			return totalBlocks == 0 ? 0 : 1. - (double) blocksOk / totalBlocks;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("PI=%04X PS=\"%s\" BLER=%.1f%% ODAs=%s TMC messages=%d",
+					pi, ps, 100 * getBLER(), odas, tmcMessages);
+		}
+	}
+
+	/**
+	 * @brief The result of decoding a file.
+	 */
+	public static class FileSummary {
+		public final File file;
+		public int groups = 0;
+		public final List<StationSummary> stations = new ArrayList<StationSummary>();
+		/** The error which stopped decoding, {@code null} if the whole file was decoded */
+		public String error = null;
+
+		FileSummary(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder res = new StringBuilder();
+			res.append(file.getPath()).append(": ").append(groups).append(" groups");
+			if(error != null) res.append(", error: ").append(error);
+			res.append('\n');
+			for(StationSummary s : stations) res.append('\t').append(s).append('\n');
+			return res.toString();
+		}
+	}
+
+	/**
+	 * @brief Totals of a batch.
+	 */
+	public static class BatchSummary {
+		public int files = 0, failed = 0;
+		public long groups = 0;
+		public int stations = 0;
+		public final Set<Integer> pis = new HashSet<Integer>();
+		public long totalBlocks = 0, blocksOk = 0;
+		public int tmcMessages = 0;
+		/** Wall time, in seconds */
+		public double duration;
+
+		void add(FileSummary file) {
+			files++;
+			if(file.error != null) failed++;
+			groups += file.groups;
+			for(StationSummary s : file.stations) {
+				stations++;
+				pis.add(s.pi);
+				totalBlocks += s.totalBlocks;
+				blocksOk += s.blocksOk;
+				tmcMessages += s.tmcMessages;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Batch: %d files (%d failed), %d groups, %d stations (%d distinct PIs), " +
+					"BLER=%.1f%%, TMC messages=%d, %.1f s (%.1f files/s)",
+					files, failed, groups, stations, pis.size(),
+					totalBlocks == 0 ? 0 : 100. * (1. - (double) blocksOk / totalBlocks), tmcMessages,
+					duration, files / duration);
+		}
+	}
+}
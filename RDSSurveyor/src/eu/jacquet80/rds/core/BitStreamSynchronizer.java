@@ -24,29 +24,54 @@
 */
 
 package eu.jacquet80.rds.core;
+import java.io.Closeable;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 
+import eu.jacquet80.rds.RDSSurveyor;
 import eu.jacquet80.rds.input.BitReader;
 import eu.jacquet80.rds.input.GroupReader;
-import eu.jacquet80.rds.input.group.GroupEvent;
 import eu.jacquet80.rds.input.group.GroupReaderEvent;
-import eu.jacquet80.rds.log.SequentialTime;
+import eu.jacquet80.rds.input.group.PackedGroup;
 
 
-public class BitStreamSynchronizer extends GroupReader {
+public class BitStreamSynchronizer extends GroupReader implements Closeable {
 	private final static int SYNC_THRESHOLD = 2;  // need 2 blocks after initial block to confirm synchronization
 	private final static int SYNC_CONFIRM_DURATION = 5;  // 3 blocks in 5 groups
 	private final static int SYNC_LOSS_DURATION = 10;    // lose synchronization if 10 groups without a good syndrome
+	private final static int HIT_WEIGHT = 2;            // weight of a syndrome hit
+	private final static int RELIABLE_HIT_WEIGHT = 3;   // weight of a syndrome hit on a block of reliable bits
+	private final static int SYNC_HITS = SYNC_THRESHOLD + 1;    // syndrome hits to remember per offset
+	private final static int BIT_BUFFER_WORDS = 64;     // bits are read 64 words (4096 bits) at a time
+	private final static int DEFAULT_MAX_CORRECTED_BURST = 0;  // corrected blocks may be wrong, hence opt-in
+	private final static int RELIABLE_CONFIDENCE = 64;  // bits from this confidence (half the average) up are reliable
+	private final static int CHASE_BITS = 4;            // number of least reliable bits flipped by soft decoding
+	private final static int CHASE_MAX_CONFIDENCE = 96; // bits above this confidence are never flipped
+	
+	/** Syndrome of a single bit error, for each bit of a block */
+	private final static int[] BIT_SYNDROMES = new int[26];
+	
+	static {
+		for(int i=0; i<26; i++) BIT_SYNDROMES[i] = RDS.calcSyndrome(1 << i);
+	}
 
-	private final PrintStream console;
 	//private final Log log;
 	private final BitReader reader;
+	private final long[] bitBuffer = new long[BIT_BUFFER_WORDS];
+	private int bitBufferLength = 0;   // number of bits in bitBuffer
+	private int bitBufferPos = 0;      // position of the next bit to use in bitBuffer
+	private final byte[] confBuffer;   // confidence of the bits in bitBuffer, null if the reader has none
+	private final int[] bitConfidence = new int[32];   // confidence of the latest bits, indexed by bit time modulo 32
+	private boolean softDecision = true;
+	private final int[] chasePositions = new int[CHASE_BITS];
+	private final int[] chaseConfidence = new int[CHASE_BITS];
+	private final long[] blockCounts = new long[BlockStatus.values().length];
 	private BitInversion inversion = BitInversion.AUTO;
+	private int maxCorrectedBurst = DEFAULT_MAX_CORRECTED_BURST;
 	
 	private int block = 0;        // block contents
 	private int blockCount = 0;   // block counter within group
@@ -55,87 +80,213 @@ public class BitStreamSynchronizer extends GroupReader {
 	private boolean synced = false;
 	private int nbOk = 0;
 	private boolean[] blocksOk = {false, false, false, false};
+	private int correctedMask = 0;
 	private int nbUnsync = 0;
 	private int groupCount = 0;
 	private int bitTime = 0;
 	private boolean negativePolarity = false;
-	private @SuppressWarnings("unchecked") LinkedList<Integer> nbSyncAtOffset[][][] = new LinkedList[26][4][2];
+	
+	/*
+	 * Syndrome hits during synchronization acquisition. For each bit offset (0-25), pseudo-block
+	 * (0-3) and polarity (0-1), the times of the latest hits are kept in a small ring buffer of
+	 * SYNC_HITS entries in syncHitTimes, with the index of the oldest entry in syncHitFirst and the
+	 * number of entries in syncHitCount. Each hit has a weight (syncHitWeights), depending on the
+	 * reliability of the bits of the block. Synchronization is acquired before a ring can overflow.
+	 */
+	private final int[] syncHitTimes = new int[26 * 4 * 2 * SYNC_HITS];
+	private final int[] syncHitWeights = new int[26 * 4 * 2 * SYNC_HITS];
+	private final int[] syncHitFirst = new int[26 * 4 * 2];
+	private final int[] syncHitCount = new int[26 * 4 * 2];
 	
 	private List<StatusChangeListener> statusChangeListeners = new ArrayList<StatusChangeListener>();
 	
+	// copied on write, so that the decoding loop can iterate without allocating or locking
+	private volatile SyncTraceListener[] traceListeners = new SyncTraceListener[0];
 	
-	public BitStreamSynchronizer(PrintStream console, BitReader reader) {
-		this.console = console;
+	
+	public BitStreamSynchronizer(BitReader reader) {
 		//this.log = log;
 		this.reader = reader;
+		this.confBuffer = reader.hasBitConfidence() ? new byte[64 * BIT_BUFFER_WORDS] : null;
 		setParent(reader);
+	}
+	
+	/**
+	 * Creates a synchronizer which traces synchronization on a console, as done by
+	 * {@link ConsoleSyncTracer}.
+	 * 
+	 * @param console the console, may be {@code null} or {@link RDSSurveyor#nullConsole} if no
+	 * trace is wanted
+	 * @param reader the bit reader
+	 */
+	public BitStreamSynchronizer(PrintStream console, BitReader reader) {
+		this(reader);
+		if(console != null && console != RDSSurveyor.nullConsole) {
+			addSyncTraceListener(new ConsoleSyncTracer(console));
+		}
+	}
+	
+	private void eraseSyncHits() {
+		Arrays.fill(syncHitCount, 0);
+	}
+	
+	/**
+	 * Records a syndrome hit and returns the total weight of the hits at the same offset,
+	 * pseudo-block and polarity during the last {@code SYNC_CONFIRM_DURATION} groups, including
+	 * this one.
+	 */
+	private int addSyncHit(int offset, int pseudoBlock, int polarity, int weight) {
+		int idx = (offset * 4 + pseudoBlock) * 2 + polarity;
+		int base = idx * SYNC_HITS;
+		int first = syncHitFirst[idx];
+		int count = syncHitCount[idx];
+		
+		// add current time to the list of syndrome hits
+		syncHitTimes[base + (first + count) % SYNC_HITS] = bitTime;
+		syncHitWeights[base + (first + count) % SYNC_HITS] = weight;
+		count++;
+		
+		// weed out out-of-time hits
+		while(syncHitTimes[base + first] < bitTime - SYNC_CONFIRM_DURATION * 104) {
+			first = (first + 1) % SYNC_HITS;
+			count--;
+		}
+		
+		syncHitFirst[idx] = first;
+		syncHitCount[idx] = count;
 		
-		eraseSyncArray(nbSyncAtOffset);
+		int total = 0;
+		for(int k=0; k<count; k++) total += syncHitWeights[base + (first + k) % SYNC_HITS];
+		return total;
 	}
 	
-	private final static void eraseSyncArray(LinkedList<Integer> nbSyncAtOffset[][][]) {
-		for(int i=0; i<nbSyncAtOffset.length; i++)
-			for(int j=0; j<nbSyncAtOffset[i].length; j++)
-				for(int k=0; k<nbSyncAtOffset[i][j].length; k++)
-					nbSyncAtOffset[i][j][k] = new LinkedList<Integer>();
+	/**
+	 * Returns the lowest confidence of the bits of the current block.
+	 */
+	private int minBlockConfidence() {
+		int min = BitReader.MAX_CONFIDENCE;
+		for(int j=0; j<26; j++) min = Math.min(min, bitConfidence[(bitTime - j) & 31]);
+		return min;
+	}
+	
+	/**
+	 * Attempts to correct the current block by flipping its least reliable bits (Chase
+	 * decoding). All combinations of the {@code CHASE_BITS} least reliable bits are tried, among
+	 * the bits whose confidence is below {@code CHASE_MAX_CONFIDENCE}, and the combination which
+	 * leads to a valid syndrome with the lowest total confidence of flipped bits is retained.
+	 * 
+	 * @param synd the syndrome of the block
+	 * @param blockIndex the index of the block in the group
+	 * @return the error pattern, or 0 if the block could not be corrected
+	 */
+	private int chaseDecode(int synd, int blockIndex) {
+		// find the least reliable bits, in increasing order of confidence
+		int m = 0;
+		for(int j=0; j<26; j++) {
+			int c = bitConfidence[(bitTime - j) & 31];
+			if(c >= CHASE_MAX_CONFIDENCE) continue;
+			if(m == CHASE_BITS && c >= chaseConfidence[m-1]) continue;
+			int k = (m < CHASE_BITS) ? m++ : m-1;
+			for(; k > 0 && chaseConfidence[k-1] > c; k--) {
+				chaseConfidence[k] = chaseConfidence[k-1];
+				chasePositions[k] = chasePositions[k-1];
+			}
+			chaseConfidence[k] = c;
+			chasePositions[k] = j;
+		}
+		
+		int best = 0;
+		int bestCost = Integer.MAX_VALUE;
+		for(int p=1; p < (1 << m); p++) {
+			int s = synd, error = 0, cost = 0;
+			for(int k=0; k<m; k++) {
+				if((p & (1 << k)) != 0) {
+					s ^= BIT_SYNDROMES[chasePositions[k]];
+					error |= 1 << chasePositions[k];
+					cost += chaseConfidence[k];
+				}
+			}
+			if((s == RDS.syndromes[blockIndex][0] || s == RDS.syndromes[blockIndex][1]) && cost < bestCost) {
+				best = error;
+				bestCost = cost;
+			}
+		}
+		return best;
 	}
 	
 	@Override
 	public GroupReaderEvent getGroup() throws IOException, EndOfStream {
+		PackedGroup packed = new PackedGroup();
+		getGroup(packed);
+		return packed.toEvent();
+	}
+	
+	@Override
+	public GroupReaderEvent getGroup(PackedGroup packed) throws IOException, EndOfStream {
 		while(true) {
-			// read bit and add it to stream
-			boolean bit = false;
-			try {
-				bit = reader.getBit();
-			} catch(EOFException e) {
-				throw new EndOfStream();
+			// refill the bit buffer if needed
+			if(bitBufferPos == bitBufferLength) {
+				int n;
+				try {
+					if(confBuffer != null) n = reader.readBits(bitBuffer, confBuffer, 64 * bitBuffer.length);
+					else n = reader.readBits(bitBuffer, 64 * bitBuffer.length);
+				} catch(EOFException e) {
+					n = -1;
+				}
+				if(n < 0) throw new EndOfStream();
+				bitBufferLength = n;
+				bitBufferPos = 0;
+			}
+			
+			// add bits to stream: one at a time while hunting for synchronization,
+			// else as many as available to complete the current block
+			int n = synced ? Math.min(26 - bitCount, bitBufferLength - bitBufferPos) : 1;
+			block = ((block << n) | (int) BitReader.getBits(bitBuffer, bitBufferPos, n)) & 0x3FFFFFF;
+			if(confBuffer != null) {
+				for(int k=0; k<n; k++) bitConfidence[(bitTime + 1 + k) & 31] = confBuffer[bitBufferPos + k] & 0xFF;
 			}
-			block = (block << 1) & 0x3FFFFFF;
-			if(bit) block |= 1;
-			bitCount++;
-			bitTime++;
+			bitBufferPos += n;
+			bitCount += n;
+			bitTime += n;
 						
 			if(! synced) {
-				int[] synd = { RDS.calcSyndrome(block), RDS.calcSyndrome(~block) };
+				int syndPos = RDS.calcSyndrome(block);
+				int syndNeg = RDS.calcSyndrome(~block);
 				
-				console.print(".");
+				SyncTraceListener[] trace = traceListeners;
+				for(SyncTraceListener l : trace) l.huntBit();
 
 				for(int i=0; i<4; i++) {
 					for(int j=0; j<2; j++) {
 						if(j==0 && inversion == BitInversion.INVERT ||
 								j==1 && inversion == BitInversion.NOINVERT) continue;
-						if(synd[j] == RDS.syndromes[i][0] || synd[j] == RDS.syndromes[i][1]) {
+						int synd = (j == 0) ? syndPos : syndNeg;
+						if(synd == RDS.syndromes[i][0] || synd == RDS.syndromes[i][1]) {
 							int offset = bitTime % 26;
 							int pseudoBlock = (bitTime / 26 + 4 - i) % 4;
 
-							console.print("[" + (j==0 ? "+" : "-") + ((char)('A'+i)) + ":" + offset + "/" + pseudoBlock + "]");
+							for(SyncTraceListener l : trace) l.syndromeHit(i, j==1, offset, pseudoBlock);
 
-							// add current time to the list of syndrome hits
-							nbSyncAtOffset[offset][pseudoBlock][j].addLast(bitTime);
-
-							// weed out out-of-time hits
-							while(nbSyncAtOffset[offset][pseudoBlock][j].getFirst() < bitTime - SYNC_CONFIRM_DURATION * 104)
-								nbSyncAtOffset[offset][pseudoBlock][j].removeFirst();
-
-							// are we above threshold
-							if(nbSyncAtOffset[offset][pseudoBlock][j].size() > SYNC_THRESHOLD) {
+							// are we above threshold? hits on blocks of reliable bits count more
+							int weight = (confBuffer != null && softDecision && minBlockConfidence() >= RELIABLE_CONFIDENCE) ?
+									RELIABLE_HIT_WEIGHT : HIT_WEIGHT;
+							if(addSyncHit(offset, pseudoBlock, j, weight) > SYNC_THRESHOLD * HIT_WEIGHT) {
 								synced = true;
-								eraseSyncArray(nbSyncAtOffset);
+								eraseSyncHits();
 
-								group[i] = (block >> 10) & 0xFFFF;
+								negativePolarity = (j==1);
 								blockCount = (i+1) % 4;
 								bitCount = 0;
 								nbOk = 1;
-								for(int k=0; k<4; k++) blocksOk[k] = (k == i);
-								negativePolarity = (j==1);
+								// the blocks before this one in the group were not received
+								for(int k=0; k<4; k++) {
+									blocksOk[k] = (k == i);
+									group[k] = -1;
+								}
+								group[i] = ((negativePolarity ? ~block : block) >> 10) & 0xFFFF;
+								correctedMask = 0;
 								
-								if(negativePolarity) group[i] = ~ group[i];
-								
-								console.println("\nGot synchronization on block " + (char)('A' + i) + "! (" + (j==0 ? "positive" : "negative") + " polarity)");
-								console.print("      ");
-								for(int k=0; k<i; k++) console.print(".");
-								console.print("S");
-								if(blockCount == 0) console.println();
+								for(SyncTraceListener l : trace) l.syncAcquired(i, negativePolarity, offset);
 								reportStatus();
 							}
 							break;
@@ -145,6 +296,9 @@ public class BitStreamSynchronizer extends GroupReader {
 				}
 			} else {   // if synced
 				if(bitCount == 26) {
+					SyncTraceListener[] trace = traceListeners;
+					BlockStatus status;
+					
 					if(negativePolarity) block = ~block;    // invert block if polarity is negative
 					group[blockCount] = (block>>10) & 0xFFFF;
 					int synd = RDS.calcSyndrome(block);
@@ -152,30 +306,41 @@ public class BitStreamSynchronizer extends GroupReader {
 					if(synd == RDS.syndromes[blockCount][0] || synd == RDS.syndromes[blockCount][1]) {
 						nbOk++;
 						blocksOk[blockCount] = true;
-						if(synd == RDS.syndromes[blockCount][0]) console.print("G");   // type A offset word
-						else console.print("g");   // type B offset word (for group C)
+						if(synd == RDS.syndromes[blockCount][0]) status = BlockStatus.OK;   // type A offset word
+						else status = BlockStatus.OK_C_PRIME;   // type B offset word (for group C)
 					} else {
-						blocksOk[blockCount] = false;
-						group[blockCount] = -1;
-						console.print(".");
-						/*
-						This is a placeholder for error correction code
+						// attempt burst error correction, for offset word C' too in block 3
+						int error = RDS.findBurstError(synd, blockCount, 0, maxCorrectedBurst);
+						if(blockCount == 2) {
+							int errorPrime = RDS.findBurstError(synd, blockCount, 1, maxCorrectedBurst);
+							if(errorPrime != 0 && (error == 0 || RDS.burstLength(errorPrime) < RDS.burstLength(error))) {
+								error = errorPrime;
+							}
+						}
 						
-						int syndrome = (synd ^ syndromes[blockCount][0])>>6;///
+						status = BlockStatus.CORRECTED;
 						
-						int nbErrors = 1;
-						if(nbErrors <= 0) {
-							block = RDS.correct(block, syndrome); ///
-							group[blockCount] = (block>>10) & 0xFFFF; ///
+						// else try flipping the least reliable bits
+						if(error == 0 && maxCorrectedBurst > 0 && confBuffer != null && softDecision) {
+							error = chaseDecode(synd, blockCount);
+							status = BlockStatus.SOFT_CORRECTED;
+						}
+						
+						if(error != 0) {
+							// corrected blocks do not count towards keeping synchronization
+							group[blockCount] = ((block ^ error)>>10) & 0xFFFF;
 							blocksOk[blockCount] = true;
-							output.print("c");
+							correctedMask |= 1 << blockCount;
 						} else {
 							blocksOk[blockCount] = false;
-							output.print(".");
+							group[blockCount] = -1;
+							status = BlockStatus.ERROR;
 						}
-						*/
 					}
 					
+					blockCounts[status.ordinal()]++;
+					for(SyncTraceListener l : trace) l.blockReceived(blockCount, status);
+					
 					//console.printf("-%07X>%04X+%03X ", block, group[blockCount], synd);
 					
 					bitCount = 0;
@@ -183,7 +348,11 @@ public class BitStreamSynchronizer extends GroupReader {
 					
 					// end of group?
 					if(blockCount > 3) {
-						console.print(" ");
+						if(trace.length > 0) {
+							int okMask = 0;
+							for(int k=0; k<4; k++) if(blocksOk[k]) okMask |= 1 << k;
+							for(SyncTraceListener l : trace) l.groupReceived(okMask, correctedMask);
+						}
 						groupCount++;
 						
 						blockCount = 0;
@@ -195,7 +364,7 @@ public class BitStreamSynchronizer extends GroupReader {
 							synced = false;
 							//groupLevelDecoder.loseSync();
 							//TODO: need a means to inform a group decoder of a sync loss?
-							console.println(" Lost synchronization.");
+							for(SyncTraceListener l : trace) l.syncLost();
 							reportStatus();
 						}
 						
@@ -209,9 +378,13 @@ public class BitStreamSynchronizer extends GroupReader {
 						nbOk = 0;
 						
 						// return group data
-						int[] theGroup = new int[4];
-						System.arraycopy(group, 0, theGroup, 0, 4);
-						return new GroupEvent(new SequentialTime(bitTime), theGroup, false);
+						packed.setBlocks(group);
+						packed.correctedMask = correctedMask;
+						packed.ignored = false;
+						packed.present = true;
+						packed.setSequentialTime(bitTime);
+						correctedMask = 0;
+						return null;
 						//groupLevelDecoder.processGroup(nbOk, blocksOk, group, bitTime);
 					}
 				}
@@ -223,6 +396,60 @@ public class BitStreamSynchronizer extends GroupReader {
 		this.inversion = inversion;
 	}
 	
+	/**
+	 * Sets how aggressively blocks received with errors are corrected. Correcting longer bursts
+	 * recovers more blocks, but also increases the risk of accepting a wrongly corrected block.
+	 * 
+	 * A value of 0, the default, disables error correction altogether, including soft decoding
+	 * (see {@link #setSoftDecision(boolean)}). Corrected blocks are handed over as valid blocks,
+	 * PI codes included, thus correction must be asked for explicitly.
+	 * 
+	 * @param maxBurst the longest error burst to correct, in bits, from 0 (no error correction)
+	 * to {@link RDS#MAX_BURST_LENGTH}
+	 */
+	public void setMaxCorrectedBurst(int maxBurst) {
+		if(maxBurst < 0 || maxBurst > RDS.MAX_BURST_LENGTH) {
+			throw new IllegalArgumentException("Burst length must be between 0 and " + RDS.MAX_BURST_LENGTH);
+		}
+		this.maxCorrectedBurst = maxBurst;
+	}
+	
+	public int getMaxCorrectedBurst() {
+		return maxCorrectedBurst;
+	}
+	
+	/**
+	 * Sets whether bit confidence is used, if the bit reader provides it (see
+	 * {@link BitReader#hasBitConfidence()}). If so, blocks which cannot be corrected otherwise are
+	 * corrected by flipping their least reliable bits, and syndrome matches on blocks of reliable
+	 * bits weigh more when acquiring synchronization. This is enabled by default, but blocks are
+	 * never soft-corrected when error correction is disabled with {@code setMaxCorrectedBurst(0)}.
+	 */
+	public void setSoftDecision(boolean softDecision) {
+		this.softDecision = softDecision;
+	}
+	
+	public boolean isSoftDecision() {
+		return softDecision;
+	}
+	
+	/**
+	 * Returns the number of blocks received with a given status since the synchronizer was
+	 * created. For instance, the number of blocks saved by soft decoding is given by
+	 * {@code getBlockCount(BlockStatus.SOFT_CORRECTED)}.
+	 */
+	public long getBlockCount(BlockStatus status) {
+		return blockCounts[status.ordinal()];
+	}
+	
+	/**
+	 * Closes the bit reader, if it can be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(reader instanceof Closeable) ((Closeable) reader).close();
+	}
+	
 	
 	public static enum BitInversion {
 		AUTO, INVERT, NOINVERT;
@@ -236,6 +463,79 @@ public class BitStreamSynchronizer extends GroupReader {
 		public void report(Status status);
 	}
 	
+	/**
+	 * Outcome of the reception of a block, once synchronized.
+	 */
+	public static enum BlockStatus {
+		/** Correct block, with offset word A, B, C or D */
+		OK,
+		/** Correct block, with offset word C' (block 3 of a type B group) */
+		OK_C_PRIME,
+		/** Block received with errors, which have been corrected */
+		CORRECTED,
+		/** Block received with errors, which have been corrected by flipping unreliable bits */
+		SOFT_CORRECTED,
+		/** Block received with errors, which could not be corrected */
+		ERROR;
+	}
+	
+	/**
+	 * Receives a detailed trace of the synchronization process. Arguments are passed as
+	 * primitive values, so that tracing does not allocate any objects. Block indices are from 0
+	 * (block A) to 3 (block D).
+	 */
+	public static interface SyncTraceListener {
+		/** Called for every bit received while hunting for synchronization. */
+		public void huntBit();
+		
+		/**
+		 * Called when a syndrome matching an offset word is found while hunting for
+		 * synchronization.
+		 * 
+		 * @param blockIndex the block whose offset word matches
+		 * @param negativePolarity whether the match was found on the inverted bit stream
+		 * @param offset the bit offset of the match, modulo 26
+		 * @param pseudoBlock the group-relative position of the match
+		 */
+		public void syndromeHit(int blockIndex, boolean negativePolarity, int offset, int pseudoBlock);
+		
+		/**
+		 * Called when synchronization is acquired.
+		 * 
+		 * @param blockIndex the block on which synchronization was acquired
+		 * @param negativePolarity whether the bit stream is inverted
+		 * @param offset the bit offset of the blocks, modulo 26
+		 */
+		public void syncAcquired(int blockIndex, boolean negativePolarity, int offset);
+		
+		/** Called for every block received while synchronized. */
+		public void blockReceived(int blockIndex, BlockStatus status);
+		
+		/**
+		 * Called at the end of every group received while synchronized.
+		 * 
+		 * @param okMask the blocks received correctly or corrected, block A in the
+		 * least-significant bit
+		 * @param correctedMask the blocks which have been corrected
+		 */
+		public void groupReceived(int okMask, int correctedMask);
+		
+		/** Called when synchronization is lost. */
+		public void syncLost();
+	}
+	
+	public synchronized void addSyncTraceListener(SyncTraceListener l) {
+		SyncTraceListener[] listeners = Arrays.copyOf(traceListeners, traceListeners.length + 1);
+		listeners[traceListeners.length] = l;
+		traceListeners = listeners;
+	}
+	
+	public synchronized void removeSyncTraceListener(SyncTraceListener l) {
+		List<SyncTraceListener> listeners = new ArrayList<SyncTraceListener>(Arrays.asList(traceListeners));
+		listeners.remove(l);
+		traceListeners = listeners.toArray(new SyncTraceListener[listeners.size()]);
+	}
+	
 	public void addStatusChangeListener(StatusChangeListener l) {
 		statusChangeListeners.add(l);
 		reportStatus(l);
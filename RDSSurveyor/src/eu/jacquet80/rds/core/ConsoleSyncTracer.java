@@ -0,0 +1,97 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+ 
+ Copyright (c) 2009, 2010 Christophe Jacquet
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.core;
+
+import java.io.PrintStream;
+
+import eu.jacquet80.rds.core.BitStreamSynchronizer.BlockStatus;
+import eu.jacquet80.rds.core.BitStreamSynchronizer.SyncTraceListener;
+
+/**
+ * Renders the synchronization trace of a {@link BitStreamSynchronizer} as text on a console.
+ * 
+ * While hunting for synchronization, a dot is printed for every bit, and offset word matches
+ * are printed as {@code [+A:offset/pseudoblock]} (the sign gives the polarity). Once
+ * synchronized, every block is printed as {@code G} (correct), {@code g} (correct, with offset
+ * word C'), {@code c} (corrected), {@code s} (corrected by soft decision) or {@code .}
+ * (erroneous).
+ */
+public class ConsoleSyncTracer implements SyncTraceListener {
+	private final PrintStream console;
+	
+	public ConsoleSyncTracer(PrintStream console) {
+		this.console = console;
+	}
+
+	@Override
+	public void huntBit() {
+		console.print('.');
+	}
+
+	@Override
+	public void syndromeHit(int blockIndex, boolean negativePolarity, int offset, int pseudoBlock) {
+		console.print('[');
+		console.print(negativePolarity ? '-' : '+');
+		console.print((char)('A' + blockIndex));
+		console.print(':');
+		console.print(offset);
+		console.print('/');
+		console.print(pseudoBlock);
+		console.print(']');
+	}
+
+	@Override
+	public void syncAcquired(int blockIndex, boolean negativePolarity, int offset) {
+		console.print("\nGot synchronization on block ");
+		console.print((char)('A' + blockIndex));
+		console.println(negativePolarity ? "! (negative polarity)" : "! (positive polarity)");
+		console.print("      ");
+		for(int k=0; k<blockIndex; k++) console.print('.');
+		console.print('S');
+		if(blockIndex == 3) console.println();
+	}
+
+	@Override
+	public void blockReceived(int blockIndex, BlockStatus status) {
+		switch(status) {
+		case OK: console.print('G'); break;
+		case OK_C_PRIME: console.print('g'); break;
+		case CORRECTED: console.print('c'); break;
+		case SOFT_CORRECTED: console.print('s'); break;
+		default: console.print('.');
+		}
+	}
+
+	@Override
+	public void groupReceived(int okMask, int correctedMask) {
+		console.print(' ');
+	}
+
+	@Override
+	public void syncLost() {
+		console.println(" Lost synchronization.");
+	}
+}
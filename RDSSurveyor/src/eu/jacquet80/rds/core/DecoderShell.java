@@ -5,13 +5,17 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import eu.jacquet80.rds.RDSSurveyor;
 import eu.jacquet80.rds.input.GroupReader;
 import eu.jacquet80.rds.input.StationChangeDetector;
 import eu.jacquet80.rds.input.TeeGroupReader;
 import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
 import eu.jacquet80.rds.log.DefaultLogMessageVisitor;
 import eu.jacquet80.rds.log.EndOfStream;
 import eu.jacquet80.rds.log.GroupReceived;
@@ -19,67 +23,114 @@ import eu.jacquet80.rds.log.Log;
 import eu.jacquet80.rds.log.LogMessageVisitor;
 import eu.jacquet80.rds.log.StationLost;
 
+/**
+ * @brief A decoding session: a group reader, the decoder of its groups, and the log to which the
+ * decoder writes.
+ *
+ * Each session has its own station state and log listeners. Sessions process their groups on an
+ * executor, which may be shared by many sessions: groups are processed in batches, after which
+ * the session hands the thread over to the other sessions. Readers of live input block while
+ * waiting for groups, thus the executor should have at least as many threads as there are live
+ * sessions, for instance a cached thread pool.
+ *
+ * {@link #instance} is the session of the user interface and of the command line.
+ */
 public class DecoderShell {
+	/** Number of groups processed before the session lets other sessions run */
+	private final static int BATCH = 256;
+	
 	private final Log log = new Log();
 	
-	private final Thread worker;
+	private final Executor executor;
+	// the executor is shut down after processAndQuit if it belongs to the session
+	private final boolean ownExecutor;
 	
 	// concurrent accesses to reader must be synchronized on DecoderShell's monitor
 	private GroupReader reader;
 	private final GroupLevelDecoder groupDecoder = new GroupLevelDecoder(log);
 	
-	private final Semaphore groupReady = new Semaphore(0);
+	// whether the worker is scheduled or running, guarded by DecoderShell's monitor
+	private boolean running = false;
 	private boolean quitAfterProcess = false;
 	
 	public final static DecoderShell instance = new DecoderShell();
 	
-	private PrintStream console = RDSSurveyor.nullConsole;
+	private volatile PrintStream console = RDSSurveyor.nullConsole;
+	
+	/**
+	 * @brief Creates a session which processes groups on a thread of its own.
+	 */
+	public DecoderShell() {
+		this(Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "RDS-Worker");
+			}
+		}), true);
+	}
 	
-	private DecoderShell() {
+	/**
+	 * @brief Creates a session which processes groups on the given executor.
+	 * 
+	 * @param executor the executor, which may be shared with other sessions
+	 */
+	public DecoderShell(Executor executor) {
+		this(executor, false);
+	}
+	
+	private DecoderShell(Executor executor, boolean ownExecutor) {
+		this.executor = executor;
+		this.ownExecutor = ownExecutor;
 		this.log.addNewMessageListener(consolePrinter);
+	}
+	
+	private final Runnable worker = new Runnable() {
+		// reused for every group read
+		private final PackedGroup group = new PackedGroup();
 		
-		worker = new Thread() {
-			{
-				setName("RDS-Worker");
-			}
-			
-			public void run() {
-				try {
-					while(true) {
-						groupReady.acquireUninterruptibly();
+		@Override
+		public void run() {
+			try {
+				for(int i=0; i<BATCH; i++) {
+					GroupReader r;
+					synchronized(DecoderShell.this) {
+						r = reader;
+					}
+					
+					try {
+						GroupReaderEvent evt = r.getGroup(group);
+						if(group.present) groupDecoder.processOneGroup(group);
+						else groupDecoder.processOneGroup(evt);
+					} catch(eu.jacquet80.rds.input.GroupReader.EndOfStream eos) {
+						TunedStation lastStation = groupDecoder.getTunedStation();
+						if(lastStation != null) {
+							log.addMessage(new StationLost(null, lastStation, true));
+						}
+						log.addMessage(new eu.jacquet80.rds.log.EndOfStream(null));
 						
-						GroupReaderEvent evt;
-						boolean goOn;
-
-						try {
-							GroupReader r;
-							synchronized(DecoderShell.this) {
-								r = reader;
-							}
-							evt = r.getGroup();
-							goOn = true;
-							groupDecoder.processOneGroup(evt);
-						} catch(eu.jacquet80.rds.input.GroupReader.EndOfStream eos) {
-							TunedStation lastStation = groupDecoder.getTunedStation();
-							if(lastStation != null) {
-								log.addMessage(new StationLost(null, lastStation, true));
-							}
-							log.addMessage(new eu.jacquet80.rds.log.EndOfStream(null));
-							goOn = false;
-							if(quitAfterProcess) return;
+						synchronized(DecoderShell.this) {
+							// go on if another stream has been given in the meantime
+							if(reader != r) continue;
+							
+							running = false;
+							if(quitAfterProcess && ownExecutor) ((ExecutorService) executor).shutdown();
 						}
-
-						if(goOn) groupReady.release();
+						return;
 					}
-				} catch (IOException e) {
-					System.err.println("In RDS worker thread: " + e);
-					e.printStackTrace(System.err);
 				}
-			};
-		};
-
-		this.worker.start();
-	}
+			} catch (IOException e) {
+				System.err.println("In RDS worker thread: " + e);
+				e.printStackTrace(System.err);
+				synchronized(DecoderShell.this) {
+					running = false;
+				}
+				return;
+			}
+			
+			// let the other sessions run before reading more groups
+			executor.execute(this);
+		}
+	};
 	
 	public void setConsole(final PrintStream console) {
 		this.console = console == null ? RDSSurveyor.nullConsole : console;
@@ -125,14 +176,30 @@ public class DecoderShell {
 		// add a station change detector
 		this.reader = new StationChangeDetector(this.reader);
 
-		this.groupReady.release();
+		if(!running) {
+			running = true;
+			executor.execute(worker);
+		}
 	}
 	
-	public void processAndQuit(final GroupReader reader, boolean outFile) {
+	/**
+	 * @brief Processes a stream, then stops the thread of the session once the end of the stream
+	 * is reached, for sessions which have a thread of their own.
+	 */
+	public synchronized void processAndQuit(final GroupReader reader, boolean outFile) {
 		this.quitAfterProcess = true;
 		process(reader, outFile);
 	}
 	
+	/**
+	 * @brief Sets whether the stations of this session use RBDS until they broadcast an ECC.
+	 * 
+	 * @see GroupLevelDecoder#setRbds(boolean)
+	 */
+	public void setRbds(boolean rbds) {
+		groupDecoder.setRbds(rbds);
+	}
+	
 	public GroupLevelDecoder getGroupReader() {
 		return groupDecoder;
 	}
@@ -0,0 +1,142 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.core;
+
+import java.io.PrintWriter;
+
+import eu.jacquet80.rds.app.Application;
+import eu.jacquet80.rds.log.Log;
+import eu.jacquet80.rds.log.RDSTime;
+
+/**
+ * @brief A group being processed by {@link GroupLevelDecoder}, as passed to a {@link GroupHandler}.
+ */
+public class GroupContext {
+	private PrintWriter console;
+	private int[] blocks;
+	private boolean[] blocksOk;
+	private int type;
+	private int version;
+	private RDSTime time;
+	private TunedStation station;
+	private ServiceStat serviceStat;
+	private Application newApp;
+	private final Log log;
+
+	GroupContext(Log log) {
+		this.log = log;
+	}
+
+	void set(PrintWriter console, int[] blocks, boolean[] blocksOk, RDSTime time,
+			TunedStation station, ServiceStat serviceStat) {
+		this.console = console;
+		this.blocks = blocks;
+		this.blocksOk = blocksOk;
+		this.type = (blocks[1]>>12) & 0xF;
+		this.version = (blocks[1]>>11) & 1;
+		this.time = time;
+		this.station = station;
+		this.serviceStat = serviceStat;
+		this.newApp = null;
+	}
+
+	/**
+	 * @brief Returns the writer to which the analysis of the group is written.
+	 */
+	public PrintWriter getConsole() {
+		return console;
+	}
+
+	/**
+	 * @brief Returns the four blocks of the group, -1 for blocks which were not received.
+	 */
+	public int[] getBlocks() {
+		return blocks;
+	}
+
+	/**
+	 * @brief Returns which of the four blocks were received.
+	 */
+	public boolean[] getBlocksOk() {
+		return blocksOk;
+	}
+
+	/**
+	 * @brief Returns the group type, 0 to 15.
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * @brief Returns the group version, 0 for A and 1 for B.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	public RDSTime getTime() {
+		return time;
+	}
+
+	/**
+	 * @brief Returns the station which transmitted the group.
+	 */
+	public TunedStation getStation() {
+		return station;
+	}
+
+	ServiceStat getServiceStat() {
+		return serviceStat;
+	}
+
+	/**
+	 * @brief Accounts bits of the group to a service, for the bandwidth statistics of the station.
+	 *
+	 * @param service the category of the service
+	 * @param bits the number of bits
+	 */
+	public void addServiceBits(ServiceStat.Category service, int bits) {
+		serviceStat.add(service, bits);
+	}
+
+	public Log getLog() {
+		return log;
+	}
+
+	/**
+	 * @brief Reports that the group made the station use a new application.
+	 *
+	 * An {@link eu.jacquet80.rds.log.ApplicationChanged} message is logged once the group has
+	 * been processed.
+	 */
+	public void setNewApplication(Application app) {
+		this.newApp = app;
+	}
+
+	public Application getNewApplication() {
+		return newApp;
+	}
+}
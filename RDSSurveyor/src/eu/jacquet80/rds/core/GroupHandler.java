@@ -0,0 +1,46 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.core;
+
+/**
+ * @brief Decodes the groups of one or several group types, on behalf of {@link GroupLevelDecoder}.
+ *
+ * The decoder keeps a table of handlers indexed by the group type and version. The built-in
+ * handlers are registered first, and more handlers may be added to a slot, or may replace them,
+ * using {@link GroupLevelDecoder#addHandler(int, int, GroupHandler)} and
+ * {@link GroupLevelDecoder#setHandler(int, int, GroupHandler)}.
+ *
+ * Handlers are only called for groups whose block 2 was received, once the common fields (PI,
+ * TP, PTY) have been processed.
+ */
+public interface GroupHandler {
+	/**
+	 * @brief Processes a group.
+	 *
+	 * @param group the group, together with the station it belongs to and the analysis being
+	 * written. The object is reused for the next group, and must not be kept.
+	 */
+	public void handleGroup(GroupContext group);
+}
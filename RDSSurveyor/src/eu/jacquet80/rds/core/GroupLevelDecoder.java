@@ -27,7 +27,6 @@ package eu.jacquet80.rds.core;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -39,15 +38,18 @@ import eu.jacquet80.rds.app.Paging;
 import eu.jacquet80.rds.app.oda.AlertC;
 import eu.jacquet80.rds.app.oda.ODA;
 import eu.jacquet80.rds.app.oda.TDC;
+import eu.jacquet80.rds.core.ServiceStat.Category;
 import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
 import eu.jacquet80.rds.input.group.GroupEvent;
 import eu.jacquet80.rds.input.group.GroupReaderEvent;
 import eu.jacquet80.rds.input.group.GroupReaderEventVisitor;
+import eu.jacquet80.rds.input.group.PackedGroup;
 import eu.jacquet80.rds.input.group.StationChangeEvent;
 import eu.jacquet80.rds.log.ApplicationChanged;
 import eu.jacquet80.rds.log.ClockTime;
 import eu.jacquet80.rds.log.EONReturn;
 import eu.jacquet80.rds.log.EONSwitch;
+import eu.jacquet80.rds.log.GroupAnalysis;
 import eu.jacquet80.rds.log.GroupReceived;
 import eu.jacquet80.rds.log.Log;
 import eu.jacquet80.rds.log.RDSTime;
@@ -61,6 +63,9 @@ public class GroupLevelDecoder {
 	private boolean synced = true;
 	private Log log;
 
+	// RBDS default of new stations
+	private boolean rbds = false;
+
 	// this allows to merge a bunch of "EON switch" messages together
 	private int groupCountSinceEonSwitch = 0;
 
@@ -75,8 +80,84 @@ public class GroupLevelDecoder {
 			"RP groups 20-39",
 	};
 
+	/**
+	 * Handlers of each group type, indexed by the 5-bit type and version code found in block 2
+	 */
+	private final GroupHandler[][] handlers = new GroupHandler[32][];
+
+	/** Reused from one group to the next, as handlers must not keep it */
+	private final GroupContext context;
+
+	/** Bits of the current group per service, reused from one group to the next */
+	private final ServiceStat serviceStat = new ServiceStat();
+
 	public GroupLevelDecoder(Log log) {
 		this.log = log;
+		this.context = new GroupContext(log);
+
+		for(int i=0; i<handlers.length; i++) handlers[i] = new GroupHandler[0];
+
+		// built-in handlers
+		addHandler(0, 0, basicTuningHandler);
+		addHandler(0, 1, basicTuningHandler);
+		addHandler(1, 0, rpConfigHandler);
+		addHandler(1, 0, pinHandler);
+		addHandler(1, 0, slowLabellingHandler);
+		addHandler(1, 1, pinHandler);
+		addHandler(2, 0, radioTextHandler);
+		addHandler(2, 1, radioTextHandler);
+		addHandler(3, 0, odaIdentificationHandler);
+		addHandler(4, 0, clockTimeHandler);
+		for(int type : new int[] {5, 6, 7, 8, 9, 11, 12, 13}) {
+			addHandler(type, 0, tdcHandler);
+		}
+		addHandler(10, 0, ptynHandler);
+		addHandler(14, 0, eonHandler);
+		addHandler(14, 1, eonHandler);
+		addHandler(15, 0, longPSHandler);
+		addHandler(15, 1, basicTuning15BHandler);
+	}
+
+	private static int slot(int type, int version) {
+		if(type < 0 || type > 15 || version < 0 || version > 1)
+			throw new IllegalArgumentException("No such group type: " + type + "/" + version);
+		return (type << 1) | version;
+	}
+
+	/**
+	 * @brief Adds a handler for a group type, called after the handlers already registered.
+	 *
+	 * @param type the group type, 0 to 15
+	 * @param version the group version, 0 for A and 1 for B
+	 * @param handler the handler
+	 */
+	public void addHandler(int type, int version, GroupHandler handler) {
+		int slot = slot(type, version);
+		GroupHandler[] res = new GroupHandler[handlers[slot].length + 1];
+		System.arraycopy(handlers[slot], 0, res, 0, handlers[slot].length);
+		res[res.length - 1] = handler;
+		handlers[slot] = res;
+	}
+
+	/**
+	 * @brief Replaces all the handlers of a group type, including the built-in ones, by the given
+	 * handler.
+	 *
+	 * @param type the group type, 0 to 15
+	 * @param version the group version, 0 for A and 1 for B
+	 * @param handler the handler, or {@code null} to ignore the contents of groups of this type
+	 */
+	public void setHandler(int type, int version, GroupHandler handler) {
+		handlers[slot(type, version)] = handler == null ? new GroupHandler[0] : new GroupHandler[] {handler};
+	}
+
+	/**
+	 * @brief Returns the handlers of a group type, in the order in which they are called.
+	 *
+	 * This allows to replace the handlers of a group type by one which calls the former ones.
+	 */
+	public GroupHandler[] getHandlers(int type, int version) {
+		return handlers[slot(type, version)].clone();
 	}
 
 	public void loseSync() {
@@ -90,7 +171,7 @@ public class GroupLevelDecoder {
 		int addr = block1 & 3;
 
 		station.setMusic(ms == 1);
-		console.print("TA=" + ta + ", " + (ms==1 ? "M/s" : "m/S") + ", ");
+		console.printf("TA=%d, %s, ", ta, ms==1 ? "M/s" : "m/S");
 		
 		boolean diInfo = ((block1>>2) & 1) == 1;		
 		station.setDIbit(addr, diInfo, console);
@@ -107,83 +188,27 @@ public class GroupLevelDecoder {
 		return addr;
 	}
 
-	private void processGroup(int nbOk, boolean[] blocksOk, int[] blocks, RDSTime time) {
-		StringWriter consoleWriter = new StringWriter();
-		PrintWriter console = new PrintWriter(consoleWriter);
-
-		//console.print(" (" + (station == null ? null : station.getStationName() ) + ") ");
-		Application newApp = null;
-
-		TunedStation workingStation = station;
-
-		qualityHistory[historyPtr] = nbOk;
-		historyPtr = (historyPtr + 1) % qualityHistory.length;
-
-		// First identify type and version of the group, if possible.
-		// We do this now in order to be able to extract the PI from block 2
-		// if version is B.
-		int type = -1, version = -1;
-		if(blocksOk[1]) {
-			type = ((blocks[1]>>12) & 0xF);
-			version = ((blocks[1]>>11) & 1);
-		}
-
-
-		int pi = -1;
-
-		if(blocksOk[0]) {
-			pi = blocks[0];
-		} else if(version == 1 && blocksOk[2]) {
-			pi = blocks[2];
-		}
-
-		if(pi != -1) {
-			console.printf("PI=%04X", pi);
-
-			String callsign = station.getCallsign();
-			if(callsign != null) {
-				console.printf(" [" + callsign + "]");
-			}
-
-			console.print(", ");
-
-			if(station.getPI() == 0) {
-				// new station
-				station.setPI(pi);
-			}
-		} else console.print("         ");
-
-		if(!synced) return;   // after a sync loss, we wait for a PI before processing further data
-
-		if(blocksOk[1]) {
-			workingStation.addGroupToStats(type, version, nbOk);
-
-			int tp = (blocks[1]>>10) & 1;
-			workingStation.setTP(tp == 1);
-
-			int pty = (blocks[1]>>5) & 0x1F;
-			workingStation.setPTY(pty);
-
-			console.print("Type " + type + (char)('A' + version) + ", TP=" + tp + ", PTY=" + pty + ", ");
-			//console.print("Group (" + (nbOk == 4 ? "full" : "part") + ") type " + type + (char)('A' + version) + ", TP=" + tp + ", PTY=" + pty + ", ");
-		} else workingStation.addUnknownGroupToStats(nbOk);
+	/**
+	 * Groups 0A & 0B: basic tuning and switching information, PS and AF
+	 */
+	private final GroupHandler basicTuningHandler = new GroupHandler() {
+		@Override
+		public void handleGroup(GroupContext g) {
+			PrintWriter console = g.getConsole();
+			int[] blocks = g.getBlocks();
+			boolean[] blocksOk = g.getBlocksOk();
+			int version = g.getVersion();
+			RDSTime time = g.getTime();
+			TunedStation workingStation = g.getStation();
+			ServiceStat serviceStat = g.getServiceStat();
 
-		// initialize service stats
-		ServiceStat serviceStat = new ServiceStat();
-		serviceStat.add(ServiceStat.PI, 16);  // always a PI code on 16 bits
-		serviceStat.add(ServiceStat.OVERHEAD, 5);	// group type: protocol overhead
-		serviceStat.add(ServiceStat.PROG_TYPE, 5+1);	// PTY+TP: program type
-		if(version == 1) serviceStat.add(ServiceStat.PI, 16);	// second PI code on B-type groups
-
-		// Groups 0A & 0B
-		if(type == 0) {
 			int addr = processBasicTuningBits(console, blocks[1], time);
 
 			// Groups 0A & 0B: to extract PS segment we need blocks 1 and 3
 			if(blocksOk[3]) {
 				char ch1 = RDS.toChar( (blocks[3]>>8) & 0xFF);
 				char ch2 = RDS.toChar(blocks[3] & 0xFF);
-				console.print("PS pos=" + addr + ": \"" + toASCII(ch1) + toASCII(ch2) + "\" ");
+				console.printf("PS pos=%d: \"%c%c\" ", addr, toASCII(ch1), toASCII(ch2));
 				workingStation.getPS().setChars(addr, ch1, ch2);
 			}
 
@@ -193,20 +218,31 @@ public class GroupLevelDecoder {
 				console.print(workingStation.addAFPair((blocks[2]>>8) & 0xFF, blocks[2] & 0xFF));
 			}
 
-			serviceStat.add(ServiceStat.PROG_TYPE, 3);	// TA, M/S, DI
-			serviceStat.add(ServiceStat.NAME, 2+16);	// address + characters
-			if(version == 0) serviceStat.add(ServiceStat.AF, 16);
+			serviceStat.add(Category.PROG_TYPE, 3);	// TA, M/S, DI
+			serviceStat.add(Category.NAME, 2+16);	// address + characters
+			if(version == 0) serviceStat.add(Category.AF, 16);
 		}
+	};
+
+	/**
+	 * Group 1A: to extract RP info we need only block 1
+	 */
+	private final GroupHandler rpConfigHandler = new GroupHandler() {
+		@Override
+		public void handleGroup(GroupContext g) {
+			PrintWriter console = g.getConsole();
+			int[] blocks = g.getBlocks();
+			TunedStation workingStation = g.getStation();
+			ServiceStat serviceStat = g.getServiceStat();
 
-		// Group 1A: to extract RP info we need only block 1
-		if(type == 1 && version == 0) {
 			int tngd = (blocks[1]>>2) & 7;   // transmitter network group designator
 			int bsi = (blocks[1]) & 3;       // battery saving interval sync and id
 			console.print("RP Config: [" + RP_TNGD_VALUES[tngd]);
 			if(tngd > 0) {   // print the rest only if there IS RP
 				Application app = workingStation.getApplicationForGroup(7, 0);
 				if(app == null) {
-					newApp = app = new Paging(workingStation, RP_TNGD_VALUES[tngd]);
+					app = new Paging(workingStation, RP_TNGD_VALUES[tngd]);
+					g.setNewApplication(app);
 
 					workingStation.setApplicationForGroup(7, 0, app);
 				} else if(!(app instanceof Paging)) {
@@ -217,247 +253,312 @@ public class GroupLevelDecoder {
 			}
 			console.print("], ");
 
-			serviceStat.add(ServiceStat.OVERHEAD, 16);
+			serviceStat.add(Category.OVERHEAD, 16);
 		}
+	};
+
+	/**
+	 * Groups 1A & 1B: to extract PIN we need blocks 1 and 3
+	 */
+	private final GroupHandler pinHandler = new GroupHandler() {
+		@Override
+		public void handleGroup(GroupContext g) {
+			PrintWriter console = g.getConsole();
+			int[] blocks = g.getBlocks();
+			boolean[] blocksOk = g.getBlocksOk();
+			TunedStation workingStation = g.getStation();
+			ServiceStat serviceStat = g.getServiceStat();
 
-		if(type==1) {
-			serviceStat.add(ServiceStat.PIN, 16);
-			serviceStat.add(ServiceStat.OVERHEAD, 5);
+			serviceStat.add(Category.PIN, 16);
+			serviceStat.add(Category.OVERHEAD, 5);
+
+			if(blocksOk[3]) {
+				int pin = blocks[3];
+				boolean pinValid = workingStation.setPIN(pin);
+				// Radio Paging section 3.2.4.3: if day=0 in the PIN, the PIN is invalid
+				// and the field is used to transmit enhanced paging info instead.
+				if(pinValid) {
+					console.printf("PIN=%04X [%s] ", pin, workingStation.getPINText());
+				} else {
+					int variant = (blocks[3]>>8) & 0xF;
+					switch(variant) {
+					case 0: case 1: case 2: case 3:
+						int opc = blocks[3] & 0xF;
+						printOPC(console, opc);
+						if(opc != 0) {
+							int pac = (blocks[3] >> 4) & 0x3F;
+							printPAC(console, pac);
+						}
+						break;
+					case 4:
+						int ecc = blocks[3] & 0xFF;
+						workingStation.setECC(ecc);
+						printECC(console, workingStation.getPI(), ecc);
+						break;
+					default:
+						console.printf("<Variant %d not implemented> ", variant);
+					}
+				}
+			}
 		}
+	};
 
-		// Groups 1A & 1B: to extract PIN we need blocks 1 and 3
-		if(type == 1 && blocksOk[3]) {
-			int pin = blocks[3];
-			boolean pinValid = workingStation.setPIN(pin);
-			// Radio Paging section 3.2.4.3: if day=0 in the PIN, the PIN is invalid
-			// and the field is used to transmit enhanced paging info instead.
-			if(pinValid) {
-				console.printf("PIN=%04X [%s] ", pin, station.getPINText());
-			} else {
-				int variant = (blocks[3]>>8) & 0xF;
+	/**
+	 * Group 1A: to extract slow labeling codes, we need blocks 1 and 2
+	 */
+	private final GroupHandler slowLabellingHandler = new GroupHandler() {
+		@Override
+		public void handleGroup(GroupContext g) {
+			PrintWriter console = g.getConsole();
+			int[] blocks = g.getBlocks();
+			boolean[] blocksOk = g.getBlocksOk();
+			TunedStation workingStation = g.getStation();
+
+			if(blocksOk[2]) {
+				int variant = (blocks[2] >> 12) & 0x7;
+				int la = (blocks[2] >> 15) & 0x1;
+				console.print("LA=" + la + " v=" + variant + " ");
 				switch(variant) {
-				case 0: case 1: case 2: case 3:
-					int opc = blocks[3] & 0xF;
+				case 0:
+				{
+					int ecc = blocks[2] & 0xFF;
+					workingStation.setECC(ecc);
+					printECC(console, workingStation.getPI(), ecc);
+					int opc = (blocks[2] >> 8) & 0xF;
+					printOPC(console, opc);
+					break;
+				}
+
+				case 1:
+					int tmcid = blocks[2] & 0xFFF;
+					console.printf("TMC (old way) ID=0x%03X / (dec)%d", tmcid, tmcid);
+
+					// connect 8A groups with the TMC application
+					Application app = workingStation.getApplicationForGroup(8, 0);
+					if(app == null) {
+						Application appTMC = new AlertC();
+						workingStation.setApplicationForGroup(8, 0, appTMC);
+						appTMC.setStation(workingStation);
+					} else if(!(app instanceof AlertC)) {
+						console.print("Error: this group indicates the presence of TMC, while group 8A is used for '" + app.getName() + "'!");
+					}
+					break;
+
+				case 2:
+				{
+					int opc = (blocks[2] >> 8) & 0xF;
 					printOPC(console, opc);
 					if(opc != 0) {
-						int pac = (blocks[3] >> 4) & 0x3F;
+						int pac = blocks[2] & 0x3F;
 						printPAC(console, pac);
 					}
 					break;
-				case 4:
-					int ecc = blocks[3] & 0xFF;
-					workingStation.setECC(ecc);
-					printECC(console, station.getPI(), ecc);
+				}
+
+				case 3:
+					int langID = blocks[2] & 0xFF;
+					workingStation.setLanguage(langID);
+					console.printf("Language: %02X [%s]", langID, 
+							langID < RDS.languages.length ? RDS.languages[langID][1] : "");
 					break;
+
+				case 6:
+					console.printf("Broadcaster data: %03X", blocks[2] & 0xFFF);
+					break;
+
+				case 7:
+					console.printf("EWS identification: %03X", blocks[2] & 0xFFF);
+					break;
+
 				default:
-					console.printf("<Variant %d not implemented> ", variant);
+					console.printf("Unhandled data: %03X", blocks[2] & 0xFFF);
 				}
 			}
 		}
+	};
 
-		// Group 1A: to extract slow labeling codes, we need blocks 1 and 2
-		if(type == 1 && version == 0 && blocksOk[2]) {
-			int variant = (blocks[2] >> 12) & 0x7;
-			int la = (blocks[2] >> 15) & 0x1;
-			console.print("LA=" + la + " v=" + variant + " ");
-			switch(variant) {
-			case 0:
-			{
-				int ecc = blocks[2] & 0xFF;
-				workingStation.setECC(ecc);
-				printECC(console, station.getPI(), ecc);
-				int opc = (blocks[2] >> 8) & 0xF;
-				printOPC(console, opc);
-				break;
-			}
-
-			case 1:
-				int tmcid = blocks[2] & 0xFFF;
-				console.printf("TMC (old way) ID=0x%03X / (dec)%d", tmcid, tmcid);
-
-				// connect 8A groups with the TMC application
-				Application app = workingStation.getApplicationForGroup(8, 0);
-				if(app == null) {
-					Application appTMC = new AlertC();
-					workingStation.setApplicationForGroup(8, 0, appTMC);
-					appTMC.setStation(workingStation);
-				} else if(!(app instanceof AlertC)) {
-					console.print("Error: this group indicates the presence of TMC, while group 8A is used for '" + app.getName() + "'!");
+	/**
+	 * Groups 2A and 2B: to extract RT characters we need blocks 1 and (2 or 3)
+	 */
+	private final GroupHandler radioTextHandler = new GroupHandler() {
+		@Override
+		public void handleGroup(GroupContext g) {
+			PrintWriter console = g.getConsole();
+			int[] blocks = g.getBlocks();
+			boolean[] blocksOk = g.getBlocksOk();
+			int version = g.getVersion();
+			TunedStation workingStation = g.getStation();
+			ServiceStat serviceStat = g.getServiceStat();
+
+			if(blocksOk[2] || blocksOk[3]) {
+				int addr = blocks[1] & 0xF;
+				int ab = (blocks[1]>>4) & 1;
+
+				// First extract the 4 potential characters
+				char ch1 = RDS.toChar( (blocks[2]>>8) & 0xFF);
+				char ch2 = RDS.toChar(blocks[2] & 0xFF);
+				char ch3 = RDS.toChar( (blocks[3]>>8) & 0xFF);
+				char ch4 = RDS.toChar(blocks[3] & 0xFF);
+
+				if(!blocksOk[2]) {
+					ch1 = ch2 = '?';
 				}
-				break;
-
-			case 2:
-			{
-				int opc = (blocks[2] >> 8) & 0xF;
-				printOPC(console, opc);
-				if(opc != 0) {
-					int pac = blocks[2] & 0x3F;
-					printPAC(console, pac);
+				if(!blocksOk[3]) {
+					ch3 = ch4 = '?';
 				}
-				break;
-			}
 
-			case 3:
-				int langID = blocks[2] & 0xFF;
-				workingStation.setLanguage(langID);
-				console.printf("Language: %02X [%s]", langID, 
-						langID < RDS.languages.length ? RDS.languages[langID][1] : "");
-				break;
+				Text rt = workingStation.getRT();
 
-			case 6:
-				console.printf("Broadcaster data: %03X", blocks[2] & 0xFFF);
-				break;
+				// Need to handle the case group 2A and both data blocks ok
+				// separately, in order to correctly highlight the 4 characters
+				// of the latest RT segment received
+				if(version == 0 && blocksOk[2] && blocksOk[3]) {
+					rt.setChars(addr, ch1, ch2, ch3, ch4);
+				} else {
+					// Else only one block is provided (type 2B) or valid (type 2A)
+					if(blocksOk[2] && version == 0) {
+						rt.setChars(addr*2, ch1, ch2);
+					}
+					if(blocksOk[3]) {
+						rt.setChars(version == 0 ? addr*2+1 : addr, ch3, ch4);
+					}
+				}
 
-			case 7:
-				console.printf("EWS identification: %03X", blocks[2] & 0xFFF);
-				break;
+				rt.setFlag(ab);
 
-			default:
-				console.printf("Unhandled data: %03X", blocks[2] & 0xFFF);
+				console.printf("RT A/B=%c pos=%d: \"", ab == 0 ? 'A' : 'B', addr);
+				if(version == 0) console.printf("%c%c", toASCII(ch1), toASCII(ch2));
+				console.printf("%c%c\"", toASCII(ch3), toASCII(ch4));
 			}
-		}
 
-		// Groups 2A and 2B: to extract RT characters we need blocks 1 and (2 or 3)
-		if(type == 2 && (blocksOk[2] || blocksOk[3])) {
-			int addr = blocks[1] & 0xF;
-			int ab = (blocks[1]>>4) & 1;
+			serviceStat.add(Category.RT, version == 0 ? 5+16+16 : 5+16);
+		}
+	};
 
-			// First extract the 4 potential characters
-			char ch1 = RDS.toChar( (blocks[2]>>8) & 0xFF);
-			char ch2 = RDS.toChar(blocks[2] & 0xFF);
-			char ch3 = RDS.toChar( (blocks[3]>>8) & 0xFF);
-			char ch4 = RDS.toChar(blocks[3] & 0xFF);
+	/**
+	 * Groups 3A: to extract AID we need blocks 1 and 3
+	 */
+	private final GroupHandler odaIdentificationHandler = new GroupHandler() {
+		@Override
+		public void handleGroup(GroupContext g) {
+			PrintWriter console = g.getConsole();
+			int[] blocks = g.getBlocks();
+			boolean[] blocksOk = g.getBlocksOk();
+			int type = g.getType();
+			int version = g.getVersion();
+			RDSTime time = g.getTime();
+			TunedStation workingStation = g.getStation();
+			ServiceStat serviceStat = g.getServiceStat();
 
-			if(!blocksOk[2]) {
-				ch1 = ch2 = '?';
-			}
-			if(!blocksOk[3]) {
-				ch3 = ch4 = '?';
-			}
+			if(blocksOk[3]) {
+				int aid = blocks[3];
+				int odaG = (blocks[1]>>1) & 0xF;
+				int odaV = blocks[1] & 1;
 
-			Text rt = workingStation.getRT();
+				if(aid == 0) console.print("NO AID: ");
+				else console.printf("AID #%04X ", aid);
 
-			// Need to handle the case group 2A and both data blocks ok
-			// separately, in order to correctly highlight the 4 characters
-			// of the latest RT segment received
-			if(version == 0 && blocksOk[2] && blocksOk[3]) {
-				rt.setChars(addr, ch1, ch2, ch3, ch4);
-			} else {
-				// Else only one block is provided (type 2B) or valid (type 2A)
-				if(blocksOk[2] && version == 0) {
-					rt.setChars(addr*2, ch1, ch2);
-				}
-				if(blocksOk[3]) {
-					rt.setChars(version == 0 ? addr*2+1 : addr, ch3, ch4);
-				}
-			}
+				// return the ODA
+				Application app = workingStation.getApplicationForGroup(odaG, odaV);
+				if(app != null) {
+					if(!(app instanceof ODA)) {
+						console.printf("Currently group assigned to '%s' (non-ODA); it should not be assigned to AID %04X", app.getName(), aid);
+					} else if(((ODA)app).getAID() != aid) { 
+						console.printf("Current AID for group (%04X) does not match new AID (%04X)", ((ODA)app).getAID(), aid);
+						app = null;
+					}
+				} else {
+					app = ODA.forAID(aid);
 
-			rt.setFlag(ab);
+					workingStation.setODA(aid, blocks[1] & 0x1F, app);
 
-			console.print("RT A/B=" + (ab == 0 ? 'A' : 'B') + " pos=" + addr + ": \"");
-			if(version == 0) console.print(toASCII(ch1) + "" + toASCII(ch2));
-			console.print(toASCII(ch3) + "" + toASCII(ch4));
-			console.print('\"');
-		}
+					if(app != null) {
+						g.setNewApplication(app);
+						workingStation.setApplicationForGroup(odaG, odaV, app);
+						app.setStation(workingStation);
+					} else {
+						console.print("Unknown AID!");
+					}
+				}
 
-		if(type == 2) serviceStat.add(ServiceStat.RT, version == 0 ? 5+16+16 : 5+16); 
+				if(app != null) {
+					console.print("(" + app.getName() + "): ");
+				}
+				else console.print(" ");
 
-		// Groups 3A: to extract AID we need blocks 1 and 3
-		if(type == 3 && version == 0 && blocksOk[3]) {
-			int aid = blocks[3];
-			int odaG = (blocks[1]>>1) & 0xF;
-			int odaV = blocks[1] & 1;
+				if(odaG == 0 && odaV == 0) console.print("only in group 3A   ");
+				else if(odaG == 0xF && odaV == 1) console.print("temporary data fault at encoder   ");
+				else console.print("group " + odaG + (char)('A' + odaV) + "   ");
 
-			if(aid == 0) console.print("NO AID: ");
-			else console.printf("AID #%04X ", aid);
+				// if data ok, pass it to the ODA handler
+				if(app != null && blocksOk[2]) {
+					console.printf("ODA data=%04X", blocks[2]);
 
-			// return the ODA
-			Application app = workingStation.getApplicationForGroup(odaG, odaV);
-			if(app != null) {
-				if(!(app instanceof ODA)) {
-					console.printf("Currently group assigned to '%s' (non-ODA); it should not be assigned to AID %04X", app.getName(), aid);
-				} else if(((ODA)app).getAID() != aid) { 
-					console.printf("Current AID for group (%04X) does not match new AID (%04X)", ((ODA)app).getAID(), aid);
-					app = null;
+					console.println();
+					console.print("\t" + app.getName()  + " --> ");
+					app.receiveGroup(console, type, version, blocks, blocksOk, time);
 				}
-			} else {
-				app = ODA.forAID(aid);
+			}
+			serviceStat.add(Category.ODA, 5+16+16);	// TODO refine per ODA
+		}
+	};
 
-				workingStation.setODA(aid, blocks[1] & 0x1F, app);
+	/**
+	 * Groups 4A: to extract time we need blocks 1, 2 and 3
+	 */
+	private final GroupHandler clockTimeHandler = new GroupHandler() {
+		@Override
+		public void handleGroup(GroupContext g) {
+			PrintWriter console = g.getConsole();
+			int[] blocks = g.getBlocks();
+			boolean[] blocksOk = g.getBlocksOk();
+			RDSTime time = g.getTime();
+			TunedStation workingStation = g.getStation();
+			ServiceStat serviceStat = g.getServiceStat();
 
-				if(app != null) {
-					newApp = app;
-					workingStation.setApplicationForGroup(odaG, odaV, app);
-					app.setStation(workingStation);
+			if(blocksOk[2] && blocksOk[3]) {
+				int mjd = ((blocks[1] & 0x3)<<15) | ((blocks[2] & 0xFFFE)>>1);
+
+				int hour = ((blocks[2] & 1)<<4) | ((blocks[3] & 0xF000)>>12);
+				int minute = ((blocks[3]>>6) & 0x3F);
+				int sign = (blocks[3] & 0x20) == 0 ? 1 : -1;
+				int offset = blocks[3] & 0x1F;
+
+				if(mjd >= 15079) {
+					// The formulas below are valid from 1 March 1900 (MJD 15079).
+					int yp = (int)((mjd - 15078.2)/365.25);
+					int mp = (int)( ( mjd - 14956.1 - (int)(yp * 365.25) ) / 30.6001 );
+					int day = mjd - 14956 - (int)( yp * 365.25 ) - (int)( mp * 30.6001 );
+					int k = (mp == 14 || mp == 15) ? 1 : 0;
+					int year = 1900 + yp + k;
+					int month = mp - 1 - k * 12;
+
+					/* Time is in UTC, hence set the initial time zone to UTC (offset 0), set date values
+					 * and call getDate() once to force internal calculation with date values interpreted
+					 * as UTC. Then set the actual time zone and obtain time via getDate().
+					 * Without the first call to getDate(), the internal calculation would not happen until
+					 * the time zone is changed, resulting in incorrect interpretation of date/time values.
+					 */
+					SimpleTimeZone tz = new SimpleTimeZone(sign * offset * 30 * 60 * 1000, "");
+					Calendar cal = new GregorianCalendar(new SimpleTimeZone(0, ""));
+					cal.clear();
+					cal.set(year, month-1, day, hour, minute);
+					cal.getTime();
+					cal.setTimeZone(tz);
+					Date date = cal.getTime();
+
+					String datetime = String.format("%02d:%02d%c%dmin %04d-%02d-%02d", 
+							hour, minute, sign>0 ? '+' : '-', offset*30, year, month, day);
+					console.print("CT " + datetime);
+					workingStation.setTimeZone(tz);
+					workingStation.setDate(date, datetime, time);
+					log.addMessage(new ClockTime(time, date));
 				} else {
-					console.print("Unknown AID!");
+					// Ignore earlier dates.
+					console.print("CT invalid");
 				}
 			}
 
-			if(app != null) {
-				console.print("(" + app.getName() + "): ");
-			}
-			else console.print(" ");
-
-			if(odaG == 0 && odaV == 0) console.print("only in group 3A   ");
-			else if(odaG == 0xF && odaV == 1) console.print("temporary data fault at encoder   ");
-			else console.print("group " + odaG + (char)('A' + odaV) + "   ");
-
-			// if data ok, pass it to the ODA handler
-			if(app != null && blocksOk[2]) {
-				console.printf("ODA data=%04X", blocks[2]);
-
-				console.println();
-				console.print("\t" + app.getName()  + " --> ");
-				app.receiveGroup(console, type, version, blocks, blocksOk, time);
-			}
-		}
-		if(type == 3 && version==0) serviceStat.add(ServiceStat.ODA, 5+16+16);	// TODO refine per ODA
-
-		// Groups 4A: to extract time we need blocks 1, 2 and 3
-		if(type == 4 && version == 0 && blocksOk[2] && blocksOk[3]) {
-			int mjd = ((blocks[1] & 0x3)<<15) | ((blocks[2] & 0xFFFE)>>1);
-
-			int hour = ((blocks[2] & 1)<<4) | ((blocks[3] & 0xF000)>>12);
-			int minute = ((blocks[3]>>6) & 0x3F);
-			int sign = (blocks[3] & 0x20) == 0 ? 1 : -1;
-			int offset = blocks[3] & 0x1F;
-
-			if(mjd >= 15079) {
-				// The formulas below are valid from 1 March 1900 (MJD 15079).
-				int yp = (int)((mjd - 15078.2)/365.25);
-				int mp = (int)( ( mjd - 14956.1 - (int)(yp * 365.25) ) / 30.6001 );
-				int day = mjd - 14956 - (int)( yp * 365.25 ) - (int)( mp * 30.6001 );
-				int k = (mp == 14 || mp == 15) ? 1 : 0;
-				int year = 1900 + yp + k;
-				int month = mp - 1 - k * 12;
-
-				/* Time is in UTC, hence set the initial time zone to UTC (offset 0), set date values
-				 * and call getDate() once to force internal calculation with date values interpreted
-				 * as UTC. Then set the actual time zone and obtain time via getDate().
-				 * Without the first call to getDate(), the internal calculation would not happen until
-				 * the time zone is changed, resulting in incorrect interpretation of date/time values.
-				 */
-				SimpleTimeZone tz = new SimpleTimeZone(sign * offset * 30 * 60 * 1000, "");
-				Calendar cal = new GregorianCalendar(new SimpleTimeZone(0, ""));
-				cal.clear();
-				cal.set(year, month-1, day, hour, minute);
-				cal.getTime();
-				cal.setTimeZone(tz);
-				Date date = cal.getTime();
-
-				String datetime = String.format("%02d:%02d%c%dmin %04d-%02d-%02d", 
-						hour, minute, sign>0 ? '+' : '-', offset*30, year, month, day);
-				console.printf("CT " + datetime);
-				workingStation.setTimeZone(tz);
-				workingStation.setDate(date, datetime, time);
-				log.addMessage(new ClockTime(time, date));
-			} else {
-				// Ignore earlier dates.
-				console.printf("CT invalid");
-			}
-		}
-		if(type == 4 && version == 0) {
 			// is there paging ?
 			Application app = workingStation.getApplicationForGroup(7, 0);
 			if(app != null && app instanceof Paging) {
@@ -465,13 +566,26 @@ public class GroupLevelDecoder {
 				console.print(", [RT: " + ((Paging)app).fullMinute() + "]");
 			}
 
-			serviceStat.add(ServiceStat.CT, 2+16+16);
-			serviceStat.add(ServiceStat.OVERHEAD, 3);
+			serviceStat.add(Category.CT, 2+16+16);
+			serviceStat.add(Category.OVERHEAD, 3);
 		}
+	};
+
+	/**
+	 * Groups 5A-9A, 11A-13A: TDC, we need blocks 1, 2 and 3
+	 */
+	private final GroupHandler tdcHandler = new GroupHandler() {
+		@Override
+		public void handleGroup(GroupContext g) {
+			PrintWriter console = g.getConsole();
+			int[] blocks = g.getBlocks();
+			boolean[] blocksOk = g.getBlocksOk();
+			int type = g.getType();
+			int version = g.getVersion();
+			RDSTime time = g.getTime();
+			TunedStation workingStation = g.getStation();
+			ServiceStat serviceStat = g.getServiceStat();
 
-		// Groups 5A-9A, 11A-13A: TDC, we need blocks 1, 2 and 3
-		// but don't handle 7A groups here if using RP
-		if(((type >= 5 && type <= 9) || (type >= 11 && type <= 13)) && version == 0) {
 			int a = (blocks[1] & 0x1F);
 
 			switch(type) {
@@ -498,11 +612,13 @@ public class GroupLevelDecoder {
 
 			if(app == null) {
 				if(type == 5) {
-					newApp = TDC.createPreferredTDCApp();
+					Application newApp = TDC.createPreferredTDCApp();
 					workingStation.setApplicationForGroup(5, 0, newApp);
+					g.setNewApplication(newApp);
 				} else if(type == 6) {
-					newApp = new InHouse();
+					Application newApp = new InHouse();
 					workingStation.setApplicationForGroup(6, 0, newApp);
+					g.setNewApplication(newApp);
 				}
 
 			}
@@ -512,16 +628,25 @@ public class GroupLevelDecoder {
 				console.print("\t" + app.getName() +  " --> ");
 				app.receiveGroup(console, type, version, blocks, blocksOk, time);
 
-				serviceStat.add(app.getName(), 5+16+16);
+				serviceStat.add(categoryOf(app), 5+16+16);
 			} else {
-				serviceStat.add(ServiceStat.WASTE, 5+16+16);
+				serviceStat.add(Category.WASTE, 5+16+16);
 			}
 		}
+	};
 
+	/**
+	 * Groups 10A: PTYN, we need blocks 1, 2 and 3
+	 */
+	private final GroupHandler ptynHandler = new GroupHandler() {
+		@Override
+		public void handleGroup(GroupContext g) {
+			PrintWriter console = g.getConsole();
+			int[] blocks = g.getBlocks();
+			boolean[] blocksOk = g.getBlocksOk();
+			TunedStation workingStation = g.getStation();
+			ServiceStat serviceStat = g.getServiceStat();
 
-
-		// Groups 10A: PTYN, we need blocks 1, 2 and 3
-		if(type == 10 && version == 0 && blocksOk[1]) {
 			int ab = (blocks[1] >> 4) & 1;
 			int pos = blocks[1] & 1;
 
@@ -543,12 +668,25 @@ public class GroupLevelDecoder {
 
 			console.print("\"");
 
-			serviceStat.add(ServiceStat.PTYN, 2+16+16);
-			serviceStat.add(ServiceStat.OVERHEAD, 3);
+			serviceStat.add(Category.PTYN, 2+16+16);
+			serviceStat.add(Category.OVERHEAD, 3);
 		}
+	};
+
+	/**
+	 * Groups 14: to extract variant we need only block 1
+	 */
+	private final GroupHandler eonHandler = new GroupHandler() {
+		@Override
+		public void handleGroup(GroupContext g) {
+			PrintWriter console = g.getConsole();
+			int[] blocks = g.getBlocks();
+			boolean[] blocksOk = g.getBlocksOk();
+			int version = g.getVersion();
+			RDSTime time = g.getTime();
+			TunedStation workingStation = g.getStation();
+			ServiceStat serviceStat = g.getServiceStat();
 
-		// Groups 14: to extract variant we need only block 1
-		if(type == 14) {
 			Station on = null;
 			console.print("EON, ");
 
@@ -562,6 +700,7 @@ public class GroupLevelDecoder {
 					on = workingStation.getON(onPI);
 					if(on == null) {
 						on = new OtherNetwork(onPI);
+						on.setRbds(rbds);
 						workingStation.addON(on);
 					}
 				} else { 
@@ -626,7 +765,7 @@ public class GroupLevelDecoder {
 						}
 					}
 				}
-				serviceStat.add(ServiceStat.ON, 5+16+16);
+				serviceStat.add(Category.ON, 5+16+16);
 			} else { // 14B groups
 				int onta = (blocks[1]>>3) & 1;
 				String message = (onta==1 ? "Switch now to ON" : "Switch back from ON");
@@ -638,27 +777,38 @@ public class GroupLevelDecoder {
 				}
 				if(onPI >= 0) message += String.format(": PI=%04X", onPI);
 				if(on != null) message += " (" + on.getStationName().trim() + ")";
-				if(groupCountSinceEonSwitch > 20) station.addTrafficEvent(time, message);
+				if(groupCountSinceEonSwitch > 20) workingStation.addTrafficEvent(time, message);
 				groupCountSinceEonSwitch = 0;
 
-				serviceStat.add(ServiceStat.ON, 2+16);
-				serviceStat.add(ServiceStat.OVERHEAD, 3);
+				serviceStat.add(Category.ON, 2+16);
+				serviceStat.add(Category.OVERHEAD, 3);
 			}
 
 		}
+	};
+
+	/**
+	 * Type 15A: RDS2 Long PS and former RBDS Fast PS (obsolete).
+	 * They are somewhat compatible, except:
+	 *  1) Long PS addresses are 3-bit, whereas Fast PS addresses were
+	 * 1-bit (the other two being marked as "spare bits", so they could
+	 * theoretically be anything).
+	 *  2) Long PS uses UTF-8 encoding, whereas Fast PS used the RDS
+	 * 8-bit charset.
+	 * However I believe most Fast PS implementations set the spare bits
+	 * to 0, and use only ASCII characters. So we treat everything as
+	 * Long PS, and it *should* also work fine for most, if not all,
+	 * Fast PS uses.
+	 */
+	private final GroupHandler longPSHandler = new GroupHandler() {
+		@Override
+		public void handleGroup(GroupContext g) {
+			PrintWriter console = g.getConsole();
+			int[] blocks = g.getBlocks();
+			boolean[] blocksOk = g.getBlocksOk();
+			ServiceStat serviceStat = g.getServiceStat();
+			TunedStation workingStation = g.getStation();
 
-		// Type 15A: RDS2 Long PS and former RBDS Fast PS (obsolete).
-		// They are somewhat compatible, except:
-		//  1) Long PS addresses are 3-bit, whereas Fast PS addresses were
-		// 1-bit (the other two being marked as "spare bits", so they could
-		// theoretically be anything).
-		//  2) Long PS uses UTF-8 encoding, whereas Fast PS used the RDS
-		// 8-bit charset.
-		// However I believe most Fast PS implementations set the spare bits
-		// to 0, and use only ASCII characters. So we treat everything as
-		// Long PS, and it *should* also work fine for most, if not all,
-		// Fast PS uses.
-		if(type == 15 && version == 0) {
 			int addr = blocks[1] & 7;
 			console.print("Long PS, pos=" + addr + ":");
 			for(int i=0; i<=1; i++) {
@@ -666,32 +816,116 @@ public class GroupLevelDecoder {
 					byte byte1 = (byte)((blocks[i+2]>>8) & 0xFF);
 					byte byte2 = (byte)(blocks[i+2] & 0xFF);
 					console.print(String.format(" %02X %02X", byte1, byte2));
-					station.getLPS().set(addr*4+i*2, byte1, byte2);
+					workingStation.getLPS().set(addr*4+i*2, byte1, byte2);
 				} else console.print(" -- --");
 			}
 			console.print(", TA=" + ((blocks[1]>>4) & 1));
 
-			serviceStat.add(ServiceStat.PROG_TYPE, 1);	// TA bit
-			serviceStat.add(ServiceStat.NAME, 3+16+16);	// address + 4 characters
-			serviceStat.add(ServiceStat.OVERHEAD, 1);	// 1 unused bit
+			serviceStat.add(Category.PROG_TYPE, 1);	// TA bit
+			serviceStat.add(Category.NAME, 3+16+16);	// address + 4 characters
+			serviceStat.add(Category.OVERHEAD, 1);	// 1 unused bit
 		}
+	};
+
+	/**
+	 * For 15B we need only group 1, and possibly group 3
+	 */
+	private final GroupHandler basicTuning15BHandler = new GroupHandler() {
+		@Override
+		public void handleGroup(GroupContext g) {
+			PrintWriter console = g.getConsole();
+			int[] blocks = g.getBlocks();
+			boolean[] blocksOk = g.getBlocksOk();
+			RDSTime time = g.getTime();
+			ServiceStat serviceStat = g.getServiceStat();
 
-		// For 15B we need only group 1, and possibly group 3
-		if(type == 15 && version == 1) {
 			processBasicTuningBits(console, blocks[1], time);
 			if(blocksOk[3]) processBasicTuningBits(console, blocks[3], time);
 
-			serviceStat.add(ServiceStat.OVERHEAD, 5);	// group type: protocol overhead in group D
-			serviceStat.add(ServiceStat.PROG_TYPE, 6);	// PTY+TP: program type in group D
-			serviceStat.add(ServiceStat.PROG_TYPE, 2*5);	// TA, MS, DIseg and DI in groups B and D
+			serviceStat.add(Category.OVERHEAD, 5);	// group type: protocol overhead in group D
+			serviceStat.add(Category.PROG_TYPE, 6);	// PTY+TP: program type in group D
+			serviceStat.add(Category.PROG_TYPE, 2*5);	// TA, MS, DIseg and DI in groups B and D
+		}
+	};
+
+	private void processGroup(int nbOk, boolean[] blocksOk, int[] blocks, RDSTime time, long timeValue, boolean realTime) {
+		// the analysis is only rendered as text if somebody displays it
+		GroupAnalysis analysis = new GroupAnalysis();
+		PrintWriter console = analysis.getWriter();
+
+		//console.print(" (" + (station == null ? null : station.getStationName() ) + ") ");
+		Application newApp = null;
+
+		TunedStation workingStation = station;
+
+		qualityHistory[historyPtr] = nbOk;
+		historyPtr = (historyPtr + 1) % qualityHistory.length;
+
+		// First identify type and version of the group, if possible.
+		// We do this now in order to be able to extract the PI from block 2
+		// if version is B.
+		int type = -1, version = -1;
+		if(blocksOk[1]) {
+			type = ((blocks[1]>>12) & 0xF);
+			version = ((blocks[1]>>11) & 1);
+		}
+
+
+		int pi = -1;
+
+		if(blocksOk[0]) {
+			pi = blocks[0];
+		} else if(version == 1 && blocksOk[2]) {
+			pi = blocks[2];
+		}
+
+		if(pi != -1) {
+			analysis.setPI(pi, station.getCallsign());
+
+			if(station.getPI() == 0) {
+				// new station
+				station.setPI(pi);
+			}
+		}
+
+		if(!synced) return;   // after a sync loss, we wait for a PI before processing further data
+
+		if(blocksOk[1]) {
+			workingStation.addGroupToStats(type, version, nbOk);
+
+			int tp = (blocks[1]>>10) & 1;
+			workingStation.setTP(tp == 1);
+
+			int pty = (blocks[1]>>5) & 0x1F;
+			workingStation.setPTY(pty);
+
+			analysis.setGroupType(type, version, tp, pty);
+			//console.print("Group (" + (nbOk == 4 ? "full" : "part") + ") type " + type + (char)('A' + version) + ", TP=" + tp + ", PTY=" + pty + ", ");
+		} else workingStation.addUnknownGroupToStats(nbOk);
+
+		// initialize service stats
+		serviceStat.clear();
+		serviceStat.add(Category.PI, 16);  // always a PI code on 16 bits
+		serviceStat.add(Category.OVERHEAD, 5);	// group type: protocol overhead
+		serviceStat.add(Category.PROG_TYPE, 5+1);	// PTY+TP: program type
+		if(version == 1) serviceStat.add(Category.PI, 16);	// second PI code on B-type groups
+
+		// hand the group over to the handlers of its type
+		if(blocksOk[1]) {
+			context.set(console, blocks, blocksOk, time, workingStation, serviceStat);
+			for(GroupHandler h : handlers[(type << 1) | version]) {
+				h.handleGroup(context);
+			}
+			newApp = context.getNewApplication();
 		}
 
-		// add a log message for each group
-		log.addMessage(new GroupReceived(time, blocks, nbOk, consoleWriter.toString()));
+		// add a log message for each group, which keeps the analysis until it is rendered
+		analysis.trimToSize();
+		log.addMessage(new GroupReceived(time, blocks, nbOk, analysis));
 
 		// if the last 3 blocks of a group were received completely, then commit service stats
 		if(blocksOk[1] && blocksOk[2] && blocksOk[3]) {
-			station.addServiceStat(serviceStat);
+			station.addServiceStat(serviceStat, timeValue, realTime);
 		}
 
 		// post log message for app creation only if the group is not being ignored
@@ -702,6 +936,13 @@ public class GroupLevelDecoder {
 
 	}
 
+	private static Category categoryOf(Application app) {
+		if(app instanceof Paging) return Category.PAGING;
+		if(app instanceof InHouse) return Category.IH;
+		if(app instanceof TDC) return Category.TDC;
+		return Category.ODA;
+	}
+
 	private void printECC(PrintWriter console, int pi, int ecc) {
 		console.printf("ECC=%02X ", ecc);
 		if(pi != -1) console.print("[" + RDS.getISOCountryCode((pi>>12) & 0xF, ecc) + "] ");
@@ -719,12 +960,28 @@ public class GroupLevelDecoder {
 		console.printf("PAC=%d ", pac);
 	}
 
+	/**
+	 * @brief Sets whether new stations use RBDS until they broadcast an ECC. By default they use
+	 * standard RDS.
+	 * 
+	 * This allows decoders of several tuners to run side by side with different settings.
+	 */
+	public void setRbds(boolean rbds) {
+		this.rbds = rbds;
+	}
+
+	private TunedStation newStation(RDSTime time) {
+		TunedStation res = new TunedStation(time);
+		res.setRbds(rbds);
+		return res;
+	}
+
 	public TunedStation getTunedStation() {
 		return station;
 	}
 
 	public void notifyFrequencyChange(RDSTime time) {
-		station = new TunedStation(time);
+		station = newStation(time);
 	}
 
 
@@ -734,34 +991,16 @@ public class GroupLevelDecoder {
 			if(station != null)
 				log.addMessage(new StationLost(station.getTimeOfLastPI(), station));
 			RDSTime time = stationChangeEvent.getTime();
-			station = new TunedStation(time);
+			station = newStation(time);
 			log.addMessage(new StationTuned(time, station));
 		}
 
 		@Override
 		public void visit(GroupEvent groupEvent) {
 			RDSTime time = groupEvent.getTime();
-
-			// defensive programming: station should not be null...
-			// but a (defective) input driver may forget to send the
-			// StationChangeEvent...
-			if(station == null) {
-				station = new TunedStation(time);
-				log.addMessage(new StationTuned(time, station));
-			}
-			// end defensive programming section
-
-			int[] blocks = groupEvent.blocks;
-
-			boolean[] blocksOk = new boolean[4];
-			int nbOk = 0;
-			for(int i=0; i<4; i++) {
-				blocksOk[i] = (blocks[i] >= 0);
-				if(blocksOk[i]) nbOk++;
-			}
-
-			processGroup(nbOk, blocksOk, blocks, time);
-			if(log != null) log.notifyGroup();
+			eventTime.setTime(time);
+			processGroupEvent(groupEvent.blocks, groupEvent.correctedMask, time,
+					eventTime.getTimeValue(), eventTime.isRealTime());
 		}
 
 		@Override
@@ -770,6 +1009,44 @@ public class GroupLevelDecoder {
 		}
 	};
 
+	// reused from one group to the next, as they are not kept by any consumer
+	private final boolean[] blocksOk = new boolean[4];
+	private final PackedGroup eventTime = new PackedGroup();
+
+	private void processGroupEvent(int[] blocks, int correctedMask, RDSTime time, long timeValue, boolean realTime) {
+		// defensive programming: station should not be null...
+		// but a (defective) input driver may forget to send the
+		// StationChangeEvent...
+		if(station == null) {
+			station = newStation(time);
+			log.addMessage(new StationTuned(time, station));
+		}
+		// end defensive programming section
+
+		int nbOk = 0;
+		for(int i=0; i<4; i++) {
+			blocksOk[i] = (blocks[i] >= 0);
+			if(blocksOk[i]) nbOk++;
+		}
+		
+		station.addCorrectionStats(Integer.bitCount(correctedMask), 4 - nbOk);
+
+		processGroup(nbOk, blocksOk, blocks, time, timeValue, realTime);
+		if(log != null) log.notifyGroup();
+	}
+
+	/**
+	 * Processes one group in packed form, as read by
+	 * {@link eu.jacquet80.rds.input.GroupReader#getGroup(PackedGroup)}.
+	 * 
+	 * @param group a packed group, whose {@code present} flag must be set
+	 */
+	public void processOneGroup(PackedGroup group) {
+		// the blocks array is kept by the GroupReceived log message, so it must be a new one
+		processGroupEvent(group.toBlocks(), group.correctedMask, group.getTime(),
+				group.getTimeValue(), group.isRealTime());
+	}
+
 	/**
 	 * Processes one group in the group stream available on the given reader.
 	 * 
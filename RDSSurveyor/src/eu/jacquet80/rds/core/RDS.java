@@ -228,7 +228,43 @@ public class RDS {
 		}
 	}
 	
+	/**
+	 * Syndrome lookup tables, one per byte of a 26-bit block. As the syndrome is linear in the
+	 * block bits, the syndrome of a block is the XOR of the syndromes of its four bytes. The
+	 * tables are built once from {@code matH}.
+	 */
+	private final static int syndromeTable[][] = new int[4][256];
+	
+	static {
+		for(int b=0; b<4; b++) {
+			for(int v=0; v<256; v++) {
+				syndromeTable[b][v] = calcSyndromeBitwise(v << (8*b));
+			}
+		}
+	}
+	
+	/**
+	 * Computes the syndrome of a 26-bit block. Bits above bit 25 are ignored.
+	 * 
+	 * @param bloc the block (16 information bits followed by 10 checkword bits)
+	 * @return the 10-bit syndrome
+	 */
 	public final static int calcSyndrome(int bloc) {
+		return syndromeTable[0][bloc & 0xFF] ^
+				syndromeTable[1][(bloc >> 8) & 0xFF] ^
+				syndromeTable[2][(bloc >> 16) & 0xFF] ^
+				syndromeTable[3][(bloc >> 24) & 0x3];
+	}
+	
+	/**
+	 * Computes the syndrome of a 26-bit block bit by bit. This is the reference implementation
+	 * from which the lookup tables used by {@link #calcSyndrome(int)} are built. Bits above
+	 * bit 25 are ignored.
+	 * 
+	 * @param bloc the block (16 information bits followed by 10 checkword bits)
+	 * @return the 10-bit syndrome
+	 */
+	public final static int calcSyndromeBitwise(int bloc) {
 		int synd = 0;
 		for(int i=0; i<26; i++) {
 			if((bloc & 1) != 0) synd ^= matH[i];
@@ -237,6 +273,62 @@ public class RDS {
 		return synd;
 	}
 	
+	/** Longest error burst that the RDS block code is able to correct. */
+	public final static int MAX_BURST_LENGTH = 5;
+	
+	/**
+	 * Burst error patterns, for each block and offset word variant, indexed by the syndrome of
+	 * the received block. An entry is 0 if no correctable burst leads to that syndrome.
+	 */
+	private final static int burstErrors[][][] = new int[4][2][1024];
+	
+	static {
+		for(int length=1; length<=MAX_BURST_LENGTH; length++) {
+			// a burst of a given length has its first and last bits set, any bits in between
+			int inner = length > 2 ? 1 << (length-2) : 1;
+			for(int in=0; in<inner; in++) {
+				int burst = length == 1 ? 1 : (1 << (length-1)) | (in << 1) | 1;
+				for(int pos=0; pos <= 26-length; pos++) {
+					int error = burst << pos;
+					int synd = calcSyndrome(error);
+					for(int i=0; i<4; i++) {
+						for(int j=0; j<2; j++) {
+							int[] table = burstErrors[i][j];
+							// keep the shortest burst in case of ambiguity
+							if(table[synd ^ syndromes[i][j]] == 0) table[synd ^ syndromes[i][j]] = error;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the length of an error burst, i.e. the number of bits from its first bit in error
+	 * to its last bit in error.
+	 */
+	public final static int burstLength(int error) {
+		if(error == 0) return 0;
+		return 32 - Integer.numberOfLeadingZeros(error) - Integer.numberOfTrailingZeros(error);
+	}
+	
+	/**
+	 * Looks up the burst error that leads to a given syndrome, assuming a given offset word.
+	 * 
+	 * @param synd the syndrome of the received block
+	 * @param blockIndex the index of the block within the group (0 to 3)
+	 * @param variant 0 for offset words A, B, C and D, 1 for offset word C'
+	 * @param maxBurst the longest burst to accept, from 0 (no correction) to
+	 * {@link #MAX_BURST_LENGTH}
+	 * @return the error pattern to XOR with the received block, or 0 if the syndrome does not
+	 * correspond to a burst of at most {@code maxBurst} bits
+	 */
+	public final static int findBurstError(int synd, int blockIndex, int variant, int maxBurst) {
+		int error = burstErrors[blockIndex][variant][synd];
+		if(burstLength(error) > maxBurst) return 0;
+		return error;
+	}
+	
 	/*
 	private static int poids(int codeword) {
 		int poids = 0;
@@ -0,0 +1,154 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.core;
+
+/**
+ * @brief Bits of the RDS channel used by each service, counted per service category.
+ *
+ * One instance is filled by {@link GroupLevelDecoder} for each group, and accumulated by
+ * {@link TunedStation} for the whole reception as well as per minute and per hour. Counts are kept
+ * in an array indexed by the category, so accounting does not allocate any memory.
+ *
+ * Instances which cover a time window also have a start time and a duration, both in
+ * milliseconds. The start time is a {@code Date} value for inputs which provide the real time,
+ * and the time elapsed since the beginning of the stream for the others.
+ */
+public class ServiceStat {
+	public static enum Category {
+		OVERHEAD("Protocol overhead"),		// addressing, very basic features, etc.
+		PROG_TYPE("Program type"),		// PTY + TA/TP
+		PI("Program Identification"),
+		NAME("Station name"),
+		RT("Radiotext"),
+		AF("Alternative frequencies"),
+		ON("Other networks"),
+		CT("Clock time"),
+		PAGING("Paging"),
+		IH("In-house data"),
+		TDC("Transparent data channels"),
+		PTYN("Program type name"),
+		WASTE("Wasted bandwidth"),
+		PIN("Program Item Number"),
+		ODA("ODA");
+
+		private final String label;
+
+		private Category(String label) {
+			this.label = label;
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+	private static final Category[] CATEGORIES = Category.values();
+
+	private final long[] bits = new long[CATEGORIES.length];
+	private final long start;
+	private final long duration;
+
+	public ServiceStat() {
+		this(-1, 0);
+	}
+
+	/**
+	 * @brief Creates statistics for a time window.
+	 *
+	 * @param start the start of the window, in milliseconds
+	 * @param duration the duration of the window, in milliseconds
+	 */
+	public ServiceStat(long start, long duration) {
+		this.start = start;
+		this.duration = duration;
+	}
+
+	/**
+	 * @brief Creates a copy of the given statistics.
+	 */
+	public ServiceStat(ServiceStat other) {
+		this(other.start, other.duration);
+		System.arraycopy(other.bits, 0, bits, 0, bits.length);
+	}
+
+	public void add(Category category, int count) {
+		bits[category.ordinal()] += count;
+	}
+
+	/**
+	 * @brief Adds the counts of another instance to this one.
+	 */
+	public void add(ServiceStat other) {
+		for(int i=0; i<bits.length; i++) bits[i] += other.bits[i];
+	}
+
+	public void clear() {
+		for(int i=0; i<bits.length; i++) bits[i] = 0;
+	}
+
+	/**
+	 * @brief Returns the number of bits used by a service category.
+	 */
+	public long get(Category category) {
+		return bits[category.ordinal()];
+	}
+
+	public long getTotalCount() {
+		long count = 0;
+		for(long c : bits) count += c;
+		return count;
+	}
+
+	/**
+	 * @brief Returns the start of the time window, in milliseconds, or -1 for statistics which
+	 * do not cover a window.
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * @brief Returns the duration of the time window, in milliseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @brief Returns the share of each category which was used, in percent of the total.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder();
+		long total = getTotalCount();
+		for(Category c : CATEGORIES) {
+			if(bits[c.ordinal()] == 0) continue;
+			if(res.length() > 0) res.append(", ");
+			res.append(c).append(": ").append(String.format("%.1f%%", 100. * bits[c.ordinal()] / total));
+		}
+		return res.toString();
+	}
+}
@@ -30,7 +30,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import eu.jacquet80.rds.RDSSurveyor;
 import eu.jacquet80.rds.log.RDSTime;
 
 
@@ -51,13 +50,23 @@ public abstract class Station {
 	
 	/**
 	 * A station uses (World/European) RDS or American RBDS. We use the default
-	 * specified in the preferences (true for RBDS, false for standard RDS),
+	 * given by the decoder (see {@link GroupLevelDecoder#setRbds(boolean)}),
 	 * which defaults to false (=RDS).
 	 * If a station broadcasts an ECC, then we can set the rbds flag 
 	 * appropriately: true for the USA, Canada and Mexico, false for any other
 	 * country. 
 	 */
-	protected boolean rbds = RDSSurveyor.preferences.getBoolean(RDSSurveyor.PREF_RBDS, false);
+	protected boolean rbds = false;
+
+	/**
+	 * @brief Sets whether the station uses RBDS, until it broadcasts an ECC.
+	 * 
+	 * The decoder sets its default, for instance from the preferences, or for a tuner known to
+	 * be in North America.
+	 */
+	public void setRbds(boolean rbds) {
+		this.rbds = rbds;
+	}
 
 	
 	protected void reset(int pi) {
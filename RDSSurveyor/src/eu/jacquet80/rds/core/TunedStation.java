@@ -41,6 +41,7 @@ import java.util.TreeMap;
 import eu.jacquet80.rds.app.Application;
 import eu.jacquet80.rds.app.oda.ODA;
 import eu.jacquet80.rds.log.RDSTime;
+import eu.jacquet80.rds.log.SequentialTime;
 
 
 public class TunedStation extends Station {
@@ -55,13 +56,20 @@ public class TunedStation extends Station {
 	private boolean diMusic;
 	private boolean diStereo, diArtif, diCompressed, diDPTY;
 	private int totalBlocks, totalBlocksOk;
+	private int correctedBlocks, uncorrectableBlocks;
 	private int[] latestBlocksOk = new int[25];
 	private int latestBlocksOkPtr = 0;
 	private int latestBlocksOkCount = 0;
 	private int ecc, language;
 	private Text rt = new Text(64);
 	private UnicodeString lps = new UnicodeString(64, StandardCharsets.UTF_8);
-	private ServiceStat serviceStat;
+	private final ServiceStat serviceStat = new ServiceStat();
+	private final List<ServiceStat> serviceStatsPerMinute = new ArrayList<ServiceStat>();
+	private final List<ServiceStat> serviceStatsPerHour = new ArrayList<ServiceStat>();
+	private ServiceStat currentMinute, currentHour;
+	
+	private static final long MINUTE = 60 * 1000L, HOUR = 60 * MINUTE;
+	private static final int MAX_MINUTES = 24 * 60;
 	
 	private final List<String> trafficEvents = new ArrayList<String>();
 	
@@ -101,10 +109,17 @@ public class TunedStation extends Station {
 				groupStats[i][j] = 0;
 		totalBlocks = 0;
 		totalBlocksOk = 0;
+		correctedBlocks = 0;
+		uncorrectableBlocks = 0;
 		
 		applications = new Application[32];
 		
-		serviceStat = new ServiceStat();
+		synchronized(this) {
+			serviceStat.clear();
+			serviceStatsPerMinute.clear();
+			serviceStatsPerHour.clear();
+			currentMinute = currentHour = null;
+		}
 	}
 
 	
@@ -274,6 +289,31 @@ public class TunedStation extends Station {
 		return totalBlocksOk;
 	}
 	
+	/**
+	 * Counts the blocks of a group that have been corrected, and that could not be corrected.
+	 * 
+	 * @param corrected the number of blocks received with errors and corrected
+	 * @param uncorrectable the number of blocks received with errors that could not be corrected
+	 */
+	public void addCorrectionStats(int corrected, int uncorrectable) {
+		correctedBlocks += corrected;
+		uncorrectableBlocks += uncorrectable;
+	}
+	
+	/**
+	 * Returns the number of blocks that were received with errors and corrected.
+	 */
+	public int getCorrectedBlocks() {
+		return correctedBlocks;
+	}
+	
+	/**
+	 * Returns the number of blocks that were received with errors which could not be corrected.
+	 */
+	public int getUncorrectableBlocks() {
+		return uncorrectableBlocks;
+	}
+	
 	public void setECC(int ecc) {
 		this.ecc = ecc;
 		
@@ -400,15 +440,75 @@ public class TunedStation extends Station {
 		return this.timeZone;
 	}
 
-	public void addServiceStat(ServiceStat statsOfGroup) {
-		int totalBitCount = statsOfGroup.getTotalCount();
+	/**
+	 * @brief Accounts the bits of a group to the services they belong to.
+	 *
+	 * @param statsOfGroup the bits of the group, which are copied
+	 * @param timeValue the time of the group, which determines the minute and hour windows it is
+	 * accounted to: a bit count since the start of the stream, or milliseconds since the epoch
+	 * (see {@link eu.jacquet80.rds.input.group.PackedGroup#getTimeValue()})
+	 * @param realTime whether {@code timeValue} is a real time
+	 */
+	public void addServiceStat(ServiceStat statsOfGroup, long timeValue, boolean realTime) {
+		long totalBitCount = statsOfGroup.getTotalCount();
 		
 		if(totalBitCount != 64) {
 			System.err.println("addServiceStat: each bit of a group's 64 bits must be assigned. " 
 					+ "Only " + totalBitCount + " bits were assigned.");
 		}
 		
-		serviceStat.merge(statsOfGroup);
+		// streams without real time start at the epoch
+		long millis = realTime ? timeValue : SequentialTime.toMillis(timeValue);
+		
+		synchronized(this) {
+			serviceStat.add(statsOfGroup);
+			
+			long minute = millis - millis % MINUTE;
+			if(currentMinute == null || currentMinute.getStart() != minute) {
+				currentMinute = new ServiceStat(minute, MINUTE);
+				serviceStatsPerMinute.add(currentMinute);
+				if(serviceStatsPerMinute.size() > MAX_MINUTES) serviceStatsPerMinute.remove(0);
+			}
+			currentMinute.add(statsOfGroup);
+			
+			long hour = millis - millis % HOUR;
+			if(currentHour == null || currentHour.getStart() != hour) {
+				currentHour = new ServiceStat(hour, HOUR);
+				serviceStatsPerHour.add(currentHour);
+			}
+			currentHour.add(statsOfGroup);
+		}
+	}
+	
+	/**
+	 * @brief Returns the bits used by each service since the station was tuned.
+	 */
+	public synchronized ServiceStat getServiceStat() {
+		return new ServiceStat(serviceStat);
+	}
+	
+	/**
+	 * @brief Returns the bits used by each service per minute, for the last 24 hours.
+	 * 
+	 * Minutes without any complete group are omitted.
+	 */
+	public synchronized List<ServiceStat> getServiceStatsPerMinute() {
+		return copyOf(serviceStatsPerMinute);
+	}
+	
+	/**
+	 * @brief Returns the bits used by each service per hour, since the station was tuned.
+	 * 
+	 * Hours without any complete group are omitted.
+	 */
+	public synchronized List<ServiceStat> getServiceStatsPerHour() {
+		return copyOf(serviceStatsPerHour);
+	}
+	
+	private static List<ServiceStat> copyOf(List<ServiceStat> stats) {
+		List<ServiceStat> res = new ArrayList<ServiceStat>(stats.size());
+		for(ServiceStat s : stats) res.add(new ServiceStat(s));
+		return res;
 	}
 	
 	
@@ -459,45 +559,3 @@ class GroupStatElement implements Comparable<GroupStatElement> {
 		return b;
 	}
 }
-
-class ServiceStat {
-	private Map<String, Integer> stats = new HashMap<String, Integer>();
-	
-	public void add(String service, int bits) {
-		Integer previousCount = stats.get(service);
-		if(previousCount == null) previousCount = 0;
-		stats.put(service, bits + previousCount);
-	}
-	
-	public int getTotalCount() {
-		int count = 0;
-		for(int c : stats.values()) {
-			count += c;
-		}
-		
-		return count;
-	}
-	
-	public void merge(ServiceStat other) {
-		for(Map.Entry<String, Integer> e : other.stats.entrySet()) {
-			this.add(e.getKey(), e.getValue());
-		}
-	}
-	
-	public static final String 
-			OVERHEAD = "Protocol overhead",		// addressing, very basic features, etc.
-			PROG_TYPE = "Program type",		// PTY + TA/TP
-			PI = "Program Identification",
-			NAME = "Station name",
-			RT = "Radiotext",
-			AF = "Alternative frequencies",
-			ON = "Other networks",
-			CT = "Clock time",
-			PAGING = "Paging",
-			IH = "In-house data",
-			TDC = "Transparent data channels",
-			PTYN = "Program type name",
-			WASTE = "Wasted bandwidth",
-			PIN = "Program Item Number",
-			ODA = "ODA";
-}
\ No newline at end of file
@@ -0,0 +1,310 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.input;
+
+import java.io.IOException;
+
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+/**
+ * @brief Hands groups over to a thread of its own, which writes them to another group log writer.
+ *
+ * Groups are copied into a bounded ring of preallocated slots, thus the decoder thread does not
+ * wait for the disk, nor allocates objects for groups. The writer thread flushes the log once
+ * {@code flushEvents} events have been written since the last flush, or once the oldest
+ * unflushed event is {@code flushMillis} old, which keeps the log up to date without flushing
+ * after each group.
+ *
+ * When the ring is full, the {@link Overflow} policy applies. Write errors do not disturb the
+ * decoder: later events are discarded, and the error is thrown by {@link #close()}.
+ */
+public class AsyncGroupLogWriter implements GroupLogWriter {
+	/** Default number of events the ring holds */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/** Default number of events after which the log is flushed */
+	public static final int DEFAULT_FLUSH_EVENTS = 1024;
+
+	/** Default delay after which written events are flushed, in milliseconds */
+	public static final long DEFAULT_FLUSH_MILLIS = 1000;
+
+	/**
+	 * @brief What to do with an event when the ring is full.
+	 */
+	public static enum Overflow {
+		/** Wait for the writer thread, i.e. slow the decoder down to the speed of the disk */
+		BLOCK,
+		/** Discard the oldest event in the ring to make room for the new one */
+		DROP_OLDEST,
+		/** Discard the new event */
+		DROP_NEWEST,
+	}
+
+	private final GroupLogWriter out;
+	private final Overflow overflow;
+	private final int flushEvents;
+	private final long flushMillis;
+
+	/** Slots for groups, whose contents are irrelevant for events which are not groups */
+	private final PackedGroup[] groups;
+	/** Events which are not groups, {@code null} for groups */
+	private final GroupReaderEvent[] events;
+	private int head = 0;
+	private int count = 0;
+
+	private long dropped = 0;
+	/** Number of events put into the ring, and taken out of it (written or dropped) */
+	private long enqueued = 0, dequeued = 0;
+	/** Number of events taken out of the ring before the last completed flush */
+	private long flushed = 0;
+	private boolean flushRequested = false;
+	private boolean closing = false;
+	private boolean finished = false;
+	private IOException error = null;
+
+	private final Thread thread;
+
+	/**
+	 * Creates a writer with the default capacity and flush policy, which blocks when the ring is
+	 * full.
+	 */
+	public AsyncGroupLogWriter(GroupLogWriter out) {
+		this(out, DEFAULT_CAPACITY, Overflow.BLOCK, DEFAULT_FLUSH_EVENTS, DEFAULT_FLUSH_MILLIS);
+	}
+
+	/**
+	 * @param out the writer to hand events over to
+	 * @param capacity the number of events the ring holds
+	 * @param overflow what to do when the ring is full
+	 * @param flushEvents the number of events after which the log is flushed
+	 * @param flushMillis the delay after which written events are flushed, in milliseconds
+	 */
+	public AsyncGroupLogWriter(GroupLogWriter out, int capacity, Overflow overflow, int flushEvents, long flushMillis) {
+		this.out = out;
+		this.overflow = overflow;
+		this.flushEvents = Math.max(1, flushEvents);
+		this.flushMillis = flushMillis;
+		this.groups = new PackedGroup[Math.max(1, capacity)];
+		this.events = new GroupReaderEvent[groups.length];
+		for(int i=0; i<groups.length; i++) groups[i] = new PackedGroup();
+
+		thread = new Thread("Group log writer") {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @brief Returns the number of events discarded because the ring was full.
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	@Override
+	public void writeGroup(PackedGroup group) throws IOException {
+		put(group, null);
+	}
+
+	@Override
+	public void writeEvent(GroupReaderEvent event) throws IOException {
+		put(null, event);
+	}
+
+	private synchronized void put(PackedGroup group, GroupReaderEvent event) throws IOException {
+		if(closing) throw new IOException("Group log writer closed");
+		if(error != null) return;
+
+		if(count == groups.length) {
+			switch(overflow) {
+			case BLOCK:
+				while(count == groups.length && error == null && !closing) {
+					try {
+						wait();
+					} catch(InterruptedException e) {
+						throw new IOException("Interrupted while waiting for the group log writer");
+					}
+				}
+				if(closing) throw new IOException("Group log writer closed");
+				if(error != null) return;
+				break;
+			case DROP_OLDEST:
+				events[head] = null;
+				head = (head + 1) % groups.length;
+				count--;
+				dequeued++;
+				dropped++;
+				break;
+			case DROP_NEWEST:
+				dropped++;
+				return;
+			}
+		}
+
+		int tail = (head + count) % groups.length;
+		if(group != null) groups[tail].set(group);
+		events[tail] = event;
+		enqueued++;
+		if(count++ == 0) notifyAll();
+	}
+
+	/**
+	 * @brief Waits until all events handed over so far have been written and flushed.
+	 *
+	 * @throws IOException if writing failed at any time
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		long target = enqueued;
+		flushRequested = true;
+		notifyAll();
+		while(flushed < target && !finished) {
+			try {
+				wait();
+			} catch(InterruptedException e) {
+				throw new IOException("Interrupted while flushing the group log");
+			}
+		}
+		if(error != null) throw error;
+	}
+
+	/**
+	 * @brief Writes the remaining events, closes the log and stops the writer thread.
+	 *
+	 * Closing again has no effect, except for throwing the write error again if any.
+	 *
+	 * @throws IOException if writing failed at any time
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(this) {
+			closing = true;
+			notifyAll();
+		}
+		try {
+			thread.join();
+		} catch(InterruptedException e) {
+			throw new IOException("Interrupted while closing the group log");
+		}
+		synchronized(this) {
+			if(error != null) throw error;
+		}
+	}
+
+	private void writeLoop() {
+		PackedGroup group = new PackedGroup();
+		int unflushed = 0;
+		long firstUnflushed = 0;
+
+		try {
+			while(true) {
+				GroupReaderEvent event;
+				boolean doFlush = false;
+				synchronized(this) {
+					while(count == 0) {
+						if(closing) {
+							out.close();
+							return;
+						}
+						if(flushRequested || (unflushed > 0 &&
+								System.currentTimeMillis() - firstUnflushed >= flushMillis)) {
+							doFlush = true;
+							break;
+						}
+						if(unflushed > 0) wait(Math.max(1, firstUnflushed + flushMillis - System.currentTimeMillis()));
+						else wait();
+					}
+					if(doFlush) {
+						event = null;
+					} else {
+						event = events[head];
+						if(event == null) group.set(groups[head]);
+						events[head] = null;
+						head = (head + 1) % groups.length;
+						dequeued++;
+						if(count-- == groups.length) notifyAll();
+					}
+				}
+
+				if(doFlush) {
+					flushWritten();
+					unflushed = 0;
+					continue;
+				}
+
+				if(event == null) out.writeGroup(group);
+				else out.writeEvent(event);
+				long now = System.currentTimeMillis();
+				if(unflushed++ == 0) firstUnflushed = now;
+				if(unflushed >= flushEvents || now - firstUnflushed >= flushMillis) {
+					flushWritten();
+					unflushed = 0;
+				}
+			}
+		} catch(IOException e) {
+			fail(e);
+		} catch(InterruptedException e) {
+			fail(new IOException("Group log writer interrupted"));
+		} finally {
+			synchronized(this) {
+				finished = true;
+				count = 0;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Flushes the log, from the writer thread, and wakes up the callers of {@link #flush()} whose
+	 * events have all been taken out of the ring before, hence written or dropped.
+	 */
+	private void flushWritten() throws IOException {
+		long target;
+		synchronized(this) {
+			target = dequeued;
+			// a flush requested from now on needs another flush
+			flushRequested = false;
+		}
+		out.flush();
+		synchronized(this) {
+			flushed = target;
+			notifyAll();
+		}
+	}
+
+	private synchronized void fail(IOException e) {
+		error = e;
+		try {
+			out.close();
+		} catch(IOException e2) {
+			// report the first error
+		}
+	}
+}
@@ -26,17 +26,14 @@
 
 package eu.jacquet80.rds.input;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.Closeable;
 import java.io.EOFException;
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
-import java.io.PrintStream;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 
 import eu.jacquet80.rds.util.MathUtil;
 import biz.source_code.dsp.filter.FilterCharacteristicsType;
@@ -45,9 +42,7 @@ import biz.source_code.dsp.filter.IirFilter;
 import biz.source_code.dsp.filter.IirFilterCoefficients;
 import biz.source_code.dsp.filter.IirFilterDesignFisher;
 
-public class AudioBitReader extends BitReader {
-	private static final boolean DEBUG = false; // set to true to enable debug output
-	
+public class AudioBitReader extends BitReader implements Closeable {
 	/** RDS carrier frequency */
 	private static final double FC_0 = 57000.0;
 	
@@ -58,20 +53,64 @@ public class AudioBitReader extends BitReader {
 	 */
 	private static final double FC_TOLERANCE = 12.0;
 	
+	/** Number of phase bits used to look up the subcarrier oscillator table */
+	private static final int NCO_BITS = 12;
+	
+	/** Size of the subcarrier oscillator table */
+	private static final int NCO_SIZE = 1 << NCO_BITS;
+	
+	/** Sine over one turn, used by the subcarrier oscillator. Cosine is read a quarter turn ahead. */
+	private static final double[] NCO_TABLE = new double[NCO_SIZE];
+	
+	/** 
+	 * Scale of the subcarrier phase accumulator: one turn of the subcarrier is 2^32 units.
+	 * The accumulator is kept modulo 48 turns, which is one period of the 1187.5 Hz bit clock.
+	 */
+	private static final double PHASE_PER_RADIAN = (1L << 32) / (2 * Math.PI);
+	private static final long PHASE_PERIOD = 48L << 32;
+	
+	static {
+		for (int i = 0; i < NCO_SIZE; i++)
+			NCO_TABLE[i] = Math.sin(2 * Math.PI * i / NCO_SIZE) / 32768.0;
+	}
+	
+	/** Length of the decimating low-pass filter, in multiples of the decimation factor */
+	private static final int FIR_TAPS_PER_PHASE = 8;
+	
+	/** 
+	 * Gain of the subcarrier PLL after decimation, relative to a loop updated on every input
+	 * sample. The decimation filter adds delay to the loop, which needs a lower gain to remain
+	 * stable in the presence of noise.
+	 */
+	private static final double PLL_DECIMATED_GAIN = 0.3;
+	
+	/** Number of biphase symbols between two choices of the symbol pairing */
+	private static final int FRAME_PERIOD = 800;
+	
+	/** 
+	 * Number of biphase symbols after which the symbol pairing is first chosen. This is much less
+	 * than {@link #FRAME_PERIOD}, so that a wrong initial pairing does not delay synchronization.
+	 */
+	private static final int FRAME_ACQUISITION = 64;
+	
 	/** Input buffer length, in samples */
 	private static final int IBUFLEN = 4096;
 	
-	/** Output buffer length for decoded data bits */
-	private static final int OBUFLEN = 128;
+	/** Output buffer length for decoded data bits (about one second) */
+	private static final int OBUFLEN = 1024;
 	
-	/** The input stream */
-	private final DataInputStream in;
+	/** The input channel, which delivers 16-bit little-endian samples */
+	private final ReadableByteChannel in;
 	
-	/** A stream from which other applications can retrieve audio data */
-	private PipedInputStream audioMirrorSource;
+	/**
+	 * Ring to which audio input is mirrored as it is processed (16-bit little-endian, about one
+	 * second at 48 kHz). Samples are dropped if nobody reads them, so that the demodulator never
+	 * waits for audio consumers.
+	 */
+	private final SampleRing audioMirror = new SampleRing(2 * 48000, true);
 	
-	/** Stream to which audio input is mirrored as it is processed */
-	private DataOutputStream audioMirrorSink = null;
+	/** A stream from which other applications can retrieve audio data */
+	private final InputStream audioMirrorSource = Channels.newInputStream(audioMirror);
 	
 	/** Whether audio is being mirrored */
 	private boolean isPlaying = false;
@@ -93,51 +132,115 @@ public class AudioBitReader extends BitReader {
 	/** Decimation factor, determined based on the sample rate */
 	private final int decimate;
 	
+	/** Sample rate after decimation, at which the PLL and clock recovery run */
+	private final double decimatedRate;
+	
 	/** A queue for the bits decoded from the audio stream. */
-	private final ArrayBlockingQueue<Boolean> bits = new ArrayBlockingQueue<Boolean>(OBUFLEN);
+	private final BitRing bits = new BitRing(OBUFLEN);
+	
+	/** Whether {@link #close()} has been called, in which case read errors are expected */
+	private volatile boolean closed = false;
 
 	/** Demodulated sample from RDS data stream (NRZ-M encoded) */
 	private int dbit = 0;
 	
 	// Used by biphase()
 	private double prev_acc = 0;
-	private int counter = 0;
+	private int counter = FRAME_PERIOD - FRAME_ACQUISITION;
 	private int reading_frame = 0;
 	private int tot_errs[] = new int[] {0, 0};
+	
+	/** Average magnitude of biphase symbols, to which their confidence is relative */
+	private double avgSymbolMagnitude = 0;
+	
+	/** Confidence of the previous biphase symbol, which also affects the current data bit */
+	private int prevSymbolConfidence = 0;
 
-	/* Decoded data bit from RDS stream, for debugging only */
-	private int sbit;
+	/** Last decoded data bit from RDS stream (1 or -1), for probes */
+	private int sbit = 0;
+	
+	/** Probes attached to the demodulator, copied on write so that the demodulator can iterate without locking */
+	private volatile DspProbe[] probes = new DspProbe[0];
+	
+	/** Buffer for internal signals, allocated when the first probe is attached */
+	private ProbeBuffer probeBuffer = null;
 
 	/**
 	 * Creates a new AudioBitReader and starts decoding RDS date from it.
 	 * 
+	 * @param stream the input stream, which delivers 16-bit little-endian samples
+	 * @param srate
+	 */
+	public AudioBitReader(InputStream stream, int srate) {
+		this(Channels.newChannel(stream), srate);
+	}
+	
+	/**
+	 * Creates a new AudioBitReader and starts decoding RDS date from it.
+	 * 
+	 * Samples are read in blocks from the channel. Reading from a {@code FileChannel} is
+	 * thus more efficient than reading from a stream.
+	 * 
+	 * @param channel the input channel, which delivers 16-bit little-endian samples
 	 * @param srate
 	 */
-	public AudioBitReader(DataInputStream stream, int srate) {
-		this.in = stream;
+	public AudioBitReader(ReadableByteChannel channel, int srate) {
+		this.in = channel;
 		this.sampleRate = srate;
-		this.decimate = this.sampleRate / 7125;
-		this.audioMirrorSource = new PipedInputStream();
-		try {
-			this.audioMirrorSink = new DataOutputStream(new PipedOutputStream(audioMirrorSource));
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		new Thread() {
+		this.decimate = Math.max(this.sampleRate / 7125, 1);
+		this.decimatedRate = this.sampleRate / (double) this.decimate;
+		new Thread("Audio demodulator") {
+			@Override
 			public void run() {
+				// whatever ends the demodulator, the consumers of bits and audio must not wait forever
+				try {
+					demodulate();
+				} finally {
+					bits.close();
+					audioMirror.endOfStream();
+				}
+			}
+			
+			private void demodulate() {
 				/* Array of audio samples retrieved, IBUFLEN samples, 16 bits (2 bytes) per sample */
 				short sample[]        = new short[IBUFLEN];
 				
+				/* Raw input, possibly ending with an incomplete sample which is kept for the next read */
+				ByteBuffer inBuf      = ByteBuffer.allocateDirect(2 * IBUFLEN).order(ByteOrder.LITTLE_ENDIAN);
+				boolean eof           = false;
+				
+				/* Audio samples to be mirrored from the current block */
+				ByteBuffer mirrorBuf  = ByteBuffer.allocate(2 * IBUFLEN).order(ByteOrder.LITTLE_ENDIAN);
+				
 				/* Subcarrier frequency */
 				double fsc = FC_0;
 
-				/* Subcarrier phase */
-				double subcarr_phi    = 0;
+				/* Subcarrier phase, in units of 2^-32 turns (see PHASE_PER_RADIAN) */
+				long subcarr_phi      = 0;
+				
+				/* Subcarrier phase increment per sample and per Hz */
+				double phase_per_hz   = (1L << 32) / (double) sampleRate;
+				
+				/* Index into NCO_TABLE */
+				int nco_idx;
+				
+				/* Decimating low-pass filter, applied to the mixer output */
+				double firCoeffs[]    = designDecimationFilter(FIR_TAPS_PER_PHASE * decimate, 0.5 / decimate);
+				int firLen            = firCoeffs.length;
+				
+				/* 
+				 * Mixer output history, written twice (at firPos and firPos + firLen) so that the
+				 * last firLen samples can always be read as a contiguous run
+				 */
+				double firI[]         = new double[2 * firLen];
+				double firQ[]         = new double[2 * firLen];
+				int firPos            = 0;
+				double mix_i, mix_q;
 				
 				double subcarr_bb[]   = new double[] {0, 0};
 				
-				/* Clock phase offset */
-				double clock_offset   = 0;
+				/* Clock phase offset, initially compensating for the delay of the decimation filter */
+				double clock_offset   = -2 * Math.PI * FC_0 / 48.0 * ((firLen - 1) / 2.0) / sampleRate;
 				
 				/* Clock phase */
 				double clock_phi      = 0;
@@ -155,145 +258,105 @@ public class AudioBitReader extends BitReader {
 				double acc            = 0;
 				
 				double pll_beta       = 50;
+				
+				/* PLL gain per update, at the decimated rate */
+				double pll_gain       = PLL_DECIMATED_GAIN * decimate * pll_beta;
 
 				/* Number of samples (NOT bytes) read */
 				int bytesread;
 
-				int numsamples = 0;
+				long numsamples = 0;
 				int i;
 				
 				calculateResampleRatio();
 			
+				/* These filters run after decimation */
 				IirFilterCoefficients lp2400Coeffs = IirFilterDesignFisher.design(FilterPassType.lowpass,
-						FilterCharacteristicsType.butterworth, 5, 0, 2000.0 / sampleRate, 2000.0 / sampleRate);
+						FilterCharacteristicsType.butterworth, 5, 0, 2000.0 / decimatedRate, 2000.0 / decimatedRate);
 				
 				IirFilterCoefficients lpPllCoeffs = IirFilterDesignFisher.design(FilterPassType.lowpass,
-						FilterCharacteristicsType.butterworth, 1, 0, 2200.0 / sampleRate, 2200.0 / sampleRate);
+						FilterCharacteristicsType.butterworth, 1, 0, 2200.0 / decimatedRate, 2200.0 / decimatedRate);
 
 				IirFilter lp2400iFilter = new IirFilter(lp2400Coeffs);
 				IirFilter lp2400qFilter = new IirFilter(lp2400Coeffs);
 				IirFilter lpPllFilter = new IirFilter(lpPllCoeffs);
 				
-				// for debugging only
-				double t = 0;
-				short outbuf;
-				Process pU;
-				Process pIQ;
-				Process pRaw;
-				String tempPath = "/tmp";
-				String pathSep ="/";
-				try {
-					tempPath = System.getProperty("java.io.tmpdir", tempPath);
-				} catch (Exception e) {
-					// NOP
-				}
-				try {
-					pathSep = System.getProperty("file.separator", pathSep);
-				} catch (Exception e) {
-					// NOP
-				}
-				String[] cmdU = {"sox", "-c", "5", "-r", Integer.toString(sampleRate), "-t", ".s16", "-", tempPath + pathSep + "dbg-out.wav"};
-				String[] cmdIQ = {"sox", "-c", "2", "-r", Integer.toString(sampleRate), "-t", ".s16", "-", tempPath + pathSep + "dbg-out-iq.wav"};
-				String[] cmdRaw = {"sox", "-c", "1", "-r", Integer.toString(sampleRate), "-t", ".s16", "-", tempPath + pathSep + "dbg-out-raw.wav"};
-				DataOutputStream outU = null;
-				DataOutputStream outIQ = null;
-				DataOutputStream outRaw = null;
-				PrintStream stats = null;
-				
-				if (DEBUG) {
-					sbit = 0;
-					dbit = 0;
-
-					try {
-						pU = new ProcessBuilder()
-							.command(cmdU)
-							.redirectErrorStream(true)
-							.start();
-						outU = new DataOutputStream(pU.getOutputStream());
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
-					
+				while (!eof) {
 					try {
-						pIQ = new ProcessBuilder()
-							.command(cmdIQ)
-							.redirectErrorStream(true)
-							.start();
-						outIQ = new DataOutputStream(pIQ.getOutputStream());
+						eof = (in.read(inBuf) < 0);
 					} catch (IOException e) {
-						e.printStackTrace();
+						if (!closed) System.err.println("IOException.");
+						eof = true;
 					}
 					
-					try {
-						pRaw = new ProcessBuilder()
-							.command(cmdRaw)
-							.redirectErrorStream(true)
-							.start();
-						outRaw = new DataOutputStream(pRaw.getOutputStream());
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
-					
-					try {
-						stats = new PrintStream(new File(tempPath, "stats.csv"));
-						stats.print("t,fsc,d_phi_sc,subcarr_bb_re,subcarr_bb_im,clock_offset\n");
-					} catch (FileNotFoundException e) {
-						e.printStackTrace();
-						stats = null;
-					}
-				}
-
-				while (true) {
-					bytesread = 0;
-					while (bytesread < IBUFLEN) {
-						try {
-							sample[bytesread] = Short.reverseBytes(in.readShort());
-							bytesread++;
-						} catch (EOFException e) {
-							break;
-						} catch (IOException e) {
-							System.err.println("IOException.");
-							break;
-						}
-					}
-					
-					if (bytesread < 1) break;
+					/* Convert all complete samples at once */
+					inBuf.flip();
+					bytesread = inBuf.remaining() / 2;
+					inBuf.asShortBuffer().get(sample, 0, bytesread);
+					inBuf.position(2 * bytesread);
+					inBuf.compact();
 
 					/* Reset audio counters periodically to prevent overflow */
 					inCount %= inRatio;
 					outCount %= outRatio;
 					
+					/* Internal signals are only recorded if probes are attached */
+					DspProbe[] blockProbes = probes;
+					ProbeBuffer probeBuf = null;
+					if (blockProbes.length > 0) {
+						probeBuf = probeBuffer;
+						probeBuf.start((numsamples + decimate - 1) / decimate);
+					}
+					
 					for (i = 0; i < bytesread; i++) {
-						if (isPlaying && (audioMirrorSink != null))
-							try {
-								/* resample */
-								inCount++;
-								/* 
-								 * if the downsampling ratio has not been exceeded yet
-								 * (outCount * inRatio <= outRatio * inCount
-								 * is just an integer-friendly and div-by-zero-proof representation of 
-								 * outCount/inCount <= outRatio/inRatio)
-								 */
-								if (outCount * inRatio <= outRatio * inCount) {
-									audioMirrorSink.writeShort(Short.reverseBytes(sample[i]));
-									outCount++;
-								}
-							} catch (IOException e) {
-								e.printStackTrace();
+						if (isPlaying) {
+							/* resample */
+							inCount++;
+							/* 
+							 * if the downsampling ratio has not been exceeded yet
+							 * (outCount * inRatio <= outRatio * inCount
+							 * is just an integer-friendly and div-by-zero-proof representation of 
+							 * outCount/inCount <= outRatio/inRatio)
+							 */
+							if (outCount * inRatio <= outRatio * inCount) {
+								mirrorBuf.putShort(sample[i]);
+								outCount++;
 							}
+						}
 
-						/* Subcarrier downmix & phase recovery */
-
-						subcarr_phi    += 2 * Math.PI * fsc / (double) sampleRate;
-						subcarr_bb[0]  = lp2400iFilter.step(sample[i] / 32768.0 * Math.cos(subcarr_phi));
-						subcarr_bb[1]  = lp2400qFilter.step(sample[i] / 32768.0 * Math.sin(subcarr_phi));
+						/* Subcarrier downmix, at the input rate */
 
-						d_phi_sc = lpPllFilter.step(subcarr_bb[1] * subcarr_bb[0]);
-						subcarr_phi -= pll_beta * d_phi_sc;
-						fsc         -= 0.5 * pll_beta * d_phi_sc;
+						subcarr_phi    += (long) (fsc * phase_per_hz);
+						nco_idx        = (int) (subcarr_phi >>> (32 - NCO_BITS)) & (NCO_SIZE - 1);
+						mix_i          = sample[i] * NCO_TABLE[(nco_idx + NCO_SIZE / 4) & (NCO_SIZE - 1)];
+						mix_q          = sample[i] * NCO_TABLE[nco_idx];
+						firI[firPos] = firI[firPos + firLen] = mix_i;
+						firQ[firPos] = firQ[firPos + firLen] = mix_q;
+						firPos = (firPos + 1) % firLen;
 						
-						/* Decimate band-limited signal */
+						/* Decimate, then run everything else at the decimated rate */
 						if (numsamples % decimate == 0) {
+							/* Low-pass filter the last firLen samples, oldest first */
+							mix_i = 0;
+							mix_q = 0;
+							for (int k = 0; k < firLen; k++) {
+								mix_i += firCoeffs[k] * firI[firPos + k];
+								mix_q += firCoeffs[k] * firQ[firPos + k];
+							}
+							
+							/* Band-limit and recover subcarrier phase */
+							subcarr_bb[0]  = lp2400iFilter.step(mix_i);
+							subcarr_bb[1]  = lp2400qFilter.step(mix_q);
+
+							/* The loop is updated once every decimate samples, hence corrections are scaled */
+							d_phi_sc = lpPllFilter.step(subcarr_bb[1] * subcarr_bb[0]);
+							subcarr_phi -= (long) (pll_gain * d_phi_sc * PHASE_PER_RADIAN);
+							fsc         -= 0.5 * pll_gain * d_phi_sc;
+							
+							/* Keep the phase within one period of the bit clock */
+							while (subcarr_phi >= PHASE_PERIOD) subcarr_phi -= PHASE_PERIOD;
+							while (subcarr_phi < 0) subcarr_phi += PHASE_PERIOD;
+							
 							/* Reset subcarrier frequency if it is outside tolerance range */
 							if ((fsc > FC_0 + FC_TOLERANCE) || (fsc < FC_0 - FC_TOLERANCE)) {
 								fsc = FC_0;
@@ -301,7 +364,8 @@ public class AudioBitReader extends BitReader {
 
 							/* 1187.5 Hz clock */
 
-							clock_phi = subcarr_phi / 48.0 + clock_offset;
+							clock_phi = subcarr_phi / PHASE_PER_RADIAN / 48.0 + clock_offset;
+							clock_phi -= 2 * Math.PI * Math.floor(clock_phi / (2 * Math.PI));
 							lo_clock  = ((clock_phi % (2 * Math.PI)) < Math.PI ? 1 : -1);
 
 							/* Clock phase recovery */
@@ -323,83 +387,35 @@ public class AudioBitReader extends BitReader {
 							prevclock = lo_clock;
 							prev_bb = subcarr_bb[0];
 
-							if (DEBUG) {
-								if (outRaw != null)
-									try {
-										outRaw.writeShort(Short.reverseBytes(sample[i]));
-									} catch (IOException e) {
-										e.printStackTrace();
-									}
-								/* dbg-out.wav channel 1: d_phi_sc */
-								outbuf = (short) (d_phi_sc * 6000);
-								if (outU != null)
-									try {
-										outU.writeShort(Short.reverseBytes(outbuf));
-									} catch (IOException e) {
-										e.printStackTrace();
-									}
-
-								/* dbg-out.wav channel 2: 1187.5 Hz clock */
-								outbuf = (short) (lo_clock * 16000);
-								if (outU != null)
-									try {
-										outU.writeShort(Short.reverseBytes(outbuf));
-									} catch (IOException e) {
-										e.printStackTrace();
-									}
-
-								/* dbg-out-iq.wav channel 1 */
-								outbuf = (short) (subcarr_bb[0] * 32000);
-								if (outIQ != null)
-									try {
-										outIQ.writeShort(Short.reverseBytes(outbuf));
-									} catch (IOException e) {
-										e.printStackTrace();
-									}
-
-								/* dbg-out-iq.wav channel 2 */
-								outbuf = (short) (subcarr_bb[1] * 32000);
-								if (outIQ != null)
-									try {
-										outIQ.writeShort(Short.reverseBytes(outbuf));
-									} catch (IOException e) {
-										e.printStackTrace();
-									}
-								/* dbg-out.wav channel 3: acc */
-								outbuf = (short) (acc * 800);
-								if (outU != null)
-									try {
-										outU.writeShort(Short.reverseBytes(outbuf));
-									} catch (IOException e) {
-										e.printStackTrace();
-									}
-								/* dbg-out.wav channel 4: dbit (demodulated RDS stream) */
-								outbuf = (short) (dbit * 16000);
-								if (outU != null)
-									try {
-										outU.writeShort(Short.reverseBytes(outbuf));
-									} catch (IOException e) {
-										e.printStackTrace();
-									}
-
-								/* dbg-out.wav channel 5: sbit (decoded RDS data stream) */
-								outbuf = (short) (sbit * 16000);
-								if (outU != null)
-									try {
-										outU.writeShort(Short.reverseBytes(outbuf));
-									} catch (IOException e) {
-										e.printStackTrace();
-									}
-
-								t += 1.0/sampleRate;
-								if ((stats != null) && (numsamples % (decimate * 16) == 0))
-									// qua (quality) is not implemented so far
-									stats.printf("%f,%f,%f,%f,%f,%f\n", t, fsc, d_phi_sc, subcarr_bb[0], subcarr_bb[1], clock_offset);
+							if (probeBuf != null) {
+								probeBuf.add(sample[i], d_phi_sc, lo_clock, subcarr_bb[0], subcarr_bb[1],
+										acc, dbit, sbit, fsc, clock_offset);
 							}
 						}
 						
 						numsamples++;
 					}
+					
+					/* Hand the bits decoded from this block over to the consumer */
+					bits.publish();
+					
+					if (probeBuf != null) {
+						for (DspProbe p : blockProbes) {
+							try {
+								p.probe(probeBuf);
+							} catch (RuntimeException e) {
+								/* a faulty probe must not stop the demodulator */
+								System.err.println("DSP probe failed, detached: " + e);
+								removeProbe(p);
+							}
+						}
+					}
+					
+					if (mirrorBuf.position() > 0) {
+						mirrorBuf.flip();
+						audioMirror.write(mirrorBuf);
+						mirrorBuf.clear();
+					}
 				}
 			}
 		}.start();
@@ -425,13 +441,95 @@ public class AudioBitReader extends BitReader {
 
 	@Override
 	public boolean getBit() throws IOException {
-		boolean ret;
-		while (true) {
-			try {
-				ret = bits.take();
-				return ret;
-			} catch (InterruptedException e) {
-				System.err.println("InterruptedException.");
+		int ret = bits.take();
+		if (ret < 0)
+			throw new EOFException();
+		return ret != 0;
+	}
+	
+	@Override
+	public int readBits(long[] dst, int maxBits) throws IOException {
+		return bits.read(dst, maxBits);
+	}
+	
+	@Override
+	public int readBits(long[] dst, byte[] confidence, int maxBits) throws IOException {
+		return bits.read(dst, confidence, maxBits);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The confidence of a bit is derived from the magnitude of the biphase symbols it is decoded
+	 * from, relative to their average magnitude.
+	 */
+	@Override
+	public boolean hasBitConfidence() {
+		return true;
+	}
+	
+	/**
+	 * @brief Returns the number of decoded bits waiting to be read.
+	 */
+	public int getBitQueueDepth() {
+		return bits.getDepth();
+	}
+	
+	/**
+	 * @brief Returns the highest number of decoded bits that were waiting to be read at the same time.
+	 */
+	public int getBitQueueMaxDepth() {
+		return bits.getMaxDepth();
+	}
+	
+	/**
+	 * @brief Returns how many times the demodulator had to wait because decoded bits were not read fast enough.
+	 */
+	public long getBitQueueOverruns() {
+		return bits.getOverruns();
+	}
+	
+	/**
+	 * @brief Stops decoding and closes the input channel.
+	 * 
+	 * Bits which have not been read yet are discarded. The demodulator thread stops after the
+	 * block of samples it is processing.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		bits.abandon();
+		in.close();
+	}
+	
+	/**
+	 * @brief Attaches a probe to the demodulator.
+	 * 
+	 * Probes may be attached and removed at any time, from any thread. The demodulator records its
+	 * internal signals only while at least one probe is attached.
+	 */
+	public synchronized void addProbe(DspProbe probe) {
+		if (probeBuffer == null)
+			probeBuffer = new ProbeBuffer(IBUFLEN / decimate + 1, decimatedRate);
+		DspProbe[] res = new DspProbe[probes.length + 1];
+		System.arraycopy(probes, 0, res, 0, probes.length);
+		res[probes.length] = probe;
+		probes = res;
+	}
+	
+	/**
+	 * @brief Removes a probe from the demodulator.
+	 * 
+	 * The probe may still receive the block being processed when this method is called.
+	 */
+	public synchronized void removeProbe(DspProbe probe) {
+		for (int i = 0; i < probes.length; i++) {
+			if (probes[i] == probe) {
+				DspProbe[] res = new DspProbe[probes.length - 1];
+				System.arraycopy(probes, 0, res, 0, i);
+				System.arraycopy(probes, i + 1, res, i, probes.length - i - 1);
+				probes = res;
+				return;
 			}
 		}
 	}
@@ -482,17 +580,53 @@ public class AudioBitReader extends BitReader {
 	 * 
 	 * @param b The new bit received. If it is different from the last bit that was received, 1 is
 	 * stored, else 0 is stored.
+	 * @param confidence The confidence of the new bit. As the value stored depends on two
+	 * successive bits, it is stored with the lower confidence of both.
 	 */
-	private void storeValue(int b) {
-		if (DEBUG) {
-			sbit = (((b ^ dbit) != 0) ? 1 : -1);
-		}
-		try {
-			bits.put((b ^ dbit) != 0);
-		} catch (InterruptedException e) {
-			System.err.println("InterruptedException.");
-		}
+	private void storeValue(int b, int confidence) {
+		sbit = (((b ^ dbit) != 0) ? 1 : -1);
+		bits.put((b ^ dbit) != 0, Math.min(confidence, prevSymbolConfidence));
 		dbit = b;
+		prevSymbolConfidence = confidence;
+	}
+	
+	/**
+	 * Returns the confidence of a biphase symbol: 128 for a symbol of average magnitude, 0 for a
+	 * symbol of zero magnitude, at most {@link BitReader#MAX_CONFIDENCE}.
+	 */
+	private int symbolConfidence(double symbol) {
+		double magnitude = Math.abs(symbol);
+		if (avgSymbolMagnitude == 0)
+			avgSymbolMagnitude = magnitude;
+		else
+			avgSymbolMagnitude += (magnitude - avgSymbolMagnitude) / 64;
+		if (avgSymbolMagnitude == 0)
+			return 0;
+		return (int) Math.min(MAX_CONFIDENCE, 128 * magnitude / avgSymbolMagnitude);
+	}
+
+	/**
+	 * @brief Designs the low-pass filter applied before decimation.
+	 * 
+	 * This is a windowed-sinc FIR filter (Hamming window) with unity gain at DC.
+	 * 
+	 * @param length The number of taps
+	 * @param cutoff The cutoff frequency, as a fraction of the input sample rate
+	 * @return The filter coefficients
+	 */
+	static double[] designDecimationFilter(int length, double cutoff) {
+		double[] coeffs = new double[length];
+		double sum = 0;
+		double center = (length - 1) / 2.0;
+		for (int k = 0; k < length; k++) {
+			double x = k - center;
+			double sinc = (x == 0) ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+			coeffs[k] = sinc * (0.54 - 0.46 * Math.cos(2 * Math.PI * k / (length - 1)));
+			sum += coeffs[k];
+		}
+		for (int k = 0; k < length; k++)
+			coeffs[k] /= sum;
+		return coeffs;
 	}
 
 	private int sign(double a) {
@@ -505,7 +639,7 @@ public class AudioBitReader extends BitReader {
 		}
 
 		if (counter % 2 == reading_frame) {
-			storeValue(sign(acc + prev_acc));
+			storeValue(sign(acc + prev_acc), symbolConfidence(acc + prev_acc));
 		}
 		if (counter == 0) {
 			if (tot_errs[1 - reading_frame] < tot_errs[reading_frame]) {
@@ -516,9 +650,119 @@ public class AudioBitReader extends BitReader {
 		}
 
 		prev_acc = acc;
-		counter = (counter + 1) % 800;
+		counter = (counter + 1) % FRAME_PERIOD;
 	}
 
+	/**
+	 * @brief The internal signals of the demodulator which probes can observe.
+	 */
+	public static enum ProbeSignal {
+		/** Input sample */
+		RAW,
+		/** Subcarrier phase error, as fed to the PLL */
+		PLL_ERROR,
+		/** Recovered 1187.5 Hz clock, 1 or -1 */
+		CLOCK,
+		/** Subcarrier in baseband, in-phase component */
+		BASEBAND_I,
+		/** Subcarrier in baseband, quadrature component */
+		BASEBAND_Q,
+		/** Biphase symbol accumulator */
+		ACC,
+		/** Demodulated RDS stream (NRZ-M encoded), 0 or 1 */
+		DBIT,
+		/** Decoded RDS data stream, 1 or -1 */
+		SBIT,
+		/** Subcarrier frequency, in Hz */
+		SUBCARRIER_FREQ,
+		/** Clock phase offset, in radians */
+		CLOCK_OFFSET;
+	}
+	
+	/**
+	 * @brief Receives the internal signals of the demodulator.
+	 * 
+	 * Probes are called on the demodulator thread once for each block of input samples, and must
+	 * return quickly: the demodulator waits for them. Probes which do slow work (such as writing to
+	 * a network) should copy the signals they need and hand them over to a thread of their own.
+	 */
+	public static interface DspProbe {
+		/**
+		 * @brief Called with the signals of a block of samples.
+		 * 
+		 * @param buffer the signals, which are only valid during the call (the buffer is reused
+		 * for the next block)
+		 */
+		public void probe(ProbeBuffer buffer);
+	}
+	
+	/**
+	 * @brief The internal signals of the demodulator over a block of input samples.
+	 * 
+	 * Signals are sampled at the decimated rate, at which the PLL and clock recovery run. The
+	 * buffer is allocated once and reused for every block.
+	 */
+	public static class ProbeBuffer {
+		private final float[][] data;
+		private final double sampleRate;
+		private int length = 0;
+		private long firstSample = 0;
+		
+		ProbeBuffer(int capacity, double sampleRate) {
+			this.data = new float[ProbeSignal.values().length][capacity];
+			this.sampleRate = sampleRate;
+		}
+		
+		void start(long firstSample) {
+			this.firstSample = firstSample;
+			this.length = 0;
+		}
+		
+		void add(double raw, double pllError, double clock, double i, double q, double acc,
+				int dbit, int sbit, double fsc, double clockOffset) {
+			int n = length++;
+			data[0][n] = (float) raw;
+			data[1][n] = (float) pllError;
+			data[2][n] = (float) clock;
+			data[3][n] = (float) i;
+			data[4][n] = (float) q;
+			data[5][n] = (float) acc;
+			data[6][n] = dbit;
+			data[7][n] = sbit;
+			data[8][n] = (float) fsc;
+			data[9][n] = (float) clockOffset;
+		}
+		
+		/**
+		 * @brief Returns the values of a signal, of which the first {@link #getLength()} are valid.
+		 */
+		public float[] get(ProbeSignal signal) {
+			return data[signal.ordinal()];
+		}
+		
+		/**
+		 * @brief Returns the number of values in this block.
+		 */
+		public int getLength() {
+			return length;
+		}
+		
+		/**
+		 * @brief Returns the index of the first value of this block, counted at the probe sample
+		 * rate since the start of the stream.
+		 */
+		public long getFirstSample() {
+			return firstSample;
+		}
+		
+		/**
+		 * @brief Returns the rate at which signals are sampled, in Hz.
+		 */
+		public double getSampleRate() {
+			return sampleRate;
+		}
+	}
+	
 	private void calculateResampleRatio() {
 		/* Set up audio downsampling */
 		int gcd = MathUtil.gcd(sampleRate, outSampleRate);
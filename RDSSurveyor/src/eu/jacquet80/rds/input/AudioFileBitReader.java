@@ -25,6 +25,7 @@
 
 package eu.jacquet80.rds.input;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 
@@ -33,7 +34,7 @@ import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
-public class AudioFileBitReader extends BitReader {
+public class AudioFileBitReader extends BitReader implements Closeable {
 	//private int pos = 0; //, lastPos = 0;
 	//private final long frameLength;
 	private final AudioInputStream ais;
@@ -87,4 +88,11 @@ public class AudioFileBitReader extends BitReader {
 		return data > 0;
 	}
 
+	/**
+	 * @brief Closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		ais.close();
+	}
 }
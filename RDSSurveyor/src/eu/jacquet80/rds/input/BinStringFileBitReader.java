@@ -26,6 +26,7 @@
 package eu.jacquet80.rds.input;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
@@ -35,8 +36,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 
-public class BinStringFileBitReader extends BitReader {
+public class BinStringFileBitReader extends BitReader implements Closeable {
+	private final static int BUFLEN = 4096;
+	
 	private final InputStream isr;
+	private final byte[] buffer = new byte[BUFLEN];
 	
 	public BinStringFileBitReader(InputStream isr) {
 		this.isr = isr;
@@ -56,5 +60,30 @@ public class BinStringFileBitReader extends BitReader {
 			}
 		}
 	}
+	
+	@Override
+	public int readBits(long[] dst, int maxBits) throws IOException {
+		if(maxBits <= 0) return 0;
+		
+		int count = 0;
+		while(count == 0) {
+			// one character yields at most one bit
+			int n = isr.read(buffer, 0, Math.min(BUFLEN, maxBits));
+			if(n < 0) return -1;
+			
+			for(int i=0; i<n; i++) {
+				byte c = buffer[i];
+				if(c == '0' || c == '1') putBits(dst, count++, c - '0', 1);
+			}
+		}
+		return count;
+	}
 
+	/**
+	 * @brief Closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		isr.close();
+	}
 }
@@ -24,6 +24,7 @@
 */
 
 package eu.jacquet80.rds.input;
+import java.io.Closeable;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
@@ -32,8 +33,11 @@ import java.io.IOException;
 import java.io.InputStream;
 
 
-public class BinaryFileBitReader extends BitReader {
+public class BinaryFileBitReader extends BitReader implements Closeable {
+	private final static int BUFLEN = 4096;
+	
 	private final InputStream is;
+	private final byte[] buffer = new byte[BUFLEN];
 	private int oct;
 	private int octPtr;
 	
@@ -63,6 +67,36 @@ public class BinaryFileBitReader extends BitReader {
 		octPtr--;
 		return (oct&128) != 0;
 	}
+	
+	@Override
+	public int readBits(long[] dst, int maxBits) throws IOException {
+		int count = 0;
+		
+		// first return the bits left over from the latest call to getBit()
+		while(octPtr > 0 && count < maxBits) {
+			putBits(dst, count++, getBit() ? 1 : 0, 1);
+		}
+		
+		int nBytes = Math.min(BUFLEN, (maxBits - count) / 8);
+		if(nBytes == 0) {
+			return count > 0 ? count : super.readBits(dst, maxBits);
+		}
+		
+		int n = is.read(buffer, 0, nBytes);
+		if(n < 0) return count > 0 ? count : -1;
+		
+		for(int i=0; i<n; i++) {
+			putBits(dst, count, buffer[i] & 0xFF, 8);
+			count += 8;
+		}
+		return count;
+	}
 
-
+	/**
+	 * @brief Closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		is.close();
+	}
 }
@@ -0,0 +1,180 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.input;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Date;
+
+import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+import eu.jacquet80.rds.input.group.StationChangeEvent;
+import eu.jacquet80.rds.log.RDSTime;
+import eu.jacquet80.rds.log.RealTime;
+import eu.jacquet80.rds.log.SequentialTime;
+
+/**
+ * @brief Reads groups from a file in the binary format written by {@link BinaryGroupWriter}.
+ *
+ * Groups are delivered with the time stamps they were written with. A record cut short at the
+ * end of the file, as left behind by a program which was interrupted while logging, is taken
+ * as the end of the stream.
+ */
+public class BinaryGroupFileReader extends GroupReader implements Closeable {
+	private final InputStream in;
+	private final byte[] buffer = new byte[1 << 16];
+	private int pos = 0;
+	private int limit = 0;
+
+	private long lastSequential = 0;
+	private long lastReal = 0;
+
+	/**
+	 * @param in the stream to read, positioned at the start of the header
+	 * @throws IOException if the stream does not start with a header of a supported version
+	 */
+	public BinaryGroupFileReader(InputStream in) throws IOException {
+		this.in = in;
+		byte[] header = new byte[BinaryGroupWriter.HEADER_SIZE];
+		try {
+			for(int i=0; i<header.length; i++) header[i] = readByte();
+		} catch(EndOfStream e) {
+			throw new IOException("Binary group file too short");
+		}
+		if(! isHeader(header)) throw new IOException("Not a binary group file");
+		if(header[4] != BinaryGroupWriter.VERSION) {
+			throw new IOException("Unsupported binary group file version " + header[4]);
+		}
+	}
+
+	public BinaryGroupFileReader(File file) throws IOException {
+		this(new FileInputStream(file));
+	}
+
+	/**
+	 * @brief Tells whether the given bytes start with the magic of a binary group file.
+	 */
+	public static boolean isHeader(byte[] header) {
+		return header.length >= BinaryGroupWriter.MAGIC.length &&
+				Arrays.equals(Arrays.copyOf(header, BinaryGroupWriter.MAGIC.length), BinaryGroupWriter.MAGIC);
+	}
+
+	@Override
+	public GroupReaderEvent getGroup() throws IOException, EndOfStream {
+		PackedGroup group = new PackedGroup();
+		GroupReaderEvent event = getGroup(group);
+		return group.present ? group.toEvent() : event;
+	}
+
+	@Override
+	public GroupReaderEvent getGroup(PackedGroup group) throws IOException, EndOfStream {
+		int tag = readByte() & 0xFF;
+		switch(tag & BinaryGroupWriter.RECORD_MASK) {
+		case BinaryGroupWriter.RECORD_GROUP:
+			int masks = readByte() & 0xFF;
+			long time = readTime(tag);
+			long blocks = 0;
+			for(int i=0; i<8; i++) blocks = (blocks << 8) | (readByte() & 0xFF);
+			group.blocks = blocks;
+			group.okMask = masks & 0xF;
+			group.correctedMask = masks >> 4;
+			group.ignored = (tag & BinaryGroupWriter.FLAG_IGNORED) != 0;
+			group.present = true;
+			if((tag & BinaryGroupWriter.TIME_MASK) == BinaryGroupWriter.TIME_REAL) group.setRealTime(time);
+			else group.setSequentialTime((int) time);
+			return null;
+
+		case BinaryGroupWriter.RECORD_FREQUENCY:
+			group.present = false;
+			RDSTime freqTime = toTime(tag, readTime(tag));
+			return new FrequencyChangeEvent(freqTime, (int) readVarLong());
+
+		case BinaryGroupWriter.RECORD_STATION:
+			group.present = false;
+			return new StationChangeEvent(toTime(tag, readTime(tag)));
+
+		default:
+			throw new IOException("Unknown record type in binary group file: " + tag);
+		}
+	}
+
+	private long readTime(int tag) throws IOException, EndOfStream {
+		switch(tag & BinaryGroupWriter.TIME_MASK) {
+		case BinaryGroupWriter.TIME_SEQUENTIAL:
+			lastSequential += readVarLong();
+			return lastSequential;
+		case BinaryGroupWriter.TIME_REAL:
+			lastReal += readVarLong();
+			return lastReal;
+		default:
+			return 0;
+		}
+	}
+
+	private static RDSTime toTime(int tag, long value) {
+		switch(tag & BinaryGroupWriter.TIME_MASK) {
+		case BinaryGroupWriter.TIME_SEQUENTIAL: return new SequentialTime((int) value);
+		case BinaryGroupWriter.TIME_REAL: return new RealTime(new Date(value));
+		default: return null;
+		}
+	}
+
+	private long readVarLong() throws IOException, EndOfStream {
+		long v = 0;
+		for(int shift=0; ; shift+=7) {
+			if(shift > 63) throw new IOException("Malformed number in binary group file");
+			int b = readByte();
+			v |= (long) (b & 0x7F) << shift;
+			if((b & 0x80) == 0) break;
+		}
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private byte readByte() throws IOException, EndOfStream {
+		if(pos == limit) {
+			limit = in.read(buffer);
+			pos = 0;
+			if(limit <= 0) {
+				limit = 0;
+				in.close();
+				throw new EndOfStream();
+			}
+		}
+		return buffer[pos++];
+	}
+
+	/**
+	 * @brief Closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
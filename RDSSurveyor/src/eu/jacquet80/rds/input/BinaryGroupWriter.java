@@ -0,0 +1,169 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.input;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+import eu.jacquet80.rds.input.group.StationChangeEvent;
+import eu.jacquet80.rds.log.RDSTime;
+import eu.jacquet80.rds.log.RealTime;
+import eu.jacquet80.rds.log.SequentialTime;
+
+/**
+ * @brief Writes groups in a compact binary format, read by {@link BinaryGroupFileReader}.
+ *
+ * The file starts with an 8-byte header: the magic {@code RDSG}, the format version and three
+ * reserved bytes. It is followed by records, each of which starts with a tag byte:
+ * <ul>
+ * <li>bits 0-1: record type, {@link #RECORD_GROUP}, {@link #RECORD_FREQUENCY} or
+ * {@link #RECORD_STATION},</li>
+ * <li>bits 2-3: time stamp kind, {@link #TIME_NONE}, {@link #TIME_SEQUENTIAL} or
+ * {@link #TIME_REAL},</li>
+ * <li>bit 4: the {@code ignored} flag of a group.</li>
+ * </ul>
+ * A group record continues with a mask byte (the blocks received correctly in bits 0-3, the
+ * blocks corrected in bits 4-7), the time stamp and the four blocks packed into 8 bytes, most
+ * significant first. A frequency record continues with the time stamp and the frequency, a
+ * station change record with the time stamp only.
+ *
+ * Time stamps are written as the difference to the previous time stamp of the same kind, and
+ * numbers as zigzag-encoded variable-length integers of 7 bits per byte, least significant
+ * first. A group thus usually takes 11 bytes, against about 25 (or 45 with a date) in the
+ * hexadecimal format.
+ */
+public class BinaryGroupWriter implements GroupLogWriter {
+	static final byte[] MAGIC = {'R', 'D', 'S', 'G'};
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 8;
+
+	static final int RECORD_GROUP = 0;
+	static final int RECORD_FREQUENCY = 1;
+	static final int RECORD_STATION = 2;
+	static final int RECORD_MASK = 3;
+
+	static final int TIME_NONE = 0;
+	static final int TIME_SEQUENTIAL = 1 << 2;
+	static final int TIME_REAL = 2 << 2;
+	static final int TIME_MASK = 3 << 2;
+
+	static final int FLAG_IGNORED = 1 << 4;
+
+	private final OutputStream out;
+
+	/** Tag, mask, time stamp of up to 10 bytes and blocks */
+	private final byte[] record = new byte[20];
+	private int pos;
+
+	private long lastSequential = 0;
+	private long lastReal = 0;
+
+	public BinaryGroupWriter(OutputStream out) throws IOException {
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		byte[] header = new byte[HEADER_SIZE];
+		System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+		header[4] = VERSION;
+		this.out.write(header);
+	}
+
+	public BinaryGroupWriter(File file) throws IOException {
+		this(new FileOutputStream(file));
+	}
+
+	@Override
+	public void writeGroup(PackedGroup group) throws IOException {
+		int tag = RECORD_GROUP | (group.isRealTime() ? TIME_REAL : TIME_SEQUENTIAL);
+		if(group.ignored) tag |= FLAG_IGNORED;
+		record[0] = (byte) tag;
+		record[1] = (byte) ((group.okMask & 0xF) | (group.correctedMask << 4));
+		pos = 2;
+		putTime(tag, group.getTimeValue());
+		long blocks = group.blocks;
+		for(int shift=56; shift>=0; shift-=8) record[pos++] = (byte) (blocks >>> shift);
+		out.write(record, 0, pos);
+	}
+
+	@Override
+	public void writeEvent(GroupReaderEvent event) throws IOException {
+		int type;
+		if(event instanceof FrequencyChangeEvent) type = RECORD_FREQUENCY;
+		else if(event instanceof StationChangeEvent) type = RECORD_STATION;
+		else return;
+
+		RDSTime time = event.getTime();
+		int tag = type;
+		long value = 0;
+		if(time instanceof RealTime) {
+			tag |= TIME_REAL;
+			value = time.getRealTime(null, null).getTime();
+		} else if(time instanceof SequentialTime) {
+			tag |= TIME_SEQUENTIAL;
+			value = ((SequentialTime) time).getGroupTime();
+		}
+		record[0] = (byte) tag;
+		pos = 1;
+		putTime(tag, value);
+		if(type == RECORD_FREQUENCY) putVarLong(((FrequencyChangeEvent) event).frequency);
+		out.write(record, 0, pos);
+	}
+
+	private void putTime(int tag, long value) {
+		switch(tag & TIME_MASK) {
+		case TIME_SEQUENTIAL:
+			putVarLong(value - lastSequential);
+			lastSequential = value;
+			break;
+		case TIME_REAL:
+			putVarLong(value - lastReal);
+			lastReal = value;
+			break;
+		}
+	}
+
+	private void putVarLong(long value) {
+		long v = (value << 1) ^ (value >> 63);
+		while((v & ~0x7FL) != 0) {
+			record[pos++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		record[pos++] = (byte) v;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -24,9 +24,121 @@
 */
 
 package eu.jacquet80.rds.input;
+import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
 
 
 public abstract class BitReader extends RDSReader {
+	/**
+	 * The highest bit confidence, see {@link #readBits(long[], byte[], int)}. Readers which have
+	 * no soft information report all bits with this confidence.
+	 */
+	public static final int MAX_CONFIDENCE = 255;
+	
+	/**
+	 * Reads a single bit.
+	 * 
+	 * @return the bit
+	 * @throws EOFException if the end of the stream has been reached
+	 * @throws IOException
+	 */
 	public abstract boolean getBit() throws IOException;
+	
+	/**
+	 * Reads several bits at once. Bits are packed in 64-bit words, the first bit in the most
+	 * significant bit of {@code dst[0]}. Words are written only as far as bits are read, and the
+	 * bits after the last bit read are unspecified.
+	 * 
+	 * This method blocks until at least one bit is available, but it may return fewer bits
+	 * than requested. The default implementation reads a single bit with {@link #getBit()};
+	 * readers which have more bits at hand should override it.
+	 * 
+	 * @param dst the array in which to store the bits
+	 * @param maxBits the maximum number of bits to read, at most {@code 64 * dst.length}
+	 * @return the number of bits read, or -1 if the end of the stream has been reached
+	 * @throws IOException
+	 */
+	public int readBits(long[] dst, int maxBits) throws IOException {
+		if(maxBits <= 0) return 0;
+		boolean bit;
+		try {
+			bit = getBit();
+		} catch(EOFException e) {
+			return -1;
+		}
+		dst[0] = bit ? Long.MIN_VALUE : 0;
+		return 1;
+	}
+	
+	/**
+	 * Reads several bits at once, along with the confidence of each bit, as by
+	 * {@link #readBits(long[], int)}.
+	 * 
+	 * The confidence of bit {@code i} is stored in {@code confidence[i]}, as an unsigned value from
+	 * 0 to {@link #MAX_CONFIDENCE}. Demodulators which make soft decisions scale it so that a bit
+	 * of average quality has a confidence of about 128. The default implementation reports all
+	 * bits with the highest confidence.
+	 * 
+	 * @param dst the array in which to store the bits
+	 * @param confidence the array in which to store the confidence of the bits, at least
+	 * {@code maxBits} long
+	 * @param maxBits the maximum number of bits to read, at most {@code 64 * dst.length}
+	 * @return the number of bits read, or -1 if the end of the stream has been reached
+	 * @throws IOException
+	 */
+	public int readBits(long[] dst, byte[] confidence, int maxBits) throws IOException {
+		int n = readBits(dst, maxBits);
+		if(n > 0) Arrays.fill(confidence, 0, n, (byte) MAX_CONFIDENCE);
+		return n;
+	}
+	
+	/**
+	 * Whether {@link #readBits(long[], byte[], int)} reports actual bit confidence. If not, there
+	 * is no point in calling it.
+	 */
+	public boolean hasBitConfidence() {
+		return false;
+	}
+	
+	/**
+	 * Retrieves bits from a packed bit array, as filled by {@link #readBits(long[], int)}.
+	 * 
+	 * @param src the packed bit array
+	 * @param pos the position of the first bit to retrieve
+	 * @param n the number of bits to retrieve, between 1 and 64
+	 * @return the bits, right-aligned
+	 */
+	public static long getBits(long[] src, int pos, int n) {
+		int word = pos >>> 6;
+		int used = pos & 63;
+		int avail = 64 - used;
+		long res = (src[word] << used) >>> (64 - n);
+		if(n > avail) {
+			res |= src[word + 1] >>> (64 - (n - avail));
+		}
+		return res;
+	}
+	
+	/**
+	 * Stores bits in a packed bit array, as used by {@link #readBits(long[], int)}. A word is
+	 * cleared when its first bit is written.
+	 * 
+	 * @param dst the packed bit array
+	 * @param pos the position of the first bit to write
+	 * @param value the bits to write, right-aligned; bits above {@code n} must be zero
+	 * @param n the number of bits to write, between 1 and 64
+	 */
+	public static void putBits(long[] dst, int pos, long value, int n) {
+		int word = pos >>> 6;
+		int used = pos & 63;
+		if(used == 0) dst[word] = 0;
+		int free = 64 - used;
+		if(n <= free) {
+			dst[word] |= value << (free - n);
+		} else {
+			dst[word] |= value >>> (n - free);
+			dst[word + 1] = value << (64 - (n - free));
+		}
+	}
 }
@@ -0,0 +1,274 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.input;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @brief A bounded queue of bits, for exactly one producer thread and one consumer thread.
+ *
+ * Bits are packed into {@code long} words, most significant bit first, as in
+ * {@link BitReader#readBits(long[], int)}. The producer appends bits with {@link #put(boolean)},
+ * which are made visible to the consumer in batches by {@link #publish()}. No lock is taken:
+ * threads only wait (by parking) when the queue is empty (consumer) or full (producer).
+ *
+ * Each bit can carry a confidence value, as returned by
+ * {@link BitReader#readBits(long[], byte[], int)}.
+ *
+ * The queue keeps track of its fill level and of the number of times the producer found it
+ * full, which indicates that the consumer does not keep up.
+ */
+public class BitRing {
+	/** Ring buffer, its length is a power of two */
+	private final long[] words;
+
+	/** Confidence of each bit, at the same position as the bit */
+	private final byte[] confidence;
+
+	/** Capacity in bits, a power of two */
+	private final int capacity;
+
+	/** Number of bits published by the producer since the beginning */
+	private volatile long writePos = 0;
+
+	/** Number of bits consumed since the beginning */
+	private volatile long readPos = 0;
+
+	/** Whether the producer has stopped */
+	private volatile boolean closed = false;
+
+	/** Whether the consumer has stopped */
+	private volatile boolean abandoned = false;
+
+	/** Threads waiting for bits (consumer) or for space (producer), if any */
+	private volatile Thread waitingConsumer = null;
+	private volatile Thread waitingProducer = null;
+
+	// producer-side state
+	private long pendingPos = 0;
+	private volatile long overruns = 0;
+	private volatile int maxDepth = 0;
+
+	/** How long a waiting thread parks before checking again, in nanoseconds */
+	private static final long PARK_NANOS = 10000000;
+
+	/**
+	 * Creates a new queue.
+	 *
+	 * @param capacity the minimum capacity, in bits (rounded up to a power of two, and at least 64)
+	 */
+	public BitRing(int capacity) {
+		int c = 64;
+		while(c < capacity) c <<= 1;
+		this.capacity = c;
+		this.words = new long[c / 64];
+		this.confidence = new byte[c];
+	}
+
+	/**
+	 * @brief Appends a bit, with the highest confidence. To be called by the producer thread only.
+	 */
+	public void put(boolean bit) {
+		put(bit, BitReader.MAX_CONFIDENCE);
+	}
+
+	/**
+	 * @brief Appends a bit. To be called by the producer thread only.
+	 *
+	 * The bit is not visible to the consumer until {@link #publish()} is called. If the queue is
+	 * full, pending bits are published and the call waits until the consumer has made room, unless
+	 * the consumer has abandoned the queue.
+	 *
+	 * @param bit the bit
+	 * @param conf the confidence of the bit, from 0 to {@link BitReader#MAX_CONFIDENCE}
+	 */
+	public void put(boolean bit, int conf) {
+		if(abandoned) return;
+		if(pendingPos - readPos >= capacity) {
+			overruns++;
+			publish();
+			waitingProducer = Thread.currentThread();
+			while(pendingPos - readPos >= capacity && !abandoned) {
+				LockSupport.parkNanos(this, PARK_NANOS);
+			}
+			waitingProducer = null;
+		}
+
+		int p = (int) pendingPos & (capacity - 1);
+		long mask = 1L << (63 - (p & 63));
+		if(bit) words[p >>> 6] |= mask;
+		else words[p >>> 6] &= ~mask;
+		confidence[p] = (byte) conf;
+		pendingPos++;
+	}
+
+	/**
+	 * @brief Makes all bits appended so far visible to the consumer. To be called by the
+	 * producer thread only.
+	 */
+	public void publish() {
+		if(pendingPos == writePos) return;
+		writePos = pendingPos;
+		int depth = (int) (pendingPos - readPos);
+		if(depth > maxDepth) maxDepth = depth;
+		Thread t = waitingConsumer;
+		if(t != null) LockSupport.unpark(t);
+	}
+
+	/**
+	 * @brief Publishes pending bits and signals the end of the stream. To be called by the
+	 * producer thread only.
+	 */
+	public void close() {
+		publish();
+		closed = true;
+		Thread t = waitingConsumer;
+		if(t != null) LockSupport.unpark(t);
+	}
+
+	/**
+	 * @brief Signals that no more bits will be taken. To be called by the consumer thread only.
+	 *
+	 * The producer no longer waits for room, and the bits it appends from then on are dropped.
+	 */
+	public void abandon() {
+		abandoned = true;
+		Thread t = waitingProducer;
+		if(t != null) LockSupport.unpark(t);
+	}
+
+	/**
+	 * Waits until at least one bit is available.
+	 *
+	 * @return the number of bits available, or 0 if the queue is empty and closed
+	 */
+	private int awaitBits() {
+		int n = (int) (writePos - readPos);
+		if(n > 0) return n;
+		waitingConsumer = Thread.currentThread();
+		try {
+			while(true) {
+				// read closed first: bits published before closing are then visible below
+				boolean wasClosed = closed;
+				n = (int) (writePos - readPos);
+				if(n > 0 || wasClosed) return n;
+				LockSupport.parkNanos(this, PARK_NANOS);
+			}
+		} finally {
+			waitingConsumer = null;
+		}
+	}
+
+	/**
+	 * Signals the producer after bits have been consumed, in case it is waiting for space.
+	 */
+	private void consumed(long newReadPos) {
+		readPos = newReadPos;
+		Thread t = waitingProducer;
+		if(t != null) LockSupport.unpark(t);
+	}
+
+	/**
+	 * @brief Takes one bit. To be called by the consumer thread only.
+	 *
+	 * Blocks until a bit is available.
+	 *
+	 * @return the bit (0 or 1), or -1 if the queue has been closed and all bits have been taken
+	 */
+	public int take() {
+		if(awaitBits() == 0) return -1;
+		long pos = readPos;
+		int p = (int) pos & (capacity - 1);
+		int bit = (int) (words[p >>> 6] >>> (63 - (p & 63))) & 1;
+		consumed(pos + 1);
+		return bit;
+	}
+
+	/**
+	 * @brief Takes up to {@code maxBits} bits. To be called by the consumer thread only.
+	 *
+	 * Blocks until at least one bit is available, and then takes all available bits, up to
+	 * {@code maxBits}. Bits are stored in {@code dst} as by {@link BitReader#readBits(long[], int)}.
+	 *
+	 * @return the number of bits taken, or -1 if the queue has been closed and all bits have been
+	 * taken
+	 */
+	public int read(long[] dst, int maxBits) {
+		return read(dst, null, maxBits);
+	}
+
+	/**
+	 * @brief Takes up to {@code maxBits} bits, along with their confidence. To be called by the
+	 * consumer thread only.
+	 *
+	 * Works as {@link #read(long[], int)}, and also stores the confidence of the bits in
+	 * {@code conf} (unless it is {@code null}), as by {@link BitReader#readBits(long[], byte[], int)}.
+	 */
+	public int read(long[] dst, byte[] conf, int maxBits) {
+		int avail = awaitBits();
+		if(avail == 0) return -1;
+		int n = Math.min(avail, maxBits);
+		long pos = readPos;
+		int done = 0;
+		while(done < n) {
+			int p = (int) (pos + done) & (capacity - 1);
+			// do not read across the end of the ring
+			int chunk = Math.min(Math.min(64, n - done), capacity - p);
+			BitReader.putBits(dst, done, BitReader.getBits(words, p, chunk), chunk);
+			if(conf != null) System.arraycopy(confidence, p, conf, done, chunk);
+			done += chunk;
+		}
+		consumed(pos + n);
+		return n;
+	}
+
+	/**
+	 * @brief Returns the number of bits currently published and not yet consumed.
+	 */
+	public int getDepth() {
+		return (int) (writePos - readPos);
+	}
+
+	/**
+	 * @brief Returns the highest number of bits that were queued at the same time.
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @brief Returns how many times the producer found the queue full and had to wait for the
+	 * consumer.
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * @brief Returns the capacity of the queue, in bits.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.input;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import eu.jacquet80.rds.input.AudioBitReader.DspProbe;
+import eu.jacquet80.rds.input.AudioBitReader.ProbeBuffer;
+import eu.jacquet80.rds.input.AudioBitReader.ProbeSignal;
+
+/**
+ * @brief A probe which writes internal signals of an {@link AudioBitReader} to a CSV file.
+ *
+ * The first column is the time in seconds since the start of the stream, followed by one column
+ * per signal. Only every {@code n}th value is written, which keeps files of long recordings
+ * manageable.
+ *
+ * The demodulator thread only copies the values into a bounded ring of floats, thus it neither
+ * formats text nor waits for the disk. A thread of the probe formats and writes them. If the
+ * ring is full, new values are discarded rather than slowing the demodulator down, and counted
+ * (see {@link #getDropped()}). Write errors are reported by {@link #close()}.
+ *
+ * Usage: {@code reader.addProbe(new CsvDspProbe(file, 16, ProbeSignal.SUBCARRIER_FREQ, ProbeSignal.PLL_ERROR))},
+ * then {@link #close()} and {@code reader.removeProbe(probe)} once done.
+ */
+public class CsvDspProbe implements DspProbe {
+	/** Number of rows the ring holds */
+	private static final int CAPACITY = 1 << 16;
+
+	/** Number of rows the writer thread takes from the ring at once */
+	private static final int BATCH = 1024;
+
+	private final Writer out;
+	private final ProbeSignal[] signals;
+	private final int interval;
+
+	/** Values of the rows in the ring, {@code signals.length} per row */
+	private final float[] values;
+	/** Index of the row at the probe sample rate, for each row in the ring */
+	private final long[] samples;
+	private int head = 0;
+	private int count = 0;
+	private double sampleRate = 1;
+
+	/** The signals of the block being probed, to avoid looking them up for each row */
+	private final float[][] columns;
+
+	private long dropped = 0;
+	private boolean closing = false;
+	private IOException error = null;
+
+	private final Thread thread;
+
+	/**
+	 * @param file the file to write
+	 * @param interval write every {@code interval}th value
+	 * @param signals the signals to write, all signals if none are given
+	 */
+	public CsvDspProbe(File file, int interval, ProbeSignal... signals) throws IOException {
+		this.interval = Math.max(1, interval);
+		this.signals = signals.length > 0 ? signals : ProbeSignal.values();
+		this.values = new float[CAPACITY * this.signals.length];
+		this.samples = new long[CAPACITY];
+		this.columns = new float[this.signals.length][];
+
+		this.out = new BufferedWriter(new FileWriter(file), 1 << 16);
+		StringBuilder line = new StringBuilder("t");
+		for(ProbeSignal s : this.signals) line.append(',').append(s.name().toLowerCase());
+		line.append('\n');
+		try {
+			out.write(line.toString());
+		} catch(IOException e) {
+			out.close();
+			throw e;
+		}
+
+		thread = new Thread("DSP probe writer") {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public synchronized void probe(ProbeBuffer buffer) {
+		if(closing || error != null) return;
+		sampleRate = buffer.getSampleRate();
+		for(int j=0; j<signals.length; j++) columns[j] = buffer.get(signals[j]);
+
+		long first = buffer.getFirstSample();
+		// the first value of the block which falls on the interval
+		int k = (int) ((interval - first % interval) % interval);
+		int added = 0;
+		for(; k < buffer.getLength(); k += interval) {
+			if(count == CAPACITY) {
+				dropped++;
+				continue;
+			}
+			int tail = (head + count) % CAPACITY;
+			samples[tail] = first + k;
+			for(int j=0, v=tail*signals.length; j<signals.length; j++, v++) values[v] = columns[j][k];
+			count++;
+			added++;
+		}
+		if(added > 0) notifyAll();
+	}
+
+	/**
+	 * @brief Returns the number of values discarded because the writer thread fell behind.
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @brief Writes the remaining values, closes the file and stops the writer thread.
+	 *
+	 * Blocks the demodulator delivers afterwards are ignored, thus the probe may be closed before
+	 * it is removed.
+	 *
+	 * @throws IOException if writing failed at any time
+	 */
+	public void close() throws IOException {
+		synchronized(this) {
+			closing = true;
+			notifyAll();
+		}
+		try {
+			thread.join();
+		} catch(InterruptedException e) {
+			throw new IOException("Interrupted while closing the probe");
+		}
+		synchronized(this) {
+			if(error != null) throw error;
+		}
+	}
+
+	private void writeLoop() {
+		float[] batch = new float[BATCH * signals.length];
+		long[] batchSamples = new long[BATCH];
+		StringBuilder line = new StringBuilder();
+
+		try {
+			while(true) {
+				int n;
+				double rate;
+				synchronized(this) {
+					while(count == 0 && !closing) wait();
+					if(count == 0) break;
+					n = Math.min(count, BATCH);
+					for(int r=0; r<n; r++) {
+						int row = (head + r) % CAPACITY;
+						batchSamples[r] = samples[row];
+						System.arraycopy(values, row * signals.length, batch, r * signals.length, signals.length);
+					}
+					head = (head + n) % CAPACITY;
+					count -= n;
+					rate = sampleRate;
+				}
+
+				for(int r=0, v=0; r<n; r++) {
+					line.setLength(0);
+					line.append(batchSamples[r] / rate);
+					for(int j=0; j<signals.length; j++, v++) line.append(',').append(batch[v]);
+					line.append('\n');
+					out.append(line);
+				}
+				// keep the file up to date whenever the writer catches up
+				if(n < BATCH) out.flush();
+			}
+			out.close();
+		} catch(IOException e) {
+			fail(e);
+		} catch(InterruptedException e) {
+			fail(new IOException("DSP probe writer interrupted"));
+		}
+	}
+
+	private synchronized void fail(IOException e) {
+		// do not disturb the demodulator, report on close
+		error = e;
+		count = 0;
+		try {
+			out.close();
+		} catch(IOException e2) {
+			// report the first error
+		}
+	}
+}
@@ -1,12 +1,14 @@
 package eu.jacquet80.rds.input;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.net.URL;
 import java.util.regex.Pattern;
 
@@ -14,16 +16,28 @@ import eu.jacquet80.rds.core.BitStreamSynchronizer;
 
 public class FileFormatGuesser {
 	private static final int GUESS_BUFFER_SIZE = 40;
+	/** Size from which hex group files are parsed by a {@link MappedHexFileGroupReader} */
+	private static final long MAPPED_MIN_SIZE = 1 << 20;
 	private static final Pattern HEXGROUP_PATTERN = 
 			Pattern.compile("([0-9A-F]{4}|----)\\s+([0-9A-F]{4}|----)\\s+([0-9A-F]{4}|----)\\s+([0-9A-F]{4}|----)");
 	private static final Pattern BINSTR_PATTERN =
 			Pattern.compile("[01]{40}");
 	
-	private static GroupReader createReader(InputStream is) throws IOException {
+	private static GroupReader createReader(InputStream is, PrintStream console) throws IOException {
 		char[] guessBuffer = new char[GUESS_BUFFER_SIZE];
 		BufferedInputStream bis = new BufferedInputStream(is);
 		InputStreamReader isr = new InputStreamReader(bis, "ASCII");
 		bis.mark(GUESS_BUFFER_SIZE+1);
+		
+		byte[] magic = new byte[4];
+		int magicCount = bis.read(magic);
+		bis.reset();
+		if(magicCount == magic.length && BinaryGroupFileReader.isHeader(magic)) {
+			// binary group file
+			if(console != null) console.println("Detected a binary group file.");
+			return new BinaryGroupFileReader(bis);
+		}
+		
 		int guessCharCount = isr.read(guessBuffer);
 		
 		if(guessCharCount < 1) {
@@ -32,38 +46,110 @@ public class FileFormatGuesser {
 
 		String guessString = new String(guessBuffer, 0, guessCharCount);
 		
-		if(guessString.startsWith("% RDS hexgroups") ||
-				guessString.startsWith("<recorder=\"RDS Spy\"") ||
-				HEXGROUP_PATTERN.matcher(guessString).matches()) {
+		if(isHexGroups(guessString)) {
 			// grouphexfile
-			System.out.println("Detected a group-level file.");
+			if(console != null) console.println("Detected a group-level file.");
 			bis.reset();
-			return new HexFileGroupReader(new BufferedReader(new InputStreamReader(bis)));
+			return new HexFileGroupReader(bis);
 		} else if (BINSTR_PATTERN.matcher(guessString).matches()) {
 			// binstrfile
-			System.out.println("Detected a binary string file.");
+			if(console != null) console.println("Detected a binary string file.");
 			bis.reset();
-			return new BitStreamSynchronizer(System.out, new BinStringFileBitReader(bis));
+			return new BitStreamSynchronizer(console, new BinStringFileBitReader(bis));
 		} else if ((guessString.length() >= 2) && (guessString.codePointAt(0) == 0xfffd) && (guessString.codePointAt(1) == 0x6)) {
 			// syncbinfile
-			System.out.println("Detected a synchronized binary file.");
+			if(console != null) console.println("Detected a synchronized binary file.");
 			bis.reset();
-			return new BitStreamSynchronizer(System.out, new SyncBinaryFileBitReader(bis));
+			return new BitStreamSynchronizer(console, new SyncBinaryFileBitReader(bis));
 		} else {
 			// binfile
-			System.out.println("Detected a binary file.");
+			if(console != null) console.println("Detected a binary file.");
 			bis.reset();
-			return new BitStreamSynchronizer(System.out, new BinaryFileBitReader(bis));
+			return new BitStreamSynchronizer(console, new BinaryFileBitReader(bis));
 		}
 		
 		//throw new IOException("Could not identify the file format");
 	}
 	
 	public static GroupReader createReader(URL url) throws IOException {
-		return createReader(url.openStream());
+		return createReader(url.openStream(), System.out);
 	}
 	
 	public static GroupReader createReader(File file) throws IOException {
-		return createReader(new FileInputStream(file));
+		return createReader(file, System.out, 0);
+	}
+	
+	/**
+	 * @brief Creates a reader for a file, whose format is guessed from its contents.
+	 * 
+	 * In addition to the formats detected in streams, WAV files are recognized: mono files are
+	 * taken as MPX recordings, others as data/clock recordings. Large hex group files are parsed
+	 * in chunks on several threads.
+	 * 
+	 * @param file the file
+	 * @param console the console on which to report the format and the synchronization, or
+	 * {@code null}
+	 * @param threads the number of threads on which to decode MPX recordings and to parse large
+	 * hex group files, 0 for all processors
+	 */
+	public static GroupReader createReader(File file, PrintStream console, int threads) throws IOException {
+		if(isWaveFile(file)) {
+			try {
+				GroupReader reader = new MpxFileGroupReader(console, file, 0, threads,
+						MpxFileGroupReader.DEFAULT_CHUNK_SECONDS);
+				if(console != null) console.println("Detected an MPX file.");
+				return reader;
+			} catch(IOException e) {
+				if(console != null) console.println("Detected an audio file.");
+				return new BitStreamSynchronizer(console, new AudioFileBitReader(file));
+			}
+		}
+		if(file.length() >= MAPPED_MIN_SIZE && isHexGroups(readStart(file, GUESS_BUFFER_SIZE))) {
+			if(console != null) console.println("Detected a group-level file.");
+			return new MappedHexFileGroupReader(file, threads, MappedHexFileGroupReader.DEFAULT_CHUNK_BYTES);
+		}
+		FileInputStream in = new FileInputStream(file);
+		try {
+			return createReader(in, console);
+		} catch(IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+	
+	private static boolean isHexGroups(String guessString) {
+		return guessString.startsWith("% RDS hexgroups") ||
+				guessString.startsWith("<recorder=\"RDS Spy\"") ||
+				HEXGROUP_PATTERN.matcher(guessString).matches();
+	}
+	
+	/**
+	 * Returns up to {@code length} bytes from the start of a file, as ASCII characters.
+	 */
+	private static String readStart(File file, int length) throws IOException {
+		byte[] header = new byte[length];
+		int n = 0;
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int r;
+			while(n < length && (r = in.read(header, n, length - n)) >= 0) n += r;
+		} finally {
+			in.close();
+		}
+		return new String(header, 0, n, "ASCII");
+	}
+	
+	private static boolean isWaveFile(File file) throws IOException {
+		byte[] header = new byte[12];
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			in.readFully(header);
+		} catch(EOFException e) {
+			return false;
+		} finally {
+			in.close();
+		}
+		String s = new String(header, "ASCII");
+		return s.startsWith("RIFF") && s.endsWith("WAVE");
 	}
 }
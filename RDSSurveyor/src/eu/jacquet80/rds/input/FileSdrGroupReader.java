@@ -0,0 +1,129 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.input;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * @brief An {@link SdrGroupReader} which takes its samples from a recorded MPX file instead of
+ * the native tuner driver.
+ *
+ * The file holds raw 16-bit little-endian mono samples at 250 kHz, which is what the native
+ * driver delivers. A feeder thread plays the part of the driver's output thread: it copies the
+ * samples into the sample ring of the reader, either as fast as the demodulator consumes them
+ * or paced to real time. This allows testing and benchmarking the SDR input path without any
+ * hardware.
+ *
+ * Frequency changes are accepted and reported as if the tuner had switched, but the samples are
+ * the same for all frequencies. The end of the file is reported as end of stream.
+ */
+public class FileSdrGroupReader extends SdrGroupReader {
+	/** Number of bytes the feeder copies at once (the native driver writes blocks of similar size) */
+	private static final int BLOCK = 16384;
+
+	private final File file;
+	private final boolean realTime;
+
+	/**
+	 * @param console the console for synchronizer output, or {@code null}
+	 * @param file the MPX file
+	 * @param realTime whether to feed samples at the rate at which the tuner would deliver them,
+	 * rather than as fast as possible
+	 */
+	public FileSdrGroupReader(PrintStream console, File file, boolean realTime) throws IOException {
+		super(console);
+		this.file = file;
+		this.realTime = realTime;
+		if(!file.canRead()) throw new IOException("Cannot read " + file);
+		setFrequency(87500);
+		open();
+	}
+
+	@Override
+	protected boolean open() {
+		new Thread("SDR file feeder") {
+			@Override
+			public void run() {
+				try {
+					FileInputStream fis = new FileInputStream(file);
+					try {
+						feed(fis.getChannel());
+					} finally {
+						fis.close();
+					}
+				} catch(IOException e) {
+					System.err.println("FileSdrGroupReader: " + e);
+				}
+				sampleRing.endOfStream();
+			}
+		}.start();
+		return true;
+	}
+
+	private void feed(FileChannel channel) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocateDirect(BLOCK);
+		long start = System.nanoTime();
+		long bytes = 0;
+		while(channel.read(buf) >= 0) {
+			buf.flip();
+			bytes += buf.remaining();
+			if(sampleRing.write(buf) < 0) return;
+			buf.clear();
+
+			if(realTime) {
+				long due = start + bytes * 500000000L / sampleRate;
+				long wait = due - System.nanoTime();
+				if(wait > 0) {
+					try {
+						Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+					} catch(InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public int setFrequency(int frequency) {
+		onFrequencyChanged(frequency);
+		return frequency;
+	}
+
+	@Override
+	public boolean seek(boolean up) {
+		tune(up);
+		return true;
+	}
+
+	@Override
+	public String getDeviceName() {
+		return "File: " + file.getName();
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.input;
+
+/**
+ * @brief Demodulates one FM channel from IQ samples into an MPX signal.
+ *
+ * The input consists of 8-bit unsigned IQ samples, as recorded by {@code rtl_sdr}. The channel
+ * is shifted to baseband by an oscillator (unless it is at the center of the recording), low-pass
+ * filtered and decimated to an MPX sample rate of about 240 kHz, and then FM-demodulated by a
+ * polar discriminator. The output consists of 16-bit MPX samples, as expected by
+ * {@link AudioBitReader}, with full deviation (75 kHz) at about 60% of full scale. There is no
+ * de-emphasis, which would remove the RDS subcarrier.
+ *
+ * Samples are processed in blocks of any size, the state of filters being kept between blocks.
+ * No objects are allocated once the demodulator has been created.
+ */
+public class FmDemodulator {
+	/** The MPX sample rate we aim for */
+	private static final int TARGET_RATE = 240000;
+
+	/** Number of taps of the decimation filter, per output sample */
+	private static final int FIR_TAPS_PER_PHASE = 8;
+
+	/** Oscillator table size, as a power of two */
+	private static final int NCO_BITS = 10;
+	private static final int NCO_SIZE = 1 << NCO_BITS;
+
+	/** Oscillator table: one period of a sine */
+	private static final float[] NCO_TABLE = new float[NCO_SIZE];
+
+	/** Converts an unsigned 8-bit sample to a signed value */
+	private static final float[] U8_TABLE = new float[256];
+
+	/** Output scale: full deviation of 75 kHz at 240 kHz corresponds to about 20000 */
+	private static final float OUTPUT_SCALE = (float) (32768 / Math.PI);
+
+	static {
+		for(int i=0; i<NCO_SIZE; i++) NCO_TABLE[i] = (float) Math.sin(2 * Math.PI * i / NCO_SIZE);
+		for(int i=0; i<256; i++) U8_TABLE[i] = (i - 127.5f) / 128;
+	}
+
+	private final int inputRate;
+	private final int decimate;
+
+	/** Oscillator phase and phase increment per input sample, 2^32 being one period */
+	private int ncoPhase = 0;
+	private final int ncoStep;
+
+	/** Decimation filter, and its history (written twice, so that it can be read without wrapping) */
+	private final float[] fir;
+	private final int firLen;
+	private final float[] firI;
+	private final float[] firQ;
+	private int firPos = 0;
+
+	/** Input samples since the last output sample */
+	private int phase = 0;
+
+	/** Previous filtered sample, for the discriminator */
+	private float prevI = 0, prevQ = 0;
+
+	/**
+	 * Creates a new demodulator.
+	 *
+	 * @param inputRate the sample rate of the IQ samples
+	 * @param offset the frequency of the channel relative to the center of the recording, in Hz
+	 */
+	public FmDemodulator(int inputRate, int offset) {
+		this.inputRate = inputRate;
+		this.decimate = Math.max(1, (int) Math.round((double) inputRate / TARGET_RATE));
+		this.ncoStep = (int) Math.round(-(double) offset / inputRate * 4294967296.0);
+
+		double[] coeffs = AudioBitReader.designDecimationFilter(
+				FIR_TAPS_PER_PHASE * decimate, 0.5 / decimate);
+		this.firLen = coeffs.length;
+		this.fir = new float[firLen];
+		for(int i=0; i<firLen; i++) fir[i] = (float) coeffs[i];
+		this.firI = new float[2 * firLen];
+		this.firQ = new float[2 * firLen];
+	}
+
+	/**
+	 * @brief Returns the sample rate of the MPX output.
+	 */
+	public int getOutputRate() {
+		return inputRate / decimate;
+	}
+
+	/**
+	 * @brief Returns the largest number of MPX samples that processing {@code numSamples} IQ
+	 * samples can yield.
+	 */
+	public int getMaxOutput(int numSamples) {
+		return numSamples / decimate + 1;
+	}
+
+	/**
+	 * @brief Demodulates a block of IQ samples.
+	 *
+	 * @param iq 8-bit unsigned samples, I and Q interleaved
+	 * @param offset the index of the first I value in {@code iq}
+	 * @param numSamples the number of IQ samples (that is, half the number of bytes)
+	 * @param out receives the MPX samples, it must have room for
+	 * {@link #getMaxOutput(int)} samples
+	 * @return the number of MPX samples written to {@code out}
+	 */
+	public int process(byte[] iq, int offset, int numSamples, short[] out) {
+		final float[] fir = this.fir, firI = this.firI, firQ = this.firQ;
+		final int firLen = this.firLen, decimate = this.decimate, ncoStep = this.ncoStep;
+		int ncoPhase = this.ncoPhase, firPos = this.firPos, phase = this.phase;
+		float prevI = this.prevI, prevQ = this.prevQ;
+		int n = 0;
+
+		for(int k=0, p=offset; k<numSamples; k++, p+=2) {
+			float i = U8_TABLE[iq[p] & 0xFF];
+			float q = U8_TABLE[iq[p+1] & 0xFF];
+
+			/* Shift the channel to baseband */
+			if(ncoStep != 0) {
+				int idx = ncoPhase >>> (32 - NCO_BITS);
+				float s = NCO_TABLE[idx];
+				float c = NCO_TABLE[(idx + NCO_SIZE / 4) & (NCO_SIZE - 1)];
+				float mi = i * c - q * s;
+				q = i * s + q * c;
+				i = mi;
+				ncoPhase += ncoStep;
+			}
+
+			firI[firPos] = firI[firPos + firLen] = i;
+			firQ[firPos] = firQ[firPos + firLen] = q;
+			firPos = (firPos + 1) % firLen;
+
+			if(++phase < decimate) continue;
+			phase = 0;
+
+			/* Low-pass filter, only for the samples we keep */
+			float fi = 0, fq = 0;
+			for(int t=0; t<firLen; t++) {
+				fi += fir[t] * firI[firPos + t];
+				fq += fir[t] * firQ[firPos + t];
+			}
+
+			/* Polar discriminator: the phase difference between successive samples */
+			float re = fi * prevI + fq * prevQ;
+			float im = fq * prevI - fi * prevQ;
+			prevI = fi;
+			prevQ = fq;
+			int v = (int) (Math.atan2(im, re) * OUTPUT_SCALE);
+			out[n++] = (short) (v > Short.MAX_VALUE ? Short.MAX_VALUE : v < Short.MIN_VALUE ? Short.MIN_VALUE : v);
+		}
+
+		this.ncoPhase = ncoPhase;
+		this.firPos = firPos;
+		this.phase = phase;
+		this.prevI = prevI;
+		this.prevQ = prevQ;
+		return n;
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.input;
+
+import java.io.IOException;
+
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+/**
+ * @brief Copies the groups and events of a reader to a group log, without decoding them.
+ *
+ * Used to convert between the hexadecimal and the binary formats: reading a hexadecimal file
+ * with a {@link HexFileGroupReader} and writing it with a {@link BinaryGroupWriter} keeps the
+ * blocks, which blocks were received, the time stamps and the frequency changes. Converting
+ * the result back with a {@link HexGroupWriter} yields a file which reads the same, since the
+ * hexadecimal writer puts each event on a line of its own, and the hexadecimal reader uses line
+ * numbers as sequential time stamps. This holds for files written by this program; blank and
+ * comment lines of other files are dropped, which shifts the time stamps of the groups which
+ * follow them. Only the information which the hexadecimal format cannot hold (corrected blocks,
+ * ignored groups and station changes) is lost in the other direction.
+ */
+public class GroupLogConverter {
+	/**
+	 * @brief Copies all groups and events until the end of the stream, and closes the writer.
+	 *
+	 * @return the number of groups copied
+	 */
+	public static int convert(GroupReader reader, GroupLogWriter writer) throws IOException {
+		PackedGroup group = new PackedGroup();
+		int count = 0;
+		try {
+			while(true) {
+				GroupReaderEvent event = reader.getGroup(group);
+				if(group.present) {
+					writer.writeGroup(group);
+					count++;
+				} else if(event != null) {
+					writer.writeEvent(event);
+				}
+			}
+		} catch(EndOfStream e) {
+			// done
+		} finally {
+			writer.close();
+		}
+		return count;
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.input;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+/**
+ * @brief Writes the groups and events delivered by a {@link GroupReader} to a log file.
+ *
+ * Implementations write the hexadecimal format ({@link HexGroupWriter}) and the compact binary
+ * format ({@link BinaryGroupWriter}). Output may be buffered: it is written out by
+ * {@link #flush()} and {@link #close()}.
+ */
+public interface GroupLogWriter extends Closeable, Flushable {
+	/**
+	 * @brief Writes a group.
+	 */
+	public void writeGroup(PackedGroup group) throws IOException;
+
+	/**
+	 * @brief Writes an event other than a group.
+	 *
+	 * Events which the format cannot represent are skipped, or written as a placeholder.
+	 */
+	public void writeEvent(GroupReaderEvent event) throws IOException;
+}
@@ -27,11 +27,36 @@ package eu.jacquet80.rds.input;
 
 import java.io.IOException;
 
+import eu.jacquet80.rds.input.group.GroupEvent;
 import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
 
 public abstract class GroupReader extends RDSReader {
 	public abstract GroupReaderEvent getGroup() throws IOException, EndOfStream;
 	
+	/**
+	 * Reads the next event, storing groups in packed form instead of creating a
+	 * {@link GroupEvent}. If the event is a group, it is stored into {@code group}, whose
+	 * {@link PackedGroup#present} flag is set, and {@code null} is returned. Otherwise the
+	 * {@code present} flag is cleared and the event is returned (it may be {@code null} if no
+	 * event is available).
+	 * 
+	 * The default implementation packs the event returned by {@link #getGroup()}. Readers which
+	 * can deliver groups without allocating objects should override it.
+	 * 
+	 * @param group the packed group to fill
+	 * @return the event read if it is not a group, {@code null} otherwise
+	 */
+	public GroupReaderEvent getGroup(PackedGroup group) throws IOException, EndOfStream {
+		GroupReaderEvent event = getGroup();
+		if(event instanceof GroupEvent) {
+			group.set((GroupEvent) event);
+			return null;
+		}
+		group.present = false;
+		return event;
+	}
+	
 	public static class EndOfStream extends Exception {
 		private static final long serialVersionUID = 6092870197242888300L;
 	}
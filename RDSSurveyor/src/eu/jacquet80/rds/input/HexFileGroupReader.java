@@ -26,104 +26,150 @@
 package eu.jacquet80.rds.input;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.InputStream;
 
-import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
-import eu.jacquet80.rds.input.group.GroupEvent;
 import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
 import eu.jacquet80.rds.log.RDSTime;
-import eu.jacquet80.rds.log.RealTime;
-import eu.jacquet80.rds.log.SequentialTime;
 
-public class HexFileGroupReader extends GroupReader {
-	private final static Pattern FIRST_NUMBER = Pattern.compile(".*\\D(\\d+)");
-	private final static Pattern RDS_SPY_DATE_FORMAT = 
-			Pattern.compile(".*@(\\d{4})/(\\d{2})/(\\d{2})\\s+(\\d{2}):(\\d{2}):(\\d{2}).(\\d{2,4})$");
+/**
+ * @brief Reads groups from a hex group file.
+ *
+ * Lines are parsed by a {@link HexGroupParser}. When reading from a stream, lines are split in
+ * a byte buffer of the reader and handed to the parser without being decoded into strings.
+ * Lines end with {@code \n}, {@code \r} or {@code \r\n}, as with
+ * {@link BufferedReader#readLine()}. Groups without an explicit time code get the number of the
+ * line as a sequential time stamp.
+ */
+public class HexFileGroupReader extends GroupReader implements Closeable {
 	private final BufferedReader br;
+	private final InputStream in;
+	private final HexGroupParser parser = new HexGroupParser();
 	private int groupTime = 0;
-	private static final Pattern SPACE = Pattern.compile("\\s+");
+	
+	/** Buffer of the stream, holding the bytes from {@link #pos} to {@link #limit} */
+	private byte[] buffer;
+	private int pos = 0;
+	private int limit = 0;
+	private boolean eof = false;
+	/** Whether the last line ended with \r, thus a \n which follows is part of the terminator */
+	private boolean skipLF = false;
 	
 	public HexFileGroupReader(BufferedReader br) {
 		this.br = br;
+		this.in = null;
+	}
+	
+	public HexFileGroupReader(InputStream in) {
+		this.br = null;
+		this.in = in;
+		this.buffer = new byte[1 << 16];
 	}
 	
 	// TODO: remove?
 	public HexFileGroupReader(File file) throws FileNotFoundException {
-		this(new BufferedReader(new FileReader(file)));
+		this(new FileInputStream(file));
 	}
 	
 	public GroupReaderEvent getGroup() throws IOException, EndOfStream {
+		PackedGroup group = new PackedGroup();
+		GroupReaderEvent event = getGroup(group);
+		return group.present ? group.toEvent() : event;
+	}
+	
+	@Override
+	public GroupReaderEvent getGroup(PackedGroup group) throws IOException, EndOfStream {
 		GroupReaderEvent event;
 		
 		do {
-			String line = br.readLine();
-			if(line == null) throw new EndOfStream();
-
-			event = parseHexLine(line, new SequentialTime(groupTime));
+			group.setSequentialTime(groupTime);
+			if(br != null) {
+				String line = br.readLine();
+				if(line == null) throw new EndOfStream();
+				event = parser.parse(line, group);
+			} else {
+				int end = nextLine();
+				if(end < 0) throw new EndOfStream();
+				event = parser.parse(buffer, pos, end, group);
+				pos = end + 1;
+			}
 			groupTime++;
-		} while(event == null);
+		} while(event == null && !group.present);
 		
 		return event;
 	}
 	
-	/* package */ static GroupReaderEvent parseHexLine(String line, RDSTime time) throws IOException {
-		line = line.trim();
-		
-		// ignore empty lines
-		if(line.length() == 0) return null;
-		
-		if(line.startsWith("%")) {
-			// Lines beginning with % are to be ignored, but may contain metadata
-			if(line.startsWith("% Freq")) {
-				// Frequency indicator metadata
-				Matcher m = FIRST_NUMBER.matcher(line);
-				int f = 0;
-				if(m.matches()) f = Integer.parseInt(m.group(1));
-				return new FrequencyChangeEvent(time, f);
+	/**
+	 * Finds the next line in the buffer, reading more of the stream if needed. The line starts at
+	 * {@link #pos}.
+	 * 
+	 * @return the position of the line terminator, {@link #limit} for a last line without
+	 * terminator, or -1 at the end of the stream
+	 */
+	private int nextLine() throws IOException {
+		int p = pos;
+		while(true) {
+			if(skipLF && p < limit) {
+				skipLF = false;
+				if(buffer[p] == '\n') pos = ++p;
+			}
+			for(; p < limit; p++) {
+				byte b = buffer[p];
+				if(b == '\n') return p;
+				if(b == '\r') {
+					skipLF = true;
+					return p;
+				}
+			}
+			if(eof) {
+				if(pos == limit) {
+					if(in != null) in.close();
+					return -1;
+				}
+				// last line without terminator: pretend that there is one
+				if(limit == buffer.length) grow();
+				return limit++;
 			}
 			
-		    // ignore other lines beginning with '%'
-			return null;
-		}
-		
-		// lines beginning with < are specific to RDS Spy. Ignore them altogether
-		if(line.startsWith("<")) return null;
-		
-		String[] components = SPACE.split(line);
-		
-		// ignore incorrect lines
-		if(components.length < 4) return null; //throw new IOException("Not enough blocks on line \"" + line + "\"");
-		
-		int[] res = new int[4];
-		
-		for(int i=0; i<4; i++) {
-			String s = components[i];
-			if("----".equals(s)) res[i] = -1;
-			else res[i] = Integer.parseInt(s, 16);
-		}
-		
-		
-		// attempt to find explicit time code in the line
-		Matcher m = RDS_SPY_DATE_FORMAT.matcher(line);
-		if(m.matches()) {
-			GregorianCalendar c = new GregorianCalendar( 
-					Integer.parseInt(m.group(1)), 
-					Integer.parseInt(m.group(2)) - 1, 
-					Integer.parseInt(m.group(3)), 
-					Integer.parseInt(m.group(4)), 
-					Integer.parseInt(m.group(5)),
-					Integer.parseInt(m.group(6)));
-			c.set(Calendar.MILLISECOND, (int)(Float.parseFloat("0." + m.group(7)) * 1000));
-			time = new RealTime(c.getTime());
+			// keep the beginning of the line, and read more
+			int len = limit - pos;
+			if(len == buffer.length) grow();
+			else System.arraycopy(buffer, pos, buffer, 0, len);
+			pos = 0;
+			p = len;
+			limit = len;
+			int n = in.read(buffer, limit, buffer.length - limit);
+			if(n < 0) eof = true;
+			else limit += n;
 		}
+	}
+	
+	private void grow() {
+		byte[] b = new byte[2 * buffer.length];
+		System.arraycopy(buffer, pos, b, 0, limit - pos);
+		limit -= pos;
+		pos = 0;
+		buffer = b;
+	}
+	
+	/* package */ static GroupReaderEvent parseHexLine(String line, RDSTime time) throws IOException {
+		PackedGroup group = new PackedGroup();
+		group.setTime(time);
+		GroupReaderEvent event = new HexGroupParser().parse(line, group);
+		return group.present ? group.toEvent() : event;
+	}
 
-		return new GroupEvent(time, res, false);
+	/**
+	 * @brief Closes the underlying stream or reader.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(in != null) in.close();
+		else br.close();
 	}
 }
@@ -0,0 +1,360 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.input;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+/**
+ * @brief Parses the lines of hex group files, as read by {@link HexFileGroupReader}.
+ *
+ * Lines are scanned byte by byte, without regular expressions, splitting or intermediate
+ * strings. Blocks, {@code ----} markers, {@code % Freq} lines and the RDS Spy
+ * {@code @yyyy/MM/dd HH:mm:ss.ff} suffix are parsed straight into primitives. Dates are
+ * converted to milliseconds by a calendar once per hour of the log, the minutes and seconds
+ * being added to the start of the hour, unless the offset to UTC changes during the hour.
+ *
+ * Lines which the scanner does not handle, such as lines holding non-ASCII characters or blocks
+ * which are not written with four hexadecimal digits, are handed over to the former parser based
+ * on regular expressions, so that all lines are parsed as before.
+ *
+ * A parser keeps state between lines, thus it must not be shared between threads.
+ */
+public class HexGroupParser {
+	private final static Pattern FIRST_NUMBER = Pattern.compile("\\D*(\\d+).*");
+	private final static Pattern RDS_SPY_DATE_FORMAT = 
+			Pattern.compile(".*@(\\d{4})/(\\d{2})/(\\d{2})\\s+(\\d{2}):(\\d{2}):(\\d{2}).(\\d{2,4})$");
+	private static final Pattern SPACE = Pattern.compile("\\s+");
+
+	/** Charset of lines handed over to the former parser, as used by {@link FileFormatGuesser} */
+	private static final Charset CHARSET = Charset.defaultCharset();
+
+	private static final byte[] FREQ = {'%', ' ', 'F', 'r', 'e', 'q'};
+
+	/** Returned by {@link #parseDate(byte[], int, int)} when there is no date */
+	private static final long NO_DATE = Long.MIN_VALUE;
+	/** Returned by {@link #parseDate(byte[], int, int)} when the line needs the former parser */
+	private static final long SLOW = Long.MIN_VALUE + 1;
+
+	/** Margin around an hour without a change of the offset to UTC, in milliseconds */
+	private static final long STABLE_MARGIN = 3 * 3600000L;
+
+	private final GregorianCalendar calendar = new GregorianCalendar();
+	/** The hour whose start is in {@link #hourMillis}, as yyyyMMddHH */
+	private long hourKey = -1;
+	private long hourMillis;
+	/** Whether the offset to UTC is the same during the hour, and for a margin around it */
+	private boolean hourStable;
+
+	/** Buffer for lines given as strings */
+	private byte[] lineBytes = new byte[128];
+
+	/**
+	 * Parses a line of a hex group file. If the line holds a group, it is stored into
+	 * {@code group}, whose time stamp must be set by the caller (it is overwritten only if the
+	 * line has an explicit time code), and {@code null} is returned.
+	 * 
+	 * @return the event held by the line if it is not a group, {@code null} otherwise
+	 */
+	public GroupReaderEvent parse(String line, PackedGroup group) throws IOException {
+		int len = line.length();
+		if(len > lineBytes.length) lineBytes = new byte[Math.max(len, 2 * lineBytes.length)];
+		for(int i=0; i<len; i++) {
+			char c = line.charAt(i);
+			if(c >= 0x80) return parseSlow(line, group);
+			lineBytes[i] = (byte) c;
+		}
+		return parse(lineBytes, 0, len, group);
+	}
+
+	/**
+	 * Parses a line of a hex group file, given as the bytes from {@code start} (inclusive) to
+	 * {@code end} (exclusive) of {@code buf}, without the line terminator.
+	 * 
+	 * @see #parse(String, PackedGroup)
+	 */
+	public GroupReaderEvent parse(byte[] buf, int start, int end, PackedGroup group) throws IOException {
+		group.present = false;
+
+		// trim, as String.trim() does
+		int s = start, e = end;
+		while(s < e && (buf[s] & 0xFF) <= ' ') s++;
+		while(e > s && (buf[e-1] & 0xFF) <= ' ') e--;
+
+		// ignore empty lines
+		if(s == e) return null;
+
+		if(buf[s] == '%') {
+			// Lines beginning with % are to be ignored, but may contain metadata
+			if(startsWith(buf, s, e, FREQ)) return parseFrequency(buf, start, end, s, e, group);
+			return null;
+		}
+
+		// lines beginning with < are specific to RDS Spy. Ignore them altogether
+		if(buf[s] == '<') return null;
+
+		long blocks = 0;
+		int okMask = 0;
+		int p = s;
+		for(int i=0; i<4; i++) {
+			if(i > 0) while(p < e && isSpace(buf[p])) p++;
+			if(p + 4 > e || (p + 4 < e && !isSpace(buf[p + 4]))) return parseSlow(buf, start, end, group);
+
+			if(buf[p] == '-' && buf[p+1] == '-' && buf[p+2] == '-' && buf[p+3] == '-') {
+				p += 4;
+				continue;
+			}
+			int block = 0;
+			for(int j=0; j<4; j++) {
+				int d = hexDigit(buf[p++]);
+				if(d < 0) return parseSlow(buf, start, end, group);
+				block = (block << 4) | d;
+			}
+			blocks |= (long) block << (48 - 16*i);
+			okMask |= 1 << i;
+		}
+
+		// attempt to find explicit time code in the line
+		long date = parseDate(buf, p, e);
+		if(date == SLOW) return parseSlow(buf, start, end, group);
+		if(date != NO_DATE) group.setRealTime(date);
+
+		group.blocks = blocks;
+		group.okMask = okMask;
+		group.correctedMask = 0;
+		group.ignored = false;
+		group.present = true;
+		return null;
+	}
+
+	private GroupReaderEvent parseFrequency(byte[] buf, int start, int end, int s, int e, PackedGroup group) throws IOException {
+		int f = 0;
+		int digits = 0;
+		for(int p=s; p<e; p++) {
+			int b = buf[p];
+			if(b < 0) return parseSlow(buf, start, end, group);
+			if(b >= '0' && b <= '9') {
+				if(digits < 0) continue;
+				if(++digits > 9) return parseSlow(buf, start, end, group);
+				f = 10 * f + (b - '0');
+			} else if(digits > 0) {
+				// only the first number counts
+				digits = -1;
+			}
+		}
+		return new FrequencyChangeEvent(group.getTime(), f);
+	}
+
+	/**
+	 * Finds an RDS Spy time code at the end of a line. As with a greedy regular expression, the
+	 * last {@code @} followed by a time code is taken.
+	 * 
+	 * @param from the position after the blocks
+	 * @param e the end of the trimmed line
+	 * @return the date in milliseconds, {@link #NO_DATE} or {@link #SLOW}
+	 */
+	private long parseDate(byte[] buf, int from, int e) {
+		for(int at=e-1; at>=from; at--) {
+			if(buf[at] != '@') continue;
+			long date = matchDate(buf, at + 1, e);
+			if(date == NO_DATE) continue;
+			if(date != SLOW) {
+				// characters which are not ASCII before the date would need more care
+				for(int p=from; p<at; p++) if(buf[p] < 0) return SLOW;
+			}
+			return date;
+		}
+		return NO_DATE;
+	}
+
+	/**
+	 * Matches {@code yyyy/MM/dd\s+HH:mm:ss.f} up to the end of the line, where the fraction has
+	 * two to four digits and is preceded by any character.
+	 */
+	private long matchDate(byte[] buf, int p, int e) {
+		if(e - p < 21) return NO_DATE;
+		int year = number(buf, p, 4);
+		if(year < 0 || buf[p+4] != '/') return NO_DATE;
+		int month = number(buf, p + 5, 2);
+		if(month < 0 || buf[p+7] != '/') return NO_DATE;
+		int day = number(buf, p + 8, 2);
+		if(day < 0 || !isSpace(buf[p+10])) return NO_DATE;
+		p += 11;
+		while(p < e && isSpace(buf[p])) p++;
+		if(e - p < 11) return NO_DATE;
+		int hour = number(buf, p, 2);
+		if(hour < 0 || buf[p+2] != ':') return NO_DATE;
+		int minute = number(buf, p + 3, 2);
+		if(minute < 0 || buf[p+5] != ':') return NO_DATE;
+		int second = number(buf, p + 6, 2);
+		if(second < 0) return NO_DATE;
+		// any character but a line terminator
+		if(buf[p+8] < 0) return SLOW;
+		if(buf[p+8] == '\n' || buf[p+8] == '\r') return NO_DATE;
+		p += 9;
+		int fracDigits = e - p;
+		if(fracDigits < 2 || fracDigits > 4) return NO_DATE;
+		int fraction = number(buf, p, fracDigits);
+		if(fraction < 0) return NO_DATE;
+
+		int millis;
+		if(fracDigits == 2) millis = 10 * fraction;
+		else if(fracDigits == 3) millis = fraction;
+		else millis = Math.round(Float.parseFloat("0." + new String(buf, p, fracDigits, CHARSET)) * 1000);
+
+		long key = ((year * 100L + month) * 100 + day) * 100 + hour;
+		if(key != hourKey) {
+			calendar.clear();
+			calendar.set(year, month - 1, day, hour, 0, 0);
+			hourMillis = calendar.getTimeInMillis();
+			hourKey = key;
+			// Times around a change of the offset may be ambiguous, and the calendar decides
+			// which one is meant. Changes do not always take place at the start of an hour, thus
+			// the calendar is left to decide for all hours close to a change.
+			TimeZone zone = calendar.getTimeZone();
+			int offset = zone.getOffset(hourMillis);
+			hourStable = zone.getOffset(hourMillis - STABLE_MARGIN) == offset &&
+					zone.getOffset(hourMillis + 3600000 + STABLE_MARGIN) == offset;
+		}
+		if(! hourStable || minute >= 60 || second >= 60) {
+			// let the calendar deal with offset changes and out-of-range fields
+			calendar.clear();
+			calendar.set(year, month - 1, day, hour, minute, second);
+			calendar.set(Calendar.MILLISECOND, millis);
+			return calendar.getTimeInMillis();
+		}
+		return hourMillis + minute * 60000L + second * 1000L + millis;
+	}
+
+	/**
+	 * Parses a decimal number of {@code n} digits, returns -1 if there is anything else.
+	 */
+	private static int number(byte[] buf, int p, int n) {
+		int v = 0;
+		for(int i=0; i<n; i++) {
+			int d = buf[p+i] - '0';
+			if(d < 0 || d > 9) return -1;
+			v = 10 * v + d;
+		}
+		return v;
+	}
+
+	private static int hexDigit(byte b) {
+		if(b >= '0' && b <= '9') return b - '0';
+		if(b >= 'A' && b <= 'F') return b - 'A' + 10;
+		if(b >= 'a' && b <= 'f') return b - 'a' + 10;
+		return -1;
+	}
+
+	/** Whitespace as matched by {@code \s} */
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+	}
+
+	private static boolean startsWith(byte[] buf, int s, int e, byte[] prefix) {
+		if(e - s < prefix.length) return false;
+		for(int i=0; i<prefix.length; i++) if(buf[s+i] != prefix[i]) return false;
+		return true;
+	}
+
+	private GroupReaderEvent parseSlow(byte[] buf, int start, int end, PackedGroup group) throws IOException {
+		return parseSlow(new String(buf, start, end - start, CHARSET), group);
+	}
+
+	/**
+	 * The former parser, based on regular expressions.
+	 */
+	private static GroupReaderEvent parseSlow(String line, PackedGroup group) throws IOException {
+		group.present = false;
+		line = line.trim();
+		
+		// ignore empty lines
+		if(line.length() == 0) return null;
+		
+		if(line.startsWith("%")) {
+			// Lines beginning with % are to be ignored, but may contain metadata
+			if(line.startsWith("% Freq")) {
+				// Frequency indicator metadata
+				Matcher m = FIRST_NUMBER.matcher(line);
+				int f = 0;
+				if(m.matches()) f = Integer.parseInt(m.group(1));
+				return new FrequencyChangeEvent(group.getTime(), f);
+			}
+			
+		    // ignore other lines beginning with '%'
+			return null;
+		}
+		
+		// lines beginning with < are specific to RDS Spy. Ignore them altogether
+		if(line.startsWith("<")) return null;
+		
+		String[] components = SPACE.split(line);
+		
+		// ignore incorrect lines
+		if(components.length < 4) return null; //throw new IOException("Not enough blocks on line \"" + line + "\"");
+		
+		long blocks = 0;
+		int okMask = 0;
+		
+		for(int i=0; i<4; i++) {
+			String s = components[i];
+			if(! "----".equals(s)) {
+				blocks |= (long) (Integer.parseInt(s, 16) & 0xFFFF) << (48 - 16*i);
+				okMask |= 1 << i;
+			}
+		}
+		
+		
+		// attempt to find explicit time code in the line
+		Matcher m = RDS_SPY_DATE_FORMAT.matcher(line);
+		if(m.matches()) {
+			GregorianCalendar c = new GregorianCalendar( 
+					Integer.parseInt(m.group(1)), 
+					Integer.parseInt(m.group(2)) - 1, 
+					Integer.parseInt(m.group(3)), 
+					Integer.parseInt(m.group(4)), 
+					Integer.parseInt(m.group(5)),
+					Integer.parseInt(m.group(6)));
+			c.set(Calendar.MILLISECOND, Math.round(Float.parseFloat("0." + m.group(7)) * 1000));
+			group.setRealTime(c.getTimeInMillis());
+		}
+
+		group.blocks = blocks;
+		group.okMask = okMask;
+		group.correctedMask = 0;
+		group.ignored = false;
+		group.present = true;
+		return null;
+	}
+}
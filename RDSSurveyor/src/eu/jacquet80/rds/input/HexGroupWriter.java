@@ -0,0 +1,100 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.input;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+/**
+ * @brief Writes groups in the hexadecimal format read by {@link HexFileGroupReader}.
+ *
+ * The file starts with a {@code % RDS hexgroups} line. Each group takes one line with its four
+ * blocks, {@code ----} standing for a block which was not received correctly, followed by its
+ * time stamp. Frequency changes are written as {@code % Freq} comment lines, and other events
+ * as empty lines, so that each event takes up one line. Blocks are formatted by hand rather
+ * than with {@code printf}, which would be the most expensive part of writing a group.
+ */
+public class HexGroupWriter implements GroupLogWriter {
+	public static final String HEADER = "% RDS hexgroups";
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	private final BufferedWriter writer;
+	private final char[] line = new char[20];
+
+	public HexGroupWriter(Writer writer) throws IOException {
+		this.writer = new BufferedWriter(writer);
+		this.writer.write(HEADER);
+		this.writer.newLine();
+	}
+
+	public HexGroupWriter(File file) throws IOException {
+		this(new FileWriter(file));
+	}
+
+	@Override
+	public void writeGroup(PackedGroup group) throws IOException {
+		int pos = 0;
+		for(int i=0; i<4; i++) {
+			if((group.okMask & (1 << i)) != 0) {
+				int block = PackedGroup.getBlock(group.blocks, i);
+				for(int shift=12; shift>=0; shift-=4) line[pos++] = HEX_DIGITS[(block >> shift) & 0xF];
+			} else {
+				for(int j=0; j<4; j++) line[pos++] = '-';
+			}
+			line[pos++] = ' ';
+		}
+		writer.write(line, 0, pos);
+		writer.write('@');
+		writer.write(group.getTime().toLongString());
+		writer.newLine();
+	}
+
+	@Override
+	public void writeEvent(GroupReaderEvent event) throws IOException {
+		if(event instanceof FrequencyChangeEvent) {
+			writer.write("% Freq " + ((FrequencyChangeEvent) event).frequency + ", date=" +
+					event.getTime().toLongString());
+		}
+		writer.newLine();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
@@ -45,5 +45,28 @@ public class InverterBitReader extends BitReader {
 	public boolean getBit() throws IOException {
 		return !baseReader.getBit();
 	}
+	
+	@Override
+	public int readBits(long[] dst, int maxBits) throws IOException {
+		return invert(dst, baseReader.readBits(dst, maxBits));
+	}
+	
+	@Override
+	public int readBits(long[] dst, byte[] confidence, int maxBits) throws IOException {
+		// inverting a bit does not change its confidence
+		return invert(dst, baseReader.readBits(dst, confidence, maxBits));
+	}
+	
+	@Override
+	public boolean hasBitConfidence() {
+		return baseReader.hasBitConfidence();
+	}
+	
+	private static int invert(long[] dst, int n) {
+		for(int i=0; i < (n + 63) / 64; i++) {
+			dst[i] = ~dst[i];
+		}
+		return n;
+	}
 
 }
@@ -0,0 +1,406 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.input;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import eu.jacquet80.rds.core.BitStreamSynchronizer;
+import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+import eu.jacquet80.rds.log.SequentialTime;
+
+/**
+ * @brief Decodes all FM stations of a wideband IQ recording at the same time.
+ *
+ * The recording consists of 8-bit unsigned IQ samples, as written by {@code rtl_sdr}, for
+ * instance at 2.4 MHz, which covers 24 FM channels at 100 kHz spacing. The occupied channels are
+ * found from the power spectrum of the beginning of the recording (or they can be given
+ * explicitly). Each occupied channel gets an {@link FmDemodulator}, whose MPX output goes through
+ * an {@link AudioBitReader} and a {@link BitStreamSynchronizer}, just as the signal from a single
+ * tuner would.
+ *
+ * The recording is read once, block by block. Each block is demodulated for all channels in
+ * parallel by a pool of worker threads, and the demodulator of each channel runs in a thread of
+ * its own. The groups of each channel are available through a separate {@link GroupReader},
+ * see {@link #getReaders()}.
+ *
+ * As all channels are processed in step, the readers must be consumed concurrently (for
+ * instance, each one from a thread of its own): if one reader is not read from, processing
+ * stops for all channels once its buffer is full.
+ *
+ * If the recording cannot be read, all readers fail with the error once they have delivered the
+ * groups decoded up to that point.
+ */
+public class IqChannelizer {
+	/** Channel raster, in kHz */
+	private static final int RASTER = 100;
+
+	/** Half the bandwidth of an FM channel, in Hz */
+	private static final int HALF_BANDWIDTH = 100000;
+
+	/** Half the bandwidth over which the power of a channel is measured, in Hz */
+	private static final int MEASURE_HALF_BANDWIDTH = 75000;
+
+	/** A channel is occupied if its power exceeds the median channel power by this much, in dB */
+	private static final double THRESHOLD_DB = 10;
+
+	/** FFT size for the channel scan */
+	private static final int FFT_SIZE = 2048;
+
+	/** Number of FFT frames averaged for the channel scan */
+	private static final int SCAN_FRAMES = 256;
+
+	/** Number of IQ samples read and demodulated at once */
+	private static final int BLOCK_SAMPLES = 65536;
+
+	private final File file;
+	private final int sampleRate;
+	private final int centerFrequency;
+	private final int threads;
+	private final List<ChannelReader> readers = new ArrayList<ChannelReader>();
+
+	/**
+	 * Scans a recording for occupied channels.
+	 *
+	 * @param console the console for synchronizer output, or {@code null}
+	 * @param file the IQ recording
+	 * @param sampleRate the sample rate of the recording
+	 * @param centerFrequency the frequency at the center of the recording, in kHz
+	 * @param threads the number of worker threads, 0 for one per available processor
+	 */
+	public IqChannelizer(PrintStream console, File file, int sampleRate, int centerFrequency,
+			int threads) throws IOException {
+		this(console, file, sampleRate, centerFrequency, threads,
+				scan(file, sampleRate, centerFrequency));
+	}
+
+	/**
+	 * Prepares decoding of given channels of a recording.
+	 *
+	 * @param console the console for synchronizer output, or {@code null}
+	 * @param file the IQ recording
+	 * @param sampleRate the sample rate of the recording
+	 * @param centerFrequency the frequency at the center of the recording, in kHz
+	 * @param threads the number of worker threads, 0 for one per available processor
+	 * @param frequencies the channels to decode, in kHz
+	 */
+	public IqChannelizer(PrintStream console, File file, int sampleRate, int centerFrequency,
+			int threads, int[] frequencies) {
+		this.file = file;
+		this.sampleRate = sampleRate;
+		this.centerFrequency = centerFrequency;
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		// check all channels before starting any demodulator
+		for(int f : frequencies) {
+			if(Math.abs(f - centerFrequency) * 1000 + HALF_BANDWIDTH > sampleRate / 2)
+				throw new IllegalArgumentException(f + " kHz is outside the recording");
+		}
+		for(int f : frequencies) {
+			int offset = (f - centerFrequency) * 1000;
+			readers.add(new ChannelReader(console, f, new FmDemodulator(sampleRate, offset)));
+		}
+	}
+
+	/**
+	 * @brief Returns one reader per channel, in order of increasing frequency.
+	 */
+	public List<ChannelReader> getReaders() {
+		return Collections.unmodifiableList(readers);
+	}
+
+	/**
+	 * @brief Starts reading the recording.
+	 *
+	 * Groups become available on the readers as the recording is processed. When the end of the
+	 * recording is reached, all readers report end of stream.
+	 */
+	public void start() {
+		new Thread("IQ channelizer") {
+			@Override
+			public void run() {
+				ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(readers.size(), 1)));
+				try {
+					FileInputStream fis = new FileInputStream(file);
+					try {
+						process(fis.getChannel(), pool);
+					} finally {
+						fis.close();
+					}
+				} catch(Exception e) {
+					Throwable cause = (e instanceof ExecutionException) ? e.getCause() : e;
+					IOException error = (cause instanceof IOException) ? (IOException) cause :
+						new IOException("Decoding " + file + " failed: " + cause);
+					for(ChannelReader r : readers) r.error = error;
+				} finally {
+					pool.shutdown();
+					for(ChannelReader r : readers) r.ring.endOfStream();
+				}
+			}
+		}.start();
+	}
+
+	private void process(FileChannel channel, ExecutorService pool)
+			throws IOException, InterruptedException, ExecutionException {
+		final byte[] block = new byte[2 * BLOCK_SAMPLES];
+		ByteBuffer buf = ByteBuffer.wrap(block);
+		final int[] numSamples = new int[1];
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(final ChannelReader r : readers) {
+			final short[] mpx = new short[r.demodulator.getMaxOutput(BLOCK_SAMPLES)];
+			final ByteBuffer mpxBuf = ByteBuffer.allocate(2 * mpx.length).order(ByteOrder.LITTLE_ENDIAN);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					int n = r.demodulator.process(block, 0, numSamples[0], mpx);
+					mpxBuf.clear();
+					mpxBuf.asShortBuffer().put(mpx, 0, n);
+					mpxBuf.limit(2 * n);
+					r.ring.write(mpxBuf);
+					return null;
+				}
+			});
+		}
+
+		boolean eof = false;
+		while(!eof) {
+			// fill the block, so that all blocks but the last one have the same size
+			while(buf.hasRemaining()) {
+				if(channel.read(buf) < 0) {
+					eof = true;
+					break;
+				}
+			}
+			numSamples[0] = buf.position() / 2;
+			if(numSamples[0] == 0) break;
+			for(Future<Void> f : pool.invokeAll(tasks)) f.get();
+			if(buf.position() % 2 != 0) {
+				// keep the incomplete IQ sample
+				block[0] = block[buf.position() - 1];
+				buf.position(1);
+			} else buf.clear();
+			buf.limit(block.length);
+		}
+	}
+
+	/**
+	 * @brief Finds the occupied channels of a recording.
+	 *
+	 * The power spectrum of the beginning of the recording is measured for all channels on the
+	 * 100 kHz raster which fit entirely in the recording. Channels which stand out from the noise
+	 * floor (estimated as the median channel power) are retained, strongest first, as long as they
+	 * are at least 200 kHz away from a stronger channel, since a strong station also raises the
+	 * power measured on adjacent channels.
+	 *
+	 * @return the frequencies of the occupied channels in kHz, in increasing order
+	 */
+	public static int[] scan(File file, int sampleRate, int centerFrequency) throws IOException {
+		double[] power = new double[FFT_SIZE];
+		float[] re = new float[FFT_SIZE];
+		float[] im = new float[FFT_SIZE];
+		float[] window = new float[FFT_SIZE];
+		for(int i=0; i<FFT_SIZE; i++) window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / FFT_SIZE));
+
+		byte[] frame = new byte[2 * FFT_SIZE];
+		FileInputStream in = new FileInputStream(file);
+		int frames = 0;
+		try {
+			while(frames < SCAN_FRAMES) {
+				int n = 0, r;
+				while(n < frame.length && (r = in.read(frame, n, frame.length - n)) > 0) n += r;
+				if(n < frame.length) break;
+				for(int i=0; i<FFT_SIZE; i++) {
+					re[i] = window[i] * ((frame[2*i] & 0xFF) - 127.5f);
+					im[i] = window[i] * ((frame[2*i+1] & 0xFF) - 127.5f);
+				}
+				fft(re, im);
+				for(int i=0; i<FFT_SIZE; i++) power[i] += re[i] * re[i] + im[i] * im[i];
+				frames++;
+			}
+		} finally {
+			in.close();
+		}
+		if(frames == 0) return new int[0];
+
+		// candidate channels: on the raster, entirely within the recording
+		int span = (sampleRate / 2 - HALF_BANDWIDTH) / 1000;
+		int first = (centerFrequency - span + RASTER - 1) / RASTER * RASTER;
+		int count = Math.max((centerFrequency + span - first) / RASTER + 1, 0);
+		double[] chPower = new double[count];
+		double binWidth = (double) sampleRate / FFT_SIZE;
+		int halfBins = (int) (MEASURE_HALF_BANDWIDTH / binWidth);
+		for(int c=0; c<count; c++) {
+			int center = (int) Math.round((first + c * RASTER - centerFrequency) * 1000 / binWidth);
+			for(int b=center-halfBins; b<=center+halfBins; b++) {
+				chPower[c] += power[b & (FFT_SIZE - 1)];
+			}
+		}
+		if(count == 0) return new int[0];
+
+		double[] sorted = chPower.clone();
+		Arrays.sort(sorted);
+		double threshold = sorted[count / 2] * Math.pow(10, THRESHOLD_DB / 10);
+
+		// retain channels, strongest first, away from stronger ones
+		boolean[] taken = new boolean[count];
+		boolean[] blocked = new boolean[count];
+		while(true) {
+			int best = -1;
+			for(int c=0; c<count; c++) {
+				if(!blocked[c] && chPower[c] > threshold && (best < 0 || chPower[c] > chPower[best])) best = c;
+			}
+			if(best < 0) break;
+			taken[best] = true;
+			for(int c=Math.max(best-1, 0); c<=Math.min(best+1, count-1); c++) blocked[c] = true;
+		}
+
+		int nb = 0;
+		for(int c=0; c<count; c++) if(taken[c]) nb++;
+		int[] res = new int[nb];
+		nb = 0;
+		for(int c=0; c<count; c++) if(taken[c]) res[nb++] = first + c * RASTER;
+		return res;
+	}
+
+	/**
+	 * In-place radix-2 FFT; the length of the arrays must be a power of two.
+	 */
+	private static void fft(float[] re, float[] im) {
+		int n = re.length;
+		for(int i=1, j=0; i<n; i++) {
+			int bit = n >> 1;
+			for(; (j & bit) != 0; bit >>= 1) j ^= bit;
+			j ^= bit;
+			if(i < j) {
+				float t = re[i]; re[i] = re[j]; re[j] = t;
+				t = im[i]; im[i] = im[j]; im[j] = t;
+			}
+		}
+		for(int len=2; len<=n; len<<=1) {
+			double ang = -2 * Math.PI / len;
+			float wr = (float) Math.cos(ang), wi = (float) Math.sin(ang);
+			for(int i=0; i<n; i+=len) {
+				float cr = 1, ci = 0;
+				for(int k=0; k<len/2; k++) {
+					int a = i + k, b = i + k + len/2;
+					float br = re[b] * cr - im[b] * ci;
+					float bi = re[b] * ci + im[b] * cr;
+					re[b] = re[a] - br; im[b] = im[a] - bi;
+					re[a] += br; im[a] += bi;
+					float t = cr * wr - ci * wi;
+					ci = cr * wi + ci * wr;
+					cr = t;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @brief The groups decoded on one channel of the recording.
+	 *
+	 * The first event is a {@link FrequencyChangeEvent} for the frequency of the channel.
+	 */
+	public static class ChannelReader extends GroupReader {
+		private final int frequency;
+		private final FmDemodulator demodulator;
+		private final SampleRing ring;
+		private final AudioBitReader bitReader;
+		private final BitStreamSynchronizer synchronizer;
+		private boolean frequencyReported = false;
+		/** The error which stopped the processing of the recording, if any */
+		private volatile IOException error = null;
+
+		private ChannelReader(PrintStream console, int frequency, FmDemodulator demodulator) {
+			this.frequency = frequency;
+			this.demodulator = demodulator;
+			this.ring = new SampleRing(2 * demodulator.getOutputRate(), false);
+			this.bitReader = new AudioBitReader(ring, demodulator.getOutputRate());
+			this.synchronizer = new BitStreamSynchronizer(console, bitReader);
+		}
+
+		/**
+		 * @brief Returns the frequency of the channel, in kHz.
+		 */
+		public int getFrequency() {
+			return frequency;
+		}
+
+		/**
+		 * @brief Returns the demodulator of the channel, for statistics.
+		 */
+		public AudioBitReader getBitReader() {
+			return bitReader;
+		}
+
+		@Override
+		public GroupReaderEvent getGroup() throws IOException, EndOfStream {
+			if(!frequencyReported) {
+				frequencyReported = true;
+				return new FrequencyChangeEvent(new SequentialTime(0), frequency);
+			}
+			try {
+				return synchronizer.getGroup();
+			} catch(EndOfStream e) {
+				if(error != null) throw error;
+				throw e;
+			}
+		}
+
+		@Override
+		public GroupReaderEvent getGroup(PackedGroup group) throws IOException, EndOfStream {
+			if(!frequencyReported) {
+				frequencyReported = true;
+				group.present = false;
+				return new FrequencyChangeEvent(new SequentialTime(0), frequency);
+			}
+			try {
+				return synchronizer.getGroup(group);
+			} catch(EndOfStream e) {
+				if(error != null) throw error;
+				throw e;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%.1f MHz", frequency / 1000f);
+		}
+	}
+}
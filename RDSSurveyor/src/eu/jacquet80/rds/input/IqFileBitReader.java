@@ -0,0 +1,113 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.input;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * @brief Reads RDS data from an IQ recording of an FM station.
+ *
+ * The recording consists of 8-bit unsigned IQ samples, as written by {@code rtl_sdr}, with the
+ * station at the center frequency. The samples are FM-demodulated by an {@link FmDemodulator}
+ * as they are read, and the resulting MPX signal is decoded as by {@link AudioBitReader}. This
+ * does not need any native library or hardware, and runs as fast as the processor allows.
+ */
+public class IqFileBitReader extends AudioBitReader {
+	/**
+	 * @param file the IQ recording
+	 * @param sampleRate the sample rate of the recording
+	 */
+	public IqFileBitReader(File file, int sampleRate) throws IOException {
+		this(new MpxChannel(new FileInputStream(file).getChannel(), new FmDemodulator(sampleRate, 0)));
+	}
+
+	private IqFileBitReader(MpxChannel mpx) {
+		super(mpx, mpx.demodulator.getOutputRate());
+	}
+
+	/**
+	 * Demodulates IQ samples from a channel on demand, and delivers the MPX signal as 16-bit
+	 * little-endian samples.
+	 */
+	private static class MpxChannel implements ReadableByteChannel {
+		/** Number of IQ samples demodulated at once */
+		private static final int BLOCK_SAMPLES = 65536;
+
+		private final ReadableByteChannel in;
+		private final FmDemodulator demodulator;
+		private final byte[] iq = new byte[2 * BLOCK_SAMPLES];
+		private final ByteBuffer iqBuf = ByteBuffer.wrap(iq);
+		private final short[] mpx;
+		private final ByteBuffer mpxBuf;
+		private boolean eof = false;
+
+		public MpxChannel(ReadableByteChannel in, FmDemodulator demodulator) {
+			this.in = in;
+			this.demodulator = demodulator;
+			this.mpx = new short[demodulator.getMaxOutput(BLOCK_SAMPLES)];
+			this.mpxBuf = ByteBuffer.allocate(2 * mpx.length).order(ByteOrder.LITTLE_ENDIAN);
+			mpxBuf.limit(0);
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			while(!mpxBuf.hasRemaining()) {
+				if(eof) return -1;
+				eof = in.read(iqBuf) < 0;
+				int numSamples = iqBuf.position() / 2;
+				int n = demodulator.process(iq, 0, numSamples, mpx);
+				// keep an incomplete IQ sample for the next read
+				if(iqBuf.position() % 2 != 0) {
+					iq[0] = iq[iqBuf.position() - 1];
+					iqBuf.clear().position(1);
+				} else iqBuf.clear();
+				mpxBuf.clear();
+				mpxBuf.asShortBuffer().put(mpx, 0, n);
+				mpxBuf.limit(2 * n);
+			}
+
+			int n = Math.min(dst.remaining(), mpxBuf.remaining());
+			int limit = mpxBuf.limit();
+			mpxBuf.limit(mpxBuf.position() + n);
+			dst.put(mpxBuf);
+			mpxBuf.limit(limit);
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return in.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,408 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.input;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+import eu.jacquet80.rds.log.SequentialTime;
+
+/**
+ * @brief Reads a hex group file by parsing chunks of it in parallel.
+ *
+ * The file is split into chunks of about {@code chunkBytes} bytes, which end at line boundaries.
+ * Each chunk is memory-mapped and parsed by a {@link HexGroupParser} on a thread of a pool, and
+ * groups are delivered in the order of the file, with the same time stamps as
+ * {@link HexFileGroupReader}: lines are numbered from the start of the file, which is done by
+ * adding up the lines of the previous chunks when a chunk is delivered. Only a few chunks are
+ * parsed ahead of the consumer, thus memory use does not depend on the size of the file.
+ *
+ * Analyses which do not need the groups in order can call {@link #parseUnordered(ChunkHandler)}
+ * instead, which hands each chunk to a handler as soon as it is parsed, on the thread which
+ * parsed it.
+ */
+public class MappedHexFileGroupReader extends GroupReader implements Closeable {
+	/** Default size of a chunk, in bytes */
+	public static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+
+	/** Bytes mapped beyond the end of a chunk, to find the end of its last line */
+	private static final int LINE_SLACK = 4096;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final long size;
+	private final int threads;
+	private final long chunkBytes;
+	private final int numChunks;
+
+	private ExecutorService executor = null;
+	private final LinkedList<Future<Chunk>> pending = new LinkedList<Future<Chunk>>();
+	private int nextChunk = 0;
+	private boolean closed = false;
+
+	/** The chunk whose groups are being delivered, and the index of the next group */
+	private Chunk current = null;
+	private int currentPos = 0;
+	/** The number of lines of the chunks before the current one */
+	private long lineBase = 0;
+
+	/**
+	 * Creates a reader which uses all processors and chunks of the default size.
+	 */
+	public MappedHexFileGroupReader(File file) throws IOException {
+		this(file, 0, DEFAULT_CHUNK_BYTES);
+	}
+
+	/**
+	 * @param file the hex group file
+	 * @param threads the number of chunks to parse at the same time, 0 for the number of
+	 * processors
+	 * @param chunkBytes the size of a chunk, in bytes
+	 */
+	public MappedHexFileGroupReader(File file, int threads, int chunkBytes) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "r");
+		this.channel = raf.getChannel();
+		try {
+			this.size = channel.size();
+		} catch(IOException e) {
+			raf.close();
+			throw e;
+		}
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		this.chunkBytes = Math.max(1, chunkBytes);
+		this.numChunks = (int) Math.max(1, (size + this.chunkBytes - 1) / this.chunkBytes);
+	}
+
+	/**
+	 * @brief Returns the number of chunks the file is split into.
+	 */
+	public int getNumChunks() {
+		return numChunks;
+	}
+
+	@Override
+	public GroupReaderEvent getGroup() throws IOException, EndOfStream {
+		PackedGroup packed = new PackedGroup();
+		GroupReaderEvent event = getGroup(packed);
+		return packed.present ? packed.toEvent() : event;
+	}
+
+	@Override
+	public GroupReaderEvent getGroup(PackedGroup group) throws IOException, EndOfStream {
+		if(closed) throw new EndOfStream();
+		if(executor == null) {
+			executor = newExecutor();
+			// one more chunk than threads, so that the next one is under way while the consumer
+			// goes through the groups of the current one
+			for(int i=0; i<=threads; i++) submit();
+		}
+
+		while(current == null || currentPos == current.count) {
+			if(current != null) lineBase += current.lines;
+			if(pending.isEmpty()) {
+				close();
+				throw new EndOfStream();
+			}
+			Future<Chunk> next = pending.removeFirst();
+			try {
+				submit();
+				current = get(next);
+			} catch(IOException e) {
+				close();
+				throw e;
+			} catch(RuntimeException e) {
+				close();
+				throw e;
+			}
+			currentPos = 0;
+		}
+
+		return current.get(currentPos++, group, lineBase);
+	}
+
+	/**
+	 * @brief Parses all chunks in parallel, and hands each of them to {@code handler}, in no
+	 * particular order.
+	 *
+	 * The handler is called on the thread which parsed the chunk, thus it is called for several
+	 * chunks at the same time. Sequential time stamps count lines from the start of the chunk,
+	 * since the lines of the previous chunks are not known. The file is closed once all chunks
+	 * have been handled. The reader must not be used to read groups afterwards.
+	 */
+	public void parseUnordered(final ChunkHandler handler) throws IOException {
+		if(executor != null) throw new IllegalStateException("Reader already in use");
+		executor = newExecutor();
+		try {
+			List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>(numChunks);
+			for(int i=0; i<numChunks; i++) {
+				final int index = i;
+				futures.add(executor.submit(new Callable<Chunk>() {
+					@Override
+					public Chunk call() throws IOException {
+						Chunk chunk = parse(index);
+						handler.handle(chunk);
+						return null;
+					}
+				}));
+			}
+			for(Future<Chunk> f : futures) get(f);
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Creates the pool of parsing threads. They are daemon threads, so that a reader which is
+	 * abandoned without being closed does not keep the application running.
+	 */
+	private ExecutorService newExecutor() {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Hex parser " + (++count));
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	private void submit() {
+		if(nextChunk >= numChunks) return;
+		final int index = nextChunk++;
+		pending.addLast(executor.submit(new Callable<Chunk>() {
+			@Override
+			public Chunk call() throws IOException {
+				return parse(index);
+			}
+		}));
+	}
+
+	private Chunk get(Future<Chunk> future) throws IOException {
+		try {
+			return future.get();
+		} catch(InterruptedException e) {
+			throw new IOException("Interrupted while parsing " + file);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException(e.getCause().toString());
+		}
+	}
+
+	/**
+	 * @brief Stops parsing and closes the file.
+	 *
+	 * This is done automatically at the end of the file, when parsing fails, and after
+	 * {@link #parseUnordered(ChunkHandler)}. Reading groups afterwards signals the end of the
+	 * stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		if(executor != null) executor.shutdownNow();
+		raf.close();
+	}
+
+	/**
+	 * Parses a chunk: the lines which start from {@code index * chunkBytes} (inclusive) to
+	 * {@code (index + 1) * chunkBytes} (exclusive). A line starts at the beginning of the file,
+	 * or after a line terminator.
+	 */
+	private Chunk parse(int index) throws IOException {
+		long nominalStart = index * chunkBytes;
+		long nominalEnd = Math.min(size, nominalStart + chunkBytes);
+		// map one byte before the chunk, to tell whether a line starts at its beginning
+		long from = Math.max(0, nominalStart - 1);
+		byte[] buf;
+		int start, end;
+		int slack = LINE_SLACK;
+		while(true) {
+			long to = Math.min(size, nominalEnd + slack);
+			buf = map(from, to);
+			start = (int) (nominalStart - from);
+			end = (int) (nominalEnd - from);
+			if(index > 0) start = nextLineStart(buf, start, to == size);
+			if(nominalEnd < size) end = nextLineStart(buf, end, to == size);
+			// lines which go on past the mapped bytes need a larger mapping
+			if(start >= 0 && end >= 0) break;
+			slack *= 2;
+		}
+
+		Chunk chunk = new Chunk();
+		HexGroupParser parser = new HexGroupParser();
+		PackedGroup group = new PackedGroup();
+		int line = 0;
+		int p = start;
+		while(p < end) {
+			int eol = p;
+			while(eol < end && buf[eol] != '\n' && buf[eol] != '\r') eol++;
+			group.setSequentialTime(line);
+			GroupReaderEvent event = parser.parse(buf, p, eol, group);
+			if(group.present) chunk.addGroup(group);
+			else if(event instanceof FrequencyChangeEvent) chunk.addFrequency(line, ((FrequencyChangeEvent) event).frequency);
+			line++;
+			p = eol + 1;
+			if(p < end && buf[eol] == '\r' && buf[p] == '\n') p++;
+		}
+		chunk.lines = line;
+		return chunk;
+	}
+
+	/**
+	 * Returns the first line start at or after {@code p}, or -1 if it is beyond the bytes of
+	 * {@code buf}, which end at the end of the file if {@code atEof}. Position 0 of {@code buf}
+	 * is one byte before the chunk, or the start of the file.
+	 */
+	private static int nextLineStart(byte[] buf, int p, boolean atEof) {
+		for(; p <= buf.length; p++) {
+			if(p == 0) return 0;
+			byte prev = buf[p-1];
+			if(prev == '\n') return p;
+			if(prev == '\r') {
+				if(p < buf.length) {
+					if(buf[p] != '\n') return p;
+				} else if(atEof) {
+					return p;
+				}
+			}
+			if(p == buf.length && atEof) return p;
+		}
+		return -1;
+	}
+
+	private byte[] map(long from, long to) throws IOException {
+		MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+		// the parser works on arrays: bulk copies are cheap compared to parsing
+		byte[] buf = new byte[(int) (to - from)];
+		mapped.get(buf);
+		return buf;
+	}
+
+	/**
+	 * @brief Receives the chunks parsed by {@link MappedHexFileGroupReader#parseUnordered(ChunkHandler)}.
+	 */
+	public static interface ChunkHandler {
+		public void handle(Chunk chunk) throws IOException;
+	}
+
+	/**
+	 * @brief The groups and frequency changes of a chunk of the file, in packed form.
+	 */
+	public static class Chunk {
+		private static final int REAL_TIME = 1 << 8;
+		private static final int FREQUENCY = 1 << 9;
+
+		private long[] blocks = new long[1024];
+		/** okMask in bits 0-3, and flags */
+		private int[] flags = new int[1024];
+		/** Line within the chunk, or milliseconds since the epoch */
+		private long[] times = new long[1024];
+		private int count = 0;
+		private int lines;
+
+		/**
+		 * @brief Returns the number of groups and frequency changes of the chunk.
+		 */
+		public int size() {
+			return count;
+		}
+
+		/**
+		 * @brief Returns the number of lines of the chunk.
+		 */
+		public int getLines() {
+			return lines;
+		}
+
+		/**
+		 * @brief Returns the {@code i}th group or frequency change of the chunk, in the manner
+		 * of {@link GroupReader#getGroup(PackedGroup)}.
+		 *
+		 * @param lineBase the number of lines before the chunk, added to sequential time stamps
+		 */
+		public GroupReaderEvent get(int i, PackedGroup group, long lineBase) {
+			int f = flags[i];
+			if((f & FREQUENCY) != 0) {
+				group.present = false;
+				return new FrequencyChangeEvent(new SequentialTime((int) (lineBase + times[i])), (int) blocks[i]);
+			}
+			group.blocks = blocks[i];
+			group.okMask = f & 0xF;
+			group.correctedMask = 0;
+			group.ignored = false;
+			group.present = true;
+			if((f & REAL_TIME) != 0) group.setRealTime(times[i]);
+			else group.setSequentialTime((int) (lineBase + times[i]));
+			return null;
+		}
+
+		private void addGroup(PackedGroup group) {
+			add(group.blocks, group.okMask | (group.isRealTime() ? REAL_TIME : 0), group.getTimeValue());
+		}
+
+		private void addFrequency(int line, int frequency) {
+			add(frequency, FREQUENCY, line);
+		}
+
+		private void add(long b, int f, long t) {
+			if(count == blocks.length) {
+				int len = 2 * count;
+				long[] nb = new long[len];
+				int[] nf = new int[len];
+				long[] nt = new long[len];
+				System.arraycopy(blocks, 0, nb, 0, count);
+				System.arraycopy(flags, 0, nf, 0, count);
+				System.arraycopy(times, 0, nt, 0, count);
+				blocks = nb;
+				flags = nf;
+				times = nt;
+			}
+			blocks[count] = b;
+			flags[count] = f;
+			times[count] = t;
+			count++;
+		}
+	}
+}
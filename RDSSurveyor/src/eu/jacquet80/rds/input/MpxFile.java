@@ -0,0 +1,217 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * @brief A recorded MPX signal, read through memory mappings.
+ *
+ * The file holds 16-bit signed mono samples, either as a WAV file (whose header gives the sample
+ * rate) or as raw little-endian samples, as used with {@code -inaudiopipe}. Any range of samples
+ * can be read through a channel of its own, which delivers the samples in the format expected by
+ * {@link AudioBitReader}. The channel copies samples straight out of a mapping of the file,
+ * without going through the read system call for every block. Files may be larger than what a
+ * single mapping can hold: channels map the file in windows as they progress.
+ */
+public class MpxFile {
+	/** Size of a mapping window, in bytes */
+	private static final int WINDOW = 16 << 20;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final int sampleRate;
+
+	/** Offset of the first sample in the file, and number of samples */
+	private final long dataOffset;
+	private final long numSamples;
+
+	/**
+	 * Opens an MPX file.
+	 *
+	 * @param file the file
+	 * @param sampleRate the sample rate of raw files, ignored for WAV files
+	 * @throws IOException if the file cannot be read, or is a WAV file in a format other than
+	 * 16-bit mono PCM
+	 */
+	public MpxFile(File file, int sampleRate) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "r");
+		this.channel = raf.getChannel();
+
+		ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+		channel.read(header, 0);
+		header.flip();
+		if(header.remaining() == 12 && header.getInt(0) == 0x46464952 /* RIFF */ && header.getInt(8) == 0x45564157 /* WAVE */) {
+			long[] data;
+			try {
+				data = parseWav();
+			} catch(IOException e) {
+				raf.close();
+				throw e;
+			}
+			this.sampleRate = (int) data[0];
+			this.dataOffset = data[1];
+			this.numSamples = data[2] / 2;
+		} else {
+			if(sampleRate <= 0) {
+				raf.close();
+				throw new IOException("Sample rate of raw MPX file " + file + " unknown");
+			}
+			this.sampleRate = sampleRate;
+			this.dataOffset = 0;
+			this.numSamples = channel.size() / 2;
+		}
+	}
+
+	/**
+	 * Walks through the chunks of a WAV file.
+	 *
+	 * @return the sample rate, the offset of the sample data and its length in bytes
+	 */
+	private long[] parseWav() throws IOException {
+		ByteBuffer chunk = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		long pos = 12;
+		int rate = -1;
+		while(true) {
+			chunk.clear().limit(8);
+			if(channel.read(chunk, pos) < 8) throw new IOException("No sample data in WAV file " + file);
+			int id = chunk.getInt(0);
+			long size = chunk.getInt(4) & 0xFFFFFFFFL;
+			pos += 8;
+
+			if(id == 0x20746D66 /* fmt */) {
+				chunk.clear();
+				channel.read(chunk, pos);
+				int format = chunk.getShort(0) & 0xFFFF;
+				int channels = chunk.getShort(2);
+				int bits = chunk.getShort(14);
+				if(format != 1 || channels != 1 || bits != 16) {
+					throw new IOException("Unsupported WAV format in " + file + ": only 16-bit mono PCM can be decoded");
+				}
+				rate = chunk.getInt(4);
+			} else if(id == 0x61746164 /* data */) {
+				if(rate < 0) throw new IOException("No format chunk before sample data in WAV file " + file);
+				// the size of the data chunk is often wrong in recordings which were cut short
+				size = Math.min(size, channel.size() - pos);
+				return new long[] {rate, pos, size};
+			}
+			pos += size + (size & 1);
+		}
+	}
+
+	/**
+	 * @brief Returns the sample rate.
+	 */
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @brief Returns the number of samples in the file.
+	 */
+	public long getNumSamples() {
+		return numSamples;
+	}
+
+	/**
+	 * @brief Returns the file.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @brief Returns a channel which reads a range of samples.
+	 *
+	 * Channels are independent of each other, and may be read from different threads.
+	 *
+	 * @param first the index of the first sample to read
+	 * @param count the number of samples to read, the range being truncated at the end of the file
+	 */
+	public ReadableByteChannel openChannel(long first, long count) {
+		first = Math.max(0, Math.min(first, numSamples));
+		count = Math.max(0, Math.min(count, numSamples - first));
+		return new MappedChannel(dataOffset + 2 * first, 2 * count);
+	}
+
+	/**
+	 * @brief Closes the file. Channels which are still being read fail once they need a new window.
+	 */
+	public void close() throws IOException {
+		raf.close();
+	}
+
+	/**
+	 * Reads a range of the file through mappings of {@link #WINDOW} bytes.
+	 */
+	private class MappedChannel implements ReadableByteChannel {
+		private long pos;
+		private final long end;
+		private MappedByteBuffer window = null;
+		/** Cleared by {@link #close()}, which may be called while another thread reads */
+		private volatile boolean open = true;
+
+		MappedChannel(long start, long length) {
+			this.pos = start;
+			this.end = start + length;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if(!open) throw new IOException("Channel closed");
+			if(window == null || !window.hasRemaining()) {
+				if(pos >= end) return -1;
+				int size = (int) Math.min(WINDOW, end - pos);
+				window = channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+				pos += size;
+			}
+
+			int n = Math.min(dst.remaining(), window.remaining());
+			int limit = window.limit();
+			window.limit(window.position() + n);
+			dst.put(window);
+			window.limit(limit);
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
+}
@@ -0,0 +1,339 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.input;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.ReadableByteChannel;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import eu.jacquet80.rds.core.BitStreamSynchronizer;
+import eu.jacquet80.rds.core.BitStreamSynchronizer.BitInversion;
+import eu.jacquet80.rds.core.RDS;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+/**
+ * @brief Decodes a recorded MPX file as fast as the processor allows.
+ *
+ * The file is read through an {@link MpxFile}, and split into chunks which are decoded in
+ * parallel, each by an {@link AudioBitReader} and a {@link BitStreamSynchronizer} of its own.
+ * Each chunk starts a few seconds before the end of the previous one, which gives the
+ * demodulator and the synchronizer time to lock before the chunk takes over. Groups are then
+ * delivered in the order of the recording: the time stamp of each group is its position in the
+ * file, in bits, and groups which the next chunk decodes again in the overlap are skipped.
+ *
+ * Only a few chunks are decoded ahead of the consumer, so that memory use does not depend on the
+ * length of the file. When the end of the file is reached, the processing speed is reported on
+ * the console, and can be retrieved with {@link #getSamplesPerSecond()}.
+ *
+ * Synchronization is not traced on the console, as traces of several chunks would be mixed up.
+ *
+ * Readers which are not read to the end must be closed with {@link #close()}, which stops the
+ * decoding threads.
+ */
+public class MpxFileGroupReader extends GroupReader implements Closeable {
+	/** Default length of a chunk, in seconds */
+	public static final int DEFAULT_CHUNK_SECONDS = 120;
+
+	/** Time given to a chunk to lock before it takes over from the previous one, in seconds */
+	private static final int OVERLAP_SECONDS = 5;
+
+	/**
+	 * Groups of two chunks whose time stamps are less than half a group apart are the same group.
+	 * Time stamps are derived from sample positions and the nominal bit rate, thus the time stamps
+	 * of two chunks may differ by a few bits.
+	 */
+	private static final int SAME_GROUP_BITS = 52;
+
+	private final PrintStream console;
+	private final MpxFile mpx;
+	private final int threads;
+	private final long chunkSamples;
+	private final long overlapSamples;
+	private final int numChunks;
+
+	private ExecutorService executor = null;
+	private final LinkedList<Future<Chunk>> pending = new LinkedList<Future<Chunk>>();
+	private int nextChunk = 0;
+	private boolean closed = false;
+
+	/** The chunk whose groups are being delivered, and the index of the next group */
+	private Chunk current = null;
+	private int currentPos = 0;
+
+	/** Time stamp of the last group delivered */
+	private long lastTime = Long.MIN_VALUE / 2;
+
+	/** Whether groups of the current chunk may still have been delivered by the previous chunk */
+	private boolean inOverlap = false;
+
+	private BitInversion inversion = BitInversion.AUTO;
+	private int maxCorrectedBurst = -1;
+
+	private long startTime;
+	private double samplesPerSecond = 0;
+
+	/**
+	 * Creates a reader which uses all processors and chunks of the default length.
+	 *
+	 * @param console the console on which to report the processing speed, or {@code null}
+	 * @param file a WAV file, or a file of raw 16-bit little-endian samples
+	 * @param sampleRate the sample rate of raw files, ignored for WAV files
+	 */
+	public MpxFileGroupReader(PrintStream console, File file, int sampleRate) throws IOException {
+		this(console, file, sampleRate, 0, DEFAULT_CHUNK_SECONDS);
+	}
+
+	/**
+	 * Creates a reader.
+	 *
+	 * @param console the console on which to report the processing speed, or {@code null}
+	 * @param file a WAV file, or a file of raw 16-bit little-endian samples
+	 * @param sampleRate the sample rate of raw files, ignored for WAV files
+	 * @param threads the number of chunks to decode at the same time, 0 for the number of
+	 * processors. With 1, the file is decoded in one piece.
+	 * @param chunkSeconds the length of a chunk, in seconds
+	 */
+	public MpxFileGroupReader(PrintStream console, File file, int sampleRate, int threads, int chunkSeconds) throws IOException {
+		this.console = console;
+		this.mpx = new MpxFile(file, sampleRate);
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+		long samples = mpx.getNumSamples();
+		if(this.threads == 1) {
+			this.chunkSamples = Math.max(samples, 1);
+			this.overlapSamples = 0;
+		} else {
+			this.chunkSamples = (long) chunkSeconds * mpx.getSampleRate();
+			this.overlapSamples = (long) OVERLAP_SECONDS * mpx.getSampleRate();
+		}
+		this.numChunks = (int) Math.max(1, (samples + chunkSamples - 1) / chunkSamples);
+	}
+
+	/**
+	 * @brief Forces the bit inversion of all chunks, to be called before reading the first group.
+	 */
+	public void forceInversion(BitInversion inversion) {
+		this.inversion = inversion;
+	}
+
+	/**
+	 * @brief Sets the maximum burst length to correct, to be called before reading the first group.
+	 *
+	 * @see BitStreamSynchronizer#setMaxCorrectedBurst(int)
+	 */
+	public void setMaxCorrectedBurst(int maxBurst) {
+		this.maxCorrectedBurst = maxBurst;
+	}
+
+	/**
+	 * @brief Returns the number of chunks the file is split into.
+	 */
+	public int getNumChunks() {
+		return numChunks;
+	}
+
+	/**
+	 * @brief Returns the number of samples processed per second of wall time, once the whole file
+	 * has been read, 0 before.
+	 */
+	public double getSamplesPerSecond() {
+		return samplesPerSecond;
+	}
+
+	@Override
+	public GroupReaderEvent getGroup() throws IOException, EndOfStream {
+		PackedGroup packed = new PackedGroup();
+		getGroup(packed);
+		return packed.toEvent();
+	}
+
+	@Override
+	public GroupReaderEvent getGroup(PackedGroup group) throws IOException, EndOfStream {
+		if(closed) throw new EndOfStream();
+		if(executor == null) start();
+
+		while(true) {
+			while(current != null && currentPos < current.count) {
+				int i = currentPos++;
+				int time = current.times[i];
+				if(inOverlap && time < lastTime + SAME_GROUP_BITS) continue;
+				inOverlap = false;
+				lastTime = time;
+
+				group.blocks = current.blocks[i];
+				group.okMask = current.masks[i] & 0xF;
+				group.correctedMask = current.masks[i] >> 4;
+				group.ignored = false;
+				group.present = true;
+				group.setSequentialTime(time);
+				return null;
+			}
+
+			if(pending.isEmpty()) {
+				finish();
+				throw new EndOfStream();
+			}
+			Future<Chunk> next = pending.removeFirst();
+			submit();
+			try {
+				current = next.get();
+			} catch(InterruptedException e) {
+				close();
+				throw new IOException("Interrupted while decoding " + mpx.getFile());
+			} catch(ExecutionException e) {
+				close();
+				if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+				throw new IOException(e.getCause().toString());
+			}
+			currentPos = 0;
+			inOverlap = true;
+		}
+	}
+
+	private void start() {
+		startTime = System.nanoTime();
+		executor = Executors.newFixedThreadPool(threads);
+		// one more chunk than threads, so that the next one is under way while the consumer
+		// goes through the groups of the current one
+		for(int i=0; i<=threads; i++) submit();
+	}
+
+	private void submit() {
+		if(nextChunk >= numChunks) return;
+		final int index = nextChunk++;
+		pending.addLast(executor.submit(new Callable<Chunk>() {
+			@Override
+			public Chunk call() throws IOException {
+				return decode(index);
+			}
+		}));
+	}
+
+	/**
+	 * @brief Stops decoding and closes the file.
+	 *
+	 * Chunks which are being decoded are abandoned. This is done automatically at the end of the
+	 * file and when decoding fails. Reading from a closed reader gives the end of the stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		for(Future<Chunk> f : pending) f.cancel(true);
+		pending.clear();
+		current = null;
+		if(executor != null) executor.shutdownNow();
+		mpx.close();
+	}
+
+	private void finish() throws IOException {
+		if(samplesPerSecond > 0) return;
+		close();
+		double duration = (System.nanoTime() - startTime) / 1e9;
+		long samples = mpx.getNumSamples();
+		samplesPerSecond = samples / duration;
+		if(console != null) {
+			console.printf("Decoded %s: %d samples in %.1f s, %.2f M samples/s (%.1f x real time)\n",
+					mpx.getFile().getName(), samples, duration, samplesPerSecond / 1e6,
+					samplesPerSecond / mpx.getSampleRate());
+		}
+	}
+
+	/**
+	 * Decodes a chunk, starting early enough to be locked at the end of the previous chunk.
+	 */
+	private Chunk decode(int index) throws IOException {
+		long first = Math.max(0, index * chunkSamples - overlapSamples);
+		long end = Math.min(mpx.getNumSamples(), (index + 1) * chunkSamples);
+		ReadableByteChannel in = mpx.openChannel(first, end - first);
+		AudioBitReader reader = new AudioBitReader(in, mpx.getSampleRate());
+		BitStreamSynchronizer bss = new BitStreamSynchronizer(reader);
+		if(inversion != BitInversion.AUTO) bss.forceInversion(inversion);
+		if(maxCorrectedBurst >= 0) bss.setMaxCorrectedBurst(maxCorrectedBurst);
+
+		Chunk chunk = new Chunk((int) Math.round(first * (double) RDS.RDS_BITRATE / mpx.getSampleRate()));
+		PackedGroup group = new PackedGroup();
+		try {
+			// the reader cancels the chunk by interrupting the thread when it is closed
+			while(!Thread.currentThread().isInterrupted()) {
+				bss.getGroup(group);
+				if(group.present) chunk.add(group);
+			}
+		} catch(EndOfStream e) {
+			// end of chunk
+		} catch(EOFException e) {
+			// end of chunk
+		} finally {
+			// also stops the demodulator thread if the chunk was cancelled
+			reader.close();
+		}
+		return chunk;
+	}
+
+	/**
+	 * The groups decoded from a chunk, in packed form, with time stamps relative to the start of
+	 * the file.
+	 */
+	private static class Chunk {
+		private final int startBit;
+		private long[] blocks = new long[256];
+		/** okMask in bits 0-3, correctedMask in bits 4-7 */
+		private int[] masks = new int[256];
+		private int[] times = new int[256];
+		private int count = 0;
+
+		Chunk(int startBit) {
+			this.startBit = startBit;
+		}
+
+		void add(PackedGroup group) {
+			if(count == blocks.length) {
+				int len = 2 * count;
+				long[] b = new long[len];
+				int[] m = new int[len];
+				int[] t = new int[len];
+				System.arraycopy(blocks, 0, b, 0, count);
+				System.arraycopy(masks, 0, m, 0, count);
+				System.arraycopy(times, 0, t, 0, count);
+				blocks = b;
+				masks = m;
+				times = t;
+			}
+			blocks[count] = group.blocks;
+			masks[count] = group.okMask | (group.correctedMask << 4);
+			times[count] = startBit + (int) group.getTimeValue();
+			count++;
+		}
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.input;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @brief A ring of audio samples in a direct {@code ByteBuffer}, for exactly one producer thread
+ * and one consumer thread.
+ *
+ * The producer writes samples (16-bit little-endian) straight into the buffer returned by
+ * {@link #getBuffer()}: it calls {@link #beginWrite(int)} to obtain a contiguous free region at
+ * {@link #getWriteOffset()}, fills it and then calls {@link #endWrite(int)}. Native code can
+ * thus write into the ring without any intermediate copy, using the address of the direct
+ * buffer. Java producers can use {@link #write(ByteBuffer)} instead.
+ *
+ * The consumer reads the ring as a {@link ReadableByteChannel}, so that it can be passed to
+ * {@link AudioBitReader#AudioBitReader(ReadableByteChannel, int)}.
+ *
+ * No lock is taken: threads only wait (by parking) when the ring is empty (consumer) or full
+ * (producer). A ring can also be set to drop data when full instead of waiting, which is
+ * preferable when nobody is required to consume the data.
+ */
+public class SampleRing implements ReadableByteChannel {
+	/** The ring buffer, its capacity is a power of two */
+	private final ByteBuffer buffer;
+
+	/** Capacity in bytes */
+	private final int capacity;
+
+	/** Whether the producer drops data rather than waiting when the ring is full */
+	private final boolean dropWhenFull;
+
+	/** Views of the buffer, so that producer and consumer do not share a position */
+	private final ByteBuffer writeView;
+	private final ByteBuffer readView;
+
+	/** Number of bytes written by the producer since the beginning */
+	private volatile long writePos = 0;
+
+	/** Number of bytes read since the beginning */
+	private volatile long readPos = 0;
+
+	/** Whether the producer has signaled the end of the stream */
+	private volatile boolean ended = false;
+
+	/** Whether the consumer has closed the channel */
+	private volatile boolean closed = false;
+
+	/** Threads waiting for data (consumer) or for space (producer), if any */
+	private volatile Thread waitingConsumer = null;
+	private volatile Thread waitingProducer = null;
+
+	/** Number of bytes dropped because the ring was full */
+	private volatile long dropped = 0;
+
+	/** How long a waiting thread parks before checking again, in nanoseconds */
+	private static final long PARK_NANOS = 10000000;
+
+	/**
+	 * Creates a new ring.
+	 *
+	 * @param capacity the minimum capacity, in bytes (rounded up to a power of two)
+	 * @param dropWhenFull whether the producer drops data when the ring is full, rather than
+	 * waiting for the consumer
+	 */
+	public SampleRing(int capacity, boolean dropWhenFull) {
+		int c = 2;
+		while(c < capacity) c <<= 1;
+		this.capacity = c;
+		this.dropWhenFull = dropWhenFull;
+		this.buffer = ByteBuffer.allocateDirect(c);
+		this.writeView = buffer.duplicate();
+		this.readView = buffer.duplicate();
+	}
+
+	/**
+	 * @brief Returns the direct buffer which holds the ring.
+	 *
+	 * Producers write into it at {@link #getWriteOffset()}, between calls to
+	 * {@link #beginWrite(int)} and {@link #endWrite(int)}.
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @brief Returns the offset in the buffer at which the producer writes next.
+	 */
+	public int getWriteOffset() {
+		return (int) writePos & (capacity - 1);
+	}
+
+	/**
+	 * @brief Waits until there is room in the ring. To be called by the producer thread only.
+	 *
+	 * @param maxBytes the number of bytes the producer has to write
+	 * @return the number of bytes which may be written at {@link #getWriteOffset()}, between 1 and
+	 * {@code maxBytes}; 0 if the ring is full and drops data; -1 if the channel has been closed
+	 */
+	public int beginWrite(int maxBytes) {
+		int free = capacity - (int) (writePos - readPos);
+		if(free == 0 && !closed) {
+			if(dropWhenFull) return 0;
+			waitingProducer = Thread.currentThread();
+			try {
+				while(!closed && (free = capacity - (int) (writePos - readPos)) == 0) {
+					LockSupport.parkNanos(this, PARK_NANOS);
+				}
+			} finally {
+				waitingProducer = null;
+			}
+		}
+		if(closed) return -1;
+		return Math.min(Math.min(maxBytes, free), capacity - getWriteOffset());
+	}
+
+	/**
+	 * @brief Makes bytes written by the producer visible to the consumer. To be called by the
+	 * producer thread only.
+	 *
+	 * @param count the number of bytes written, at most the value returned by
+	 * {@link #beginWrite(int)}
+	 */
+	public void endWrite(int count) {
+		writePos += count;
+		Thread t = waitingConsumer;
+		if(t != null) LockSupport.unpark(t);
+	}
+
+	/**
+	 * @brief Writes all remaining bytes of {@code src}, waiting for room as needed. To be called by
+	 * the producer thread only.
+	 *
+	 * If the ring drops data when full, bytes which do not fit are dropped.
+	 *
+	 * @return the number of bytes written, or -1 if the channel has been closed
+	 */
+	public int write(ByteBuffer src) {
+		int written = 0;
+		while(src.hasRemaining()) {
+			int n = beginWrite(src.remaining());
+			if(n < 0) return -1;
+			if(n == 0) {
+				dropped += src.remaining();
+				src.position(src.limit());
+				break;
+			}
+			int offset = getWriteOffset();
+			writeView.limit(offset + n).position(offset);
+			int limit = src.limit();
+			src.limit(src.position() + n);
+			writeView.put(src);
+			src.limit(limit);
+			endWrite(n);
+			written += n;
+		}
+		return written;
+	}
+
+	/**
+	 * @brief Signals the end of the stream. To be called by the producer thread only.
+	 *
+	 * The consumer gets the remaining data, then end of stream.
+	 */
+	public void endOfStream() {
+		ended = true;
+		Thread t = waitingConsumer;
+		if(t != null) LockSupport.unpark(t);
+	}
+
+	/**
+	 * @brief Reads data from the ring. To be called by the consumer thread only.
+	 *
+	 * Blocks until at least one byte is available, then reads as many bytes as are available and
+	 * fit into {@code dst}.
+	 *
+	 * @return the number of bytes read, or -1 at end of stream
+	 */
+	@Override
+	public int read(ByteBuffer dst) throws ClosedChannelException {
+		if(closed) throw new ClosedChannelException();
+		int avail = (int) (writePos - readPos);
+		if(avail == 0) {
+			waitingConsumer = Thread.currentThread();
+			try {
+				while(true) {
+					// read ended first: data written before the end is then visible below
+					boolean wasEnded = ended;
+					avail = (int) (writePos - readPos);
+					if(avail > 0) break;
+					if(wasEnded) return -1;
+					if(closed) throw new ClosedChannelException();
+					LockSupport.parkNanos(this, PARK_NANOS);
+				}
+			} finally {
+				waitingConsumer = null;
+			}
+		}
+
+		int n = Math.min(avail, dst.remaining());
+		long pos = readPos;
+		int done = 0;
+		while(done < n) {
+			int offset = (int) (pos + done) & (capacity - 1);
+			// do not read across the end of the ring
+			int chunk = Math.min(n - done, capacity - offset);
+			readView.limit(offset + chunk).position(offset);
+			dst.put(readView);
+			done += chunk;
+		}
+		readPos = pos + n;
+		Thread t = waitingProducer;
+		if(t != null) LockSupport.unpark(t);
+		return n;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return !closed;
+	}
+
+	/**
+	 * @brief Closes the consumer side. A producer waiting for room is released.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		Thread t = waitingProducer;
+		if(t != null) LockSupport.unpark(t);
+	}
+
+	/**
+	 * @brief Returns the number of bytes currently in the ring.
+	 */
+	public int getDepth() {
+		return (int) (writePos - readPos);
+	}
+
+	/**
+	 * @brief Returns the number of bytes dropped because the ring was full.
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @brief Returns the capacity of the ring, in bytes.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+}
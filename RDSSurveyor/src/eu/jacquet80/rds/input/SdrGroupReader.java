@@ -1,11 +1,7 @@
 package eu.jacquet80.rds.input;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.io.PrintStream;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -14,14 +10,18 @@ import eu.jacquet80.rds.core.BitStreamSynchronizer;
 import eu.jacquet80.rds.core.BitStreamSynchronizer.Status;
 import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
 import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
 import eu.jacquet80.rds.log.RealTime;
 
 public class SdrGroupReader extends TunerGroupReader {
 	/** The sample rate at which we receive data from the tuner. */
-	private static final int sampleRate = 250000;
+	protected static final int sampleRate = 250000;
 	
-	private final PipedInputStream syncIn;
-	private final DataOutputStream tunerOut;
+	/**
+	 * Samples from the tuner (16-bit little-endian), about one second's worth. The native driver
+	 * writes into this ring directly.
+	 */
+	protected final SampleRing sampleRing = new SampleRing(2 * sampleRate, false);
 	private final BitStreamSynchronizer synchronizer;
 	private boolean synced = false;
 	private boolean newGroups;
@@ -42,7 +42,27 @@ public class SdrGroupReader extends TunerGroupReader {
 	private boolean audioPlaying = false;
 	private final Semaphore resumePlaying = new Semaphore(0);
 
+	/**
+	 * @brief Sets up the demodulator, without opening any device.
+	 * 
+	 * Subclasses which do not use the native driver must implement {@link #open()},
+	 * {@link #setFrequency(int)}, {@link #seek(boolean)} and {@link #getDeviceName()}, and feed
+	 * samples into {@link #sampleRing}.
+	 */
+	protected SdrGroupReader(PrintStream console) {
+		synchronizer = new BitStreamSynchronizer(console, new AudioBitReader(sampleRing, sampleRate));
+		
+		synchronizer.addStatusChangeListener(new BitStreamSynchronizer.StatusChangeListener() {
+			@Override
+			public void report(Status status) {
+				synced = (status == Status.SYNCED) ? true : false;
+			}
+		});
+	}
+
 	public SdrGroupReader(PrintStream console, String filename) throws UnavailableInputMethod, IOException {
+		this(console);
+		
 		File path = new File(filename);
 		String absoluteLibPath = path.getAbsolutePath();
 		String aFilename = path.getName();
@@ -54,17 +74,6 @@ public class SdrGroupReader extends TunerGroupReader {
 					aFilename + ": cannot load library");
 		}
 
-		syncIn = new PipedInputStream();
-		tunerOut = new DataOutputStream(new PipedOutputStream(syncIn));
-		synchronizer = new BitStreamSynchronizer(console, new AudioBitReader(new DataInputStream(syncIn), sampleRate));
-		
-		synchronizer.addStatusChangeListener(new BitStreamSynchronizer.StatusChangeListener() {
-			@Override
-			public void report(Status status) {
-				synced = (status == Status.SYNCED) ? true : false;
-			}
-		});
-
 		if(open()) {
 			System.out.println(
 					aFilename + ": device found, using it!");
@@ -82,6 +91,15 @@ public class SdrGroupReader extends TunerGroupReader {
 		*/
 	}
 
+	/**
+	 * @brief Sets the maximum burst length to correct.
+	 *
+	 * @see BitStreamSynchronizer#setMaxCorrectedBurst(int)
+	 */
+	public void setMaxCorrectedBurst(int maxBurst) {
+		synchronizer.setMaxCorrectedBurst(maxBurst);
+	}
+
 	@Override
 	public boolean isStereo() {
 		return false; // TODO implement sound
@@ -220,6 +238,24 @@ public class SdrGroupReader extends TunerGroupReader {
 		}
 		return ret;
 	}
+
+	@Override
+	public GroupReaderEvent getGroup(PackedGroup group) throws IOException, EndOfStream {
+		readTuner(); // this is here for legacy reasons, the method currently does nothing
+		
+		if (isFrequencyChanged()) {
+			// if frequency has just been changed, must report an event
+			group.present = false;
+			return new FrequencyChangeEvent(new RealTime(), getFrequency());
+		}
+		
+		GroupReaderEvent ret = synchronizer.getGroup(group);
+		
+		if (group.present || ret != null) {
+			newGroups = true;
+		}
+		return ret;
+	}
 	
 	/**
 	 * @brief Returns current signal strength in dBm.
@@ -267,7 +303,7 @@ public class SdrGroupReader extends TunerGroupReader {
 	 * 
 	 * @param frequency The new frequency, in kHz
 	 */
-	private void onFrequencyChanged(int frequency) {
+	protected void onFrequencyChanged(int frequency) {
 		frequencyLock.writeLock().lock();
 		try {
 			this.mFrequency = frequency;
@@ -288,7 +324,7 @@ public class SdrGroupReader extends TunerGroupReader {
 	 * 
 	 * @param rssi
 	 */
-	private void onRssiChanged(float rssi) {
+	protected void onRssiChanged(float rssi) {
 		synchronized(mRssi) {
 			mRssi = rssi;
 		}
@@ -311,7 +347,12 @@ public class SdrGroupReader extends TunerGroupReader {
 		return 0;
 	}
 	
-	private native boolean open();
+	/**
+	 * @brief Opens the device and starts feeding samples into {@link #sampleRing}.
+	 * 
+	 * @return true if a device was found
+	 */
+	protected native boolean open();
 
 	static {
 		dir = System.getProperty("user.dir");
@@ -1,141 +1,143 @@
 package eu.jacquet80.rds.input;
 
 import java.io.IOException;
-import java.util.LinkedList;
 
-import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
-import eu.jacquet80.rds.input.group.GroupEvent;
 import eu.jacquet80.rds.input.group.GroupReaderEvent;
-import eu.jacquet80.rds.input.group.GroupReaderEventVisitor;
+import eu.jacquet80.rds.input.group.PackedGroup;
 import eu.jacquet80.rds.input.group.StationChangeEvent;
 
 public class StationChangeDetector extends GroupReader {
 	private final GroupReader reader;
 	
-	private final LinkedList<GroupEvent> queuedGroups = new LinkedList<GroupEvent>();
+	// queued groups, in a ring of reusable packed groups which grows as needed
+	private PackedGroup[] queuedGroups = new PackedGroup[16];
+	private int queueHead = 0;
+	private int queueSize = 0;
+	
 	private boolean expectingPI = true;
 	private int currentPI = -1;
 	private GroupReaderEvent result;
-	
-	private final GroupReaderEventVisitor visitor = new GroupReaderEventVisitor() {
-		@Override
-		public void visit(StationChangeEvent stationChangeEvent) {
-			result = stationChangeEvent;
-			// pass through station change events
-			
-			// if there are still queued groups because PI was not known,
-			// then they should be ignored for good.
-			queuedGroups.clear();
-			
-			expectingPI = true;
-		}
-
-		@Override
-		public void visit(FrequencyChangeEvent frequencyChangeEvent) {
-			result = frequencyChangeEvent;
-			// pass through frequency change events
-			
-			// if there are still queued groups because PI was not known,
-			// then they should be ignored for good.
-			queuedGroups.clear();
-			
-			expectingPI = true;
-		}
-
-		@Override
-		public void visit(GroupEvent groupEvent) {
-			int[] blocks = groupEvent.blocks;
-			
-			///System.out.println(". " + blocks[0]);
-			
-			if(expectingPI) {
-				if(blocks[0] != -1) {	// PI was found in the current group
-					expectingPI = false;	// don't expect PI anymore
-					if(blocks[0] != currentPI) {	// if PI has changed
-						// 1) memorize new current PI
-						currentPI = blocks[0];
-						// 2) flush out any queued groups
-						queuedGroups.clear();
-						// 3) enqueue current group
-						queuedGroups.addLast(groupEvent);
-						// 4) send station changed event
-						result = new StationChangeEvent(groupEvent.getTime());
-					} else {	// if PI has not changed
-						// 1) enqueue current group
-						queuedGroups.addLast(groupEvent);
-						// 2) return void group, so that the queued groups be unqueued next
-						result = null;
-					}
-				} else {	// PI still not found => enqueue group
-					queuedGroups.addLast(groupEvent);
-					result = null;
-				}
-			} else {
-				if(blocks[0] == -1) {
-					expectingPI = true;
-					queuedGroups.addLast(groupEvent);
-					result = null;
-				} else {
-					if(currentPI == blocks[0])
-						result = groupEvent;	// "normal" behavior, when not expecting PI
-					else {
-						// defer station change until a new group is found with
-						// a PI different from currentPI
-						// Note: maybe we could improve this by storing which
-						// is the PI to expect...
-						queuedGroups.addLast(groupEvent);
-						expectingPI = true;
-						
-						/* Old code: would fire a StationChangeEvent
-						 * immediately.
-						currentPI = blocks[0];
-						queuedGroups.clear();
-						queuedGroups.addLast(groupEvent);
-						result = new StationChangeEvent(groupEvent.getTime());
-						 */
-					}
-				}
-			}
-		}
-
-	};
 
 	
 	public StationChangeDetector(GroupReader reader) {
 		this.reader = reader;
 		setParent(reader);
+		for(int i=0; i<queuedGroups.length; i++) queuedGroups[i] = new PackedGroup();
 	}
 	
 	
-	private GroupReaderEvent getGroupOrNull() throws IOException, EndOfStream {
-		///System.out.println("queue: " + queuedGroups);
-		if(!expectingPI && !queuedGroups.isEmpty()) {
-			// There are queued groups awaiting to be sent out
-			return queuedGroups.removeFirst();
+	private void enqueue(PackedGroup group) {
+		if(queueSize == queuedGroups.length) {
+			PackedGroup[] groups = new PackedGroup[2 * queueSize];
+			for(int i=0; i<queueSize; i++) groups[i] = queuedGroups[(queueHead + i) % queueSize];
+			for(int i=queueSize; i<groups.length; i++) groups[i] = new PackedGroup();
+			queuedGroups = groups;
+			queueHead = 0;
 		}
+		queuedGroups[(queueHead + queueSize) % queuedGroups.length].set(group);
+		queueSize++;
+	}
+	
+	private void clearQueue() {
+		queueHead = 0;
+		queueSize = 0;
+	}
+	
+	
+	/**
+	 * Processes a group received from the reader. If a station change is detected, the
+	 * corresponding event is stored into {@code result}.
+	 * 
+	 * @return {@code true} if the group is to be passed through, {@code false} if it has been
+	 * queued
+	 */
+	private boolean processGroup(PackedGroup group) {
+		int pi = group.getBlock(0);
 		
-		// Otherwise get group event from reader
-		final GroupReaderEvent event = reader.getGroup();
-		///System.out.println("g: " + event);
-		
-		if(event == null) return null;		// propagate null events
-		
-		result = null;
-		
-		event.accept(visitor);
-		
-		return result;
+		if(expectingPI) {
+			if(pi != -1) {	// PI was found in the current group
+				expectingPI = false;	// don't expect PI anymore
+				if(pi != currentPI) {	// if PI has changed
+					// 1) memorize new current PI
+					currentPI = pi;
+					// 2) flush out any queued groups
+					clearQueue();
+					// 3) enqueue current group
+					enqueue(group);
+					// 4) send station changed event
+					result = new StationChangeEvent(group.getTime());
+					return false;
+				} else {	// if PI has not changed
+					// 1) enqueue current group
+					enqueue(group);
+					// 2) return void group, so that the queued groups be unqueued next
+					return false;
+				}
+			} else {	// PI still not found => enqueue group
+				enqueue(group);
+				return false;
+			}
+		} else {
+			if(pi == -1) {
+				expectingPI = true;
+				enqueue(group);
+				return false;
+			} else {
+				if(currentPI == pi)
+					return true;	// "normal" behavior, when not expecting PI
+				else {
+					// defer station change until a new group is found with
+					// a PI different from currentPI
+					// Note: maybe we could improve this by storing which
+					// is the PI to expect...
+					enqueue(group);
+					expectingPI = true;
+					return false;
+				}
+			}
+		}
 	}
 
 
 	@Override
 	public GroupReaderEvent getGroup() throws IOException, EndOfStream {
+		PackedGroup group = new PackedGroup();
+		GroupReaderEvent event = getGroup(group);
+		return group.present ? group.toEvent() : event;
+	}
+	
+	
+	@Override
+	public GroupReaderEvent getGroup(PackedGroup group) throws IOException, EndOfStream {
 		while(true) {
-			GroupReaderEvent event = getGroupOrNull();
-			//System.out.println(event);
-			if(event != null) return event;
+			if(!expectingPI && queueSize > 0) {
+				// There are queued groups awaiting to be sent out
+				group.set(queuedGroups[queueHead]);
+				queueHead = (queueHead + 1) % queuedGroups.length;
+				queueSize--;
+				return null;
+			}
+			
+			// Otherwise get group event from reader
+			GroupReaderEvent event = reader.getGroup(group);
+			
+			if(group.present) {
+				result = null;
+				if(processGroup(group)) return null;
+				if(result != null) {
+					group.present = false;
+					return result;
+				}
+			} else if(event != null) {
+				// pass through station and frequency change events
+				
+				// if there are still queued groups because PI was not known,
+				// then they should be ignored for good.
+				clearQueue();
+				
+				expectingPI = true;
+				return event;
+			}
 		}
 	}
-
-
 }
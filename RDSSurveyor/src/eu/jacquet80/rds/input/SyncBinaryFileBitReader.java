@@ -25,6 +25,7 @@
 
 package eu.jacquet80.rds.input;
 
+import java.io.Closeable;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
@@ -32,8 +33,11 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 
-public class SyncBinaryFileBitReader extends BitReader {
+public class SyncBinaryFileBitReader extends BitReader implements Closeable {
+	private final static int BUFLEN = 4096;
+	
 	private final InputStream isr;
+	private final byte[] buffer = new byte[BUFLEN];
 	private int oct;
 	private int octPtr;
 	private int bytePtr;
@@ -73,6 +77,44 @@ public class SyncBinaryFileBitReader extends BitReader {
 		//System.err.print(((oct & 128)>>7) + "(" + octPtr + ")");
 		return (oct&128) != 0;
 	}
+	
+	@Override
+	public int readBits(long[] dst, int maxBits) throws IOException {
+		int count = 0;
+		
+		// first return the bits left over from the latest call to getBit()
+		while(octPtr > 0 && count < maxBits) {
+			putBits(dst, count++, getBit() ? 1 : 0, 1);
+		}
+		
+		int nBytes = Math.min(BUFLEN, (maxBits - count) / 8);
+		if(nBytes == 0) {
+			return count > 0 ? count : super.readBits(dst, maxBits);
+		}
+		
+		int n = isr.read(buffer, 0, nBytes);
+		if(n < 0) return count > 0 ? count : -1;
+		
+		for(int i=0; i<n; i++) {
+			bytePtr = (bytePtr + 1) % 4;
+			int b = buffer[i] & 0xFF;
+			if(bytePtr == 3) {
+				// only the 2 most significant bits of every 4th byte are used
+				putBits(dst, count, b >> 6, 2);
+				count += 2;
+			} else {
+				putBits(dst, count, b, 8);
+				count += 8;
+			}
+		}
+		return count;
+	}
 
-
+	/**
+	 * @brief Closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		isr.close();
+	}
 }
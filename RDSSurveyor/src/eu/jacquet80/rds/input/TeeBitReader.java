@@ -45,9 +45,38 @@ public class TeeBitReader extends BitReader {
 	
 	public boolean getBit() throws IOException {
 		boolean bit = reader.getBit();
-		currentByte <<= 1;
-		if(bit) currentByte |= 1;
-		currentBitCount++;
+		writeBits(bit ? 1 : 0, 1);
+		return bit;
+	}
+	
+	@Override
+	public int readBits(long[] dst, int maxBits) throws IOException {
+		return copyBits(dst, reader.readBits(dst, maxBits));
+	}
+	
+	@Override
+	public int readBits(long[] dst, byte[] confidence, int maxBits) throws IOException {
+		return copyBits(dst, reader.readBits(dst, confidence, maxBits));
+	}
+	
+	@Override
+	public boolean hasBitConfidence() {
+		return reader.hasBitConfidence();
+	}
+	
+	private int copyBits(long[] dst, int n) throws IOException {
+		for(int pos = 0; pos < n; ) {
+			// write up to a whole byte at once
+			int count = Math.min(8 - currentBitCount, n - pos);
+			writeBits((int) getBits(dst, pos, count), count);
+			pos += count;
+		}
+		return n;
+	}
+	
+	private void writeBits(int bits, int count) throws IOException {
+		currentByte = (currentByte << count) | bits;
+		currentBitCount += count;
 		if(currentBitCount == 8) {
 			writer.write(currentByte);
 			currentByte = 0;
@@ -58,7 +87,6 @@ public class TeeBitReader extends BitReader {
 				currentByteCount = 0;
 			}
 		}
-		return bit;
 	}
 
 	@Override
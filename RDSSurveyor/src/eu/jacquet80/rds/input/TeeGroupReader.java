@@ -28,54 +28,59 @@ package eu.jacquet80.rds.input;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
 
-import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
-import eu.jacquet80.rds.input.group.GroupEvent;
 import eu.jacquet80.rds.input.group.GroupReaderEvent;
-import eu.jacquet80.rds.input.group.GroupReaderEventVisitor;
-import eu.jacquet80.rds.input.group.StationChangeEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
 
+/**
+ * @brief Passes the groups of a reader through, while logging them to a file.
+ *
+ * The log is written by a {@link GroupLogWriter}, in the hexadecimal format unless another
+ * writer is given. When writing to a file, the writing is done by an
+ * {@link AsyncGroupLogWriter}, thus a slow disk does not hold up decoding. The log is flushed
+ * according to the writer's policy, and closed at the end of the stream.
+ */
 public class TeeGroupReader extends GroupReader {
-	private final PrintWriter writer;
+	private final GroupLogWriter writer;
 	private final GroupReader reader;
 	
 	public TeeGroupReader(GroupReader reader, File of) throws IOException {
+		this(reader, new AsyncGroupLogWriter(new HexGroupWriter(of)));
+	}
+	
+	public TeeGroupReader(GroupReader reader, GroupLogWriter writer) {
 		this.reader = reader;
-		writer = new PrintWriter(of);
-		writer.println("% RDS hexgroups");
+		this.writer = writer;
 		setParent(reader);
 	}
 	
 	@Override
 	public GroupReaderEvent getGroup() throws IOException, EndOfStream {
-		GroupReaderEvent event = reader.getGroup();
-		if(event == null) return null;		// propagate null event
-		
-		event.accept(new GroupReaderEventVisitor() {
-			@Override
-			public void visit(FrequencyChangeEvent freqChangeEvent) {
-				writer.print("% Freq " + freqChangeEvent.frequency + ", date=" + 
-						freqChangeEvent.getTime().toLongString());
-			}
-			
-			@Override
-			public void visit(GroupEvent groupEvent) {
-				for(int i=0; i<4; i++) {
-					if(groupEvent.blocks[i]>=0) writer.printf("%04X ", groupEvent.blocks[i]);
-					else writer.print("---- ");
-				}
-				writer.print("@" + groupEvent.getTime().toLongString());
-			}
-
-			@Override
-			public void visit(StationChangeEvent stationChangeEvent) {
-				// do nothing
+		PackedGroup group = new PackedGroup();
+		GroupReaderEvent event = getGroup(group);
+		return group.present ? group.toEvent() : event;
+	}
+	
+	@Override
+	public GroupReaderEvent getGroup(PackedGroup group) throws IOException, EndOfStream {
+		GroupReaderEvent event;
+		try {
+			event = reader.getGroup(group);
+		} catch(EndOfStream e) {
+			try {
+				writer.close();
+			} catch(IOException ioe) {
+				System.err.println("TeeGroupReader: " + ioe);
 			}
-		});
-
-		writer.println();
-		writer.flush();
+			throw e;
+		}
+		
+		if(group.present) {
+			writer.writeGroup(group);
+		} else {
+			if(event == null) return null;		// propagate null event
+			writer.writeEvent(event);
+		}
 		
 		return event;
 	}
@@ -8,15 +8,26 @@ public class GroupEvent extends GroupReaderEvent {
 	public final int[] blocks;
 	public final boolean ignored;
 	
+	/**
+	 * Bit field indicating which blocks were received with errors and corrected. Block 0 is
+	 * indicated by the least-significant bit.
+	 */
+	public final int correctedMask;
+	
 	@Override
 	public void accept(GroupReaderEventVisitor visitor) {
 		visitor.visit(this);
 	}
 
 	public GroupEvent(RDSTime time, int[] blocks, boolean ignored) {
+		this(time, blocks, ignored, 0);
+	}
+	
+	public GroupEvent(RDSTime time, int[] blocks, boolean ignored, int correctedMask) {
 		super(time);
 		this.blocks = blocks;
 		this.ignored = ignored;
+		this.correctedMask = correctedMask;
 	}
 	
 	@Override
@@ -0,0 +1,191 @@
+package eu.jacquet80.rds.input.group;
+
+import java.util.Date;
+
+import eu.jacquet80.rds.log.RDSTime;
+import eu.jacquet80.rds.log.RealTime;
+import eu.jacquet80.rds.log.SequentialTime;
+
+/**
+ * @brief A group in packed form, which can be reused from one group to the next.
+ *
+ * The four 16-bit blocks are packed into a single {@code long}, and the time stamp is kept as a
+ * primitive value. Group readers fill such an instance in
+ * {@link eu.jacquet80.rds.input.GroupReader#getGroup(PackedGroup)}, so that no object needs to
+ * be allocated per group along the pipeline. A {@link GroupEvent} is created only when a
+ * consumer asks for one, by calling {@link #toEvent()}.
+ */
+public class PackedGroup {
+	/**
+	 * The four blocks, block 0 in the most significant 16 bits. Blocks which were not received
+	 * correctly are zero.
+	 */
+	public long blocks;
+
+	/**
+	 * Bit field indicating which blocks were received correctly (possibly after correction).
+	 * Block 0 is indicated by the least-significant bit.
+	 */
+	public int okMask;
+
+	/**
+	 * Bit field indicating which blocks were received with errors and corrected. Block 0 is
+	 * indicated by the least-significant bit.
+	 */
+	public int correctedMask;
+
+	public boolean ignored;
+
+	/**
+	 * Whether this instance holds a group. This is set by
+	 * {@link eu.jacquet80.rds.input.GroupReader#getGroup(PackedGroup)} to tell groups apart
+	 * from other events.
+	 */
+	public boolean present;
+
+	private long time;
+	private boolean realTime;
+
+	// cached time object, created on demand (or given by the reader)
+	private RDSTime timeObject;
+
+	/**
+	 * @brief Returns block {@code i} of a packed group, regardless of whether it is valid.
+	 */
+	public static int getBlock(long blocks, int i) {
+		return (int) (blocks >>> (48 - 16*i)) & 0xFFFF;
+	}
+
+	/**
+	 * @brief Returns block {@code i}, or -1 if it was not received correctly.
+	 */
+	public int getBlock(int i) {
+		return (okMask & (1 << i)) != 0 ? getBlock(blocks, i) : -1;
+	}
+
+	/**
+	 * @brief Sets all four blocks, using -1 for blocks that were not received correctly.
+	 */
+	public void setBlocks(int[] blocks) {
+		this.blocks = 0;
+		this.okMask = 0;
+		for(int i=0; i<4; i++) {
+			if(blocks[i] >= 0) {
+				this.blocks |= (long) (blocks[i] & 0xFFFF) << (48 - 16*i);
+				this.okMask |= 1 << i;
+			}
+		}
+	}
+
+	/**
+	 * @brief Returns the blocks as a new array, using -1 for blocks that were not received
+	 * correctly.
+	 */
+	public int[] toBlocks() {
+		int[] res = new int[4];
+		for(int i=0; i<4; i++) res[i] = getBlock(i);
+		return res;
+	}
+
+	/**
+	 * @brief Sets the time stamp as a group or bit count since the beginning of the stream,
+	 * which corresponds to a {@link SequentialTime}.
+	 */
+	public void setSequentialTime(int groupTime) {
+		this.time = groupTime;
+		this.realTime = false;
+		this.timeObject = null;
+	}
+
+	/**
+	 * @brief Sets the time stamp as milliseconds since the epoch, which corresponds to a
+	 * {@link RealTime}.
+	 */
+	public void setRealTime(long millis) {
+		this.time = millis;
+		this.realTime = true;
+		this.timeObject = null;
+	}
+
+	/**
+	 * @brief Sets the time stamp from an existing time object.
+	 */
+	public void setTime(RDSTime time) {
+		if(time instanceof RealTime) {
+			this.time = time.getRealTime(null, null).getTime();
+			this.realTime = true;
+		} else if(time instanceof SequentialTime) {
+			this.time = ((SequentialTime) time).getGroupTime();
+			this.realTime = false;
+		} else {
+			this.time = 0;
+			this.realTime = false;
+		}
+		this.timeObject = time;
+	}
+
+	/**
+	 * @brief Returns the time stamp as a primitive value: a bit count for sequential time, or
+	 * milliseconds since the epoch for real time.
+	 *
+	 * The value is 0 if the time stamp was set from a time object other than {@link RealTime} or
+	 * {@link SequentialTime}.
+	 */
+	public long getTimeValue() {
+		return time;
+	}
+
+	/**
+	 * @brief Returns whether the time stamp is a {@link RealTime}, rather than a sequential time.
+	 */
+	public boolean isRealTime() {
+		return realTime;
+	}
+
+	/**
+	 * @brief Returns the time stamp as a time object, which is created on the first call.
+	 */
+	public RDSTime getTime() {
+		if(timeObject == null) {
+			timeObject = realTime ? new RealTime(new Date(time)) : new SequentialTime((int) time);
+		}
+		return timeObject;
+	}
+
+	/**
+	 * @brief Stores the group carried by a {@code GroupEvent}.
+	 */
+	public void set(GroupEvent groupEvent) {
+		setBlocks(groupEvent.blocks);
+		correctedMask = groupEvent.correctedMask;
+		ignored = groupEvent.ignored;
+		present = true;
+		setTime(groupEvent.getTime());
+	}
+
+	/**
+	 * @brief Copies another packed group into this one.
+	 */
+	public void set(PackedGroup group) {
+		blocks = group.blocks;
+		okMask = group.okMask;
+		correctedMask = group.correctedMask;
+		ignored = group.ignored;
+		present = group.present;
+		time = group.time;
+		realTime = group.realTime;
+		timeObject = group.timeObject;
+	}
+
+	/**
+	 * @brief Creates a {@code GroupEvent} for this group.
+	 */
+	public GroupEvent toEvent() {
+		return new GroupEvent(getTime(), toBlocks(), ignored, correctedMask);
+	}
+
+	@Override
+	public String toString() {
+		return toEvent().toString();
+	}
+}
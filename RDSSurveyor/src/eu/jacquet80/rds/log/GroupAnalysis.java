@@ -0,0 +1,291 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.log;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Formatter;
+import java.util.IllegalFormatException;
+import java.util.Locale;
+
+/**
+ * @brief The analysis of a group, as produced by the group-level decoder, rendered as text only
+ * when somebody asks for it.
+ *
+ * The fields common to all groups (PI, callsign, group type, TP, PTY) are kept as values. The
+ * analysis specific to the group type is written to the {@link PrintWriter} returned by
+ * {@link #getWriter()}, which records what is printed without formatting it: text is kept as is,
+ * and calls to {@code printf} and {@code format} are kept as a format string and its arguments.
+ * Formatting takes place when {@link #toString()} is first called, which does not happen at all
+ * if nobody displays the group.
+ *
+ * Arguments which are not numbers, characters, booleans or strings are converted to strings when
+ * recorded, so that later changes to the objects do not alter the analysis.
+ *
+ * The analysis is written by the decoder, then handed over to the log, where it may be read from
+ * any thread. Once rendered, only the text and the common fields are kept, and the analysis can
+ * no longer be changed.
+ */
+public class GroupAnalysis {
+	private int pi = -1;
+	private String callsign = null;
+	private int type = -1;
+	private int version = -1;
+	private int tp = -1;
+	private int pty = -1;
+
+	/** Recorded output: strings, and {@link Formatted} items for deferred formatting, {@code null} once rendered */
+	private Object[] items = new Object[16];
+	private int count = 0;
+
+	private PrintWriter writer = null;
+
+	/** The rendered text, cached once rendered */
+	private String text = null;
+
+	/**
+	 * @brief Sets the PI code of the group, and the callsign derived from it.
+	 *
+	 * @param pi the PI code
+	 * @param callsign the callsign, or {@code null}
+	 */
+	public synchronized void setPI(int pi, String callsign) {
+		checkNotRendered();
+		this.pi = pi;
+		this.callsign = callsign;
+	}
+
+	/**
+	 * @brief Sets the fields of block 2 which are common to all group types.
+	 */
+	public synchronized void setGroupType(int type, int version, int tp, int pty) {
+		checkNotRendered();
+		this.type = type;
+		this.version = version;
+		this.tp = tp;
+		this.pty = pty;
+	}
+
+	/**
+	 * @brief Returns the PI code, or -1 if it was not received.
+	 */
+	public int getPI() {
+		return pi;
+	}
+
+	/**
+	 * @brief Returns the callsign derived from the PI code, or {@code null}.
+	 */
+	public String getCallsign() {
+		return callsign;
+	}
+
+	/**
+	 * @brief Returns the group type (0 to 15), or -1 if block 2 was not received.
+	 */
+	public int getGroupType() {
+		return type;
+	}
+
+	/**
+	 * @brief Returns the group version, 0 for A and 1 for B, or -1 if block 2 was not received.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @brief Returns the TP flag, or -1 if block 2 was not received.
+	 */
+	public int getTP() {
+		return tp;
+	}
+
+	/**
+	 * @brief Returns the PTY, or -1 if block 2 was not received.
+	 */
+	public int getPTY() {
+		return pty;
+	}
+
+	/**
+	 * @brief Returns the writer to which the analysis specific to the group type is written.
+	 */
+	public synchronized PrintWriter getWriter() {
+		checkNotRendered();
+		if(writer == null) writer = new RecordingWriter(this);
+		return writer;
+	}
+
+	/**
+	 * @brief Releases the writer and the unused room for recorded output, once the analysis is
+	 * complete. The analysis is kept in the log until it is rendered, if ever.
+	 */
+	public synchronized void trimToSize() {
+		writer = null;
+		if(items != null && items.length > count) {
+			Object[] res = new Object[count];
+			System.arraycopy(items, 0, res, 0, count);
+			items = res;
+		}
+	}
+
+	private void checkNotRendered() {
+		if(items == null) throw new IllegalStateException("Group analysis already rendered");
+	}
+
+	private synchronized void add(Object item) {
+		checkNotRendered();
+		if(count == items.length) {
+			Object[] res = new Object[Math.max(16, 2 * count)];
+			System.arraycopy(items, 0, res, 0, count);
+			items = res;
+		}
+		items[count++] = item;
+	}
+
+	/**
+	 * @brief Renders the analysis as text, as displayed after the blocks of a group.
+	 */
+	@Override
+	public synchronized String toString() {
+		if(text != null) return text;
+
+		StringBuilder sb = new StringBuilder();
+		if(pi != -1) {
+			sb.append("PI=").append(String.format("%04X", pi));
+			if(callsign != null) sb.append(" [").append(callsign).append(']');
+			sb.append(", ");
+		} else sb.append("         ");
+
+		if(type != -1) {
+			sb.append("Type ").append(type).append((char)('A' + version))
+				.append(", TP=").append(tp).append(", PTY=").append(pty).append(", ");
+		}
+
+		Formatter formatter = null;
+		for(int i=0; i<count; i++) {
+			Object item = items[i];
+			if(item instanceof Formatted) {
+				Formatted f = (Formatted) item;
+				if(formatter == null) formatter = new Formatter(sb);
+				try {
+					if(f.locale == null) formatter.format(f.format, f.args);
+					else formatter.format(f.locale, f.format, f.args);
+				} catch(IllegalFormatException e) {
+					sb.append(f.format);
+				}
+			} else sb.append((String) item);
+		}
+
+		text = sb.toString();
+		// the recorded output is no longer needed
+		items = null;
+		count = 0;
+		writer = null;
+		return text;
+	}
+
+	/**
+	 * A call to {@code printf} or {@code format}, to be formatted when rendering.
+	 */
+	private static class Formatted {
+		private final Locale locale;
+		private final String format;
+		private final Object[] args;
+
+		Formatted(Locale locale, String format, Object[] args) {
+			this.locale = locale;
+			this.format = format;
+			this.args = args;
+			for(int i=0; i<args.length; i++) {
+				Object a = args[i];
+				if(a != null && !(a instanceof Number || a instanceof Character ||
+						a instanceof Boolean || a instanceof String)) {
+					args[i] = a.toString();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records text written to the print writer, in the pieces in which it is written.
+	 */
+	private static class TextSink extends Writer {
+		private final GroupAnalysis analysis;
+
+		TextSink(GroupAnalysis analysis) {
+			this.analysis = analysis;
+		}
+
+		@Override
+		public void write(String str, int off, int len) {
+			analysis.add(off == 0 && len == str.length() ? str : str.substring(off, off + len));
+		}
+
+		@Override
+		public void write(int c) {
+			analysis.add(String.valueOf((char) c));
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			analysis.add(new String(cbuf, off, len));
+		}
+
+		@Override
+		public void flush() {
+			// nothing to do
+		}
+
+		@Override
+		public void close() {
+			// nothing to do
+		}
+	}
+
+	/**
+	 * A print writer which records format calls instead of formatting them.
+	 */
+	private static class RecordingWriter extends PrintWriter {
+		private final GroupAnalysis analysis;
+
+		RecordingWriter(GroupAnalysis analysis) {
+			super(new TextSink(analysis), false);
+			this.analysis = analysis;
+		}
+
+		@Override
+		public PrintWriter format(String format, Object... args) {
+			analysis.add(new Formatted(null, format, args));
+			return this;
+		}
+
+		@Override
+		public PrintWriter format(Locale l, String format, Object... args) {
+			analysis.add(new Formatted(l, format, args));
+			return this;
+		}
+	}
+}
@@ -7,15 +7,32 @@ package eu.jacquet80.rds.log;
  */
 public class GroupReceived extends LogMessage {
 	private final int[] blocks;
-	private final String analysis;
 	private final int nbOk;
 	
+	/** The analysis, either as text or in structured form, rendered on demand */
+	private final String analysis;
+	private final GroupAnalysis structuredAnalysis;
+	
 	public GroupReceived(RDSTime time, int[] blocks, int nbOk, String analysis) {
 		super(time);
 		
 		this.blocks = blocks;
 		this.nbOk = nbOk;
 		this.analysis = analysis;
+		this.structuredAnalysis = null;
+	}
+	
+	/**
+	 * Creates a message whose analysis is rendered as text only when {@link #getAnalysis()} is
+	 * first called.
+	 */
+	public GroupReceived(RDSTime time, int[] blocks, int nbOk, GroupAnalysis analysis) {
+		super(time);
+		
+		this.blocks = blocks;
+		this.nbOk = nbOk;
+		this.analysis = null;
+		this.structuredAnalysis = analysis;
 	}
 	
 	@Override
@@ -50,8 +67,20 @@ public class GroupReceived extends LogMessage {
 				(blocks[3] != -1 ? 8 : 0);
 	}
 	
+	/**
+	 * @brief Returns the analysis of the group as text.
+	 */
 	public String getAnalysis() {
-		return analysis;
+		// the structured analysis caches its text
+		return structuredAnalysis != null ? structuredAnalysis.toString() : analysis;
+	}
+	
+	/**
+	 * @brief Returns the analysis of the group in structured form, or {@code null} if it was only
+	 * given as text.
+	 */
+	public GroupAnalysis getStructuredAnalysis() {
+		return structuredAnalysis;
 	}
 
 	public String toString(boolean includeTime) {
@@ -14,6 +14,16 @@ public class SequentialTime implements RDSTime {
 	private final int groupTime;
 	
 	private final static NumberFormat FORMAT = new DecimalFormat("0000");
+	
+	/** Data rate of RDS, in bit/s */
+	private final static double BIT_RATE = 1187.5;
+
+	/**
+	 * @brief Converts a number of bits to the time they take to be received, in milliseconds.
+	 */
+	public static long toMillis(long bits) {
+		return (long) (bits * 1000L / BIT_RATE);
+	}
 
 	/**
 	 * @brief Converts a {@code SequentialTime} instance to a {@code Date}.
@@ -29,7 +39,7 @@ public class SequentialTime implements RDSTime {
 		if ((refDate == null) || (!(refStreamTime instanceof SequentialTime)))
 			return null;
 		/* determine seconds elapsed since reference timestamp */
-		int offsetMillis = (int) ((groupTime - ((SequentialTime) refStreamTime).groupTime) * 1000 / 1187.5);
+		long offsetMillis = toMillis(groupTime - ((SequentialTime) refStreamTime).groupTime);
 		return new Date(refDate.getTime() + offsetMillis);
 	}
 
@@ -37,6 +47,14 @@ public class SequentialTime implements RDSTime {
 		this.groupTime = groupTime;
 	}
 	
+	/**
+	 * @brief Returns the number of bits (or groups, depending on the source) since the beginning
+	 * of the stream.
+	 */
+	public int getGroupTime() {
+		return groupTime;
+	}
+	
 	public String toString() {
 		return FORMAT.format(groupTime % 10000);
 	}
@@ -0,0 +1,90 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.jacquet80.rds.app.oda.tmc.TMC;
+import eu.jacquet80.rds.core.GroupLevelDecoder;
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.HexFileGroupReader;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.log.Log;
+
+/**
+ * Measures the throughput of {@link GroupLevelDecoder}, in groups per second, over recorded hex
+ * group files. The groups of all files are read into memory first, then decoded by a new decoder
+ * in each round.
+ *
+ * Only the API which the decoder had before groups were dispatched through a table of handlers
+ * is used, so that the same code can be run on an older build, e.g. the one with the cascade of
+ * tests, to compare both.
+ *
+ * The TMC database is kept in memory, so that TMC groups can be decoded without a database on
+ * disk.
+ *
+ * Usage: {@code GroupDispatchBenchmark <hexfile> [<hexfile> ...]}
+ */
+public class GroupDispatchBenchmark {
+	private final static int ROUNDS = 10;
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.out.println("Usage: GroupDispatchBenchmark <hexfile> [<hexfile> ...]");
+			System.exit(1);
+		}
+		TMC.setDbUrl("jdbc:hsqldb:mem:tmc");
+
+		List<GroupReaderEvent> events = new ArrayList<GroupReaderEvent>();
+		for(String name : args) {
+			HexFileGroupReader reader = new HexFileGroupReader(new File(name));
+			try {
+				while(true) events.add(reader.getGroup());
+			} catch(EndOfStream e) {
+				// end of file
+			}
+		}
+		System.out.println("Input: " + events.size() + " events from " + args.length + " file(s)");
+
+		// warm up
+		run(events);
+
+		for(int round=0; round<ROUNDS; round++) {
+			long start = System.nanoTime();
+			run(events);
+			long duration = System.nanoTime() - start;
+			double rate = events.size() / (duration / 1e9);
+			System.out.printf("%.0f k groups/s\n", rate / 1e3);
+		}
+	}
+
+	private static void run(List<GroupReaderEvent> events) throws IOException {
+		GroupLevelDecoder decoder = new GroupLevelDecoder(new Log());
+		for(GroupReaderEvent evt : events) decoder.processOneGroup(evt);
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+
+package eu.jacquet80.rds.tests;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.jacquet80.rds.input.GroupReader;
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.HexFileGroupReader;
+import eu.jacquet80.rds.input.MappedHexFileGroupReader;
+import eu.jacquet80.rds.input.MappedHexFileGroupReader.Chunk;
+import eu.jacquet80.rds.input.MappedHexFileGroupReader.ChunkHandler;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+/**
+ * Measures how fast hex group files are parsed, in MB per second, by reading them with
+ * {@link HexFileGroupReader}: from a file, whose lines are split as bytes, and from a
+ * {@code BufferedReader}, whose lines are strings. Then with a {@link MappedHexFileGroupReader}
+ * on all processors, delivering groups in order, and in no particular order.
+ *
+ * Without arguments, a synthetic RDS Spy log of {@value #SYNTHETIC_GROUPS} groups is generated,
+ * with a time code on every group.
+ *
+ * Usage: {@code HexParseBenchmark [<hexfile> ...]}
+ */
+public class HexParseBenchmark {
+	private final static int ROUNDS = 5;
+	private final static int SYNTHETIC_GROUPS = 1000000;
+
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0) {
+			File file = File.createTempFile("hexgroups", ".spy");
+			file.deleteOnExit();
+			generate(file);
+			benchmark(file);
+		} else {
+			for(String name : args) benchmark(new File(name));
+		}
+	}
+
+	private static void generate(File file) throws IOException {
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		Random random = new Random(0);
+		long time = 1331797263000L;
+		try {
+			out.write("<recorder=\"RDS Spy\" ver=\"1.0\">\n");
+			for(int i=0; i<SYNTHETIC_GROUPS; i++) {
+				for(int b=0; b<4; b++) {
+					if(random.nextInt(20) == 0) out.write("----");
+					else out.write(String.format("%04X", random.nextInt(0x10000)));
+					out.write(' ');
+				}
+				time += 87;
+				out.write(String.format("@%1$tY/%1$tm/%1$td %1$tH:%1$tM:%1$tS.%2$02d\n", time, time % 1000 / 10));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void benchmark(File file) throws IOException {
+		double mb = file.length() / 1e6;
+		System.out.printf("Input: %s, %.1f MB\n", file.getName(), mb);
+
+		// warm up, and check that both paths agree
+		long check = read(new HexFileGroupReader(file));
+		if(read(new HexFileGroupReader(new BufferedReader(new FileReader(file)))) != check ||
+				read(new MappedHexFileGroupReader(file)) != check) {
+			System.out.println("Implementations disagree!");
+			System.exit(1);
+		}
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		for(int round=0; round<ROUNDS; round++) {
+			long start = System.nanoTime();
+			read(new HexFileGroupReader(file));
+			report("bytes  ", mb, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			read(new HexFileGroupReader(new BufferedReader(new FileReader(file))));
+			report("strings", mb, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			read(new MappedHexFileGroupReader(file));
+			report("mapped, " + threads + " threads, in order", mb, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			readUnordered(new MappedHexFileGroupReader(file));
+			report("mapped, " + threads + " threads, unordered", mb, System.nanoTime() - start);
+		}
+	}
+
+	private static void report(String name, double mb, long duration) {
+		System.out.printf("%s: %.1f MB/s\n", name, mb / (duration / 1e9));
+	}
+
+	/**
+	 * Reads all groups and returns a checksum of their blocks and time stamps, so that the work
+	 * cannot be optimized away.
+	 */
+	private static long read(GroupReader reader) throws IOException {
+		PackedGroup group = new PackedGroup();
+		long check = 0;
+		try {
+			while(true) {
+				reader.getGroup(group);
+				if(group.present) check = 31 * check + group.blocks + group.okMask + group.getTimeValue();
+			}
+		} catch(EndOfStream e) {
+			// done
+		}
+		return check;
+	}
+
+	/**
+	 * Parses all chunks in no particular order, and returns the number of groups.
+	 */
+	private static long readUnordered(MappedHexFileGroupReader reader) throws IOException {
+		final AtomicLong count = new AtomicLong();
+		reader.parseUnordered(new ChunkHandler() {
+			@Override
+			public void handle(Chunk chunk) {
+				count.addAndGet(chunk.size());
+			}
+		});
+		return count.get();
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import eu.jacquet80.rds.core.GroupLevelDecoder;
+import eu.jacquet80.rds.core.TunedStation;
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.IqChannelizer;
+import eu.jacquet80.rds.input.IqChannelizer.ChannelReader;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+import eu.jacquet80.rds.log.Log;
+
+/**
+ * Decodes all stations of a wideband IQ recording (8-bit unsigned, as written by
+ * {@code rtl_sdr}) with {@link IqChannelizer}, and reports the stations found and the
+ * processing speed, as a multiple of real time.
+ *
+ * Each channel is decoded in a thread of its own, as required by {@link IqChannelizer}.
+ *
+ * Usage: {@code IqChannelizerBenchmark <iqfile> <samplerate> <center frequency in kHz> [<threads>]}
+ */
+public class IqChannelizerBenchmark {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length < 3) {
+			System.out.println("Usage: IqChannelizerBenchmark <iqfile> <samplerate> <center frequency in kHz> [<threads>]");
+			System.exit(1);
+		}
+		File file = new File(args[0]);
+		int sampleRate = Integer.parseInt(args[1]);
+		int center = Integer.parseInt(args[2]);
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+		long start = System.nanoTime();
+		IqChannelizer channelizer = new IqChannelizer(null, file, sampleRate, center, threads);
+		List<ChannelReader> readers = channelizer.getReaders();
+		System.out.printf("Scan: %d channels occupied (%.1f ms)\n", readers.size(), (System.nanoTime() - start) / 1e6);
+
+		start = System.nanoTime();
+		channelizer.start();
+		Thread[] decoders = new Thread[readers.size()];
+		final int[] groups = new int[readers.size()];
+		final TunedStation[] stations = new TunedStation[readers.size()];
+		for(int i=0; i<decoders.length; i++) {
+			final int idx = i;
+			final ChannelReader reader = readers.get(i);
+			decoders[i] = new Thread() {
+				@Override
+				public void run() {
+					GroupLevelDecoder decoder = new GroupLevelDecoder(new Log());
+					PackedGroup group = new PackedGroup();
+					try {
+						while(true) {
+							GroupReaderEvent evt = reader.getGroup(group);
+							if(group.present) {
+								decoder.processOneGroup(group);
+								groups[idx]++;
+							} else if(evt != null) decoder.processOneGroup(evt);
+						}
+					} catch(EndOfStream e) {
+						// end of recording
+					} catch(IOException e) {
+						e.printStackTrace();
+					}
+					stations[idx] = decoder.getTunedStation();
+				}
+			};
+			decoders[i].start();
+		}
+		for(Thread t : decoders) t.join();
+		double duration = (System.nanoTime() - start) / 1e9;
+
+		for(int i=0; i<readers.size(); i++) {
+			TunedStation s = stations[i];
+			System.out.printf("%s: %d groups, PI=%s, PS=\"%s\"\n", readers.get(i), groups[i],
+					s == null ? "----" : String.format("%04X", s.getPI()),
+					s == null ? "" : s.getStationName());
+		}
+		double recorded = file.length() / 2.0 / sampleRate;
+		System.out.printf("%.1f s of recording in %.1f s (%.1f x real time)\n",
+				recorded, duration, recorded / duration);
+	}
+}
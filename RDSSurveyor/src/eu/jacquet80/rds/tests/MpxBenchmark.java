@@ -0,0 +1,364 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.tests;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import eu.jacquet80.rds.input.AudioBitReader;
+import eu.jacquet80.rds.input.FileSdrGroupReader;
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.MpxFileGroupReader;
+import eu.jacquet80.rds.input.SampleRing;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+/**
+ * Measures the throughput of MPX processing, in samples per second, over a recorded MPX file
+ * (raw 16-bit little-endian mono samples, as used with {@code -inaudiopipe}).
+ *
+ * The first part compares sample ingestion alone: reading one sample at a time from a
+ * {@code DataInputStream}, and reading blocks of samples through a little-endian
+ * {@code ShortBuffer} view. The second part compares handing samples over from one thread to
+ * another, as the SDR driver does, through a pipe and through a {@link SampleRing}. The third
+ * part runs the complete demodulator of {@link AudioBitReader} over the file; for files at
+ * 250 kHz, it also runs the SDR input path, with {@link FileSdrGroupReader} standing in for the
+ * native driver. The last part decodes the file with {@link MpxFileGroupReader}, in one piece
+ * and then in chunks on all processors.
+ *
+ * Several recordings may be given, for instance to compare sample rates (the decimation factor
+ * of the demodulator depends on the sample rate).
+ *
+ * Usage: {@code MpxBenchmark <mpxfile> <samplerate> [<mpxfile> <samplerate> ...]}
+ */
+public class MpxBenchmark {
+	private final static int ROUNDS = 5;
+	private final static int BLOCK = 4096;
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2 || args.length % 2 != 0) {
+			System.out.println("Usage: MpxBenchmark <mpxfile> <samplerate> [<mpxfile> <samplerate> ...]");
+			System.exit(1);
+		}
+		for(int i=0; i<args.length; i+=2) {
+			benchmark(new File(args[i]), Integer.parseInt(args[i+1]));
+		}
+	}
+
+	private static void benchmark(File file, int sampleRate) throws IOException {
+		long samples = file.length() / 2;
+		System.out.println("Input: " + samples + " samples (" +
+				String.format("%.1f", (double) samples / sampleRate) + " s at " + sampleRate + " Hz)");
+
+		// warm up all implementations, and check that they agree
+		long check = readBulk(file);
+		if(readPerSample(file) != check || transferPipe(file) != check || transferRing(file) != check) {
+			System.out.println("Implementations disagree!");
+			System.exit(1);
+		}
+
+		for(int round=0; round<ROUNDS; round++) {
+			long start = System.nanoTime();
+			readPerSample(file);
+			report("ingestion, per sample", samples, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			readBulk(file);
+			report("ingestion, bulk      ", samples, System.nanoTime() - start);
+		}
+
+		for(int round=0; round<ROUNDS; round++) {
+			long start = System.nanoTime();
+			transferPipe(file);
+			report("transport, pipe       ", samples, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			transferRing(file);
+			report("transport, sample ring", samples, System.nanoTime() - start);
+		}
+
+		for(int round=0; round<ROUNDS; round++) {
+			long start = System.nanoTime();
+			int bits = demodulate(file, sampleRate);
+			report("demodulator (" + bits + " bits)", samples, System.nanoTime() - start);
+		}
+
+		if(sampleRate == 250000) {
+			for(int round=0; round<ROUNDS; round++) {
+				long start = System.nanoTime();
+				int groups = decodeSdr(file);
+				report("SDR input path (" + groups + " groups)", samples, System.nanoTime() - start);
+			}
+		}
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		for(int round=0; round<ROUNDS; round++) {
+			long start = System.nanoTime();
+			int groups = decodeBatch(file, sampleRate, 1);
+			report("batch decoder, 1 thread (" + groups + " groups)", samples, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			groups = decodeBatch(file, sampleRate, threads);
+			report("batch decoder, " + threads + " threads (" + groups + " groups)", samples, System.nanoTime() - start);
+		}
+	}
+
+	private static void report(String name, long samples, long duration) {
+		System.out.printf("%s: %.1f M samples/s\n", name, samples / (duration / 1e9) / 1e6);
+	}
+
+	/**
+	 * Reads the file one sample at a time and returns a checksum of all samples, so that the
+	 * work cannot be optimized away.
+	 */
+	private static long readPerSample(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		short[] sample = new short[BLOCK];
+		long check = 0;
+		try {
+			while(true) {
+				int n = 0;
+				try {
+					while(n < BLOCK) {
+						sample[n] = Short.reverseBytes(in.readShort());
+						n++;
+					}
+				} catch(EOFException e) {
+					// last block
+				}
+				if(n == 0) break;
+				for(int i=0; i<n; i++) check += sample[i];
+			}
+		} finally {
+			in.close();
+		}
+		return check;
+	}
+
+	/**
+	 * Reads the file in blocks through a little-endian buffer and returns a checksum of all
+	 * samples.
+	 */
+	private static long readBulk(File file) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		FileChannel channel = fis.getChannel();
+		ByteBuffer buf = ByteBuffer.allocateDirect(2 * BLOCK).order(ByteOrder.LITTLE_ENDIAN);
+		short[] sample = new short[BLOCK];
+		long check = 0;
+		try {
+			boolean eof = false;
+			while(!eof) {
+				eof = channel.read(buf) < 0;
+				buf.flip();
+				int n = buf.remaining() / 2;
+				buf.asShortBuffer().get(sample, 0, n);
+				buf.position(2 * n);
+				buf.compact();
+				for(int i=0; i<n; i++) check += sample[i];
+			}
+		} finally {
+			fis.close();
+		}
+		return check;
+	}
+
+	/**
+	 * Starts a thread which reads the file in blocks of the size the SDR driver writes, and hands
+	 * each block to {@code sink}.
+	 */
+	private static Thread startProducer(final File file, final BlockSink sink) {
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				try {
+					FileInputStream fis = new FileInputStream(file);
+					ByteBuffer buf = ByteBuffer.allocateDirect(SDR_BLOCK);
+					byte[] data = new byte[SDR_BLOCK];
+					try {
+						while(fis.getChannel().read(buf) >= 0) {
+							buf.flip();
+							int n = buf.remaining();
+							buf.get(data, 0, n);
+							buf.flip();
+							sink.write(buf, data, n);
+							buf.clear();
+						}
+					} finally {
+						fis.close();
+						sink.close();
+					}
+				} catch(IOException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		t.start();
+		return t;
+	}
+
+	private final static int SDR_BLOCK = 16384;
+
+	private interface BlockSink {
+		void write(ByteBuffer buf, byte[] data, int n) throws IOException;
+		void close() throws IOException;
+	}
+
+	/**
+	 * Transfers the file to another thread through a pipe, as the SDR driver used to, and returns
+	 * a checksum of all samples.
+	 */
+	private static long transferPipe(File file) throws IOException {
+		PipedInputStream in = new PipedInputStream();
+		final PipedOutputStream out = new PipedOutputStream(in);
+		startProducer(file, new BlockSink() {
+			@Override
+			public void write(ByteBuffer buf, byte[] data, int n) throws IOException {
+				out.write(data, 0, n);
+			}
+
+			@Override
+			public void close() throws IOException {
+				out.close();
+			}
+		});
+		ByteBuffer buf = ByteBuffer.allocateDirect(2 * BLOCK).order(ByteOrder.LITTLE_ENDIAN);
+		short[] sample = new short[BLOCK];
+		byte[] data = new byte[2 * BLOCK];
+		long check = 0;
+		int n;
+		while((n = in.read(data, 0, buf.remaining())) >= 0) {
+			buf.put(data, 0, n);
+			check += sum(buf, sample);
+		}
+		in.close();
+		return check;
+	}
+
+	/**
+	 * Transfers the file to another thread through a {@link SampleRing}, and returns a checksum
+	 * of all samples.
+	 */
+	private static long transferRing(File file) throws IOException {
+		final SampleRing ring = new SampleRing(500000, false);
+		startProducer(file, new BlockSink() {
+			@Override
+			public void write(ByteBuffer buf, byte[] data, int n) {
+				ring.write(buf);
+			}
+
+			@Override
+			public void close() {
+				ring.endOfStream();
+			}
+		});
+		ByteBuffer buf = ByteBuffer.allocateDirect(2 * BLOCK).order(ByteOrder.LITTLE_ENDIAN);
+		short[] sample = new short[BLOCK];
+		long check = 0;
+		while(ring.read(buf) >= 0) {
+			check += sum(buf, sample);
+		}
+		return check;
+	}
+
+	/**
+	 * Takes all complete samples from {@code buf}, which is left ready for the next read, and
+	 * returns their sum.
+	 */
+	private static long sum(ByteBuffer buf, short[] sample) {
+		buf.flip();
+		int n = buf.remaining() / 2;
+		buf.asShortBuffer().get(sample, 0, n);
+		buf.position(2 * n);
+		buf.compact();
+		long check = 0;
+		for(int i=0; i<n; i++) check += sample[i];
+		return check;
+	}
+
+	/**
+	 * Decodes the whole file through the SDR input path and returns the number of groups decoded.
+	 */
+	private static int decodeSdr(File file) throws IOException {
+		FileSdrGroupReader reader = new FileSdrGroupReader(null, file, false);
+		PackedGroup group = new PackedGroup();
+		int groups = 0;
+		try {
+			while(true) {
+				reader.getGroup(group);
+				if(group.present) groups++;
+			}
+		} catch(EndOfStream e) {
+			// end of file
+		}
+		return groups;
+	}
+
+	/**
+	 * Decodes the whole file with {@link MpxFileGroupReader} and returns the number of groups
+	 * decoded.
+	 */
+	private static int decodeBatch(File file, int sampleRate, int threads) throws IOException {
+		MpxFileGroupReader reader = new MpxFileGroupReader(null, file, sampleRate, threads,
+				MpxFileGroupReader.DEFAULT_CHUNK_SECONDS);
+		PackedGroup group = new PackedGroup();
+		int groups = 0;
+		try {
+			while(true) {
+				reader.getGroup(group);
+				if(group.present) groups++;
+			}
+		} catch(EndOfStream e) {
+			// end of file
+		}
+		return groups;
+	}
+
+	/**
+	 * Demodulates the whole file and returns the number of bits decoded.
+	 */
+	private static int demodulate(File file, int sampleRate) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		AudioBitReader reader = new AudioBitReader(fis.getChannel(), sampleRate);
+		int bits = 0;
+		try {
+			while(true) {
+				reader.getBit();
+				bits++;
+			}
+		} catch(EOFException e) {
+			// end of file
+		} finally {
+			fis.close();
+		}
+		return bits;
+	}
+}
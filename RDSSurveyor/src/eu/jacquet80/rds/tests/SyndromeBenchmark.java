@@ -0,0 +1,118 @@
+/*
+ RDS Surveyor -- RDS decoder, analyzer and monitor tool and library.
+ For more information see
+   http://www.jacquet80.eu/
+   http://rds-surveyor.sourceforge.net/
+
+ This file is part of RDS Surveyor.
+
+ RDS Surveyor is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ RDS Surveyor is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser Public License for more details.
+
+ You should have received a copy of the GNU Lesser Public License
+ along with RDS Surveyor.  If not, see <http://www.gnu.org/licenses/>.
+
+*/
+
+package eu.jacquet80.rds.tests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import eu.jacquet80.rds.core.RDS;
+
+/**
+ * Measures the throughput of the syndrome calculation, in syndromes per second, for the
+ * bit-by-bit reference implementation and for the table-driven implementation.
+ *
+ * The input is either a binary bitstream file (as used with {@code -inbinfile}), or random data
+ * if no file is given. As when {@code BitStreamSynchronizer} hunts for synchronization, a 26-bit
+ * window is shifted one bit at a time and the syndromes of the window and of its inverse are
+ * computed.
+ *
+ * Usage: {@code SyndromeBenchmark [binfile]}
+ */
+public class SyndromeBenchmark {
+	private final static int ROUNDS = 10;
+	private final static int MAX_BYTES = 4 * 1024 * 1024;
+
+	public static void main(String[] args) throws IOException {
+		byte[] data = args.length > 0 ? readFile(new File(args[0])) : randomData(MAX_BYTES);
+		System.out.println("Input: " + data.length + " bytes (" + 8L * data.length + " bits)");
+
+		// warm up both implementations, and check that they agree
+		if(run(data, false) != run(data, true)) {
+			System.out.println("Implementations disagree!");
+			System.exit(1);
+		}
+
+		for(int round=0; round<ROUNDS; round++) {
+			report("bitwise", data, false);
+			report("table  ", data, true);
+		}
+	}
+
+	private static void report(String name, byte[] data, boolean table) {
+		long start = System.nanoTime();
+		run(data, table);
+		long duration = System.nanoTime() - start;
+		double rate = 2.0 * 8 * data.length / (duration / 1e9);
+		System.out.printf("%s: %.1f M syndromes/s\n", name, rate / 1e6);
+	}
+
+	/**
+	 * Runs through the data and returns a checksum of all syndromes computed, so that the work
+	 * cannot be optimized away.
+	 */
+	private static int run(byte[] data, boolean table) {
+		int block = 0;
+		int check = 0;
+		for(int i=0; i<data.length; i++) {
+			int oct = data[i];
+			for(int b=0; b<8; b++) {
+				block = (block << 1) & 0x3FFFFFF;
+				if((oct & 128) != 0) block |= 1;
+				oct <<= 1;
+				if(table) {
+					check += RDS.calcSyndrome(block) ^ RDS.calcSyndrome(~block);
+				} else {
+					check += RDS.calcSyndromeBitwise(block) ^ RDS.calcSyndromeBitwise(~block);
+				}
+			}
+		}
+		return check;
+	}
+
+	private static byte[] randomData(int length) {
+		byte[] data = new byte[length];
+		new Random(0).nextBytes(data);
+		return data;
+	}
+
+	private static byte[] readFile(File f) throws IOException {
+		int length = (int) Math.min(f.length(), MAX_BYTES);
+		byte[] data = new byte[length];
+		InputStream is = new FileInputStream(f);
+		try {
+			int pos = 0;
+			while(pos < length) {
+				int n = is.read(data, pos, length - pos);
+				if(n < 0) break;
+				pos += n;
+			}
+		} finally {
+			is.close();
+		}
+		return data;
+	}
+}
@@ -0,0 +1,149 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.core.BitStreamSynchronizer;
+import eu.jacquet80.rds.input.AudioBitReader;
+import eu.jacquet80.rds.input.AudioBitReader.DspProbe;
+import eu.jacquet80.rds.input.AudioBitReader.ProbeBuffer;
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+class AudioBitReaderTest {
+	/**
+	 * Decodes a synthetic MPX recording, and checks how soon the first complete group is
+	 * received and how many blocks are lost after it.
+	 *
+	 * @param firstGroup the number of the group which must be received first, at the latest
+	 * @param maxBadBlocks the number of blocks which may be lost after the first complete group
+	 */
+	private static void checkDecoding(int rate, double noise, int firstGroup, int maxBadBlocks) throws IOException {
+		File file = MpxFileGroupReaderTest.writeMpx(rate, 20, noise);
+		BitStreamSynchronizer sync = new BitStreamSynchronizer(null,
+				new AudioBitReader(new FileInputStream(file).getChannel(), rate));
+		// the bad blocks are counted as with -correct 2
+		sync.setMaxCorrectedBurst(2);
+		int first = -1, groups = 0, badBlocks = 0;
+		try {
+			PackedGroup group = new PackedGroup();
+			while(true) {
+				sync.getGroup(group);
+				if(!group.present) continue;
+				if(first < 0) {
+					// the first group after synchronization may lack its first blocks
+					if(group.okMask == 0xF && group.getBlock(0) == 0xF202) first = group.getBlock(2);
+					continue;
+				}
+				groups++;
+				badBlocks += 4 - Integer.bitCount(group.okMask);
+			}
+		} catch(EndOfStream e) {
+			// done
+		} finally {
+			sync.close();
+		}
+		String name = rate + " Hz, noise " + noise;
+		assertTrue(first >= 0 && first <= firstGroup, name + ": first group " + first);
+		// groups 0 to 227 are broadcast in 20 s
+		assertEquals(227 - first, groups, name);
+		assertTrue(badBlocks <= maxBadBlocks, name + ": " + badBlocks + " bad blocks");
+	}
+
+	@Test
+	void testClean() throws IOException {
+		checkDecoding(171000, 0, 1, 0);
+		checkDecoding(192000, 0, 1, 0);
+		checkDecoding(228000, 0, 1, 0);
+		checkDecoding(250000, 0, 1, 0);
+	}
+
+	@Test
+	void testNoisy() throws IOException {
+		checkDecoding(171000, 0.05, 2, 1);
+		checkDecoding(192000, 0.05, 2, 1);
+		checkDecoding(250000, 0.05, 2, 1);
+	}
+
+	/** Probe which throws the given exception each time it is called. */
+	private static class FailingProbe implements DspProbe {
+		private final RuntimeException exception;
+		private final Error error;
+		volatile int calls = 0;
+
+		FailingProbe(RuntimeException exception, Error error) {
+			this.exception = exception;
+			this.error = error;
+		}
+
+		@Override
+		public void probe(ProbeBuffer buffer) {
+			calls++;
+			if(exception != null) throw exception;
+			throw error;
+		}
+	}
+
+	/** Counts the complete groups decoded on a thread of its own, until the end of the stream. */
+	private static class Consumer extends Thread {
+		private final BitStreamSynchronizer sync;
+		volatile int groups = 0;
+
+		Consumer(BitStreamSynchronizer sync) {
+			this.sync = sync;
+			setDaemon(true);
+			start();
+		}
+
+		@Override
+		public void run() {
+			try {
+				PackedGroup group = new PackedGroup();
+				while(true) {
+					sync.getGroup(group);
+					if(group.present && group.okMask == 0xF) groups++;
+				}
+			} catch(EndOfStream e) {
+				// done
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+			try {
+				sync.close();
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static Consumer decodeWithProbe(DspProbe probe) throws IOException, InterruptedException {
+		int rate = 192000;
+		File file = MpxFileGroupReaderTest.writeMpx(rate, 20, 0);
+		AudioBitReader audio = new AudioBitReader(new FileInputStream(file).getChannel(), rate);
+		audio.addProbe(probe);
+		Consumer consumer = new Consumer(new BitStreamSynchronizer(null, audio));
+		consumer.join(120000);
+		assertFalse(consumer.isAlive(), "The consumer waits for bits forever");
+		return consumer;
+	}
+
+	@Test
+	void testFailingProbe() throws IOException, InterruptedException {
+		FailingProbe probe = new FailingProbe(new IllegalStateException("probe failure"), null);
+		Consumer consumer = decodeWithProbe(probe);
+		// the probe is detached, and decoding goes on
+		assertEquals(1, probe.calls);
+		assertTrue(consumer.groups > 200, consumer.groups + " groups");
+	}
+
+	@Test
+	void testDemodulatorError() throws IOException, InterruptedException {
+		// the demodulator thread dies, and the end of the stream is signalled
+		decodeWithProbe(new FailingProbe(null, new Error("demodulator failure")));
+	}
+}
@@ -0,0 +1,209 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.core.BatchDecoder;
+import eu.jacquet80.rds.core.BatchDecoder.BatchSummary;
+import eu.jacquet80.rds.core.BatchDecoder.FileSummary;
+import eu.jacquet80.rds.core.BitStreamSynchronizer.BitInversion;
+
+class BatchDecoderTest {
+	/** Writes a hex group file with the PS of a station, repeated */
+	private static void write(File file, int pi, String ps) throws IOException {
+		FileWriter out = new FileWriter(file);
+		try {
+			out.write("% RDS hexgroups\n");
+			for(int i=0; i<100; i++) {
+				int addr = i % 4;
+				out.write(String.format("%04X 040%X 5C66 %02X%02X\n", pi, 8 + addr,
+						(int) ps.charAt(2*addr), (int) ps.charAt(2*addr + 1)));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static File tempDir() throws IOException {
+		File dir = File.createTempFile("batch", "");
+		dir.delete();
+		dir.mkdir();
+		dir.deleteOnExit();
+		return dir;
+	}
+
+	@Test
+	void testDecodeFile() throws IOException {
+		File dir = tempDir();
+		File file = new File(dir, "a.rds");
+		file.deleteOnExit();
+		write(file, 0xF202, "STATION1");
+
+		BatchDecoder batch = new BatchDecoder(new PrintStream(new ByteArrayOutputStream()), 1);
+		FileSummary summary = batch.decodeFile(file);
+		assertNull(summary.error);
+		assertEquals(100, summary.groups);
+		assertEquals(1, summary.stations.size());
+		assertEquals(0xF202, summary.stations.get(0).pi);
+		assertEquals("STATION1", summary.stations.get(0).ps);
+		assertEquals(0., summary.stations.get(0).getBLER());
+
+		summary = batch.decodeFile(new File(dir, "missing.rds"));
+		assertNotNull(summary.error);
+	}
+
+	/** Writes a binary string file with the PS of a station, with a 2-bit burst in some C blocks */
+	private static void writeBits(File file, int pi, String ps, int bursts) throws IOException {
+		writeBits(file, pi, ps, bursts, false);
+	}
+
+	private static void writeBits(File file, int pi, String ps, int bursts, boolean invert) throws IOException {
+		FileWriter out = new FileWriter(file);
+		try {
+			for(int i=0; i<100; i++) {
+				int addr = i % 4;
+				int[] blocks = {pi, 0x0408 + addr, 0x5C66, (ps.charAt(2*addr) << 8) | ps.charAt(2*addr + 1)};
+				for(int b=0; b<4; b++) {
+					int block = BitStreamSynchronizerTest.encode(blocks[b], b);
+					if(b == 2 && i >= 50 && i < 50 + bursts) block ^= 0x3 << 12;
+					if(invert) block = ~block;
+					for(int bit=25; bit>=0; bit--) out.write(((block >> bit) & 1) != 0 ? '1' : '0');
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	@Test
+	void testCorrection() throws IOException {
+		File dir = tempDir();
+		File file = new File(dir, "a.bin");
+		file.deleteOnExit();
+		writeBits(file, 0xF202, "STATION1", 10);
+
+		// no correction by default
+		BatchDecoder batch = new BatchDecoder(new PrintStream(new ByteArrayOutputStream()), 1);
+		FileSummary summary = batch.decodeFile(file);
+		assertNull(summary.error);
+		int total = summary.stations.get(0).totalBlocks;
+		assertEquals(total - 10, summary.stations.get(0).blocksOk);
+
+		batch.setMaxCorrectedBurst(2);
+		summary = batch.decodeFile(file);
+		assertEquals(total, summary.stations.get(0).blocksOk);
+	}
+
+	@Test
+	void testInversion() throws IOException {
+		File dir = tempDir();
+		File file = new File(dir, "a.bin");
+		file.deleteOnExit();
+		writeBits(file, 0xF202, "STATION1", 0, true);
+
+		BatchDecoder batch = new BatchDecoder(new PrintStream(new ByteArrayOutputStream()), 1);
+		assertEquals("STATION1", batch.decodeFile(file).stations.get(0).ps);
+		batch.forceInversion(BitInversion.NOINVERT);
+		assertEquals(0, batch.decodeFile(file).groups);
+		batch.forceInversion(BitInversion.INVERT);
+		assertEquals("STATION1", batch.decodeFile(file).stations.get(0).ps);
+	}
+
+	/** Returns the number of open file descriptors on a file, or -1 if this cannot be told */
+	static int openCount(File file) throws IOException {
+		File[] fds = new File("/proc/self/fd").listFiles();
+		if(fds == null) return -1;
+		int count = 0;
+		for(File fd : fds) {
+			try {
+				if(fd.getCanonicalFile().equals(file.getCanonicalFile())) count++;
+			} catch(IOException e) {
+				// closed in the meantime
+			}
+		}
+		return count;
+	}
+
+	@Test
+	void testFilesClosed() throws IOException {
+		File dir = tempDir();
+		File hex = new File(dir, "a.rds");
+		hex.deleteOnExit();
+		write(hex, 0xF202, "STATION1");
+		File bits = new File(dir, "b.bin");
+		bits.deleteOnExit();
+		writeBits(bits, 0xF202, "STATION1", 0);
+		File empty = new File(dir, "c.bin");
+		empty.deleteOnExit();
+		new FileWriter(empty).close();
+
+		BatchDecoder batch = new BatchDecoder(new PrintStream(new ByteArrayOutputStream()), 1);
+		for(File file : new File[] {hex, bits, empty}) {
+			if(openCount(file) < 0) return;    // not supported on this system
+			assertEquals(file != empty, batch.decodeFile(file).error == null, file.getName());
+			assertEquals(0, openCount(file), file.getName());
+		}
+	}
+
+	@Test
+	void testListFiles() throws IOException {
+		File dir = tempDir();
+		String[] names = {"b.rds", "a.rds", ".hidden.rds"};
+		for(int i=0; i<names.length; i++) {
+			File file = new File(dir, names[i]);
+			file.deleteOnExit();
+			write(file, 0xF201 + i, "STATION" + i);
+		}
+		File sub = new File(dir, "sub.rds");
+		sub.mkdir();
+		sub.deleteOnExit();
+
+		// hidden files and directories are left out, files are sorted by name
+		List<File> files = BatchDecoder.listFiles(dir.getPath());
+		assertEquals(2, files.size());
+		assertEquals("a.rds", files.get(0).getName());
+		assertEquals("b.rds", files.get(1).getName());
+		assertEquals(2, BatchDecoder.listFiles(new File(dir, "*.rds").getPath()).size());
+		assertEquals(0, BatchDecoder.listFiles(new File(dir, "*.wav").getPath()).size());
+
+		// an existing file is returned alone, even if its name looks like a pattern
+		files = BatchDecoder.listFiles(new File(dir, "b.rds").getPath());
+		assertEquals(1, files.size());
+		assertEquals("b.rds", files.get(0).getName());
+	}
+
+	@Test
+	void testBatch() throws IOException {
+		File dir = tempDir();
+		String[] names = {"b.rds", "a.rds", "c.txt"};
+		for(int i=0; i<names.length; i++) {
+			File file = new File(dir, names[i]);
+			file.deleteOnExit();
+			write(file, 0xF201 + i, "STATION" + i);
+		}
+
+		List<File> files = BatchDecoder.listFiles(new File(dir, "*.rds").getPath());
+		assertEquals(2, files.size());
+		assertEquals("a.rds", files.get(0).getName());
+		assertEquals(3, BatchDecoder.listFiles(dir.getPath()).size());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BatchSummary summary = new BatchDecoder(new PrintStream(out), 2).decode(files);
+		assertEquals(2, summary.files);
+		assertEquals(0, summary.failed);
+		assertEquals(200, summary.groups);
+		assertEquals(2, summary.pis.size());
+		// summaries are printed in the order of the files
+		String text = out.toString();
+		assertTrue(text.indexOf("a.rds") < text.indexOf("b.rds"), text);
+	}
+}
@@ -0,0 +1,113 @@
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.input.BinStringFileBitReader;
+import eu.jacquet80.rds.input.BinaryFileBitReader;
+import eu.jacquet80.rds.input.BitReader;
+import eu.jacquet80.rds.input.InverterBitReader;
+import eu.jacquet80.rds.input.SyncBinaryFileBitReader;
+
+class BitReaderTest {
+	private static final byte[] DATA = new byte[10000];
+
+	static {
+		new Random(1).nextBytes(DATA);
+	}
+
+	private static String binString() {
+		StringBuilder sb = new StringBuilder();
+		Random r = new Random(2);
+		for(int i=0; i<20000; i++) {
+			sb.append(r.nextBoolean() ? '1' : '0');
+			if(i % 77 == 0) sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static List<Boolean> readSingle(BitReader reader) throws IOException {
+		List<Boolean> bits = new ArrayList<Boolean>();
+		try {
+			while(true) bits.add(reader.getBit());
+		} catch(EOFException e) {
+			return bits;
+		}
+	}
+
+	/** Reads with varying chunk sizes, mixing single-bit and bulk reads. */
+	private static List<Boolean> readBulk(BitReader reader) throws IOException {
+		List<Boolean> bits = new ArrayList<Boolean>();
+		long[] buf = new long[8];
+		Random r = new Random(3);
+		while(true) {
+			if(r.nextInt(4) == 0) {
+				try {
+					bits.add(reader.getBit());
+				} catch(EOFException e) {
+					return bits;
+				}
+				continue;
+			}
+			int n = reader.readBits(buf, 1 + r.nextInt(64 * buf.length));
+			if(n < 0) return bits;
+			for(int i=0; i<n; i++) bits.add(BitReader.getBits(buf, i, 1) != 0);
+		}
+	}
+
+	@Test
+	void testBinaryFile() throws IOException {
+		assertEquals(
+				readSingle(new BinaryFileBitReader(new ByteArrayInputStream(DATA))),
+				readBulk(new BinaryFileBitReader(new ByteArrayInputStream(DATA))));
+	}
+
+	@Test
+	void testSyncBinaryFile() throws IOException {
+		assertEquals(
+				readSingle(new SyncBinaryFileBitReader(new ByteArrayInputStream(DATA))),
+				readBulk(new SyncBinaryFileBitReader(new ByteArrayInputStream(DATA))));
+	}
+
+	@Test
+	void testBinStringFile() throws IOException {
+		byte[] data = binString().getBytes("ASCII");
+		assertEquals(
+				readSingle(new BinStringFileBitReader(new ByteArrayInputStream(data))),
+				readBulk(new BinStringFileBitReader(new ByteArrayInputStream(data))));
+	}
+
+	@Test
+	void testInverter() throws IOException {
+		assertEquals(
+				readSingle(new InverterBitReader(new BinaryFileBitReader(new ByteArrayInputStream(DATA)))),
+				readBulk(new InverterBitReader(new BinaryFileBitReader(new ByteArrayInputStream(DATA)))));
+	}
+
+	@Test
+	void testPutGetBits() {
+		long[] buf = new long[41];
+		Random r = new Random(4);
+		long[] values = new long[40];
+		int[] lengths = new int[40];
+		int pos = 0;
+		for(int i=0; i<values.length; i++) {
+			lengths[i] = 1 + r.nextInt(64);
+			values[i] = r.nextLong() >>> (64 - lengths[i]);
+			BitReader.putBits(buf, pos, values[i], lengths[i]);
+			pos += lengths[i];
+		}
+		pos = 0;
+		for(int i=0; i<values.length; i++) {
+			assertEquals(values[i], BitReader.getBits(buf, pos, lengths[i]));
+			pos += lengths[i];
+		}
+	}
+}
@@ -0,0 +1,79 @@
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.input.BitReader;
+import eu.jacquet80.rds.input.BitRing;
+
+class BitRingTest {
+	private static final int COUNT = 1000000;
+
+	private static boolean bit(int i) {
+		// deterministic, irregular pattern
+		return ((i * 0x9E3779B1) >>> 31) != 0;
+	}
+
+	@Test
+	void testConcurrentTransfer() throws InterruptedException {
+		final BitRing ring = new BitRing(256);
+		Thread producer = new Thread() {
+			public void run() {
+				Random r = new Random(1);
+				for(int i=0; i<COUNT; i++) {
+					ring.put(bit(i));
+					if(r.nextInt(20) == 0) ring.publish();
+				}
+				ring.close();
+			}
+		};
+		producer.start();
+
+		long[] buf = new long[8];
+		Random r = new Random(2);
+		int pos = 0;
+		while(true) {
+			int n;
+			if(r.nextBoolean()) {
+				int b = ring.take();
+				if(b < 0) break;
+				assertEquals(bit(pos) ? 1 : 0, b, "bit " + pos);
+				pos++;
+				continue;
+			}
+			n = ring.read(buf, 1 + r.nextInt(64 * buf.length));
+			if(n < 0) break;
+			for(int i=0; i<n; i++, pos++) {
+				assertEquals(bit(pos), BitReader.getBits(buf, i, 1) != 0, "bit " + pos);
+			}
+		}
+		producer.join();
+
+		assertEquals(COUNT, pos);
+		assertEquals(0, ring.getDepth());
+		assertTrue(ring.getMaxDepth() <= ring.getCapacity());
+	}
+
+	@Test
+	void testOverrunCounted() throws InterruptedException {
+		final BitRing ring = new BitRing(64);
+		Thread producer = new Thread() {
+			public void run() {
+				for(int i=0; i<65; i++) ring.put(true);
+				ring.close();
+			}
+		};
+		producer.start();
+		// the producer has to wait for the 65th bit until we read
+		while(ring.getOverruns() == 0) Thread.sleep(1);
+		assertEquals(64, ring.getDepth());
+		int n = 0;
+		while(ring.take() >= 0) n++;
+		producer.join();
+		assertEquals(65, n);
+		assertEquals(1, ring.getOverruns());
+	}
+}
@@ -0,0 +1,465 @@
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.RDSSurveyor;
+import eu.jacquet80.rds.core.BitStreamSynchronizer;
+import eu.jacquet80.rds.core.BitStreamSynchronizer.BlockStatus;
+import eu.jacquet80.rds.core.BitStreamSynchronizer.SyncTraceListener;
+import eu.jacquet80.rds.core.RDS;
+import eu.jacquet80.rds.input.BitReader;
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.group.GroupEvent;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+
+class BitStreamSynchronizerTest {
+	private static final int[] GROUP = {0xF202, 0x0408, 0x5C66, 0x2043};
+
+	/** Bit reader which replays a fixed sequence of 26-bit blocks. */
+	private static class BlockBitReader extends BitReader {
+		private final List<Integer> blocks;
+		private int pos = 0;
+
+		BlockBitReader(List<Integer> blocks) {
+			this.blocks = blocks;
+		}
+
+		@Override
+		public boolean getBit() throws IOException {
+			if(pos >= 26 * blocks.size()) throw new EOFException();
+			int block = blocks.get(pos / 26);
+			int bit = 25 - pos % 26;
+			pos++;
+			return ((block >> bit) & 1) != 0;
+		}
+	}
+
+	/** Bit reader which replays blocks, with low confidence for some bits and average confidence for others. */
+	private static class SoftBlockBitReader extends BlockBitReader {
+		private final Set<Integer> weakBits;
+		private int bitPos = 0;
+
+		SoftBlockBitReader(List<Integer> blocks, Set<Integer> weakBits) {
+			super(blocks);
+			this.weakBits = weakBits;
+		}
+
+		@Override
+		public int readBits(long[] dst, byte[] confidence, int maxBits) throws IOException {
+			int n = readBits(dst, maxBits);
+			if(n > 0) confidence[0] = (byte) (weakBits.contains(bitPos) ? 10 : 128);
+			bitPos += Math.max(n, 0);
+			return n;
+		}
+
+		@Override
+		public boolean hasBitConfidence() {
+			return true;
+		}
+	}
+
+	/** Bit reader which replays a fixed sequence of bits. */
+	private static class BitsBitReader extends BitReader {
+		private final boolean[] bits;
+		private int pos = 0;
+
+		BitsBitReader(boolean[] bits) {
+			this.bits = bits;
+		}
+
+		@Override
+		public boolean getBit() throws IOException {
+			if(pos >= bits.length) throw new EOFException();
+			return bits[pos++];
+		}
+	}
+
+	/**
+	 * Synchronization logic as it was before syndrome hits were kept in fixed-size rings: hits are
+	 * kept in linked lists, and synchronization is acquired on the third hit at the same offset,
+	 * pseudo-block and polarity within 5 groups. Returns the synchronization events, as
+	 * {bit time, block index, polarity} on acquisition and {bit time, -1, -1} on loss.
+	 */
+	private static List<int[]> legacySync(boolean[] bits) {
+		List<int[]> events = new ArrayList<int[]>();
+		@SuppressWarnings("unchecked")
+		LinkedList<Integer>[][][] hits = new LinkedList[26][4][2];
+		for(int o=0; o<26; o++) for(int p=0; p<4; p++) for(int j=0; j<2; j++) hits[o][p][j] = new LinkedList<Integer>();
+		boolean synced = false, negativePolarity = false;
+		int block = 0, bitCount = 0, blockCount = 0, nbOk = 0, nbUnsync = 0;
+		for(int bitTime=1; bitTime<=bits.length; bitTime++) {
+			block = ((block << 1) | (bits[bitTime-1] ? 1 : 0)) & 0x3FFFFFF;
+			bitCount++;
+			if(! synced) {
+				int[] synd = { RDS.calcSyndrome(block), RDS.calcSyndrome(~block) };
+				for(int i=0; i<4; i++) {
+					for(int j=0; j<2; j++) {
+						if(synd[j] == RDS.syndromes[i][0] || synd[j] == RDS.syndromes[i][1]) {
+							LinkedList<Integer> list = hits[bitTime % 26][(bitTime / 26 + 4 - i) % 4][j];
+							list.addLast(bitTime);
+							while(list.getFirst() < bitTime - 5 * 104) list.removeFirst();
+							if(list.size() > 2) {
+								synced = true;
+								for(int o=0; o<26; o++) for(int p=0; p<4; p++) for(int k=0; k<2; k++) hits[o][p][k].clear();
+								blockCount = (i+1) % 4;
+								bitCount = 0;
+								nbOk = 1;
+								negativePolarity = (j==1);
+								events.add(new int[] {bitTime, i, j});
+							}
+							break;
+						}
+					}
+				}
+			} else if(bitCount == 26) {
+				// the block is inverted in place, as before
+				if(negativePolarity) block = ~block;
+				int synd = RDS.calcSyndrome(block);
+				if(synd == RDS.syndromes[blockCount][0] || synd == RDS.syndromes[blockCount][1]) nbOk++;
+				bitCount = 0;
+				blockCount++;
+				if(blockCount > 3) {
+					blockCount = 0;
+					if(nbOk > 0) nbUnsync = 0; else nbUnsync++;
+					if(nbUnsync > 10) {
+						synced = false;
+						events.add(new int[] {bitTime, -1, -1});
+					}
+					nbOk = 0;
+				}
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * Returns a random bit stream with runs of groups, in either polarity, separated by noise and
+	 * bit slips. Noise contains stray blocks, and runs of groups contain blocks with the offset
+	 * word of another position, so that syndrome hits at wrong offsets or pseudo-blocks are
+	 * interleaved with the right ones.
+	 */
+	private static boolean[] huntStream(Random rnd) {
+		List<Integer> blocks = new ArrayList<Integer>();
+		List<Integer> lengths = new ArrayList<Integer>();
+		for(int run=0; run<12; run++) {
+			// noise, sometimes long enough to lose synchronization
+			int noise = rnd.nextInt(4) == 0 ? 1200 + rnd.nextInt(800) : rnd.nextInt(300);
+			while(noise > 0) {
+				int n = Math.min(noise, 26);
+				blocks.add(rnd.nextInt(1 << n));
+				lengths.add(n);
+				noise -= n;
+				if(rnd.nextInt(8) == 0) {
+					blocks.add(encode(rnd.nextInt(0x10000), rnd.nextInt(4)));
+					lengths.add(26);
+				}
+			}
+			int invert = rnd.nextBoolean() ? 0x3FFFFFF : 0;
+			int groups = 1 + rnd.nextInt(8);
+			for(int g=0; g<groups; g++) {
+				for(int i=0; i<4; i++) {
+					int block;
+					switch(rnd.nextInt(10)) {
+					case 0: block = rnd.nextInt(1 << 26); break;
+					case 1: block = encode(rnd.nextInt(0x10000), (i + 1 + rnd.nextInt(3)) % 4); break;
+					default: block = encode(rnd.nextInt(0x10000), i);
+					}
+					blocks.add(block ^ invert);
+					lengths.add(26);
+				}
+			}
+		}
+
+		int total = 0;
+		for(int n : lengths) total += n;
+		boolean[] bits = new boolean[total];
+		int pos = 0;
+		for(int k=0; k<blocks.size(); k++) {
+			for(int b=lengths.get(k)-1; b>=0; b--) bits[pos++] = ((blocks.get(k) >> b) & 1) != 0;
+		}
+		return bits;
+	}
+
+	/** Encodes a 16-bit information word into a block, with the offset word of the given block. */
+	static int encode(int info, int blockIndex) {
+		for(int c=0; c<1024; c++) {
+			int block = (info << 10) | c;
+			if(RDS.calcSyndrome(block) == RDS.syndromes[blockIndex][0]) return block;
+		}
+		throw new IllegalStateException();
+	}
+
+	static List<Integer> encodeGroups(int count) {
+		List<Integer> blocks = new ArrayList<Integer>();
+		for(int g=0; g<count; g++)
+			for(int i=0; i<4; i++)
+				blocks.add(encode(GROUP[i], i));
+		return blocks;
+	}
+
+	static List<GroupEvent> decode(List<Integer> blocks, int maxBurst) throws IOException {
+		BitStreamSynchronizer bss = new BitStreamSynchronizer(RDSSurveyor.nullConsole, new BlockBitReader(blocks));
+		bss.setMaxCorrectedBurst(maxBurst);
+		return decode(bss);
+	}
+
+	static List<GroupEvent> decode(BitStreamSynchronizer bss) throws IOException {
+		List<GroupEvent> groups = new ArrayList<GroupEvent>();
+		try {
+			while(true) {
+				GroupReaderEvent evt = bss.getGroup();
+				if(evt instanceof GroupEvent) groups.add((GroupEvent) evt);
+			}
+		} catch(EndOfStream e) {
+			return groups;
+		}
+	}
+
+	@Test
+	void testCleanStream() throws IOException {
+		List<GroupEvent> groups = decode(encodeGroups(10), 0);
+		GroupEvent last = groups.get(groups.size() - 1);
+		for(int i=0; i<4; i++) assertEquals(GROUP[i], last.blocks[i]);
+		assertEquals(0, last.correctedMask);
+	}
+
+	@Test
+	void testInvertedPolarity() throws IOException {
+		List<Integer> blocks = encodeGroups(10);
+		List<Integer> inverted = new ArrayList<Integer>();
+		for(int b : blocks) inverted.add(~b & 0x3FFFFFF);
+
+		// synchronization is acquired on the same block, whose contents are kept
+		List<GroupEvent> expected = decode(blocks, 0);
+		List<GroupEvent> groups = decode(inverted, 0);
+		assertEquals(expected.size(), groups.size());
+		for(int g=0; g<groups.size(); g++) {
+			for(int i=0; i<4; i++) assertEquals(expected.get(g).blocks[i], groups.get(g).blocks[i], "group " + g + ", block " + i);
+		}
+
+		// the group in which synchronization is acquired only has the blocks received since
+		GroupEvent first = groups.get(0);
+		int received = 0;
+		for(int i=0; i<4; i++) {
+			if(first.blocks[i] != -1) {
+				assertEquals(GROUP[i], first.blocks[i]);
+				received++;
+			} else assertEquals(0, received, "block " + i + " lost after synchronization");
+		}
+		assertTrue(received > 0);
+	}
+
+	@Test
+	void testHuntMatchesLegacyLogic() throws IOException {
+		int acquisitions = 0, losses = 0, falseHits = 0;
+		for(int seed=0; seed<40; seed++) {
+			boolean[] bits = huntStream(new Random(seed));
+			List<int[]> expected = legacySync(bits);
+
+			// bit time of every synchronization event, from the bits hunted and the blocks received
+			final List<int[]> events = new ArrayList<int[]>();
+			final int[] bitTime = new int[1];
+			final int[] hits = new int[1];
+			BitStreamSynchronizer bss = new BitStreamSynchronizer(RDSSurveyor.nullConsole, new BitsBitReader(bits));
+			bss.addSyncTraceListener(new SyncTraceListener() {
+				@Override
+				public void huntBit() {
+					bitTime[0]++;
+				}
+
+				@Override
+				public void syndromeHit(int blockIndex, boolean negativePolarity, int offset, int pseudoBlock) {
+					hits[0]++;
+				}
+
+				@Override
+				public void syncAcquired(int blockIndex, boolean negativePolarity, int offset) {
+					events.add(new int[] {bitTime[0], blockIndex, negativePolarity ? 1 : 0});
+				}
+
+				@Override
+				public void blockReceived(int blockIndex, BlockStatus status) {
+					bitTime[0] += 26;
+				}
+
+				@Override
+				public void groupReceived(int okMask, int correctedMask) {
+				}
+
+				@Override
+				public void syncLost() {
+					events.add(new int[] {bitTime[0], -1, -1});
+				}
+			});
+			decode(bss);
+
+			assertEquals(expected.size(), events.size(), "seed " + seed);
+			int acquired = 0;
+			for(int k=0; k<events.size(); k++) {
+				int[] e = expected.get(k);
+				int[] a = events.get(k);
+				String msg = "seed " + seed + ", event " + k;
+				assertEquals(e[0], a[0], msg + ", bit time");
+				assertEquals(e[1], a[1], msg + ", block");
+				assertEquals(e[2], a[2], msg + ", polarity");
+				if(e[1] >= 0) acquired++; else losses++;
+			}
+			acquisitions += acquired;
+			// three hits lead to each acquisition, the others are spurious
+			falseHits += hits[0] - 3 * acquired;
+		}
+
+		// the streams exercise hunting with many spurious syndrome hits, and losses of synchronization
+		assertTrue(acquisitions > 200, "acquisitions " + acquisitions);
+		assertTrue(losses > 150, "losses " + losses);
+		assertTrue(falseHits > 4 * acquisitions, "false hits " + falseHits);
+	}
+
+	@Test
+	void testNoCorrectionByDefault() throws IOException {
+		List<Integer> blocks = encodeGroups(10);
+		// single bit error in block A of the last group, which could lead to a wrong PI if corrected
+		int idx = blocks.size() - 4;
+		blocks.set(idx, blocks.get(idx) ^ (1 << 15));
+
+		BitStreamSynchronizer bss = new BitStreamSynchronizer(RDSSurveyor.nullConsole, new BlockBitReader(blocks));
+		assertEquals(0, bss.getMaxCorrectedBurst());
+		GroupEvent last = lastGroup(decode(bss));
+		assertEquals(-1, last.blocks[0]);
+		assertEquals(0, last.correctedMask);
+	}
+
+	@Test
+	void testBurstCorrection() throws IOException {
+		List<Integer> blocks = encodeGroups(10);
+		// 3-bit burst in block C of the last group
+		int idx = blocks.size() - 2;
+		blocks.set(idx, blocks.get(idx) ^ (0x5 << 12));
+
+		GroupEvent last = lastGroup(decode(blocks, 2));
+		assertEquals(-1, last.blocks[2]);
+		assertEquals(0, last.correctedMask);
+
+		last = lastGroup(decode(blocks, 3));
+		assertEquals(GROUP[2], last.blocks[2]);
+		assertEquals(1 << 2, last.correctedMask);
+	}
+
+	@Test
+	void testSoftDecision() throws IOException {
+		List<Integer> blocks = encodeGroups(10);
+		// two errors too far apart for burst correction in block C of the last group,
+		// on bits reported as unreliable
+		int idx = blocks.size() - 2;
+		blocks.set(idx, blocks.get(idx) ^ (1 << 20) ^ (1 << 3));
+		Set<Integer> weakBits = new HashSet<Integer>();
+		weakBits.add(26 * idx + 25 - 20);
+		weakBits.add(26 * idx + 25 - 3);
+		weakBits.add(26 * idx + 25 - 11);   // reliable bits need not all be right
+
+		BitStreamSynchronizer bss = new BitStreamSynchronizer(new SoftBlockBitReader(blocks, weakBits));
+		bss.setMaxCorrectedBurst(2);
+		GroupEvent last = lastGroup(decode(bss));
+		assertEquals(GROUP[2], last.blocks[2]);
+		assertEquals(1 << 2, last.correctedMask);
+		assertEquals(1, bss.getBlockCount(BlockStatus.SOFT_CORRECTED));
+		assertEquals(0, bss.getBlockCount(BlockStatus.ERROR));
+
+		bss = new BitStreamSynchronizer(new SoftBlockBitReader(blocks, weakBits));
+		bss.setMaxCorrectedBurst(2);
+		bss.setSoftDecision(false);
+		last = lastGroup(decode(bss));
+		assertEquals(-1, last.blocks[2]);
+		assertEquals(0, bss.getBlockCount(BlockStatus.SOFT_CORRECTED));
+		assertEquals(1, bss.getBlockCount(BlockStatus.ERROR));
+	}
+
+	@Test
+	void testSoftDecisionDisabledWithoutCorrection() throws IOException {
+		List<Integer> blocks = encodeGroups(10);
+		int idx = blocks.size() - 2;
+		blocks.set(idx, blocks.get(idx) ^ (1 << 20) ^ (1 << 3));
+		Set<Integer> weakBits = new HashSet<Integer>();
+		weakBits.add(26 * idx + 25 - 20);
+		weakBits.add(26 * idx + 25 - 3);
+
+		BitStreamSynchronizer bss = new BitStreamSynchronizer(new SoftBlockBitReader(blocks, weakBits));
+		bss.setMaxCorrectedBurst(0);
+		GroupEvent last = lastGroup(decode(bss));
+		assertEquals(-1, last.blocks[2]);
+		assertEquals(0, bss.getBlockCount(BlockStatus.SOFT_CORRECTED));
+		assertEquals(1, bss.getBlockCount(BlockStatus.ERROR));
+	}
+
+	@Test
+	void testSoftDecisionRejectsWrongCodewords() throws IOException {
+		// for every pair of errors on reliable bits of block C, and every set of weak bits
+		// elsewhere in the block which cannot complete the errors into another codeword,
+		// soft decoding must either restore the block or give up, never accept another block
+		int block = encode(GROUP[2], 2);
+		int tried = 0;
+		for(int e1=0; e1<26; e1++) {
+			for(int e2=e1+3; e2<26; e2++) {
+				int weak = weakBitsFor(e1, e2);
+				List<Integer> blocks = encodeGroups(10);
+				int idx = blocks.size() - 2;
+				blocks.set(idx, block ^ (1 << e1) ^ (1 << e2));
+				Set<Integer> weakBits = new HashSet<Integer>();
+				for(int j=0; j<26; j++) {
+					if((weak & (1 << j)) != 0) weakBits.add(26 * idx + 25 - j);
+				}
+
+				// skip the error patterns which burst correction already gets wrong
+				BitStreamSynchronizer bss = new BitStreamSynchronizer(new SoftBlockBitReader(blocks, weakBits));
+				bss.setMaxCorrectedBurst(1);
+				bss.setSoftDecision(false);
+				if(lastGroup(decode(bss)).blocks[2] != -1) continue;
+
+				bss = new BitStreamSynchronizer(new SoftBlockBitReader(blocks, weakBits));
+				bss.setMaxCorrectedBurst(1);
+				GroupEvent last = lastGroup(decode(bss));
+				assertEquals(-1, last.blocks[2], "errors on bits " + e1 + " and " + e2);
+				assertEquals(0, bss.getBlockCount(BlockStatus.SOFT_CORRECTED));
+				tried++;
+			}
+		}
+		assertTrue(tried > 200);
+	}
+
+	/**
+	 * Returns four weak bits, none of them at {@code e1} or {@code e2}, such that no
+	 * combination of them completes the error pattern into a codeword with offset C or C'.
+	 */
+	private static int weakBitsFor(int e1, int e2) {
+		int errorSyndrome = RDS.calcSyndrome((1 << e1) | (1 << e2));
+		int primeSyndrome = RDS.syndromes[2][0] ^ RDS.syndromes[2][1];
+		for(int seed=0; ; seed++) {
+			int weak = 0;
+			for(int j=seed; Integer.bitCount(weak) < 4; j += 7) {
+				int b = j % 26;
+				if(b != e1 && b != e2) weak |= 1 << b;
+			}
+			boolean safe = true;
+			for(int sub = weak; sub != 0; sub = (sub - 1) & weak) {
+				int s = RDS.calcSyndrome(sub) ^ errorSyndrome;
+				if(s == 0 || s == primeSyndrome) safe = false;
+			}
+			if(safe) return weak;
+		}
+	}
+
+	private static GroupEvent lastGroup(List<GroupEvent> groups) {
+		return groups.get(groups.size() - 1);
+	}
+}
@@ -0,0 +1,110 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.core.BitStreamSynchronizer;
+import eu.jacquet80.rds.input.AudioBitReader;
+import eu.jacquet80.rds.input.AudioBitReader.ProbeSignal;
+import eu.jacquet80.rds.input.CsvDspProbe;
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+class CsvDspProbeTest {
+	private static final int RATE = 192000;
+
+	/**
+	 * Writes a file to a pipe on a thread of its own, then closes the pipe.
+	 */
+	private static Thread feed(final File file, final Pipe.SinkChannel sink) {
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				try {
+					FileChannel in = new FileInputStream(file).getChannel();
+					try {
+						ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+						while(in.read(buf) >= 0) {
+							buf.flip();
+							while(buf.hasRemaining()) sink.write(buf);
+							buf.clear();
+						}
+					} finally {
+						in.close();
+						sink.close();
+					}
+				} catch(IOException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		t.start();
+		return t;
+	}
+
+	@Test
+	void testSamplesReachProbe() throws IOException, InterruptedException {
+		int seconds = 2;
+		File mpx = MpxFileGroupReaderTest.writeMpx(seconds);
+		File csv = File.createTempFile("probe", ".csv");
+		csv.deleteOnExit();
+
+		// the demodulator waits for the pipe, thus the probe is attached before the first sample
+		Pipe pipe = Pipe.open();
+		AudioBitReader audio = new AudioBitReader(pipe.source(), RATE);
+		CsvDspProbe probe = new CsvDspProbe(csv, 4, ProbeSignal.SUBCARRIER_FREQ, ProbeSignal.SBIT);
+		audio.addProbe(probe);
+		Thread feeder = feed(mpx, pipe.sink());
+
+		BitStreamSynchronizer sync = new BitStreamSynchronizer(null, audio);
+		int groups = 0;
+		try {
+			PackedGroup group = new PackedGroup();
+			while(true) {
+				sync.getGroup(group);
+				if(group.present && group.okMask == 0xF) groups++;
+			}
+		} catch(EndOfStream e) {
+			// done
+		} finally {
+			sync.close();
+		}
+		feeder.join();
+		audio.removeProbe(probe);
+		probe.close();
+		assertTrue(groups > 15, groups + " groups");
+		assertEquals(0, probe.getDropped());
+
+		BufferedReader in = new BufferedReader(new FileReader(csv));
+		try {
+			assertEquals("t,subcarrier_freq,sbit", in.readLine());
+			// one value out of 26 input samples is probed, and one out of 4 of those written
+			int decimated = (seconds * RATE + 25) / 26;
+			int rows = (decimated + 3) / 4;
+			double step = 4 * 26.0 / RATE;
+			String line;
+			int n = 0;
+			while((line = in.readLine()) != null) {
+				String[] fields = line.split(",");
+				assertEquals(3, fields.length, line);
+				assertEquals(n * step, Double.parseDouble(fields[0]), 1e-6, line);
+				assertEquals(57000, Double.parseDouble(fields[1]), 12, line);
+				double sbit = Double.parseDouble(fields[2]);
+				assertTrue(sbit == 1 || sbit == -1 || sbit == 0, line);
+				n++;
+			}
+			assertEquals(rows, n);
+		} finally {
+			in.close();
+		}
+	}
+}
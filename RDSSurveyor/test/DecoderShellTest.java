@@ -0,0 +1,73 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.core.DecoderShell;
+import eu.jacquet80.rds.core.TunedStation;
+import eu.jacquet80.rds.input.HexFileGroupReader;
+import eu.jacquet80.rds.log.DefaultLogMessageVisitor;
+import eu.jacquet80.rds.log.GroupReceived;
+import eu.jacquet80.rds.log.StationLost;
+
+class DecoderShellTest {
+	private static final int GROUPS = 2000;
+
+	/** PS groups of a station, as a hex group file */
+	private static HexFileGroupReader stream(int pi, String ps) {
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<GROUPS; i++) {
+			int addr = i % 4;
+			sb.append(String.format("%04X 040%X 5C66 %02X%02X\n", pi, 8 + addr,
+					(int) ps.charAt(2*addr), (int) ps.charAt(2*addr + 1)));
+		}
+		return new HexFileGroupReader(new BufferedReader(new StringReader(sb.toString())));
+	}
+
+	@Test
+	void testSharedExecutor() throws InterruptedException {
+		// fewer threads than sessions: sessions must take turns
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		String[] names = {"STATION1", "STATION2", "STATION3"};
+		final CountDownLatch done = new CountDownLatch(names.length);
+		final TunedStation[] stations = new TunedStation[names.length];
+		final AtomicInteger[] counts = new AtomicInteger[names.length];
+
+		for(int i=0; i<names.length; i++) {
+			final int index = i;
+			counts[i] = new AtomicInteger();
+			DecoderShell session = new DecoderShell(executor);
+			session.getLog().addNewMessageListener(new DefaultLogMessageVisitor() {
+				@Override
+				public void visit(GroupReceived groupReceived) {
+					counts[index].incrementAndGet();
+				}
+
+				@Override
+				public void visit(StationLost stationLost) {
+					if(stationLost.isLastInStream()) {
+						stations[index] = stationLost.getStation();
+						done.countDown();
+					}
+				}
+			});
+			session.process(stream(0xF201 + i, names[i]), false);
+		}
+
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		executor.shutdown();
+		for(int i=0; i<names.length; i++) {
+			assertEquals(GROUPS, counts[i].get());
+			assertEquals(0xF201 + i, stations[i].getPI());
+			assertEquals(names[i], stations[i].getPS().toString());
+		}
+	}
+}
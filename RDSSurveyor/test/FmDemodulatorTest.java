@@ -0,0 +1,84 @@
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.input.FmDemodulator;
+
+class FmDemodulatorTest {
+	private static final int RATE = 2400000;
+
+	/** Generates 8-bit unsigned IQ samples of a carrier at {@code offset}, FM-modulated by a tone. */
+	private static byte[] fmTone(int numSamples, double offset, double tone, double deviation) {
+		byte[] iq = new byte[2 * numSamples];
+		double phi = 0;
+		for(int k=0; k<numSamples; k++) {
+			phi += 2 * Math.PI * (offset + deviation * Math.sin(2 * Math.PI * tone * k / RATE)) / RATE;
+			iq[2*k] = (byte) Math.round(127.5 + 100 * Math.cos(phi));
+			iq[2*k+1] = (byte) Math.round(127.5 + 100 * Math.sin(phi));
+		}
+		return iq;
+	}
+
+	private static short[] demodulate(FmDemodulator demod, byte[] iq, int blockSize) {
+		int numSamples = iq.length / 2;
+		short[] res = new short[demod.getMaxOutput(numSamples)];
+		short[] out = new short[demod.getMaxOutput(blockSize)];
+		int n = 0;
+		for(int k=0; k<numSamples; k+=blockSize) {
+			int count = demod.process(iq, 2*k, Math.min(blockSize, numSamples - k), out);
+			System.arraycopy(out, 0, res, n, count);
+			n += count;
+		}
+		short[] trimmed = new short[n];
+		System.arraycopy(res, 0, trimmed, 0, n);
+		return trimmed;
+	}
+
+	/** Checks that the output is the modulating tone, at the expected amplitude. */
+	private static void checkTone(short[] mpx, int outRate, double tone, double deviation) {
+		double expected = 2 * Math.PI * deviation / outRate * 32768 / Math.PI;
+		double max = 0, min = 0;
+		// skip the start-up of the filter
+		for(int k=100; k<mpx.length; k++) {
+			max = Math.max(max, mpx[k]);
+			min = Math.min(min, mpx[k]);
+		}
+		assertEquals(expected, max, expected * 0.05);
+		assertEquals(-expected, min, expected * 0.05);
+
+		// count zero crossings to check the frequency of the tone
+		int crossings = 0;
+		for(int k=101; k<mpx.length; k++) {
+			if((mpx[k-1] < 0) != (mpx[k] < 0)) crossings++;
+		}
+		double duration = (mpx.length - 101) / (double) outRate;
+		assertEquals(2 * tone * duration, crossings, 4);
+	}
+
+	@Test
+	void testCenterChannel() {
+		FmDemodulator demod = new FmDemodulator(RATE, 0);
+		assertEquals(240000, demod.getOutputRate());
+		short[] mpx = demodulate(demod, fmTone(240000, 0, 1000, 50000), 65536);
+		checkTone(mpx, demod.getOutputRate(), 1000, 50000);
+	}
+
+	@Test
+	void testOffsetChannel() {
+		FmDemodulator demod = new FmDemodulator(RATE, -700000);
+		short[] mpx = demodulate(demod, fmTone(240000, -700000, 5000, 2000), 65536);
+		checkTone(mpx, demod.getOutputRate(), 5000, 2000);
+	}
+
+	@Test
+	void testBlockSizeDoesNotMatter() {
+		byte[] iq = fmTone(100000, 300000, 1000, 75000);
+		short[] whole = demodulate(new FmDemodulator(RATE, 300000), iq, iq.length / 2);
+		short[] blocks = demodulate(new FmDemodulator(RATE, 300000), iq, 777);
+		assertTrue(whole.length > 0);
+		assertArrayEquals(whole, blocks);
+	}
+}
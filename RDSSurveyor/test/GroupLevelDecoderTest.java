@@ -1,14 +1,28 @@
 
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
+import eu.jacquet80.rds.core.GroupContext;
+import eu.jacquet80.rds.core.GroupHandler;
 import eu.jacquet80.rds.core.GroupLevelDecoder;
+import eu.jacquet80.rds.core.RDS;
+import eu.jacquet80.rds.core.ServiceStat;
+import eu.jacquet80.rds.core.ServiceStat.Category;
 import eu.jacquet80.rds.core.TunedStation;
 import eu.jacquet80.rds.input.group.GroupEvent;
+import eu.jacquet80.rds.log.DefaultLogMessageVisitor;
+import eu.jacquet80.rds.log.GroupAnalysis;
+import eu.jacquet80.rds.log.GroupReceived;
 import eu.jacquet80.rds.log.Log;
 import eu.jacquet80.rds.log.SequentialTime;
 
@@ -25,6 +39,172 @@ class GroupLevelDecoderTest {
 		return decoder.getTunedStation();
 	}
 
+	@Test
+	void testAnalysis() throws IOException {
+		Log log = new Log();
+		final List<GroupReceived> received = new ArrayList<GroupReceived>();
+		log.addNewMessageListener(new DefaultLogMessageVisitor() {
+			@Override
+			public void visit(GroupReceived groupReceived) {
+				received.add(groupReceived);
+			}
+		});
+		GroupLevelDecoder decoder = new GroupLevelDecoder(log);
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(0), new int[] {0xF202, 0x0408, 0x5C66, 0x2043}, false));
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(104), new int[] {-1, 0x2412, 0x4142, 0x4344}, false));
+
+		GroupAnalysis analysis = received.get(0).getStructuredAnalysis();
+		assertEquals(0xF202, analysis.getPI());
+		assertEquals(0, analysis.getGroupType());
+		assertEquals(0, analysis.getVersion());
+		assertEquals(1, analysis.getTP());
+		assertEquals(0, analysis.getPTY());
+		String text = received.get(0).getAnalysis();
+		assertTrue(text.startsWith("PI=F202, Type 0A, TP=1, PTY=0, TA=0, M/s, DI:SPTY, "), text);
+		assertTrue(text.contains("PS pos=0: \" C\" "), text);
+
+		analysis = received.get(1).getStructuredAnalysis();
+		assertEquals(-1, analysis.getPI());
+		assertEquals("         Type 2A, TP=1, PTY=0, RT A/B=B pos=2: \"ABCD\"", received.get(1).getAnalysis());
+	}
+
+	@Test
+	void testAnalysisRenderedOnce() throws IOException, InterruptedException {
+		Log log = new Log();
+		final List<GroupReceived> received = new ArrayList<GroupReceived>();
+		log.addNewMessageListener(new DefaultLogMessageVisitor() {
+			@Override
+			public void visit(GroupReceived groupReceived) {
+				received.add(groupReceived);
+			}
+		});
+		GroupLevelDecoder decoder = new GroupLevelDecoder(log);
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(0), new int[] {0xF202, 0x0408, 0x5C66, 0x2043}, false));
+
+		// the GUI and the console may render the analysis at the same time
+		final GroupReceived group = received.get(0);
+		final String[] texts = new String[2];
+		Thread[] threads = new Thread[2];
+		for(int i=0; i<2; i++) {
+			final int n = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					texts[n] = group.getAnalysis();
+				}
+			};
+			threads[i].start();
+		}
+		for(Thread t : threads) t.join();
+		assertSame(texts[0], texts[1]);
+		assertSame(texts[0], group.getAnalysis());
+		assertTrue(texts[0].startsWith("PI=F202, Type 0A, "), texts[0]);
+
+		// once rendered, only the text is kept
+		GroupAnalysis analysis = group.getStructuredAnalysis();
+		assertEquals(0xF202, analysis.getPI());
+		try {
+			analysis.getWriter();
+			fail("Rendered analysis changed");
+		} catch(IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	void testHandlers() throws IOException {
+		Log log = new Log();
+		final List<GroupReceived> received = new ArrayList<GroupReceived>();
+		log.addNewMessageListener(new DefaultLogMessageVisitor() {
+			@Override
+			public void visit(GroupReceived groupReceived) {
+				received.add(groupReceived);
+			}
+		});
+		GroupLevelDecoder decoder = new GroupLevelDecoder(log);
+		assertEquals(3, decoder.getHandlers(1, 0).length);
+		assertEquals(0, decoder.getHandlers(3, 1).length);
+
+		// extra handler, called after the built-in one
+		decoder.addHandler(0, 0, new GroupHandler() {
+			@Override
+			public void handleGroup(GroupContext group) {
+				group.getConsole().printf("extra %d", group.getBlocks()[3]);
+			}
+		});
+		// RT ignored
+		decoder.setHandler(2, 0, null);
+
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(0), new int[] {0xF202, 0x0408, 0x5C66, 0x2043}, false));
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(104), new int[] {0xF202, 0x2412, 0x4142, 0x4344}, false));
+
+		assertTrue(received.get(0).getAnalysis().endsWith("97.7extra 8259"), received.get(0).getAnalysis());
+		assertEquals("PI=F202, Type 2A, TP=1, PTY=0, ", received.get(1).getAnalysis());
+		assertEquals(" C      ", decoder.getTunedStation().getPS().toString());
+		assertNull(decoder.getTunedStation().getRT().toString());
+	}
+
+	@Test
+	void testServiceStats() throws IOException {
+		GroupLevelDecoder decoder = new GroupLevelDecoder(new Log());
+		int[] ps = {0xF202, 0x0408, 0x5C66, 0x2043};
+		int[] rt = {0xF202, 0x2412, 0x4142, 0x4344};
+		// two groups in the first minute, one 70 s later (times in bits)
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(0), ps, false));
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(1188), rt, false));
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(70 * 1188), ps, false));
+		// incomplete groups are not accounted
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(71 * 1188), new int[] {0xF202, 0x0408, -1, 0x2043}, false));
+
+		ServiceStat total = decoder.getTunedStation().getServiceStat();
+		assertEquals(3 * 64, total.getTotalCount());
+		assertEquals(2 * 18, total.get(Category.NAME));
+		assertEquals(5+16+16, total.get(Category.RT));
+		assertEquals(3 * 16, total.get(Category.PI));
+
+		List<ServiceStat> minutes = decoder.getTunedStation().getServiceStatsPerMinute();
+		assertEquals(2, minutes.size());
+		assertEquals(0, minutes.get(0).getStart());
+		assertEquals(2 * 64, minutes.get(0).getTotalCount());
+		assertEquals(60000, minutes.get(1).getStart());
+		assertEquals(18, minutes.get(1).get(Category.NAME));
+
+		List<ServiceStat> hours = decoder.getTunedStation().getServiceStatsPerHour();
+		assertEquals(1, hours.size());
+		assertEquals(3 * 64, hours.get(0).getTotalCount());
+	}
+
+	@Test
+	void testUndecodedBits() throws IOException {
+		GroupLevelDecoder decoder = new GroupLevelDecoder(new Log());
+		// RT ignored
+		decoder.setHandler(2, 0, null);
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(0), new int[] {0xF202, 0x2412, 0x4142, 0x4344}, false));
+		// no handler for 7B groups
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(104), new int[] {0xF202, 0x7C00, 0xF202, 0x1234}, false));
+
+		// only the bits of the common fields are accounted, as before
+		ServiceStat total = decoder.getTunedStation().getServiceStat();
+		assertEquals((64 - (5+16+16)) + (64 - (5+16)), total.getTotalCount());
+		assertEquals(0, total.get(Category.WASTE));
+	}
+
+	@Test
+	void testRbds() throws IOException {
+		// PTY 2 has different labels in RDS and RBDS
+		int[] blocks = {0xF202, 0x0448, 0x5C66, 0x2043};
+		assertTrue(!RDS.rdsPtyLabels[2].equals(RDS.rbdsPtyLabels[2]));
+
+		GroupLevelDecoder decoder = new GroupLevelDecoder(new Log());
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(0), blocks, false));
+		assertEquals(RDS.rdsPtyLabels[2], decoder.getTunedStation().getPTYlabel());
+
+		decoder = new GroupLevelDecoder(new Log());
+		decoder.setRbds(true);
+		decoder.processOneGroup(new GroupEvent(new SequentialTime(0), blocks, false));
+		assertEquals(RDS.rbdsPtyLabels[2], decoder.getTunedStation().getPTYlabel());
+	}
+
 	@Test
 	void testPS() throws IOException {
 		TunedStation ts = send(
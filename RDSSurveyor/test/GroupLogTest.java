@@ -0,0 +1,304 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.input.AsyncGroupLogWriter;
+import eu.jacquet80.rds.input.AsyncGroupLogWriter.Overflow;
+import eu.jacquet80.rds.input.BinaryGroupFileReader;
+import eu.jacquet80.rds.input.BinaryGroupWriter;
+import eu.jacquet80.rds.input.FileFormatGuesser;
+import eu.jacquet80.rds.input.GroupLogConverter;
+import eu.jacquet80.rds.input.GroupLogWriter;
+import eu.jacquet80.rds.input.GroupReader;
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.HexFileGroupReader;
+import eu.jacquet80.rds.input.HexGroupWriter;
+import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+import eu.jacquet80.rds.input.group.StationChangeEvent;
+import eu.jacquet80.rds.log.SequentialTime;
+
+class GroupLogTest {
+	private static final String NL = System.getProperty("line.separator");
+
+	/**
+	 * A hex file as written by {@link HexGroupWriter}: groups with and without missing blocks
+	 * and dates, and a frequency change. Sequential time stamps are line numbers, which is what
+	 * the hex reader assigns.
+	 */
+	private static String hexFile() {
+		StringBuilder sb = new StringBuilder("% RDS hexgroups").append(NL);
+		for(int line=1; line<=2000; line++) {
+			if(line % 500 == 0) {
+				sb.append(String.format("%% Freq %d, date=%04d", 875 + line / 500, line % 10000));
+			} else {
+				for(int b=0; b<4; b++) {
+					if((line + b) % 7 == 0) sb.append("---- ");
+					else sb.append(String.format("%04X ", (line * 0x9E37 + b * 0x79B9) & 0xFFFF));
+				}
+				if(line % 3 == 0) sb.append(String.format("@2012/03/15 07:%02d:%02d.%03d", line / 60 % 60, line % 60, line % 1000));
+				else sb.append(String.format("@%04d", line % 10000));
+			}
+			sb.append(NL);
+		}
+		return sb.toString();
+	}
+
+	private static byte[] toBinary(GroupReader reader) throws IOException {
+		ByteArrayOutputStream bin = new ByteArrayOutputStream();
+		GroupLogConverter.convert(reader, new BinaryGroupWriter(bin));
+		return bin.toByteArray();
+	}
+
+	@Test
+	void testHexRoundTrip() throws IOException {
+		String hex = hexFile();
+		byte[] bin = toBinary(new HexFileGroupReader(new BufferedReader(new StringReader(hex))));
+		assertTrue(bin.length < hex.length() / 2, "Binary file of " + bin.length + " bytes");
+
+		StringWriter back = new StringWriter();
+		int count = GroupLogConverter.convert(new BinaryGroupFileReader(new ByteArrayInputStream(bin)),
+				new HexGroupWriter(back));
+		assertEquals(1996, count);
+		assertEquals(hex, back.toString());
+	}
+
+	@Test
+	void testBinaryRoundTrip() throws IOException, EndOfStream {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryGroupWriter writer = new BinaryGroupWriter(out);
+		PackedGroup group = new PackedGroup();
+		group.blocks = 0xF2020408DEADBEEFL;
+		group.okMask = 0xB;
+		group.correctedMask = 0x2;
+		group.ignored = true;
+		group.setSequentialTime(123456);
+		writer.writeGroup(group);
+		group.ignored = false;
+		group.setRealTime(1331797263251L);
+		writer.writeGroup(group);
+		writer.writeEvent(new FrequencyChangeEvent(new SequentialTime(123400), 1043));
+		writer.writeEvent(new StationChangeEvent(new SequentialTime(123500)));
+		writer.close();
+
+		BinaryGroupFileReader reader = new BinaryGroupFileReader(new ByteArrayInputStream(out.toByteArray()));
+		PackedGroup read = new PackedGroup();
+		assertNull(reader.getGroup(read));
+		assertEquals(0xF2020408DEADBEEFL, read.blocks);
+		assertEquals(0xB, read.okMask);
+		assertEquals(0x2, read.correctedMask);
+		assertTrue(read.ignored);
+		assertEquals(123456, read.getTimeValue());
+
+		assertNull(reader.getGroup(read));
+		assertTrue(read.isRealTime());
+		assertEquals(1331797263251L, read.getTimeValue());
+
+		GroupReaderEvent event = reader.getGroup(read);
+		assertEquals(1043, ((FrequencyChangeEvent) event).frequency);
+		assertEquals(123400, ((SequentialTime) event.getTime()).getGroupTime());
+		event = reader.getGroup(read);
+		assertTrue(event instanceof StationChangeEvent);
+		assertEquals(123500, ((SequentialTime) event.getTime()).getGroupTime());
+
+		try {
+			reader.getGroup(read);
+			assertTrue(false, "Read past the end");
+		} catch(EndOfStream e) {
+			// expected
+		}
+	}
+
+	@Test
+	void testGuessFormat() throws IOException {
+		byte[] bin = toBinary(new HexFileGroupReader(new BufferedReader(new StringReader(hexFile()))));
+		File file = File.createTempFile("groups", ".rdsg");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(bin);
+		} finally {
+			out.close();
+		}
+		assertTrue(FileFormatGuesser.createReader(file) instanceof BinaryGroupFileReader);
+	}
+
+	@Test
+	void testAsync() throws IOException {
+		String hex = hexFile();
+		StringWriter text = new StringWriter();
+		AsyncGroupLogWriter writer = new AsyncGroupLogWriter(new HexGroupWriter(text), 16,
+				Overflow.BLOCK, 100, 10);
+		GroupLogConverter.convert(new HexFileGroupReader(new BufferedReader(new StringReader(hex))), writer);
+		assertEquals(hex, text.toString());
+		assertEquals(0, writer.getDropped());
+	}
+
+	/**
+	 * A writer which is stuck until released, and records the third block of the groups it writes.
+	 */
+	private static class StuckWriter implements GroupLogWriter {
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Integer> written = new ArrayList<Integer>();
+
+		@Override
+		public void writeGroup(PackedGroup group) throws IOException {
+			try {
+				release.await();
+			} catch(InterruptedException e) {
+				throw new IOException(e.toString());
+			}
+			written.add(group.getBlock(2));
+		}
+
+		@Override
+		public void writeEvent(GroupReaderEvent event) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * Writes 100 groups numbered in their third block to a stuck writer, through a ring of ten.
+	 */
+	private static AsyncGroupLogWriter writeToStuck(StuckWriter stuck, Overflow overflow) throws IOException {
+		AsyncGroupLogWriter writer = new AsyncGroupLogWriter(stuck, 10, overflow, 100, 1000);
+		PackedGroup group = new PackedGroup();
+		group.present = true;
+		for(int i=0; i<100; i++) {
+			group.setBlocks(new int[] {0xF202, 0x0408, i, 0x2043});
+			writer.writeGroup(group);
+		}
+		// the writer thread holds at most one group, the ring the next ten
+		assertTrue(writer.getDropped() >= 89, "Dropped " + writer.getDropped());
+		stuck.release.countDown();
+		writer.close();
+		assertEquals(100, stuck.written.size() + writer.getDropped());
+		return writer;
+	}
+
+	@Test
+	void testAsyncOverflow() throws IOException {
+		StuckWriter stuck = new StuckWriter();
+		writeToStuck(stuck, Overflow.DROP_NEWEST);
+		// the first groups are kept
+		for(int i=0; i<stuck.written.size(); i++) assertEquals(i, (int) stuck.written.get(i));
+	}
+
+	@Test
+	void testAsyncDropOldest() throws IOException {
+		StuckWriter stuck = new StuckWriter();
+		AsyncGroupLogWriter writer = writeToStuck(stuck, Overflow.DROP_OLDEST);
+		// the group held by the writer thread, if any, then the last ten groups
+		List<Integer> written = stuck.written;
+		int n = written.size();
+		assertTrue(n == 10 || n == 11, written.toString());
+		for(int i=0; i<10; i++) assertEquals(90 + i, (int) written.get(n - 10 + i));
+		if(n == 11) assertTrue(written.get(0) < 90, written.toString());
+		// closing again has no effect
+		writer.close();
+		assertEquals(n, written.size());
+	}
+
+	@Test
+	void testAsyncFlushWaitsForLaterEvents() throws IOException, InterruptedException {
+		final CountDownLatch inFlush = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final int[] written = new int[1];
+		final int[] flushedWritten = new int[1];
+		// a writer whose first flush is stuck until released, and which is slow to write the second group
+		GroupLogWriter out = new GroupLogWriter() {
+			private int flushes = 0;
+
+			@Override
+			public void writeGroup(PackedGroup group) throws IOException {
+				if(written[0] == 1) sleep(200);
+				synchronized(written) {
+					written[0]++;
+				}
+			}
+
+			@Override
+			public void writeEvent(GroupReaderEvent event) {
+			}
+
+			@Override
+			public void flush() throws IOException {
+				if(flushes++ == 0) {
+					inFlush.countDown();
+					try {
+						release.await();
+					} catch(InterruptedException e) {
+						throw new IOException(e.toString());
+					}
+				}
+				synchronized(written) {
+					flushedWritten[0] = written[0];
+				}
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+
+		// the first group is flushed after 1 ms
+		final AsyncGroupLogWriter writer = new AsyncGroupLogWriter(out, 16, Overflow.BLOCK, 100, 1);
+		PackedGroup group = new PackedGroup();
+		group.present = true;
+		writer.writeGroup(group);
+		inFlush.await();
+
+		// the second group is handed over while the first one is being flushed
+		writer.writeGroup(group);
+		final int[] flushedAtReturn = new int[1];
+		Thread flusher = new Thread() {
+			@Override
+			public void run() {
+				try {
+					writer.flush();
+					synchronized(written) {
+						flushedAtReturn[0] = flushedWritten[0];
+					}
+				} catch(IOException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		flusher.start();
+		sleep(100);
+		release.countDown();
+		flusher.join();
+		assertEquals(2, flushedAtReturn[0]);
+		writer.close();
+	}
+
+	private static void sleep(long millis) throws IOException {
+		try {
+			Thread.sleep(millis);
+		} catch(InterruptedException e) {
+			throw new IOException(e.toString());
+		}
+	}
+}
@@ -0,0 +1,186 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.input.HexGroupParser;
+import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+/**
+ * Checks that {@link HexGroupParser} parses lines exactly as the former parser, based on regular
+ * expressions, of which this class holds a copy. Synthetic lines are checked, as well as the
+ * files of the directory given by the {@code hexgroups.corpus} system property, if any.
+ */
+class HexGroupParserTest {
+	private final static Pattern FIRST_NUMBER = Pattern.compile("\\D*(\\d+).*");
+	private final static Pattern RDS_SPY_DATE_FORMAT = 
+			Pattern.compile(".*@(\\d{4})/(\\d{2})/(\\d{2})\\s+(\\d{2}):(\\d{2}):(\\d{2}).(\\d{2,4})$");
+	private static final Pattern SPACE = Pattern.compile("\\s+");
+
+	/** The former parser */
+	private static GroupReaderEvent parseReference(String line, PackedGroup group) throws IOException {
+		group.present = false;
+		line = line.trim();
+		if(line.length() == 0) return null;
+		if(line.startsWith("%")) {
+			if(line.startsWith("% Freq")) {
+				Matcher m = FIRST_NUMBER.matcher(line);
+				int f = 0;
+				if(m.matches()) f = Integer.parseInt(m.group(1));
+				return new FrequencyChangeEvent(group.getTime(), f);
+			}
+			return null;
+		}
+		if(line.startsWith("<")) return null;
+		String[] components = SPACE.split(line);
+		if(components.length < 4) return null;
+		long blocks = 0;
+		int okMask = 0;
+		for(int i=0; i<4; i++) {
+			String s = components[i];
+			if(! "----".equals(s)) {
+				blocks |= (long) (Integer.parseInt(s, 16) & 0xFFFF) << (48 - 16*i);
+				okMask |= 1 << i;
+			}
+		}
+		Matcher m = RDS_SPY_DATE_FORMAT.matcher(line);
+		if(m.matches()) {
+			GregorianCalendar c = new GregorianCalendar( 
+					Integer.parseInt(m.group(1)), 
+					Integer.parseInt(m.group(2)) - 1, 
+					Integer.parseInt(m.group(3)), 
+					Integer.parseInt(m.group(4)), 
+					Integer.parseInt(m.group(5)),
+					Integer.parseInt(m.group(6)));
+			c.set(Calendar.MILLISECOND, Math.round(Float.parseFloat("0." + m.group(7)) * 1000));
+			group.setRealTime(c.getTimeInMillis());
+		}
+		group.blocks = blocks;
+		group.okMask = okMask;
+		group.correctedMask = 0;
+		group.ignored = false;
+		group.present = true;
+		return null;
+	}
+
+	/** Describes the outcome of parsing a line */
+	private static String outcome(GroupReaderEvent event, PackedGroup group) {
+		if(group.present) {
+			return String.format("group %016X %X %b %d", group.blocks, group.okMask,
+					group.isRealTime(), group.getTimeValue());
+		}
+		if(event instanceof FrequencyChangeEvent) return "freq " + ((FrequencyChangeEvent) event).frequency;
+		return String.valueOf(event);
+	}
+
+	private static void check(HexGroupParser parser, String line) {
+		String expected, fromString, fromBytes;
+		PackedGroup group = new PackedGroup();
+		try {
+			group.setSequentialTime(42);
+			expected = outcome(parseReference(line, group), group);
+		} catch(Exception e) {
+			expected = e.getClass().getName();
+		}
+		try {
+			group.setSequentialTime(42);
+			fromString = outcome(parser.parse(line, group), group);
+		} catch(Exception e) {
+			fromString = e.getClass().getName();
+		}
+		try {
+			group.setSequentialTime(42);
+			byte[] bytes = line.getBytes();
+			fromBytes = outcome(parser.parse(bytes, 0, bytes.length, group), group);
+		} catch(Exception e) {
+			fromBytes = e.getClass().getName();
+		}
+		assertEquals(expected, fromString, line);
+		assertEquals(expected, fromBytes, line);
+	}
+
+	private static final String[] BLOCKS = {
+		"F202", "0408", "5c66", "a0b1", "----", "---", "-----", "12345", "+1A", "-1", "ZZZZ", "1A",
+	};
+	private static final String[] SPACES = {" ", " ", " ", "  ", "\t", " \t ", "\u000B", "\u0001"};
+	private static final String[] SUFFIXES = {
+		"", "", " @2012/03/15 07:41:03.20", " @2012/03/15 07:41:03.251", " @2012/03/15 07:41:03.2513",
+		" @2012/3/15 07:41:03.20", " @2012/03/15T07:41:03.20", " @2012/03/15  07:41:03x99",
+		" @2012/03/15 07:41:03.2", " @2012/03/15 07:41:03.20123", " @0001", " x@y @2012/03/15 07:41:03.20",
+		" @2012/03/15 07:41:03@20", " @2012/03/15 07:41:03.20 ", " @2012/03/15 07:41:03·20",
+		" é @2012/03/15 07:41:03.20", " @2012/03/15 07:75:93.20", " @2012/03/15 27:41:03.20",
+	};
+	private static final String[] OTHERS = {
+		"", "   ", "% RDS hexgroups", "% Freq 877, date=0003", "% Freq", "% Freq 99999999999",
+		"% Freq é 877", "%Freq 877", "<recorder=\"RDS Spy\">", "F202 0408", "F202 0408 5C66",
+		"\u0001F202 0408 5C66 4142",
+	};
+
+	@Test
+	void testSynthetic() {
+		HexGroupParser parser = new HexGroupParser();
+		Random random = new Random(1);
+		for(String line : OTHERS) check(parser, line);
+		for(int n=0; n<20000; n++) {
+			StringBuilder sb = new StringBuilder();
+			if(random.nextInt(10) == 0) sb.append(' ');
+			for(int i=0; i<4 + random.nextInt(2); i++) {
+				if(i > 0) sb.append(SPACES[random.nextInt(SPACES.length)]);
+				if(random.nextInt(4) == 0) sb.append(BLOCKS[random.nextInt(BLOCKS.length)]);
+				else sb.append(String.format("%04X", random.nextInt(0x10000)));
+			}
+			sb.append(SUFFIXES[random.nextInt(SUFFIXES.length)]);
+			check(parser, sb.toString());
+		}
+	}
+
+	@Test
+	void testDates() {
+		HexGroupParser parser = new HexGroupParser();
+		Random random = new Random(2);
+		// every fraction of two and three digits, and some of four
+		for(int f=0; f<1000; f++) {
+			check(parser, String.format("F202 0408 5C66 4142 @2012/03/15 07:41:03.%02d", f % 100));
+			check(parser, String.format("F202 0408 5C66 4142 @2012/03/15 07:41:03.%03d", f));
+			check(parser, String.format("F202 0408 5C66 4142 @2012/03/15 07:41:03.%04d", random.nextInt(10000)));
+		}
+		// dates over several years, around daylight saving time changes in particular
+		for(int n=0; n<20000; n++) {
+			int month = random.nextBoolean() ? 3 + 7 * random.nextInt(2) : 1 + random.nextInt(12);
+			check(parser, String.format("F202 0408 5C66 4142 @%04d/%02d/%02d %02d:%02d:%02d.%02d",
+					1990 + random.nextInt(40), month, 1 + random.nextInt(31), random.nextInt(24),
+					random.nextInt(60), random.nextInt(60), random.nextInt(100)));
+		}
+	}
+
+	@Test
+	void testCorpus() throws IOException {
+		String corpus = System.getProperty("hexgroups.corpus");
+		if(corpus == null) return;
+		File[] files = new File(corpus).listFiles();
+		if(files == null) return;
+		HexGroupParser parser = new HexGroupParser();
+		for(File file : files) {
+			if(! file.isFile()) continue;
+			BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+			try {
+				String line;
+				while((line = br.readLine()) != null) check(parser, line);
+			} finally {
+				br.close();
+			}
+		}
+	}
+}
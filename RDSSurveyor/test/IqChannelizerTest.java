@@ -0,0 +1,167 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.input.GroupReader;
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.IqChannelizer;
+import eu.jacquet80.rds.input.IqChannelizer.ChannelReader;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+class IqChannelizerTest {
+	static final int RATE = 960000;
+	private static final int CENTER = 98000;
+
+	/**
+	 * Writes an IQ recording (8-bit unsigned, as from rtl_sdr) of FM stations carrying RDS, with
+	 * a pilot tone and an audio tone.
+	 *
+	 * @param offsets the frequency of each station relative to the center of the recording, in Hz
+	 * @param pis the PI code broadcast by each station
+	 */
+	static File writeIq(long numSamples, int[] offsets, int[] pis) throws IOException {
+		int n = offsets.length;
+		int groups = (int) (numSamples * 1187.5 / RATE / 104) + 2;
+		boolean[][] bits = new boolean[n][104 * groups];
+		for(int s=0; s<n; s++) {
+			int p = 0;
+			for(int g=0; g<groups; g++) {
+				int[] info = {pis[s], 0x0408 | (g & 3), g, 0x4142 + 0x202 * (g & 3)};
+				for(int b=0; b<4; b++) {
+					int block = BitStreamSynchronizerTest.encode(info[b], b);
+					for(int k=25; k>=0; k--) bits[s][p++] = ((block >> k) & 1) != 0;
+				}
+			}
+		}
+
+		File file = File.createTempFile("iqrec", ".cu8");
+		file.deleteOnExit();
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			boolean[] d = new boolean[n];
+			double[] lp = new double[n];
+			double[] phi = new double[n];
+			int lastBit = -1;
+			for(long k=0; k<numSamples; k++) {
+				double t = (double) k / RATE;
+				int half = (int) (t * 2375);
+				boolean newBit = half / 2 != lastBit;
+				lastBit = half / 2;
+				double re = 0, im = 0;
+				for(int s=0; s<n; s++) {
+					// differential encoding and biphase symbols on a 57 kHz subcarrier
+					if(newBit) d[s] ^= bits[s][lastBit];
+					double v = (((half & 1) == 0) == d[s]) ? 1 : -1;
+					lp[s] += (v - lp[s]) * 0.02;
+					double mpx = 0.03 * lp[s] * Math.cos(2 * Math.PI * 57000 * t + s) +
+							0.08 * Math.sin(2 * Math.PI * 19000 * t) + 0.3 * Math.sin(2 * Math.PI * (440 + 100 * s) * t);
+					phi[s] += 2 * Math.PI * (offsets[s] + 75000 * mpx) / RATE;
+					re += Math.cos(phi[s]) / n;
+					im += Math.sin(phi[s]) / n;
+				}
+				out.write((int) Math.round(127.5 + 120 * re));
+				out.write((int) Math.round(127.5 + 120 * im));
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Reads a channel on a thread of its own, counting the complete groups of the station of the
+	 * channel, and those of the other stations.
+	 */
+	private static class Consumer extends Thread {
+		private final GroupReader reader;
+		private final int pi;
+		private final int[] otherPIs;
+		int groups = 0, crosstalk = 0;
+		IOException error = null;
+
+		Consumer(GroupReader reader, int pi, int[] otherPIs) {
+			this.reader = reader;
+			this.pi = pi;
+			this.otherPIs = otherPIs;
+			start();
+		}
+
+		@Override
+		public void run() {
+			PackedGroup group = new PackedGroup();
+			try {
+				while(true) {
+					reader.getGroup(group);
+					if(!group.present || group.okMask != 0xF) continue;
+					if(group.getBlock(0) == pi) groups++;
+					for(int other : otherPIs) if(group.getBlock(0) == other && other != pi) crosstalk++;
+				}
+			} catch(EndOfStream e) {
+				// done
+			} catch(IOException e) {
+				error = e;
+			}
+		}
+	}
+
+	private static Consumer[] consume(IqChannelizer channelizer, int[] pis) throws InterruptedException {
+		List<ChannelReader> readers = channelizer.getReaders();
+		Consumer[] consumers = new Consumer[readers.size()];
+		for(int i=0; i<consumers.length; i++) consumers[i] = new Consumer(readers.get(i), pis[i], pis);
+		channelizer.start();
+		for(Consumer c : consumers) c.join();
+		return consumers;
+	}
+
+	@Test
+	void testTwoChannels() throws IOException, InterruptedException {
+		int[] pis = {0xF201, 0xF202};
+		File file = writeIq(3 * RATE, new int[] {-300000, 200000}, pis);
+		assertArrayEquals(new int[] {CENTER - 300, CENTER + 200}, IqChannelizer.scan(file, RATE, CENTER));
+
+		IqChannelizer channelizer = new IqChannelizer(null, file, RATE, CENTER, 2);
+		assertEquals(2, channelizer.getReaders().size());
+		assertEquals(CENTER - 300, channelizer.getReaders().get(0).getFrequency());
+		Consumer[] consumers = consume(channelizer, pis);
+		for(Consumer c : consumers) {
+			assertEquals(null, c.error);
+			// 34 groups in 3 s, some of them received before synchronization
+			assertTrue(c.groups >= 25, c.groups + " groups");
+			assertEquals(0, c.crosstalk);
+		}
+	}
+
+	@Test
+	void testInvalidFrequency() throws IOException {
+		int threads = Thread.activeCount();
+		try {
+			new IqChannelizer(null, new File("unused.cu8"), RATE, CENTER, 1, new int[] {CENTER, CENTER + 400});
+			fail("Channel outside the recording accepted");
+		} catch(IllegalArgumentException e) {
+			// expected
+		}
+		// no demodulator was started
+		assertEquals(threads, Thread.activeCount());
+	}
+
+	@Test
+	void testReadError() throws InterruptedException {
+		File missing = new File(System.getProperty("java.io.tmpdir"), "missing-" + System.nanoTime() + ".cu8");
+		IqChannelizer channelizer = new IqChannelizer(null, missing, RATE, CENTER, 1, new int[] {CENTER - 100, CENTER});
+		for(Consumer c : consume(channelizer, new int[] {0, 0})) {
+			assertNotNull(c.error);
+			assertEquals(0, c.groups);
+		}
+	}
+}
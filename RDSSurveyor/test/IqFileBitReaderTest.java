@@ -0,0 +1,55 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.core.BitStreamSynchronizer;
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.IqFileBitReader;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+class IqFileBitReaderTest {
+	private static final int RATE = IqChannelizerTest.RATE;
+
+	@Test
+	void testDecoding() throws IOException {
+		// not a whole number of the blocks demodulated at once (64k samples): the last complete
+		// group (number 21) ends in the incomplete last block
+		long numSamples = 28 * 65536 + 30000;
+		File file = IqChannelizerTest.writeIq(numSamples, new int[] {0}, new int[] {0xF202});
+
+		BitStreamSynchronizer sync = new BitStreamSynchronizer(null, new IqFileBitReader(file, RATE));
+		int first = -1, last = -1, groups = 0;
+		try {
+			PackedGroup group = new PackedGroup();
+			while(true) {
+				sync.getGroup(group);
+				if(!group.present || group.okMask != 0xF) continue;
+				int number = group.getBlock(2);
+				if(first < 0) {
+					// the first group after synchronization may lack its first blocks
+					if(group.getBlock(0) != 0xF202) continue;
+					first = number;
+				} else {
+					assertEquals(0xF202, group.getBlock(0));
+					assertEquals(last + 1, number);
+				}
+				last = number;
+				groups++;
+			}
+		} catch(EndOfStream e) {
+			// done
+		} finally {
+			sync.close();
+		}
+
+		// groups are numbered from 0, and the last one which fits in the recording is decoded
+		int lastInFile = (int) (numSamples * 1187.5 / RATE / 104) - 1;
+		assertTrue(first >= 0 && first <= 2, "first group " + first);
+		assertEquals(lastInFile, last);
+		assertEquals(last - first + 1, groups);
+	}
+}
@@ -0,0 +1,172 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.input.GroupReader;
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.HexFileGroupReader;
+import eu.jacquet80.rds.input.MappedHexFileGroupReader;
+import eu.jacquet80.rds.input.MappedHexFileGroupReader.Chunk;
+import eu.jacquet80.rds.input.MappedHexFileGroupReader.ChunkHandler;
+import eu.jacquet80.rds.input.group.FrequencyChangeEvent;
+import eu.jacquet80.rds.input.group.GroupReaderEvent;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+class MappedHexFileGroupReaderTest {
+	private static final String[] TERMINATORS = {"\n", "\n", "\r\n", "\r"};
+
+	/**
+	 * Writes a hex file with all kinds of line terminators, empty lines, frequency changes and
+	 * dates, ending with a line without terminator.
+	 */
+	private static File write(int lines) throws IOException {
+		File file = File.createTempFile("hexgroups", ".rds");
+		file.deleteOnExit();
+		Random random = new Random(3);
+		StringBuilder sb = new StringBuilder("% RDS hexgroups\n");
+		for(int i=0; i<lines; i++) {
+			int kind = random.nextInt(20);
+			if(kind == 0) sb.append("");
+			else if(kind == 1) sb.append("% Freq ").append(875 + i % 200);
+			else {
+				sb.append(String.format("F202 %04X ---- %04X", random.nextInt(0x10000), random.nextInt(0x10000)));
+				if(kind < 5) sb.append(String.format(" @2012/03/15 07:%02d:%02d.%02d", i / 60 % 60, i % 60, i % 100));
+			}
+			sb.append(TERMINATORS[random.nextInt(TERMINATORS.length)]);
+		}
+		sb.append("F202 0408 5C66 4142");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(sb.toString().getBytes("ASCII"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static List<String> readAll(GroupReader reader) throws IOException {
+		List<String> res = new ArrayList<String>();
+		PackedGroup group = new PackedGroup();
+		try {
+			while(true) {
+				GroupReaderEvent event = reader.getGroup(group);
+				if(group.present) {
+					res.add(String.format("%016X %X %b %d", group.blocks, group.okMask, group.isRealTime(),
+							group.getTimeValue()));
+				} else if(event instanceof FrequencyChangeEvent) {
+					res.add("freq " + ((FrequencyChangeEvent) event).frequency + " " + event.getTime());
+				}
+			}
+		} catch(EndOfStream e) {
+			// done
+		}
+		return res;
+	}
+
+	@Test
+	void testOrdered() throws IOException {
+		File file = write(5000);
+		List<String> expected = readAll(new HexFileGroupReader(file));
+		// chunks which split lines, and terminators, in all possible places
+		for(int chunkBytes : new int[] {1, 7, 64, 1000, 1 << 20}) {
+			MappedHexFileGroupReader reader = new MappedHexFileGroupReader(file, 3, chunkBytes);
+			assertEquals(expected, readAll(reader), "Chunks of " + chunkBytes + " bytes");
+		}
+	}
+
+	@Test
+	void testUnordered() throws IOException {
+		File file = write(5000);
+		final int groups = readAll(new HexFileGroupReader(file)).size();
+		final AtomicInteger count = new AtomicInteger();
+		final AtomicInteger lines = new AtomicInteger();
+		MappedHexFileGroupReader reader = new MappedHexFileGroupReader(file, 4, 1000);
+		reader.parseUnordered(new ChunkHandler() {
+			@Override
+			public void handle(Chunk chunk) {
+				count.addAndGet(chunk.size());
+				lines.addAndGet(chunk.getLines());
+			}
+		});
+		assertEquals(groups, count.get());
+		BufferedReader br = new BufferedReader(new FileReader(file));
+		int expectedLines = 0;
+		try {
+			while(br.readLine() != null) expectedLines++;
+		} finally {
+			br.close();
+		}
+		assertEquals(expectedLines, lines.get());
+	}
+
+	@Test
+	void testMidLineChunks() throws IOException {
+		// lines of 20 bytes, and chunks which all end in the middle of a line
+		File file = File.createTempFile("hexgroups", ".rds");
+		file.deleteOnExit();
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<1000; i++) sb.append(String.format("F202 %04X 5C66 %04X\n", i, 0xFFFF - i));
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(sb.toString().getBytes("ASCII"));
+		} finally {
+			out.close();
+		}
+
+		List<String> expected = readAll(new HexFileGroupReader(file));
+		assertEquals(1000, expected.size());
+		MappedHexFileGroupReader reader = new MappedHexFileGroupReader(file, 3, 20 * 53 + 7);
+		assertEquals(19, reader.getNumChunks());
+		assertEquals(expected, readAll(reader));
+	}
+
+	@Test
+	void testParseError() throws IOException {
+		File file = write(5000);
+		MappedHexFileGroupReader reader = new MappedHexFileGroupReader(file, 2, 1000);
+		// the chunks are beyond the end of the file once it is truncated
+		new FileOutputStream(file).close();
+		try {
+			readAll(reader);
+			fail("Truncated file parsed");
+		} catch(IOException e) {
+			// expected
+		}
+		int open = BatchDecoderTest.openCount(file);
+		assertTrue(open <= 0, open + " descriptors left open");
+		try {
+			reader.getGroup(new PackedGroup());
+			fail("Group read after an error");
+		} catch(EndOfStream e) {
+			// expected
+		}
+	}
+
+	@Test
+	void testDaemonThreads() throws IOException, EndOfStream {
+		File file = write(5000);
+		MappedHexFileGroupReader reader = new MappedHexFileGroupReader(file, 2, 1000);
+		reader.getGroup(new PackedGroup());
+		int parsers = 0;
+		for(Thread t : Thread.getAllStackTraces().keySet()) {
+			if(!t.getName().startsWith("Hex parser")) continue;
+			parsers++;
+			// an abandoned reader must not keep the application running
+			assertTrue(t.isDaemon(), t.getName());
+		}
+		assertTrue(parsers > 0);
+		reader.close();
+	}
+}
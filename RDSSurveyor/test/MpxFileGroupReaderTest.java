@@ -0,0 +1,142 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.input.GroupReader.EndOfStream;
+import eu.jacquet80.rds.input.MpxFileGroupReader;
+import eu.jacquet80.rds.input.group.PackedGroup;
+
+class MpxFileGroupReaderTest {
+	private static final int RATE = 192000;
+
+	/**
+	 * Writes a raw MPX file (16-bit little-endian samples) at 192 kHz with an RDS signal carrying
+	 * groups which are all different: block C holds the number of the group.
+	 */
+	static File writeMpx(int seconds) throws IOException {
+		return writeMpx(RATE, seconds, 0);
+	}
+
+	/**
+	 * Writes a raw MPX file like {@link #writeMpx(int)}, at any sample rate.
+	 *
+	 * @param noise the standard deviation of the white noise added to the signal, relative to
+	 * full scale
+	 */
+	static File writeMpx(int rate, int seconds, double noise) throws IOException {
+		int groups = (int) (seconds * 1187.5 / 104) + 2;
+		boolean[] bits = new boolean[104 * groups];
+		int p = 0;
+		for(int g=0; g<groups; g++) {
+			int[] info = {0xF202, 0x0408 | (g & 3), g, 0x4142 + 0x202 * (g & 3)};
+			for(int b=0; b<4; b++) {
+				int block = BitStreamSynchronizerTest.encode(info[b], b);
+				for(int k=25; k>=0; k--) bits[p++] = ((block >> k) & 1) != 0;
+			}
+		}
+
+		File file = File.createTempFile("mpx", ".raw");
+		file.deleteOnExit();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			// differential encoding and biphase symbols on a 57 kHz subcarrier, with a pilot tone
+			boolean d = false;
+			Random random = new Random(rate);
+			int lastBit = -1;
+			double lp = 0;
+			for(long i=0; i < (long) seconds * rate; i++) {
+				double t = (double) i / rate;
+				int half = (int) (t * 2375);
+				if(half / 2 != lastBit) {
+					lastBit = half / 2;
+					d ^= bits[lastBit];
+				}
+				double v = (((half & 1) == 0) == d) ? 1 : -1;
+				lp += (v - lp) * 0.08;
+				double s = 0.03 * lp * Math.cos(2 * Math.PI * 57000 * t + 1) + 0.08 * Math.sin(2 * Math.PI * 19000 * t) +
+						noise * random.nextGaussian();
+				out.writeShort(Short.reverseBytes((short) Math.round(s * 32767)));
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static List<PackedGroup> decode(MpxFileGroupReader reader) throws IOException {
+		List<PackedGroup> groups = new ArrayList<PackedGroup>();
+		try {
+			while(true) {
+				PackedGroup group = new PackedGroup();
+				reader.getGroup(group);
+				if(group.present) groups.add(group);
+			}
+		} catch(EndOfStream e) {
+			return groups;
+		}
+	}
+
+	@Test
+	void testChunks() throws IOException {
+		File file = writeMpx(32);
+		MpxFileGroupReader whole = new MpxFileGroupReader(null, file, RATE, 1, 10);
+		assertEquals(1, whole.getNumChunks());
+		List<PackedGroup> expected = decode(whole);
+		assertTrue(expected.size() > 300, "only " + expected.size() + " groups");
+
+		MpxFileGroupReader chunked = new MpxFileGroupReader(null, file, RATE, 2, 10);
+		assertEquals(4, chunked.getNumChunks());
+		List<PackedGroup> actual = decode(chunked);
+
+		assertEquals(expected.size(), actual.size());
+		for(int i=0; i<expected.size(); i++) {
+			PackedGroup e = expected.get(i), a = actual.get(i);
+			assertEquals(e.blocks, a.blocks, "group " + i);
+			assertEquals(e.okMask, a.okMask, "group " + i);
+			assertEquals(e.correctedMask, a.correctedMask, "group " + i);
+			// time stamps of different chunks are derived from the nominal bit rate
+			assertTrue(Math.abs(e.getTimeValue() - a.getTimeValue()) < 26, "group " + i);
+		}
+	}
+
+	@Test
+	void testClose() throws IOException, EndOfStream {
+		File file = writeMpx(32);
+		int threads = Thread.activeCount();
+		MpxFileGroupReader reader = new MpxFileGroupReader(null, file, RATE, 2, 10);
+		PackedGroup group = new PackedGroup();
+		do {
+			reader.getGroup(group);
+		} while(!group.present);
+		reader.close();
+
+		try {
+			reader.getGroup(group);
+			fail("Group read after closing");
+		} catch(EndOfStream e) {
+			// expected
+		}
+
+		// the decoding threads stop
+		long deadline = System.currentTimeMillis() + 10000;
+		while(Thread.activeCount() > threads && System.currentTimeMillis() < deadline) {
+			try {
+				Thread.sleep(10);
+			} catch(InterruptedException e) {
+				break;
+			}
+		}
+		assertEquals(threads, Thread.activeCount());
+	}
+}
@@ -0,0 +1,113 @@
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.input.MpxFile;
+
+class MpxFileTest {
+	private static final int SAMPLES = 1000;
+
+	/** Sample data: sample {@code i} has the value {@code i - 500} */
+	private static ByteBuffer samples() {
+		ByteBuffer data = ByteBuffer.allocate(2 * SAMPLES).order(ByteOrder.LITTLE_ENDIAN);
+		for(int i=0; i<SAMPLES; i++) data.putShort((short) (i - 500));
+		data.flip();
+		return data;
+	}
+
+	private static File write(ByteBuffer... parts) throws IOException {
+		File file = File.createTempFile("mpx", ".tmp");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			for(ByteBuffer b : parts) out.getChannel().write(b);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/** A WAV header, with an odd-sized chunk between the format and the data chunks */
+	private static ByteBuffer wavHeader(int channels, int rate) {
+		ByteBuffer h = ByteBuffer.allocate(58).order(ByteOrder.LITTLE_ENDIAN);
+		h.put("RIFF".getBytes()).putInt(50 + 2 * SAMPLES).put("WAVE".getBytes());
+		h.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) channels)
+				.putInt(rate).putInt(2 * channels * rate).putShort((short) (2 * channels)).putShort((short) 16);
+		h.put("LIST".getBytes()).putInt(1).put((byte) 0x55).put((byte) 0);
+		h.put("data".getBytes()).putInt(2 * SAMPLES);
+		h.flip();
+		return h;
+	}
+
+	private static int[] read(ReadableByteChannel channel) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(4 * SAMPLES).order(ByteOrder.LITTLE_ENDIAN);
+		// small reads, as done by AudioBitReader
+		ByteBuffer small = ByteBuffer.allocate(64);
+		while(channel.read(small) >= 0) {
+			small.flip();
+			buf.put(small);
+			small.clear();
+		}
+		buf.flip();
+		int[] res = new int[buf.remaining() / 2];
+		for(int i=0; i<res.length; i++) res[i] = buf.getShort();
+		return res;
+	}
+
+	@Test
+	void testWav() throws IOException {
+		MpxFile mpx = new MpxFile(write(wavHeader(1, 192000), samples()), 0);
+		assertEquals(192000, mpx.getSampleRate());
+		assertEquals(SAMPLES, mpx.getNumSamples());
+
+		int[] all = read(mpx.openChannel(0, SAMPLES));
+		assertEquals(SAMPLES, all.length);
+		assertEquals(-500, all[0]);
+		assertEquals(499, all[SAMPLES - 1]);
+
+		// ranges are truncated at the end of the file
+		int[] tail = read(mpx.openChannel(900, 500));
+		assertEquals(100, tail.length);
+		assertEquals(400, tail[0]);
+		mpx.close();
+	}
+
+	@Test
+	void testRaw() throws IOException {
+		MpxFile mpx = new MpxFile(write(samples()), 228000);
+		assertEquals(228000, mpx.getSampleRate());
+		assertEquals(SAMPLES, mpx.getNumSamples());
+		int[] range = read(mpx.openChannel(10, 20));
+		assertEquals(20, range.length);
+		assertEquals(-490, range[0]);
+		assertEquals(-471, range[19]);
+		mpx.close();
+	}
+
+	@Test
+	void testUnsupported() throws IOException {
+		// stereo WAV file
+		try {
+			new MpxFile(write(wavHeader(2, 48000), samples()), 0);
+			fail("Stereo file accepted");
+		} catch(IOException e) {
+			// expected
+		}
+		// raw file without a sample rate
+		try {
+			new MpxFile(write(samples()), 0);
+			fail("Raw file accepted without a sample rate");
+		} catch(IOException e) {
+			// expected
+		}
+	}
+}
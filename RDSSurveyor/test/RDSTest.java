@@ -0,0 +1,58 @@
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import eu.jacquet80.rds.core.RDS;
+
+class RDSTest {
+	@Test
+	void testSyndromeTableAllBlocks() {
+		// exhaustive over all 26-bit blocks
+		for(int block=0; block < (1<<26); block++) {
+			if(RDS.calcSyndrome(block) != RDS.calcSyndromeBitwise(block)) {
+				assertEquals(RDS.calcSyndromeBitwise(block), RDS.calcSyndrome(block),
+						String.format("Syndrome mismatch for block %07X", block));
+			}
+		}
+	}
+
+	@Test
+	void testSyndromeTableIgnoresHighBits() {
+		// the synchronizer passes ~block, whose upper 6 bits are set
+		Random r = new Random(42);
+		for(int i=0; i<100000; i++) {
+			int block = r.nextInt();
+			assertEquals(RDS.calcSyndromeBitwise(block), RDS.calcSyndrome(block));
+			assertEquals(RDS.calcSyndromeBitwise(~block), RDS.calcSyndrome(~block));
+		}
+	}
+
+	@Test
+	void testSyndromeOfOffsetWords() {
+		// a zero information word with only the offset word has the syndrome of the offset
+		for(int i=0; i<4; i++) {
+			assertEquals(RDS.syndromes[i][0], RDS.calcSyndrome(RDS.offsetWords[i]));
+		}
+	}
+
+	@Test
+	void testAllShortBurstsCorrected() {
+		for(int blockIndex=0; blockIndex<4; blockIndex++) {
+			for(int length=1; length<=RDS.MAX_BURST_LENGTH; length++) {
+				for(int burst=0; burst < (1<<length); burst++) {
+					// only bursts whose first and last bits are in error
+					if(RDS.burstLength(burst) != length) continue;
+					for(int pos=0; pos <= 26-length; pos++) {
+						int error = burst << pos;
+						int synd = RDS.calcSyndrome(error) ^ RDS.syndromes[blockIndex][0];
+						assertEquals(error, RDS.findBurstError(synd, blockIndex, 0, length));
+						assertEquals(0, RDS.findBurstError(synd, blockIndex, 0, length-1));
+					}
+				}
+			}
+		}
+	}
+}